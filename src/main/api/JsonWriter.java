@@ -0,0 +1,210 @@
+package main.api;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming JSON writer.
+ * <p>
+ * Values are written straight to the underlying {@link Writer} as they
+ * are produced, so a response of any size is sent without first being
+ * built in memory. The writer inserts commas and quotes and escapes
+ * strings; it does not check that names and values are balanced, which
+ * is the caller's responsibility.
+ * </p>
+ *
+ * <p>
+ * Example usage:
+ * <pre>
+ *     json.beginObject().name("title").value("The Hobbit").endObject();
+ * </pre>
+ * </p>
+ */
+public class JsonWriter {
+
+    /** Maximum nesting depth. */
+    private static final int MAX_DEPTH = 32;
+
+    /** Destination of the JSON text. */
+    private final Writer out;
+
+    /** Whether the container at each depth already holds an element. */
+    private final boolean[] hasElement = new boolean[MAX_DEPTH];
+
+    /** Current nesting depth; 0 at the top level. */
+    private int depth;
+
+    /** Whether a name was just written, so the next value needs no comma. */
+    private boolean afterName;
+
+    /**
+     * Constructs a writer emitting JSON to the given destination.
+     *
+     * @param out the destination; not closed by this class
+     */
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    // -------------------------------------------
+    // STRUCTURE
+    // -------------------------------------------
+
+    /** Opens an object. */
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    /** Closes the current object. */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /** Opens an array. */
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    /** Closes the current array. */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Writes the name of the next object member.
+     *
+     * @param name the member name
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    // -------------------------------------------
+    // VALUES
+    // -------------------------------------------
+
+    /** Writes a string value, or {@code null}. */
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    /** Writes an integer value. */
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    /** Writes a number value; non-finite numbers are written as {@code null}. */
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    /** Writes a boolean value. */
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Ends a top-level value with a line break, so the next value starts a
+     * new line without a separating comma (the JSON Lines format).
+     *
+     * @return this writer
+     * @throws IOException           if writing fails
+     * @throws IllegalStateException if a container is still open
+     */
+    public JsonWriter endLine() throws IOException {
+        if (depth != 0) {
+            throw new IllegalStateException("Line ended inside a JSON value");
+        }
+        out.write('\n');
+        hasElement[0] = false;
+        return this;
+    }
+
+    /**
+     * Flushes the underlying writer, pushing what was written so far to the client.
+     *
+     * @throws IOException if flushing fails
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /** Writes an opening bracket and enters a new container. */
+    private JsonWriter open(char bracket) throws IOException {
+        separate();
+        if (depth + 1 >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested too deeply");
+        }
+        out.write(bracket);
+        hasElement[++depth] = false;
+        return this;
+    }
+
+    /** Writes a closing bracket and leaves the current container. */
+    private JsonWriter close(char bracket) throws IOException {
+        out.write(bracket);
+        depth--;
+        return this;
+    }
+
+    /** Writes the comma that precedes every element but the first of a container. */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasElement[depth]) {
+            out.write(',');
+        }
+        hasElement[depth] = true;
+    }
+
+    /** Writes a quoted, escaped string. */
+    private void string(String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escape = null;
+            if (c == '"' || c == '\\') {
+                escape = "\\" + c;
+            } else if (c < 0x20) {
+                escape = switch (c) {
+                    case '\n' -> "\\n";
+                    case '\r' -> "\\r";
+                    case '\t' -> "\\t";
+                    default -> String.format("\\u%04x", (int) c);
+                };
+            }
+            if (escape != null) {
+                out.write(s, start, i - start);
+                out.write(escape);
+                start = i + 1;
+            }
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,525 @@
+package main.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.model.CirculationStats;
+import main.model.LibrarySystem;
+import main.model.Loan;
+import main.model.MediaType;
+import main.model.Product;
+import main.model.ProductKey;
+import main.model.SearchHit;
+import main.model.User;
+import main.model.UserType;
+import main.report.LoanReport;
+import main.report.ReportFormat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP front end exposing a shared {@link LibrarySystem} as JSON.
+ * <p>
+ * Built on the JDK's {@code com.sun.net.httpserver}. Every request runs on
+ * its own virtual thread, so handlers block freely, for example while a
+ * borrow waits for the loan journal, without tying up a shared worker.
+ * All requests share one {@code LibrarySystem},
+ * whose borrowing, returning and catalogue lookups are already safe for
+ * concurrent callers.
+ * </p>
+ * <p>
+ * Responses are sent with chunked transfer encoding and written through a
+ * {@link JsonWriter} as they are produced, so listing a whole category or
+ * every active loan never builds the full response in memory.
+ * </p>
+ * <p>
+ * Endpoints (parameters in the query string or a form-encoded body):
+ * <pre>
+ * GET  /api/search?q=tolkien&amp;limit=20&amp;fuzzy=false   ranked search hits
+ * GET  /api/products?type=BOOK&amp;available=true         products of one media type
+ * POST /api/borrow?user=1&amp;item=BOOK-1                   check an item out
+ * POST /api/return?user=1&amp;item=BOOK-1                   return an item
+ * POST /api/renew?user=1&amp;item=BOOK-1                    renew a loan
+ * GET  /api/loans?user=1                                 active loans (all if no user)
+ * GET  /api/reports/loans?format=csv                     loan report (JSON with totals if no format)
+ * GET  /api/stats                                       circulation statistics
+ * </pre>
+ * </p>
+ */
+public class LibraryHttpServer {
+
+    /** Default number of search results. */
+    private static final int DEFAULT_LIMIT = 20;
+
+    /** Upper bound on the number of search results per request. */
+    private static final int MAX_LIMIT = 500;
+
+    /** Shared system all requests operate on. */
+    private final LibrarySystem system;
+
+    /** Underlying JDK server. */
+    private final HttpServer server;
+
+    /** Executor running one task per request. */
+    private final ExecutorService executor;
+
+    /**
+     * Writes a JSON response body.
+     */
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    /**
+     * Handles one request to a route.
+     */
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    /**
+     * Creates a server bound to the given port; call {@link #start()} to serve requests.
+     *
+     * @param system the library system to expose
+     * @param port   the TCP port, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public LibraryHttpServer(LibrarySystem system, int port) throws IOException {
+        this.system = system;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+
+        route("/api/search", "GET", this::search);
+        route("/api/products", "GET", this::products);
+        route("/api/borrow", "POST", this::borrow);
+        route("/api/return", "POST", this::returnItem);
+        route("/api/renew", "POST", this::renew);
+        route("/api/loans", "GET", this::loans);
+        route("/api/reports/loans", "GET", this::loanReport);
+        route("/api/stats", "GET", this::stats);
+    }
+
+    // -------------------------------------------
+    // LIFECYCLE
+    // -------------------------------------------
+
+    /** Starts accepting requests. */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits briefly for running ones and releases the port.
+     *
+     * @param graceSeconds how long to wait for requests in progress
+     */
+    public void stop(int graceSeconds) {
+        server.stop(graceSeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(graceSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // -------------------------------------------
+    // ENDPOINTS
+    // -------------------------------------------
+
+    /** {@code GET /api/search}: ranked search hits, falling back to fuzzy matching if asked. */
+    private void search(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String query = required(params, "q");
+        int limit = intParam(params, "limit", DEFAULT_LIMIT);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        List<SearchHit> hits = Boolean.parseBoolean(params.get("fuzzy"))
+                ? system.searchFuzzy(query, limit)
+                : system.search(query, limit);
+        respond(exchange, 200, json -> {
+            json.beginArray();
+            for (SearchHit hit : hits) {
+                json.beginObject();
+                writeProductFields(json, hit.getProduct());
+                json.name("score").value(hit.getScore());
+                json.endObject();
+            }
+            json.endArray();
+        });
+    }
+
+    /** {@code GET /api/products}: every product of a media type, streamed. */
+    private void products(HttpExchange exchange, Map<String, String> params) throws IOException {
+        MediaType type = MediaType.fromName(required(params, "type"));
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown media type: " + params.get("type"));
+        }
+        boolean onlyAvailable = Boolean.parseBoolean(params.get("available"));
+        List<Product> listed = system.listProducts(type);
+        respond(exchange, 200, json -> {
+            json.beginArray();
+            for (Product p : listed) {
+                if (!onlyAvailable || p.isAvailable()) {
+                    json.beginObject();
+                    writeProductFields(json, p);
+                    json.endObject();
+                }
+            }
+            json.endArray();
+        });
+    }
+
+    /** {@code POST /api/borrow}: checks an item out to a user. */
+    private void borrow(HttpExchange exchange, Map<String, String> params) throws IOException {
+        User user = userParam(params);
+        long key = itemParam(params);
+        if (user == null || system.findProduct(key) == null) {
+            notFound(exchange, user == null ? "Unknown user" : "Unknown item");
+            return;
+        }
+        Loan loan = system.borrow(user, key);
+        if (loan != null) {
+            respond(exchange, 200, json -> {
+                json.beginObject().name("ok").value(true).name("loan");
+                writeLoan(json, loan);
+                json.endObject();
+            });
+        } else {
+            refused(exchange, "Borrow refused: item unavailable or borrowing limit reached");
+        }
+    }
+
+    /** {@code POST /api/return}: returns an item borrowed by a user. */
+    private void returnItem(HttpExchange exchange, Map<String, String> params) throws IOException {
+        User user = userParam(params);
+        long key = itemParam(params);
+        if (user == null || system.findProduct(key) == null) {
+            notFound(exchange, user == null ? "Unknown user" : "Unknown item");
+            return;
+        }
+        if (system.handleReturn(user, key)) {
+            respond(exchange, 200, json -> json.beginObject().name("ok").value(true).endObject());
+        } else {
+            refused(exchange, "Return refused: the item is not on loan to this user");
+        }
+    }
+
+    /** {@code POST /api/renew}: extends a user's loan of an item. */
+    private void renew(HttpExchange exchange, Map<String, String> params) throws IOException {
+        User user = userParam(params);
+        long key = itemParam(params);
+        if (user == null) {
+            notFound(exchange, "Unknown user");
+            return;
+        }
+        Loan loan = system.renew(user, key);
+        if (loan != null) {
+            respond(exchange, 200, json -> {
+                json.beginObject().name("ok").value(true).name("loan");
+                writeLoan(json, loan);
+                json.endObject();
+            });
+        } else {
+            refused(exchange, "Renewal refused: no such loan or no renewals left");
+        }
+    }
+
+    /** {@code GET /api/loans}: a user's active loans, or every active loan. */
+    private void loans(HttpExchange exchange, Map<String, String> params) throws IOException {
+        List<Loan> listed;
+        if (params.containsKey("user")) {
+            User user = userParam(params);
+            if (user == null) {
+                notFound(exchange, "Unknown user");
+                return;
+            }
+            listed = system.getLoans(user);
+        } else {
+            listed = system.getAllLoans();
+        }
+        respond(exchange, 200, json -> {
+            json.beginArray();
+            for (Loan loan : listed) {
+                writeLoan(json, loan);
+            }
+            json.endArray();
+        });
+    }
+
+    /**
+     * {@code GET /api/reports/loans}: totals per media type and overdue count,
+     * then every loan. With {@code format=csv|jsonl|text}, the loans are
+     * instead streamed as a {@link LoanReport} straight from the ledger.
+     */
+    private void loanReport(HttpExchange exchange, Map<String, String> params) throws IOException {
+        if (params.containsKey("format")) {
+            ReportFormat format = ReportFormat.fromName(params.get("format"));
+            if (format == null) {
+                throw new IllegalArgumentException("Unknown report format: " + params.get("format"));
+            }
+            exchange.getResponseHeaders().set("Content-Type", format.getContentType() + "; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0); // length unknown: chunked
+            new LoanReport(format, LocalDate.now()).write(system.activeLoans(), exchange.getResponseBody());
+            return;
+        }
+        List<Loan> active = system.getAllLoans();
+        LocalDate today = LocalDate.now();
+        Map<MediaType, Integer> byType = new EnumMap<>(MediaType.class);
+        int overdue = 0;
+        for (Loan loan : active) {
+            byType.merge(loan.getItem().getMediaType(), 1, Integer::sum);
+            if (loan.isOverdue(today)) {
+                overdue++;
+            }
+        }
+        int overdueCount = overdue;
+        respond(exchange, 200, json -> {
+            json.beginObject()
+                    .name("generated").value(today.toString())
+                    .name("activeLoans").value(active.size())
+                    .name("overdueLoans").value(overdueCount)
+                    .name("byType").beginObject();
+            for (Map.Entry<MediaType, Integer> e : byType.entrySet()) {
+                json.name(e.getKey().name()).value(e.getValue());
+            }
+            json.endObject().name("loans").beginArray();
+            for (Loan loan : active) {
+                writeLoan(json, loan);
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    /**
+     * {@code GET /api/stats}: running circulation totals, per-category
+     * borrows, active loans and utilisation, the loan-length histogram and
+     * the most borrowed titles. Read from {@link CirculationStats} without
+     * scanning any loans.
+     */
+    private void stats(HttpExchange exchange, Map<String, String> params) throws IOException {
+        CirculationStats stats = system.getStats();
+        respond(exchange, 200, json -> {
+            json.beginObject()
+                    .name("borrows").value(stats.getBorrows())
+                    .name("returns").value(stats.getReturns())
+                    .name("renewals").value(stats.getRenewals())
+                    .name("averageLoanDays").value(stats.getAverageLoanDays())
+                    .name("byType").beginObject();
+            for (MediaType type : MediaType.values()) {
+                json.name(type.name()).beginObject()
+                        .name("borrows").value(stats.getBorrows(type))
+                        .name("active").value(stats.getActiveLoans(type))
+                        .name("utilisation").value(system.getUtilisation(type))
+                        .endObject();
+            }
+            json.endObject().name("byRole").beginObject();
+            for (UserType role : UserType.values()) {
+                json.name(role.name()).value(stats.getActiveLoans(role));
+            }
+            json.endObject().name("loanLengths").beginArray();
+            int[] bounds = CirculationStats.getHistogramBounds();
+            long[] counts = stats.getLoanLengthHistogram();
+            for (int i = 0; i < counts.length; i++) {
+                json.beginObject()
+                        .name("maxDays").value(i < bounds.length ? String.valueOf(bounds[i]) : "more")
+                        .name("loans").value(counts[i])
+                        .endObject();
+            }
+            json.endArray().name("topTitles").beginArray();
+            for (CirculationStats.TitleCount top : stats.topTitles()) {
+                Product p = system.findProduct(top.getProductKey());
+                json.beginObject()
+                        .name("item").value(ProductKey.format(top.getProductKey()))
+                        .name("title").value(p == null ? "" : p.getTitle())
+                        .name("borrows").value(top.getBorrows())
+                        .endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    // -------------------------------------------
+    // JSON ENCODING
+    // -------------------------------------------
+
+    /** Writes the members describing a product into the current object. */
+    private static void writeProductFields(JsonWriter json, Product p) throws IOException {
+        json.name("item").value(ProductKey.format(p.getProductKey()))
+                .name("type").value(p.getMediaType().getDisplayName())
+                .name("title").value(p.getTitle())
+                .name("creator").value(p.getCreator())
+                .name("available").value(p.isAvailable());
+    }
+
+    /** Writes a loan as an object. */
+    private static void writeLoan(JsonWriter json, Loan loan) throws IOException {
+        User borrower = loan.getBorrower();
+        json.beginObject()
+                .name("loanId").value(loan.getLoanId())
+                .name("item").value(ProductKey.format(loan.getProductKey()))
+                .name("title").value(loan.getItem().getTitle())
+                .name("userId").value(borrower.getUserId())
+                .name("borrower").value(borrower.getName())
+                .name("start").value(loan.getStartDate().toString())
+                .name("due").value(loan.getDueDate().toString())
+                .name("renewals").value(loan.getRenewCount())
+                .endObject();
+    }
+
+    // -------------------------------------------
+    // REQUEST HANDLING
+    // -------------------------------------------
+
+    /** Registers a handler for a path, enforcing the method and mapping errors to status codes. */
+    private void route(String path, String method, Handler handler) {
+        server.createContext(path, exchange -> {
+            try {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    notFound(exchange, "No such endpoint");
+                } else if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    error(exchange, 405, "Use " + method);
+                } else {
+                    handler.handle(exchange, parameters(exchange));
+                }
+            } catch (IllegalArgumentException e) {
+                error(exchange, 400, e.getMessage());
+            } catch (IOException e) {
+                // The client went away mid-response; nothing more to send.
+            } catch (RuntimeException e) {
+                System.out.println("HTTP " + path + " failed: " + e);
+                error(exchange, 500, "Internal error");
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    /**
+     * Sends a JSON response, streaming the body as it is written.
+     */
+    private static void respond(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0); // length unknown: chunked
+        Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        JsonWriter json = new JsonWriter(out);
+        body.write(json);
+        json.flush();
+        out.close();
+    }
+
+    /** Sends a 404 response. */
+    private static void notFound(HttpExchange exchange, String message) throws IOException {
+        error(exchange, 404, message);
+    }
+
+    /** Sends a 409 response for an operation the library's rules refused. */
+    private static void refused(HttpExchange exchange, String message) throws IOException {
+        respond(exchange, 409, json -> json.beginObject()
+                .name("ok").value(false)
+                .name("error").value(message)
+                .endObject());
+    }
+
+    /** Sends an error response, unless the response has already started. */
+    private static void error(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            respond(exchange, status, json -> json.beginObject().name("error").value(message).endObject());
+        } catch (IOException e) {
+            // The client went away; nothing more to send.
+        }
+    }
+
+    /** Collects the query string and, for form posts, the body parameters. */
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                parseForm(new String(in.readNBytes(64 * 1024), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    /** Decodes {@code a=1&b=2} pairs into the map. */
+    private static void parseForm(String encoded, Map<String, String> params) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Returns a parameter that must be present and non-blank. */
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    /** Returns an integer parameter, or a default if absent. */
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+    }
+
+    /** Returns the user named by the {@code user} parameter, or {@code null} if unknown. */
+    private User userParam(Map<String, String> params) {
+        required(params, "user");
+        return system.findUser(intParam(params, "user", 0));
+    }
+
+    /** Returns the product key named by the {@code item} parameter (e.g. {@code BOOK-1}). */
+    private static long itemParam(Map<String, String> params) {
+        long key = ProductKey.parse(required(params, "item"));
+        if (key == ProductKey.INVALID) {
+            throw new IllegalArgumentException("item must look like BOOK-1");
+        }
+        return key;
+    }
+}
@@ -54,25 +54,19 @@ public class AdultUser extends User {
     }
 
     /**
-     * Allows an adult user to borrow a product under the library's loan policy.
+     * Identifies this user as an adult.
      * <p>
-     * Adult users are permitted to borrow up to ten items at any given time.
-     * If the user already has ten active loans, the request is denied.
+     * Adult users are permitted to borrow up to ten items of any category
+     * at any given time under the library's base policy (see
+     * {@link PolicyTable}). If the user already has ten active loans, the
+     * request is denied.
      * </p>
      *
-     * @param product the {@link Product} to be borrowed
-     * @param policy  the {@link Policy} defining loan period, renewals and fines
-     * @return {@code true} if borrowing is successful, otherwise {@code false}
+     * @return {@link UserType#ADULT}
      */
     @Override
-    public boolean borrowProduct(Product product, Policy policy) {
-        // Check borrowing limit before delegating to superclass logic.
-        if (loans.size() >= 10) {
-            System.out.println("Borrowing limit reached (10 items max).");
-            return false;
-        }
-        // Call superclass implementation to register the loan.
-        return super.borrowProduct(product, policy);
+    public UserType getType() {
+        return UserType.ADULT;
     }
 
     /**
@@ -31,6 +31,35 @@ public class Audiobook extends Product {
         this.narrator = narrator;
     }
 
+    /**
+     * Retrieves the narrator of the audiobook.
+     *
+     * @return the narrator of the audiobook
+     */
+    public String getNarrator() {
+        return narrator;
+    }
+
+    /**
+     * Returns the narrator, who is treated as this product's creator.
+     *
+     * @return the narrator
+     */
+    @Override
+    public String getCreator() {
+        return narrator;
+    }
+
+    /**
+     * Identifies this product as a audiobook.
+     *
+     * @return {@link MediaType#AUDIOBOOK}
+     */
+    @Override
+    public MediaType getMediaType() {
+        return MediaType.AUDIOBOOK;
+    }
+
     /**
      * Returns a formatted string containing audiobook information.
      * <p>
@@ -37,6 +37,53 @@ public class Book extends Product {
         this.genre = genre;
     }
 
+    /**
+     * Retrieves the author of the book.
+     *
+     * @return the author of the book
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Retrieves the ISBN of the book.
+     *
+     * @return the ISBN of the book
+     */
+    public String getIsbn() {
+        return isbn;
+    }
+
+    /**
+     * Retrieves the genre of the book.
+     *
+     * @return the genre of the book
+     */
+    public String getGenre() {
+        return genre;
+    }
+
+    /**
+     * Returns the author, who is treated as this product's creator.
+     *
+     * @return the author
+     */
+    @Override
+    public String getCreator() {
+        return author;
+    }
+
+    /**
+     * Identifies this product as a book.
+     *
+     * @return {@link MediaType#BOOK}
+     */
+    @Override
+    public MediaType getMediaType() {
+        return MediaType.BOOK;
+    }
+
     /**
      * Returns formatted information describing this book.
      * <p>
@@ -28,6 +28,35 @@ public class CD extends Product {
         this.composer = composer;
     }
 
+    /**
+     * Retrieves the composer or primary artist of the CD.
+     *
+     * @return the composer or primary artist of the CD
+     */
+    public String getComposer() {
+        return composer;
+    }
+
+    /**
+     * Returns the composer, who is treated as this product's creator.
+     *
+     * @return the composer
+     */
+    @Override
+    public String getCreator() {
+        return composer;
+    }
+
+    /**
+     * Identifies this product as a CD.
+     *
+     * @return {@link MediaType#CD}
+     */
+    @Override
+    public MediaType getMediaType() {
+        return MediaType.CD;
+    }
+
     /**
      * Returns formatted information describing this CD.
      * <p>
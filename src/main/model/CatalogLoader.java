@@ -0,0 +1,291 @@
+package main.model;
+
+import main.util.MappedCsvReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads all catalogue files in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * The four media files are read concurrently, and any file larger than
+ * the chunk size is split into line-aligned byte ranges (see
+ * {@link MappedCsvReader#splitLines(FileChannel, long)}) that are parsed
+ * as separate fork-join tasks. Results are always concatenated in file
+ * order and, within a file, in chunk order, so the merged product list is
+ * identical to a sequential load regardless of thread scheduling.
+ * </p>
+ * <p>
+ * When {@link DataLoader} is in {@link DataLoader.LoadMode#BUFFERED} mode,
+ * each file is still loaded concurrently with the others but is read by a
+ * single task using the original reader.
+ * </p>
+ */
+public class CatalogLoader {
+
+    /** Default number of bytes parsed by one chunk task. */
+    public static final long DEFAULT_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    /** Pool that runs the file and chunk tasks. */
+    private final ForkJoinPool pool;
+
+    /** Approximate number of bytes handled by one chunk task. */
+    private final long chunkSize;
+
+    /**
+     * Constructs a loader that uses the common fork-join pool and the
+     * default chunk size.
+     */
+    public CatalogLoader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a loader with an explicit pool and chunk size.
+     *
+     * @param pool      the pool used to run load tasks
+     * @param chunkSize the approximate number of bytes per chunk task
+     */
+    public CatalogLoader(ForkJoinPool pool, long chunkSize) {
+        this.pool = pool;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Loads every catalogue file and merges the products deterministically.
+     *
+     * @return the loaded products together with per-file timing
+     */
+    public Result load() {
+        long start = System.nanoTime();
+        List<FileTask> tasks = new ArrayList<>();
+        for (MediaType type : MediaType.all()) {
+            tasks.add(new FileTask(type));
+        }
+
+        // Run all file tasks inside the pool so nested chunk tasks can fork.
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(tasks);
+                return null;
+            }
+        });
+
+        List<Product> products = new ArrayList<>();
+        List<FileStats> stats = new ArrayList<>();
+        for (FileTask task : tasks) {
+            products.addAll(task.products);
+            stats.add(task.stats);
+        }
+        return new Result(products, stats, System.nanoTime() - start);
+    }
+
+    // -------------------------------------------
+    // TASKS
+    // -------------------------------------------
+
+    /**
+     * Loads one media file, splitting it into chunk tasks when it is large.
+     */
+    private final class FileTask extends RecursiveTask<Void> {
+
+        /** Media type whose file is loaded. */
+        private final MediaType type;
+
+        /** Products loaded from the file, in file order. */
+        private List<? extends Product> products = List.of();
+
+        /** Timing and size figures for the file. */
+        private FileStats stats;
+
+        FileTask(MediaType type) {
+            this.type = type;
+        }
+
+        @Override
+        protected Void compute() {
+            long start = System.nanoTime();
+            Path file = DataLoader.dataFile(type);
+            int chunks = 1;
+            int malformed = 0;
+            long bytes = 0;
+
+            if (DataLoader.getLoadMode() == DataLoader.LoadMode.BUFFERED) {
+                products = DataLoader.load(type);
+            } else {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    bytes = channel.size();
+                    long[] bounds = MappedCsvReader.splitLines(channel, chunkSize);
+                    chunks = bounds.length - 1;
+                    ChunkTask root = new ChunkTask(type, channel, bounds, 0, chunks);
+                    products = root.invoke();
+                    malformed = root.malformed;
+                } catch (IOException | UncheckedIOException e) {
+                    System.out.println("Error reading " + file.getFileName() + ": " + e.getMessage());
+                }
+                if (malformed > 0) {
+                    System.out.println("Skipped " + malformed + " malformed line(s) in " + file.getFileName());
+                }
+            }
+            stats = new FileStats(file.getFileName().toString(), products.size(), bytes,
+                    chunks, System.nanoTime() - start);
+            return null;
+        }
+    }
+
+    /**
+     * Parses a run of consecutive chunks of one file, halving the run
+     * until a single chunk remains.
+     */
+    private static final class ChunkTask extends RecursiveTask<List<Product>> {
+
+        private final MediaType type;
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+
+        /** Lines skipped because their ID could not be parsed. */
+        private int malformed;
+
+        ChunkTask(MediaType type, FileChannel channel, long[] bounds, int from, int to) {
+            this.type = type;
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Product> compute() {
+            if (to - from <= 1) {
+                return from < to ? parseChunk(bounds[from], bounds[to]) : Collections.emptyList();
+            }
+            int mid = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(type, channel, bounds, from, mid);
+            ChunkTask right = new ChunkTask(type, channel, bounds, mid, to);
+            left.fork();
+            List<Product> rightProducts = right.compute();
+            List<Product> leftProducts = left.join();
+
+            // Left chunk first keeps the file order intact.
+            List<Product> merged = new ArrayList<>(leftProducts.size() + rightProducts.size());
+            merged.addAll(leftProducts);
+            merged.addAll(rightProducts);
+            malformed = left.malformed + right.malformed;
+            return merged;
+        }
+
+        /** Parses every line in one byte range of the file. */
+        private List<Product> parseChunk(long start, long end) {
+            List<Product> items = new ArrayList<>();
+            int minFields = DataLoader.minFields(type);
+            try {
+                MappedCsvReader.read(channel, start, end, row -> {
+                    if (row.fieldCount() < minFields) {
+                        return;
+                    }
+                    try {
+                        items.add(DataLoader.toProduct(type, row));
+                    } catch (NumberFormatException e) {
+                        malformed++;
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return items;
+        }
+    }
+
+    // -------------------------------------------
+    // RESULTS
+    // -------------------------------------------
+
+    /**
+     * Timing and size figures for one catalogue file.
+     */
+    public static final class FileStats {
+
+        private final String fileName;
+        private final int productCount;
+        private final long bytes;
+        private final int chunks;
+        private final long nanos;
+
+        FileStats(String fileName, int productCount, long bytes, int chunks, long nanos) {
+            this.fileName = fileName;
+            this.productCount = productCount;
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.nanos = nanos;
+        }
+
+        /** Returns the name of the file. */
+        public String getFileName() { return fileName; }
+
+        /** Returns the number of products loaded from the file. */
+        public int getProductCount() { return productCount; }
+
+        /** Returns the file size in bytes, or 0 if it was not mapped. */
+        public long getBytes() { return bytes; }
+
+        /** Returns the number of chunks the file was split into. */
+        public int getChunks() { return chunks; }
+
+        /** Returns the wall-clock time spent loading the file, in nanoseconds. */
+        public long getNanos() { return nanos; }
+
+        /** Returns a one-line summary such as {@code books.csv: 5 items, 1 chunk(s), 0.8 ms}. */
+        @Override
+        public String toString() {
+            return String.format("%s: %d items, %d chunk(s), %.1f ms",
+                    fileName, productCount, chunks, nanos / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Products produced by a load together with per-file statistics.
+     */
+    public static final class Result {
+
+        private final List<Product> products;
+        private final List<FileStats> fileStats;
+        private final long totalNanos;
+
+        Result(List<Product> products, List<FileStats> fileStats, long totalNanos) {
+            this.products = products;
+            this.fileStats = Collections.unmodifiableList(fileStats);
+            this.totalNanos = totalNanos;
+        }
+
+        /** Returns the merged products, files in media-type order. */
+        public List<Product> getProducts() { return products; }
+
+        /** Returns the statistics of each file, in media-type order. */
+        public List<FileStats> getFileStats() { return fileStats; }
+
+        /** Returns the wall-clock time of the whole load, in nanoseconds. */
+        public long getTotalNanos() { return totalNanos; }
+
+        /**
+         * Prints the per-file timing report to the console.
+         */
+        public void printReport() {
+            for (FileStats stats : fileStats) {
+                System.out.println("  " + stats);
+            }
+            System.out.printf("  Total: %d items in %.1f ms%n", products.size(), totalNanos / 1_000_000.0);
+        }
+    }
+}
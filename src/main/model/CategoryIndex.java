@@ -0,0 +1,183 @@
+package main.model;
+
+import main.util.AtomicBitSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Groups products into one bucket per {@link MediaType} and tracks which
+ * of them are available.
+ * <p>
+ * Each bucket keeps its products in a list together with an
+ * {@link AtomicBitSet} whose bit {@code i} is set while the product at
+ * position {@code i} is available. Products remember their bucket position,
+ * so a change of availability can flip the matching bit directly and
+ * category listings never need to inspect class names or copy lists.
+ * </p>
+ * <p>
+ * Availability bits may be updated by any number of borrowing threads at
+ * once. Adding and removing products changes the bucket lists and must be
+ * serialised by the caller ({@link LibrarySystem} does this under its
+ * catalogue lock).
+ * </p>
+ */
+class CategoryIndex {
+
+    /** One bucket per media type, indexed by {@link MediaType#ordinal()}. */
+    private final Bucket[] buckets;
+
+    /**
+     * Constructs an empty index with a bucket for every media type.
+     */
+    CategoryIndex() {
+        buckets = new Bucket[MediaType.all().length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    // -------------------------------------------
+    // MAINTENANCE
+    // -------------------------------------------
+
+    /**
+     * Adds a product to the bucket of its media type.
+     *
+     * @param p the product to add
+     */
+    void add(Product p) {
+        Bucket bucket = bucketFor(p.getMediaType());
+        int slot = bucket.items.size();
+        bucket.items.add(p);
+        p.attachToCategory(this, slot);
+        if (p.isAvailable()) {
+            bucket.available.set(slot);
+        }
+    }
+
+    /**
+     * Removes a product from its bucket.
+     * <p>
+     * The last product of the bucket is moved into the freed position so
+     * that removal takes constant time; bucket order may change as a result.
+     * </p>
+     *
+     * @param p the product to remove
+     */
+    void remove(Product p) {
+        if (p.categoryIndex != this) {
+            return;
+        }
+        Bucket bucket = bucketFor(p.getMediaType());
+        int slot = p.categorySlot;
+        int last = bucket.items.size() - 1;
+
+        // Move the last product into the gap, then take its availability bit along.
+        Product moved = bucket.items.get(last);
+        bucket.items.set(slot, moved);
+        moved.categorySlot = slot;
+        bucket.available.set(slot, moved.isAvailable());
+
+        bucket.items.remove(last);
+        bucket.available.clear(last);
+        p.attachToCategory(null, -1);
+    }
+
+    /**
+     * Removes every product from every bucket.
+     */
+    void clear() {
+        for (Bucket bucket : buckets) {
+            for (Product p : bucket.items) {
+                p.attachToCategory(null, -1);
+            }
+            bucket.items.clear();
+            bucket.available.clear();
+        }
+    }
+
+    /**
+     * Updates the availability bit of a product after its status changed.
+     * <p>
+     * The flag is read again after the bit is written: if a concurrent
+     * borrow or return changed it in between, the bit is rewritten, so the
+     * last writer always leaves the bit matching the product.
+     * </p>
+     *
+     * @param p the product whose availability changed
+     */
+    void onAvailabilityChanged(Product p) {
+        AtomicBitSet available = bucketFor(p.getMediaType()).available;
+        int slot = p.categorySlot;
+        if (slot < 0) {
+            return;
+        }
+        boolean value;
+        do {
+            value = p.isAvailable();
+            available.set(slot, value);
+        } while (p.isAvailable() != value);
+    }
+
+    // -------------------------------------------
+    // QUERIES
+    // -------------------------------------------
+
+    /**
+     * Returns a read-only view of all products of the given type.
+     *
+     * @param type the media type
+     * @return an unmodifiable live view of the bucket
+     */
+    List<Product> products(MediaType type) {
+        return bucketFor(type).view;
+    }
+
+    /**
+     * Counts the available products of the given type.
+     *
+     * @param type the media type
+     * @return the number of available products
+     */
+    int countAvailable(MediaType type) {
+        return bucketFor(type).available.cardinality();
+    }
+
+    /**
+     * Invokes the given action for each available product of the given type,
+     * in bucket order.
+     *
+     * @param type   the media type
+     * @param action the callback receiving each available product
+     */
+    void forEachAvailable(MediaType type, Consumer<? super Product> action) {
+        Bucket bucket = bucketFor(type);
+        AtomicBitSet available = bucket.available;
+        for (int i = available.nextSetBit(0); i >= 0; i = available.nextSetBit(i + 1)) {
+            action.accept(bucket.items.get(i));
+        }
+    }
+
+    /** Returns the bucket that stores products of the given type. */
+    private Bucket bucketFor(MediaType type) {
+        return buckets[type.ordinal()];
+    }
+
+    /**
+     * Products of a single media type plus their availability bits.
+     */
+    private static final class Bucket {
+
+        /** Products of this type, in insertion order until a removal occurs. */
+        private final ArrayList<Product> items = new ArrayList<>();
+
+        /** Read-only view handed out to callers, created once per bucket. */
+        private final List<Product> view = Collections.unmodifiableList(items);
+
+        /** Bit {@code i} is set while {@code items.get(i)} is available. */
+        private final AtomicBitSet available = new AtomicBitSet();
+    }
+}
@@ -46,41 +46,39 @@ public class ChildUser extends User {
     }
 
     /**
-     * Attempts to borrow a {@link Product} for the child user under special rules.
+     * Checks the child-specific borrowing rules.
      * <p>
      * Child users:
      * <ul>
      *   <li>Must have an assigned guardian</li>
-     *   <li>May borrow a maximum of three items at a time</li>
+     *   <li>May borrow a maximum of three books at a time</li>
      *   <li>Have a shorter loan period (7 days) and zero renewals</li>
      * </ul>
+     * The limit, categories and loan terms come from the {@link PolicyTable};
+     * the guardian rule is checked here.
      * </p>
-     * This method overrides {@link User#borrowProduct(Product, Policy)}
-     * and enforces the child-specific borrowing policy.
      *
-     * @param product the product to borrow
-     * @param policy  the general policy used as a base for fines
-     * @return {@code true} if borrowing succeeds; {@code false} otherwise
+     * @param limit the child loan limit
+     * @return {@code true} if the child may borrow another item
      */
     @Override
-    public boolean borrowProduct(Product product, Policy policy) {
+    protected boolean canBorrow(int limit) {
         // Ensure a guardian is assigned before allowing any borrowing.
         if (guardian == null) {
             System.out.println("Cannot borrow without a guardian.");
             return false;
         }
+        return super.canBorrow(limit);
+    }
 
-        // Enforce child borrowing limit (maximum of three items).
-        if (loans.size() >= 3) {
-            System.out.println("Borrowing limit reached (3 items max).");
-            return false;
-        }
-
-        // Create a specific policy for child users: 7-day loans, no renewals.
-        Policy childPolicy = new Policy(7, 0, policy.getDailyFine());
-
-        // Delegate borrowing logic to superclass with restricted policy.
-        return super.borrowProduct(product, childPolicy);
+    /**
+     * Identifies this user as a child.
+     *
+     * @return {@link UserType#CHILD}
+     */
+    @Override
+    public UserType getType() {
+        return UserType.CHILD;
     }
 
     /**
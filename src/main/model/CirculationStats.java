@@ -0,0 +1,434 @@
+package main.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circulation counters and histograms, updated on every loan event.
+ * <p>
+ * Two kinds of figure are kept:
+ * <ul>
+ *   <li><b>Cumulative</b> counts of borrows, returns and renewals, borrows
+ *       per media type and per title, and the lengths of returned loans
+ *       as a total and a histogram. These cannot be rebuilt from the
+ *       active loans, so they are stored in checkpoints
+ *       ({@link #encode()}) and brought up to date by journal replay.</li>
+ *   <li><b>Gauges</b> of active loans per media type and per user type.
+ *       They are rebuilt from the restored loans on startup and are not
+ *       stored.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Every counter is a {@link LongAdder}, which spreads concurrent
+ * increments over several cells, so borrowers on different threads do not
+ * contend on a shared counter. Reads sum a handful of cells and take
+ * constant time; the most-borrowed titles are kept in a small leaderboard
+ * updated as counts grow, so {@link #topTitles()} never scans the
+ * per-title counts. A read taken while events are applied may mix values
+ * from before and after an event.
+ * </p>
+ */
+public class CirculationStats {
+
+    /** Number of titles kept in the most-borrowed leaderboard. */
+    public static final int TOP_TITLES = 10;
+
+    /**
+     * Inclusive upper bounds, in days, of the loan-length histogram
+     * buckets; a last bucket holds longer loans.
+     */
+    private static final int[] LENGTH_BOUNDS = {1, 3, 7, 14, 21, 28, 42, 60};
+
+    /** Format version of {@link #encode()}. */
+    private static final int ENCODING_VERSION = 1;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder returns = new LongAdder();
+    private final LongAdder renewals = new LongAdder();
+
+    /** Returns whose loan start was known, and the sum of their lengths in days. */
+    private final LongAdder measuredReturns = new LongAdder();
+    private final LongAdder loanDays = new LongAdder();
+
+    /** Cumulative borrows per media type, by ordinal. */
+    private final LongAdder[] borrowsByType = adders(MediaType.all().length);
+
+    /** Active loans per media type and per user type, by ordinal. */
+    private final LongAdder[] activeByType = adders(MediaType.all().length);
+    private final LongAdder[] activeByRole = adders(UserType.all().length);
+
+    /** Returned-loan lengths; one bucket per bound plus one for longer loans. */
+    private final LongAdder[] lengthHistogram = adders(LENGTH_BOUNDS.length + 1);
+
+    /** Cumulative borrows per product key. */
+    private final Map<Long, LongAdder> borrowsByTitle = new ConcurrentHashMap<>();
+
+    /** The most-borrowed titles. */
+    private final Leaderboard top = new Leaderboard(TOP_TITLES);
+
+    // -------------------------------------------
+    // UPDATES
+    // -------------------------------------------
+
+    /**
+     * Counts a borrow. Called for live borrows and for replayed ones.
+     *
+     * @param productKey the borrowed product's key
+     */
+    void recordBorrow(long productKey) {
+        borrows.increment();
+        MediaType type = ProductKey.mediaType(productKey);
+        if (type != null) {
+            borrowsByType[type.ordinal()].increment();
+        }
+        LongAdder title = borrowsByTitle.computeIfAbsent(productKey, k -> new LongAdder());
+        title.increment();
+        top.offer(productKey, title.sum());
+    }
+
+    /**
+     * Counts a return and, if the loan's start is known, its length.
+     *
+     * @param startDay  the loan's start as an epoch day, or 0 if unknown
+     * @param returnDay the return date as an epoch day
+     */
+    void recordReturn(long startDay, long returnDay) {
+        returns.increment();
+        if (startDay > 0 && returnDay >= startDay) {
+            long days = returnDay - startDay;
+            measuredReturns.increment();
+            loanDays.add(days);
+            lengthHistogram[bucket(days)].increment();
+        }
+    }
+
+    /** Counts a renewal. */
+    void recordRenewal() {
+        renewals.increment();
+    }
+
+    /**
+     * Adds a loan to the active-loan gauges.
+     *
+     * @param type the item's media type
+     * @param role the borrower's user type
+     */
+    void loanOpened(MediaType type, UserType role) {
+        activeByType[type.ordinal()].increment();
+        activeByRole[role.ordinal()].increment();
+    }
+
+    /**
+     * Removes a loan from the active-loan gauges.
+     *
+     * @param type the item's media type
+     * @param role the borrower's user type
+     */
+    void loanClosed(MediaType type, UserType role) {
+        activeByType[type.ordinal()].decrement();
+        activeByRole[role.ordinal()].decrement();
+    }
+
+    // -------------------------------------------
+    // READS
+    // -------------------------------------------
+
+    /** Returns the number of borrows ever recorded. */
+    public long getBorrows() { return borrows.sum(); }
+
+    /** Returns the number of returns ever recorded. */
+    public long getReturns() { return returns.sum(); }
+
+    /** Returns the number of renewals ever recorded. */
+    public long getRenewals() { return renewals.sum(); }
+
+    /**
+     * Returns the number of borrows of a media type ever recorded.
+     *
+     * @param type the media type
+     * @return the borrow count
+     */
+    public long getBorrows(MediaType type) {
+        return borrowsByType[type.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of borrows of one product ever recorded.
+     *
+     * @param productKey the product's key
+     * @return the borrow count
+     */
+    public long getBorrows(long productKey) {
+        LongAdder title = borrowsByTitle.get(productKey);
+        return title == null ? 0 : title.sum();
+    }
+
+    /**
+     * Returns the number of active loans of a media type.
+     *
+     * @param type the media type
+     * @return the active loan count
+     */
+    public long getActiveLoans(MediaType type) {
+        return activeByType[type.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of active loans held by users of a type.
+     *
+     * @param role the user type
+     * @return the active loan count
+     */
+    public long getActiveLoans(UserType role) {
+        return activeByRole[role.ordinal()].sum();
+    }
+
+    /**
+     * Returns the average length of returned loans.
+     *
+     * @return the mean loan length in days, or 0 if none was measured
+     */
+    public double getAverageLoanDays() {
+        long measured = measuredReturns.sum();
+        return measured == 0 ? 0 : (double) loanDays.sum() / measured;
+    }
+
+    /**
+     * Returns the histogram of returned-loan lengths.
+     *
+     * @return counts per bucket; see {@link #getHistogramBounds()}
+     */
+    public long[] getLoanLengthHistogram() {
+        long[] counts = new long[lengthHistogram.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = lengthHistogram[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the inclusive upper bound in days of each histogram bucket
+     * but the last, which holds every longer loan.
+     *
+     * @return a copy of the bucket bounds
+     */
+    public static int[] getHistogramBounds() {
+        return LENGTH_BOUNDS.clone();
+    }
+
+    /**
+     * Returns the most-borrowed titles, most borrowed first; ties are
+     * ordered by product key.
+     *
+     * @return up to {@link #TOP_TITLES} titles with their borrow counts
+     */
+    public List<TitleCount> topTitles() {
+        return top.entries();
+    }
+
+    // -------------------------------------------
+    // PERSISTENCE
+    // -------------------------------------------
+
+    /**
+     * Encodes the cumulative figures for a checkpoint. The gauges are
+     * not included.
+     *
+     * @return the encoded figures
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(ENCODING_VERSION);
+            out.writeLong(borrows.sum());
+            out.writeLong(returns.sum());
+            out.writeLong(renewals.sum());
+            out.writeLong(measuredReturns.sum());
+            out.writeLong(loanDays.sum());
+            writeAdders(out, borrowsByType);
+            writeAdders(out, lengthHistogram);
+            List<Map.Entry<Long, LongAdder>> titles = new ArrayList<>(borrowsByTitle.entrySet());
+            out.writeInt(titles.size());
+            for (Map.Entry<Long, LongAdder> e : titles) {
+                out.writeLong(e.getKey());
+                out.writeLong(e.getValue().sum());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a byte array never fails
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Adds previously encoded cumulative figures to this instance.
+     * An empty array, as stored by older checkpoints, adds nothing.
+     *
+     * @param encoded the output of {@link #encode()}
+     * @throws IOException if the data is malformed
+     */
+    void restore(byte[] encoded) throws IOException {
+        if (encoded.length == 0) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        if (in.readInt() != ENCODING_VERSION) {
+            throw new IOException("Unsupported circulation statistics version");
+        }
+        borrows.add(in.readLong());
+        returns.add(in.readLong());
+        renewals.add(in.readLong());
+        measuredReturns.add(in.readLong());
+        loanDays.add(in.readLong());
+        readAdders(in, borrowsByType);
+        readAdders(in, lengthHistogram);
+        int titles = in.readInt();
+        for (int i = 0; i < titles; i++) {
+            long key = in.readLong();
+            LongAdder title = borrowsByTitle.computeIfAbsent(key, k -> new LongAdder());
+            title.add(in.readLong());
+            top.offer(key, title.sum());
+        }
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /** Returns the histogram bucket of a loan length. */
+    private static int bucket(long days) {
+        int i = 0;
+        while (i < LENGTH_BOUNDS.length && days > LENGTH_BOUNDS[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        Arrays.setAll(adders, i -> new LongAdder());
+        return adders;
+    }
+
+    /** Writes an adder array with its length, so its size may change between versions. */
+    private static void writeAdders(DataOutputStream out, LongAdder[] adders) throws IOException {
+        out.writeInt(adders.length);
+        for (LongAdder adder : adders) {
+            out.writeLong(adder.sum());
+        }
+    }
+
+    /** Reads an adder array written by {@link #writeAdders}, ignoring entries this version lacks. */
+    private static void readAdders(DataInputStream in, LongAdder[] adders) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long value = in.readLong();
+            if (i < adders.length) {
+                adders[i].add(value);
+            }
+        }
+    }
+
+    /**
+     * A product and how often it was borrowed.
+     */
+    public static final class TitleCount {
+        private final long productKey;
+        private final long borrows;
+
+        TitleCount(long productKey, long borrows) {
+            this.productKey = productKey;
+            this.borrows = borrows;
+        }
+
+        /** Returns the product's packed key. */
+        public long getProductKey() { return productKey; }
+
+        /** Returns the number of borrows. */
+        public long getBorrows() { return borrows; }
+    }
+
+    /**
+     * Fixed-size table of the highest counts offered.
+     * <p>
+     * Counts only grow, so a product enters the table once its count
+     * passes the lowest one held and never needs to be found again by
+     * scanning. Offers below the current floor return without locking.
+     * </p>
+     */
+    private static final class Leaderboard {
+        private final long[] keys;
+        private final long[] counts;
+        private int size;
+
+        /** Lowest count held once the table is full; 0 until then. */
+        private volatile long floor;
+
+        Leaderboard(int capacity) {
+            keys = new long[capacity];
+            counts = new long[capacity];
+        }
+
+        void offer(long key, long count) {
+            if (count <= floor) {
+                return;
+            }
+            synchronized (this) {
+                int slot = -1;
+                for (int i = 0; i < size; i++) {
+                    if (keys[i] == key) {
+                        slot = i;
+                        break;
+                    }
+                }
+                if (slot < 0) {
+                    if (size < keys.length) {
+                        slot = size++;
+                    } else {
+                        slot = lowest();
+                        if (count <= counts[slot]) {
+                            return;
+                        }
+                    }
+                    keys[slot] = key;
+                    counts[slot] = count;
+                } else if (count > counts[slot]) {
+                    counts[slot] = count;
+                }
+                if (size == keys.length) {
+                    floor = counts[lowest()];
+                }
+            }
+        }
+
+        synchronized List<TitleCount> entries() {
+            List<TitleCount> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                entries.add(new TitleCount(keys[i], counts[i]));
+            }
+            entries.sort((a, b) -> a.borrows != b.borrows
+                    ? Long.compare(b.borrows, a.borrows)
+                    : Long.compare(a.productKey, b.productKey));
+            return entries;
+        }
+
+        private int lowest() {
+            int lowest = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[lowest]) {
+                    lowest = i;
+                }
+            }
+            return lowest;
+        }
+    }
+}
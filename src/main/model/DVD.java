@@ -27,6 +27,35 @@ public class DVD extends Product {
         this.director = director;
     }
 
+    /**
+     * Retrieves the director of the film.
+     *
+     * @return the director of the film
+     */
+    public String getDirector() {
+        return director;
+    }
+
+    /**
+     * Returns the director, who is treated as this product's creator.
+     *
+     * @return the director
+     */
+    @Override
+    public String getCreator() {
+        return director;
+    }
+
+    /**
+     * Identifies this product as a DVD.
+     *
+     * @return {@link MediaType#DVD}
+     */
+    @Override
+    public MediaType getMediaType() {
+        return MediaType.DVD;
+    }
+
     /**
      * Returns a formatted string describing this DVD.
      * <p>
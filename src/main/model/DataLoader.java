@@ -1,10 +1,15 @@
 package main.model;
 
+import main.util.MappedCsvReader;
+import main.util.StringDictionary;
+
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * Utility class responsible for loading product data from external CSV files.
@@ -20,12 +25,81 @@ import java.util.List;
  * {@link LibrarySystem}. It also showcases basic exception handling and
  * the use of Java’s {@link BufferedReader} for efficient file reading.
  * </p>
+ * <p>
+ * Two loading modes are available (see {@link LoadMode}). The default
+ * {@link LoadMode#MAPPED} mode reads files through {@link MappedCsvReader},
+ * which parses fields straight from a memory-mapped buffer and supports
+ * quoted fields containing commas. {@link LoadMode#BUFFERED} keeps the
+ * original line-by-line reader.
+ * </p>
+ * <p>
+ * Creator and genre fields repeat heavily across rows, so in both modes
+ * they are passed through a shared {@link StringDictionary}: every product
+ * with the same author, genre, composer, director or narrator references
+ * one canonical string.
+ * </p>
  */
 public class DataLoader {
 
     /** The directory path where CSV data files are stored. */
     private static final String DATA_PATH = "src/main/data/";
 
+    /**
+     * Strategies available for reading the catalogue CSV files.
+     */
+    public enum LoadMode {
+
+        /** Original reader: one {@code String} per line, split on commas. */
+        BUFFERED,
+
+        /** Memory-mapped reader that tokenises fields in place and honours quotes. */
+        MAPPED
+    }
+
+    /** Mode used by the {@code load*} methods. */
+    private static LoadMode loadMode = LoadMode.MAPPED;
+
+    /** Canonical instances of creator and genre values seen while loading. */
+    private static volatile StringDictionary dictionary = new StringDictionary();
+
+    /**
+     * Selects how subsequent calls read the CSV files.
+     *
+     * @param mode the loading mode to use
+     */
+    public static void setLoadMode(LoadMode mode) {
+        loadMode = mode;
+    }
+
+    /**
+     * Returns the loading mode currently in use.
+     *
+     * @return the current {@link LoadMode}
+     */
+    public static LoadMode getLoadMode() {
+        return loadMode;
+    }
+
+    /**
+     * Returns the dictionary holding the creator and genre strings loaded so far.
+     *
+     * @return the shared string dictionary
+     */
+    public static StringDictionary getStringDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Starts a fresh string dictionary, discarding its statistics.
+     * <p>
+     * Products loaded earlier keep their strings; only later loads use the
+     * new dictionary.
+     * </p>
+     */
+    public static void resetStringDictionary() {
+        dictionary = new StringDictionary();
+    }
+
     // -------------------------------------------
     // LOAD BOOKS
     // -------------------------------------------
@@ -42,6 +116,9 @@ public class DataLoader {
      * @return a list of {@link Book} objects loaded from the file
      */
     public static List<Book> loadBooks() {
+        if (loadMode == LoadMode.MAPPED) {
+            return loadMapped(MediaType.BOOK, DataLoader::toBook);
+        }
         List<Book> books = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(DATA_PATH + "books.csv"))) {
             String line;
@@ -54,9 +131,9 @@ public class DataLoader {
                 if (values.length >= 5) {
                     int id = Integer.parseInt(values[0].trim());
                     String title = values[1].trim();
-                    String author = values[2].trim();
+                    String author = dictionary.intern(values[2].trim());
                     String isbn = values[3].trim();
-                    String genre = values[4].trim();
+                    String genre = dictionary.intern(values[4].trim());
 
                     // Create a new Book object and add it to the list.
                     books.add(new Book(id, title, author, isbn, genre));
@@ -85,6 +162,9 @@ public class DataLoader {
      * @return a list of {@link CD} objects loaded from the file
      */
     public static List<CD> loadCDs() {
+        if (loadMode == LoadMode.MAPPED) {
+            return loadMapped(MediaType.CD, DataLoader::toCD);
+        }
         List<CD> cds = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(DATA_PATH + "cds.csv"))) {
             String line;
@@ -95,7 +175,7 @@ public class DataLoader {
                 if (values.length >= 3) {
                     int id = Integer.parseInt(values[0].trim());
                     String title = values[1].trim();
-                    String composer = values[2].trim();
+                    String composer = dictionary.intern(values[2].trim());
 
                     // Create and add a new CD object.
                     cds.add(new CD(id, title, composer));
@@ -123,6 +203,9 @@ public class DataLoader {
      * @return a list of {@link DVD} objects loaded from the file
      */
     public static List<DVD> loadDVDs() {
+        if (loadMode == LoadMode.MAPPED) {
+            return loadMapped(MediaType.DVD, DataLoader::toDVD);
+        }
         List<DVD> dvds = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(DATA_PATH + "dvds.csv"))) {
             String line;
@@ -133,7 +216,7 @@ public class DataLoader {
                 if (values.length >= 3) {
                     int id = Integer.parseInt(values[0].trim());
                     String title = values[1].trim();
-                    String director = values[2].trim();
+                    String director = dictionary.intern(values[2].trim());
 
                     // Create and add a new DVD object.
                     dvds.add(new DVD(id, title, director));
@@ -161,6 +244,9 @@ public class DataLoader {
      * @return a list of {@link Audiobook} objects loaded from the file
      */
     public static List<Audiobook> loadAudiobooks() {
+        if (loadMode == LoadMode.MAPPED) {
+            return loadMapped(MediaType.AUDIOBOOK, DataLoader::toAudiobook);
+        }
         List<Audiobook> audios = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(DATA_PATH + "audiobooks.csv"))) {
             String line;
@@ -171,7 +257,7 @@ public class DataLoader {
                 if (values.length >= 3) {
                     int id = Integer.parseInt(values[0].trim());
                     String title = values[1].trim();
-                    String narrator = values[2].trim();
+                    String narrator = dictionary.intern(values[2].trim());
 
                     // Create and add a new Audiobook object.
                     audios.add(new Audiobook(id, title, narrator));
@@ -182,4 +268,130 @@ public class DataLoader {
         }
         return audios;
     }
+
+    // -------------------------------------------
+    // MEDIA TYPE DISPATCH
+    // -------------------------------------------
+
+    /**
+     * Loads the catalogue file of one media type using the current mode.
+     *
+     * @param type the media type to load
+     * @return the products of that type, in file order
+     */
+    static List<? extends Product> load(MediaType type) {
+        return switch (type) {
+            case BOOK -> loadBooks();
+            case CD -> loadCDs();
+            case DVD -> loadDVDs();
+            case AUDIOBOOK -> loadAudiobooks();
+        };
+    }
+
+    /**
+     * Returns the path of the catalogue file holding the given media type.
+     *
+     * @param type the media type
+     * @return the CSV file path inside the data directory
+     */
+    static Path dataFile(MediaType type) {
+        String fileName = switch (type) {
+            case BOOK -> "books.csv";
+            case CD -> "cds.csv";
+            case DVD -> "dvds.csv";
+            case AUDIOBOOK -> "audiobooks.csv";
+        };
+        return Path.of(DATA_PATH, fileName);
+    }
+
+    /**
+     * Returns the minimum number of fields a usable line of the given type has.
+     *
+     * @param type the media type
+     * @return the required field count
+     */
+    static int minFields(MediaType type) {
+        return type == MediaType.BOOK ? 5 : 3;
+    }
+
+    /**
+     * Builds a product of the given type from one parsed CSV line.
+     *
+     * @param type the media type of the line
+     * @param row  the parsed fields
+     * @return the new product
+     * @throws NumberFormatException if the ID field is not a valid integer
+     */
+    static Product toProduct(MediaType type, MappedCsvReader.Row row) {
+        return switch (type) {
+            case BOOK -> toBook(row);
+            case CD -> toCD(row);
+            case DVD -> toDVD(row);
+            case AUDIOBOOK -> toAudiobook(row);
+        };
+    }
+
+    /** Builds a {@link Book} from the fields {@code id, title, author, isbn, genre}. */
+    private static Book toBook(MappedCsvReader.Row row) {
+        return new Book(row.getInt(0), row.getString(1), row.getString(2, dictionary),
+                row.getString(3), row.getString(4, dictionary));
+    }
+
+    /** Builds a {@link CD} from the fields {@code id, title, composer}. */
+    private static CD toCD(MappedCsvReader.Row row) {
+        return new CD(row.getInt(0), row.getString(1), row.getString(2, dictionary));
+    }
+
+    /** Builds a {@link DVD} from the fields {@code id, title, director}. */
+    private static DVD toDVD(MappedCsvReader.Row row) {
+        return new DVD(row.getInt(0), row.getString(1), row.getString(2, dictionary));
+    }
+
+    /** Builds an {@link Audiobook} from the fields {@code id, title, narrator}. */
+    private static Audiobook toAudiobook(MappedCsvReader.Row row) {
+        return new Audiobook(row.getInt(0), row.getString(1), row.getString(2, dictionary));
+    }
+
+    // -------------------------------------------
+    // MEMORY-MAPPED LOADING
+    // -------------------------------------------
+
+    /**
+     * Loads one CSV file through {@link MappedCsvReader}.
+     * <p>
+     * Lines with too few fields are skipped, as in the buffered mode.
+     * Lines whose ID is not a valid integer are skipped and counted in a
+     * warning instead of aborting the whole file.
+     * </p>
+     *
+     * @param type   the media type whose file is loaded
+     * @param mapper builds a product from the fields of one line
+     * @param <T>    the product type produced
+     * @return the products loaded from the file, in file order
+     */
+    private static <T extends Product> List<T> loadMapped(MediaType type,
+                                                          Function<MappedCsvReader.Row, T> mapper) {
+        Path file = dataFile(type);
+        int minFields = minFields(type);
+        List<T> items = new ArrayList<>();
+        int[] malformed = new int[1];
+        try {
+            MappedCsvReader.read(file, row -> {
+                if (row.fieldCount() < minFields) {
+                    return;
+                }
+                try {
+                    items.add(mapper.apply(row));
+                } catch (NumberFormatException e) {
+                    malformed[0]++;
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error reading " + file.getFileName() + ": " + e.getMessage());
+        }
+        if (malformed[0] > 0) {
+            System.out.println("Skipped " + malformed[0] + " malformed line(s) in " + file.getFileName());
+        }
+        return items;
+    }
 }
@@ -0,0 +1,365 @@
+package main.model;
+
+import main.util.LongObjectMap;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timing wheel of active loans keyed by due date, driving overdue detection.
+ * <p>
+ * Every scheduled {@link Loan} sits in the slot of its due day (a day
+ * number from {@link LocalDate#toEpochDay()}). Slots are doubly linked
+ * lists held in a hash map, so the wheel has no fixed horizon, and each
+ * loan keeps a handle to its list node: scheduling, cancelling on return
+ * and rescheduling on renewal are constant-time unlink/link operations.
+ * </p>
+ * <p>
+ * {@link #advanceTo(LocalDate)} moves the wheel's clock forward. It visits
+ * only the slots whose day was passed (or, after a long jump, only the
+ * occupied slots), fires a <i>due soon</i> event once a loan is within
+ * {@code dueSoonDays} of its due date and an <i>overdue</i> event once the
+ * due date has passed. Overdue loans are moved to their own list, so
+ * {@link #overdue()} costs time proportional to the number of overdue
+ * loans, not to the number of loans.
+ * </p>
+ * <p>
+ * The wheel is guarded by its own monitor; listeners are called after the
+ * monitor is released, on the thread that advanced the clock (or that
+ * scheduled a loan which is already due soon or overdue).
+ * </p>
+ */
+public class DueDateWheel {
+
+    /**
+     * Receives due-date events.
+     */
+    public interface Listener {
+
+        /**
+         * Called once when a loan comes within the due-soon window.
+         *
+         * @param loan  the loan
+         * @param today the wheel's current date
+         */
+        void onDueSoon(Loan loan, LocalDate today);
+
+        /**
+         * Called once when a loan's due date has passed.
+         *
+         * @param loan  the loan
+         * @param today the wheel's current date
+         */
+        void onOverdue(Loan loan, LocalDate today);
+    }
+
+    /** How many days before the due date a loan counts as due soon. */
+    private final int dueSoonDays;
+
+    /** Head node of each occupied due-day slot. */
+    private final LongObjectMap<Entry> slots = new LongObjectMap<>();
+
+    /** Sentinel of the circular list of overdue loans. */
+    private final Entry overdue = new Entry(null, Long.MIN_VALUE);
+
+    /** Registered listeners. */
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** The wheel's current day. */
+    private long today;
+
+    /** Number of scheduled loans, overdue ones included. */
+    private int size;
+
+    /** Number of overdue loans. */
+    private int overdueCount;
+
+    /**
+     * Constructs an empty wheel.
+     *
+     * @param today       the current date
+     * @param dueSoonDays how many days before its due date a loan is reported as due soon
+     */
+    public DueDateWheel(LocalDate today, int dueSoonDays) {
+        if (dueSoonDays < 0) {
+            throw new IllegalArgumentException("dueSoonDays must not be negative");
+        }
+        this.today = today.toEpochDay();
+        this.dueSoonDays = dueSoonDays;
+        overdue.prev = overdue;
+        overdue.next = overdue;
+    }
+
+    /**
+     * Registers a listener for due-soon and overdue events.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // -------------------------------------------
+    // SCHEDULING
+    // -------------------------------------------
+
+    /**
+     * Schedules a loan at its current due date.
+     * <p>
+     * The loan is linked to the wheel, so {@link Loan#renew(Policy)} and
+     * {@link Loan#setReturnDate(LocalDate)} reschedule and cancel it
+     * automatically. Scheduling a loan again moves it to its current due
+     * date.
+     * </p>
+     *
+     * @param loan the loan to track
+     */
+    public void schedule(Loan loan) {
+        List<Runnable> events = new ArrayList<>(1);
+        synchronized (this) {
+            Entry entry = loan.wheelEntry;
+            if (entry != null) {
+                unlink(entry);
+            } else {
+                entry = new Entry(loan, 0);
+                loan.wheelEntry = entry;
+                loan.wheel = this;
+                size++;
+            }
+            entry.dueDay = loan.getDueDate().toEpochDay();
+            entry.dueSoonFired = false;
+            place(entry, events);
+        }
+        fire(events);
+    }
+
+    /**
+     * Stops tracking a loan, for example because it was returned.
+     *
+     * @param loan the loan
+     * @return {@code true} if the loan was scheduled
+     */
+    public synchronized boolean cancel(Loan loan) {
+        Entry entry = loan.wheelEntry;
+        if (entry == null || loan.wheel != this) {
+            return false;
+        }
+        unlink(entry);
+        loan.wheelEntry = null;
+        loan.wheel = null;
+        size--;
+        return true;
+    }
+
+    // -------------------------------------------
+    // CLOCK
+    // -------------------------------------------
+
+    /**
+     * Moves the clock forward, firing the events of the days passed.
+     * Dates at or before the current date are ignored.
+     *
+     * @param date the new current date
+     */
+    public void advanceTo(LocalDate date) {
+        long target = date.toEpochDay();
+        List<Runnable> events = new ArrayList<>();
+        synchronized (this) {
+            if (target <= today) {
+                return;
+            }
+            long from = today;
+            today = target;
+            // Loans due in [from, target) become overdue; loans due in
+            // (from + window, target + window] become due soon.
+            if (target - from <= slots.size()) {
+                for (long day = from; day < target; day++) {
+                    drain(day, events);
+                }
+                for (long day = from + dueSoonDays + 1; day <= target + dueSoonDays; day++) {
+                    drain(day, events);
+                }
+            } else {
+                // Long jump: visit the occupied slots instead of every day.
+                List<Long> passed = new ArrayList<>();
+                long horizon = target + dueSoonDays;
+                slots.forEach((day, head) -> {
+                    if (day <= horizon) {
+                        passed.add(day);
+                    }
+                });
+                passed.sort(null);
+                for (long day : passed) {
+                    drain(day, events);
+                }
+            }
+        }
+        fire(events);
+    }
+
+    /**
+     * Returns the wheel's current date.
+     *
+     * @return the date of the last {@link #advanceTo(LocalDate)}
+     */
+    public synchronized LocalDate today() {
+        return LocalDate.ofEpochDay(today);
+    }
+
+    // -------------------------------------------
+    // QUERIES
+    // -------------------------------------------
+
+    /**
+     * Returns the overdue loans as of the current date, most recently overdue last.
+     *
+     * @return a copy of the overdue loans
+     */
+    public synchronized List<Loan> overdue() {
+        List<Loan> result = new ArrayList<>(overdueCount);
+        for (Entry e = overdue.next; e != overdue; e = e.next) {
+            result.add(e.loan);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the loans due on a given date.
+     *
+     * @param date the due date
+     * @return a copy of the loans due that day
+     */
+    public synchronized List<Loan> dueOn(LocalDate date) {
+        List<Loan> result = new ArrayList<>();
+        for (Entry e = slots.get(date.toEpochDay()); e != null; e = e.next) {
+            result.add(e.loan);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of overdue loans.
+     *
+     * @return the overdue count
+     */
+    public synchronized int overdueCount() {
+        return overdueCount;
+    }
+
+    /**
+     * Returns the number of scheduled loans, overdue ones included.
+     *
+     * @return the scheduled count
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /**
+     * Puts an unlinked entry where its due day belongs relative to the
+     * current day, queuing the events it is already eligible for.
+     */
+    private void place(Entry entry, List<Runnable> events) {
+        if (entry.dueDay < today) {
+            entry.overdue = true;
+            entry.prev = overdue.prev;
+            entry.next = overdue;
+            overdue.prev.next = entry;
+            overdue.prev = entry;
+            overdueCount++;
+            queueOverdue(entry.loan, events);
+            return;
+        }
+        entry.overdue = false;
+        if (!entry.dueSoonFired && entry.dueDay - dueSoonDays <= today) {
+            entry.dueSoonFired = true;
+            queueDueSoon(entry.loan, events);
+        }
+        Entry head = slots.get(entry.dueDay);
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        slots.put(entry.dueDay, entry);
+    }
+
+    /**
+     * Re-places every loan of a slot after the clock moved, firing what is now due.
+     */
+    private void drain(long day, List<Runnable> events) {
+        Entry e = slots.remove(day);
+        while (e != null) {
+            Entry next = e.next;
+            e.prev = null;
+            e.next = null;
+            place(e, events);
+            e = next;
+        }
+    }
+
+    /** Removes an entry from its slot or from the overdue list. */
+    private void unlink(Entry entry) {
+        if (entry.overdue) {
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+            overdueCount--;
+        } else {
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else if (entry.next != null) {
+                slots.put(entry.dueDay, entry.next);
+            } else {
+                slots.remove(entry.dueDay);
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            }
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.overdue = false;
+    }
+
+    /** Queues an overdue event for dispatch after the monitor is released. */
+    private void queueOverdue(Loan loan, List<Runnable> events) {
+        LocalDate date = LocalDate.ofEpochDay(today);
+        events.add(() -> listeners.forEach(l -> l.onOverdue(loan, date)));
+    }
+
+    /** Queues a due-soon event for dispatch after the monitor is released. */
+    private void queueDueSoon(Loan loan, List<Runnable> events) {
+        LocalDate date = LocalDate.ofEpochDay(today);
+        events.add(() -> listeners.forEach(l -> l.onDueSoon(loan, date)));
+    }
+
+    /** Dispatches queued events in order. */
+    private static void fire(List<Runnable> events) {
+        for (Runnable event : events) {
+            event.run();
+        }
+    }
+
+    /**
+     * Node of a slot list or of the overdue list.
+     */
+    static final class Entry {
+        final Loan loan;
+        long dueDay;
+        boolean overdue;
+        boolean dueSoonFired;
+        Entry prev;
+        Entry next;
+
+        Entry(Loan loan, long dueDay) {
+            this.loan = loan;
+            this.dueDay = dueDay;
+        }
+    }
+}
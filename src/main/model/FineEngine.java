@@ -0,0 +1,211 @@
+package main.model;
+
+import main.util.StripedGate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Charges overdue fines to borrowers' balances.
+ * <p>
+ * All amounts are {@code long} minor units (pence), taken from
+ * {@link Policy#getDailyFineMinor()}, so totals are exact however many
+ * days and loans are added up. Each loan remembers the last day it was
+ * charged for, so a day is never charged twice whether the charge comes
+ * from a due date passing, a return or the end-of-day batch.
+ * </p>
+ * <p>
+ * Balances live on each {@link User} in an atomic counter: reading one is
+ * constant time and charging never takes a lock. The engine is a
+ * {@link DueDateWheel.Listener}, so a loan is charged as soon as the
+ * wheel reports it overdue; {@link #accrueAll(List, LocalDate)} brings
+ * every overdue loan up to date in parallel at the end of the day.
+ * </p>
+ * <p>
+ * Every charge is handed to a {@link Recorder}, which the library uses to
+ * journal it, before it reaches the balance; a charge that cannot be
+ * recorded is taken back and charged again next time.
+ * </p>
+ */
+public class FineEngine implements DueDateWheel.Listener {
+
+    /**
+     * Makes a charge durable before it is added to a balance.
+     */
+    @FunctionalInterface
+    public interface Recorder {
+
+        /**
+         * Records a charge.
+         *
+         * @param loan        the loan charged
+         * @param through     the last day charged
+         * @param amountMinor the amount charged, in minor units
+         * @return {@code true} if the charge was recorded
+         */
+        boolean charged(Loan loan, LocalDate through, long amountMinor);
+    }
+
+    /** Number of loans below which a batch is charged on one thread. */
+    private static final int BATCH_THRESHOLD = 2048;
+
+    /** Pool running the end-of-day batch. */
+    private final ForkJoinPool pool;
+
+    /** Passed around every charge, see {@link #FineEngine(ForkJoinPool, StripedGate, Recorder)}. */
+    private final StripedGate gate;
+
+    /** Records each charge before it is added to a balance. */
+    private final Recorder recorder;
+
+    /** Sum of all fines charged by this engine, in minor units. */
+    private final LongAdder totalCharged = new LongAdder();
+
+    /**
+     * Constructs an engine that runs batches on the common fork-join pool.
+     */
+    public FineEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs an engine that runs batches on the given pool.
+     *
+     * @param pool the pool for {@link #accrueAll(List, LocalDate)}
+     */
+    public FineEngine(ForkJoinPool pool) {
+        this(pool, new StripedGate(1), (loan, through, amountMinor) -> true);
+    }
+
+    /**
+     * Constructs an engine that records every charge.
+     * <p>
+     * Each charge is recorded and added to the balance while passing the
+     * gate, so whoever closes the gate sees every recorded charge in the
+     * balances and none half-applied.
+     * </p>
+     *
+     * @param pool     the pool for {@link #accrueAll(List, LocalDate)}
+     * @param gate     the gate to pass while charging
+     * @param recorder records each charge before it reaches the balance
+     */
+    public FineEngine(ForkJoinPool pool, StripedGate gate, Recorder recorder) {
+        this.pool = pool;
+        this.gate = gate;
+        this.recorder = recorder;
+    }
+
+    // -------------------------------------------
+    // ACCRUAL
+    // -------------------------------------------
+
+    /**
+     * Charges a loan's overdue days up to a date to its borrower.
+     *
+     * @param loan    the loan
+     * @param through the last day to charge (today, or the return date)
+     * @return the amount newly charged, in minor units; 0 if the charge could not be recorded
+     */
+    public long accrue(Loan loan, LocalDate through) {
+        Lock pass = gate.enter();
+        try {
+            long charged = loan.accrueFine(through);
+            if (charged > 0) {
+                if (!recorder.charged(loan, through, charged)) {
+                    loan.refundFine(through, charged);
+                    return 0;
+                }
+                loan.getBorrower().addFine(charged);
+                totalCharged.add(charged);
+            }
+            return charged;
+        } finally {
+            pass.unlock();
+        }
+    }
+
+    /**
+     * Charges every given loan up to a date, splitting the work across the pool.
+     *
+     * @param loans the loans to charge, typically all overdue loans
+     * @param today the last day to charge
+     * @return the total amount newly charged, in minor units
+     */
+    public long accrueAll(List<Loan> loans, LocalDate today) {
+        return pool.invoke(new AccrueTask(loans, 0, loans.size(), today));
+    }
+
+    /**
+     * Returns the sum of all fines this engine has charged.
+     *
+     * @return the total in minor units
+     */
+    public long getTotalCharged() {
+        return totalCharged.sum();
+    }
+
+    /**
+     * Formats a minor-unit amount as pounds, e.g. {@code £1.05}.
+     *
+     * @param minor the amount in pence
+     * @return the formatted amount
+     */
+    public static String format(long minor) {
+        String sign = minor < 0 ? "-" : "";
+        long abs = Math.abs(minor);
+        return sign + "£" + abs / 100 + "." + (abs % 100 < 10 ? "0" : "") + abs % 100;
+    }
+
+    // -------------------------------------------
+    // DUE-DATE EVENTS
+    // -------------------------------------------
+
+    /** Nothing is charged before the due date. */
+    @Override
+    public void onDueSoon(Loan loan, LocalDate today) {
+    }
+
+    /** Charges the overdue days so far as soon as a loan becomes overdue. */
+    @Override
+    public void onOverdue(Loan loan, LocalDate today) {
+        accrue(loan, today);
+    }
+
+    /**
+     * Charges a slice of a loan list, splitting it in half while it is large.
+     */
+    private final class AccrueTask extends RecursiveTask<Long> {
+
+        private final List<Loan> loans;
+        private final int from;
+        private final int to;
+        private final LocalDate today;
+
+        AccrueTask(List<Loan> loans, int from, int to, LocalDate today) {
+            this.loans = loans;
+            this.from = from;
+            this.to = to;
+            this.today = today;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                long sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += accrue(loans.get(i), today);
+                }
+                return sum;
+            }
+            int mid = (from + to) >>> 1;
+            AccrueTask left = new AccrueTask(loans, from, mid, today);
+            left.fork();
+            long right = new AccrueTask(loans, mid, to, today).compute();
+            return left.join() + right;
+        }
+    }
+}
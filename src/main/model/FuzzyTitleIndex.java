@@ -0,0 +1,359 @@
+package main.model;
+
+import main.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Trigram index for typo-tolerant title lookups.
+ * <p>
+ * Every normalised title (see {@link SearchIndex#normalize(String)}) is
+ * padded with a space on each side and cut into overlapping three-character
+ * grams; each gram maps to the list of title slots containing it. A fuzzy
+ * query first counts how many of its own grams each title shares, which
+ * cheaply discards titles that cannot be within the allowed number of
+ * edits. Only the remaining candidates are scored with a bounded
+ * Levenshtein distance, so the expensive comparison never runs against
+ * the whole catalogue.
+ * </p>
+ * <p>
+ * A query is compared both against the full title and against every run
+ * of consecutive title words of the same length as the query, so that
+ * "Hobit" matches "The Hobbit" with a single edit.
+ * </p>
+ */
+class FuzzyTitleIndex {
+
+    /** Removed slots tolerated, relative to live ones, before postings are compacted. */
+    private static final int COMPACT_RATIO = 2;
+
+    /** Gram postings keyed by the three packed 16-bit characters of the gram. */
+    private LongObjectMap<Postings> grams = new LongObjectMap<>();
+
+    /** Products by slot; {@code null} marks a removed product. */
+    private Product[] products = new Product[16];
+
+    /** Slot of each indexed product, by product key. */
+    private LongObjectMap<Integer> slotsByKey = new LongObjectMap<>();
+
+    /** Normalised titles by slot, kept for candidate verification. */
+    private String[] titles = new String[16];
+
+    /** Number of slots handed out so far, including removed ones. */
+    private int slotCount;
+
+    /** Number of removed slots still referenced by postings. */
+    private int deadCount;
+
+    /** Per-thread scratch counters of shared grams, indexed by slot. */
+    private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[0]);
+
+    // -------------------------------------------
+    // MAINTENANCE
+    // -------------------------------------------
+
+    /**
+     * Adds a product's title to the index.
+     *
+     * @param p the product to index
+     */
+    void add(Product p) {
+        String title = SearchIndex.normalize(p.getTitle());
+        if (slotCount == products.length) {
+            products = Arrays.copyOf(products, slotCount * 2);
+            titles = Arrays.copyOf(titles, slotCount * 2);
+        }
+        int slot = slotCount++;
+        products[slot] = p;
+        titles[slot] = title;
+        slotsByKey.put(p.getProductKey(), slot);
+        indexGrams(title, slot);
+    }
+
+    /**
+     * Removes a product's title from the index.
+     * <p>
+     * The slot is found through the product key and marked as removed;
+     * postings are compacted in bulk once removed slots outnumber live
+     * ones.
+     * </p>
+     *
+     * @param p the product to remove
+     */
+    void remove(Product p) {
+        Integer slot = slotsByKey.get(p.getProductKey());
+        if (slot == null || products[slot] != p) {
+            return;
+        }
+        slotsByKey.remove(p.getProductKey());
+        products[slot] = null;
+        titles[slot] = null;
+        deadCount++;
+        if (deadCount * COMPACT_RATIO > slotCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes every title from the index.
+     */
+    void clear() {
+        grams = new LongObjectMap<>();
+        slotsByKey = new LongObjectMap<>();
+        Arrays.fill(products, 0, slotCount, null);
+        Arrays.fill(titles, 0, slotCount, null);
+        slotCount = 0;
+        deadCount = 0;
+    }
+
+    // -------------------------------------------
+    // QUERIES
+    // -------------------------------------------
+
+    /**
+     * Finds titles within a small edit distance of the query.
+     * <p>
+     * The allowed distance grows with the query length: one edit for
+     * short queries and roughly one per four characters beyond that.
+     * Results are ordered by distance, then by title length, then by
+     * product key.
+     * </p>
+     *
+     * @param query the possibly misspelt title or title fragment
+     * @param limit maximum number of hits to return
+     * @return hits whose score is {@code 1 / (1 + distance)}, best first
+     */
+    List<SearchHit> search(String query, int limit) {
+        String normalized = SearchIndex.normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int maxDistance = Math.max(1, normalized.length() / 4);
+        String padded = pad(normalized);
+
+        // Count shared grams per slot, remembering which slots were touched.
+        int[] counts = counters();
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        long[] queryGrams = distinctGrams(padded);
+        for (long g : queryGrams) {
+            Postings postings = grams.get(g);
+            if (postings == null) {
+                continue;
+            }
+            for (int i = 0; i < postings.size; i++) {
+                int slot = postings.slots[i];
+                if (counts[slot]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = slot;
+                }
+            }
+        }
+
+        // Each edit can destroy at most three grams of the query.
+        int threshold = Math.max(1, queryGrams.length - 3 * maxDistance);
+        int queryWords = wordCount(normalized);
+        List<SearchHit> hits = new ArrayList<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            int shared = counts[slot];
+            counts[slot] = 0; // reset scratch for the next query
+            if (shared < threshold || products[slot] == null) {
+                continue;
+            }
+            int distance = bestDistance(normalized, queryWords, titles[slot], maxDistance);
+            if (distance <= maxDistance) {
+                hits.add(new SearchHit(products[slot], 1.0 / (1 + distance)));
+            }
+        }
+
+        hits.sort(Comparator.comparingDouble(SearchHit::getScore).reversed()
+                .thenComparingInt(h -> h.getProduct().getTitle().length())
+                .thenComparingLong(h -> h.getProduct().getProductKey()));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    // -------------------------------------------
+    // DISTANCE SCORING
+    // -------------------------------------------
+
+    /**
+     * Returns the smallest edit distance between the query and either the
+     * whole title or any run of {@code queryWords} consecutive title words.
+     */
+    private static int bestDistance(String query, int queryWords, String title, int max) {
+        int best = boundedDistance(query, title, 0, title.length(), max);
+
+        // Slide a window of whole words across the title.
+        int start = 0;
+        while (best > 0 && start < title.length()) {
+            int end = start;
+            for (int w = 0; w < queryWords; w++) {
+                int space = title.indexOf(' ', end);
+                if (space < 0) {
+                    end = title.length();
+                    break;
+                }
+                end = w == queryWords - 1 ? space : space + 1;
+            }
+            best = Math.min(best, boundedDistance(query, title, start, end, max));
+
+            int nextSpace = title.indexOf(' ', start);
+            if (nextSpace < 0) {
+                break;
+            }
+            start = nextSpace + 1;
+        }
+        return best;
+    }
+
+    /**
+     * Computes the Levenshtein distance between {@code a} and
+     * {@code b[from, to)}, giving up as soon as it must exceed {@code max}.
+     *
+     * @return the distance, or {@code max + 1} if it is larger than {@code max}
+     */
+    static int boundedDistance(String a, String b, int from, int to, int max) {
+        int n = a.length();
+        int m = to - from;
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int cost = ca == b.charAt(from + j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1; // every alignment already exceeds the bound
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /** Adds a slot to the postings of every gram of a normalised title. */
+    private void indexGrams(String title, int slot) {
+        for (long g : distinctGrams(pad(title))) {
+            Postings postings = grams.get(g);
+            if (postings == null) {
+                postings = new Postings();
+                grams.put(g, postings);
+            }
+            postings.add(slot);
+        }
+    }
+
+    /** Rebuilds all slots and postings without the removed products. */
+    private void compact() {
+        Product[] oldProducts = products;
+        String[] oldTitles = titles;
+        int oldCount = slotCount;
+
+        grams = new LongObjectMap<>();
+        slotsByKey = new LongObjectMap<>(oldCount - deadCount);
+        products = new Product[Math.max(16, oldCount - deadCount)];
+        titles = new String[products.length];
+        slotCount = 0;
+        deadCount = 0;
+        for (int i = 0; i < oldCount; i++) {
+            if (oldProducts[i] != null) {
+                int slot = slotCount++;
+                products[slot] = oldProducts[i];
+                titles[slot] = oldTitles[i];
+                slotsByKey.put(oldProducts[i].getProductKey(), slot);
+                indexGrams(oldTitles[i], slot);
+            }
+        }
+    }
+
+    /** Returns this thread's counter array, grown to cover every slot. */
+    private int[] counters() {
+        int[] counts = scratch.get();
+        if (counts.length < slotCount) {
+            counts = new int[Math.max(slotCount, counts.length * 2)];
+            scratch.set(counts);
+        }
+        return counts;
+    }
+
+    /** Returns the distinct grams of a padded string, packed into longs. */
+    private static long[] distinctGrams(String padded) {
+        if (padded.length() < 3) {
+            return new long[0];
+        }
+        long[] result = new long[padded.length() - 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = gram(padded, i);
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    /** Packs the three characters starting at {@code i} into one long. */
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /** Pads a normalised string with one space on each side. */
+    private static String pad(String normalized) {
+        return " " + normalized + " ";
+    }
+
+    /** Counts the space-separated words of a normalised string. */
+    private static int wordCount(String normalized) {
+        int words = 1;
+        for (int i = 0; i < normalized.length(); i++) {
+            if (normalized.charAt(i) == ' ') {
+                words++;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Growable list of title slots sharing one gram.
+     */
+    private static final class Postings {
+
+        /** Slots containing the gram, in insertion order. */
+        private int[] slots = new int[4];
+
+        /** Number of slots in the list. */
+        private int size;
+
+        /** Appends a slot to the list. */
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+}
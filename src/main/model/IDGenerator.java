@@ -1,39 +1,271 @@
 package main.model;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * Generates unique, sequential identifiers for entities within the system.
+ * Generates unique identifiers for entities within the system.
  * <p>
  * This class implements a simplified version of the <b>Singleton Design Pattern</b>.
- * It maintains a single, globally accessible counter that provides
- * unique integer IDs for objects such as {@link User}, {@link Product},
- * and {@link Loan}. By using a static field and method, the application
- * ensures that ID values remain consistent and non-duplicated across
- * all components.
+ * It maintains globally accessible counters that provide unique IDs for
+ * objects such as {@link User}, {@link Product}, and {@link Loan}. Each
+ * kind of entity draws from its own {@link Sequence}, so busy loan
+ * creation never competes with user or product registration.
+ * </p>
+ * <p>
+ * IDs are 64-bit and handed out in blocks: each thread reserves
+ * {@link #BLOCK_SIZE} consecutive IDs with one atomic add on the shared
+ * counter and then serves them from a thread-local cursor. Allocating an
+ * ID therefore needs no lock and, most of the time, no shared write at all.
+ * IDs are unique and increase within a thread, but threads interleave
+ * blocks, so IDs from different threads are not in global order.
+ * </p>
+ * <p>
+ * When {@link #persistTo(Path)} has been called, IDs are additionally
+ * leased from a high-water mark stored in that file. The file is written
+ * (and the write completed) before any ID above the previous mark is
+ * handed out, and on the next start every sequence resumes above its
+ * stored mark, so IDs never repeat across restarts. Unused IDs of a lease
+ * are skipped after a restart.
  * </p>
  *
  * <p>
  * Example usage:
  * <pre>
- *     int newId = IDGenerator.nextId();
+ *     long loanId = IDGenerator.next(IDGenerator.Sequence.LOAN);
  * </pre>
  * </p>
  */
 public class IDGenerator {
 
-    /** Shared static counter used to generate incremental unique IDs. */
-    private static int counter = 1;
+    /** Number of IDs a thread reserves from a shared counter at a time. */
+    static final int BLOCK_SIZE = 64;
+
+    /** Number of IDs leased from the persisted high-water mark at a time. */
+    static final int LEASE_SIZE = BLOCK_SIZE * 64;
+
+    /**
+     * Independent ID sequences.
+     */
+    public enum Sequence {
+
+        /** Loan transaction IDs. */
+        LOAN,
+
+        /** User account IDs. */
+        USER,
+
+        /** Product IDs assigned inside the application. */
+        PRODUCT
+    }
+
+    /** Shared counter of each sequence, indexed by {@link Sequence#ordinal()}. */
+    private static final Counter[] counters = new Counter[Sequence.values().length];
+
+    static {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new Counter();
+        }
+    }
+
+    /** Per-thread cursors: {@code [2 * s]} is the next ID, {@code [2 * s + 1]} the block end. */
+    private static final ThreadLocal<long[]> blocks =
+            ThreadLocal.withInitial(() -> new long[counters.length * 2]);
+
+    /** File holding the high-water marks, or {@code null} if IDs are not persisted. */
+    private static Path markFile;
+
+    /** Private constructor to prevent instantiation of this utility class. */
+    private IDGenerator() {
+    }
+
+    // -------------------------------------------
+    // ALLOCATION
+    // -------------------------------------------
 
     /**
-     * Returns the next unique identifier and increments the counter.
+     * Returns the next unique identifier of a sequence.
+     *
+     * @param sequence the sequence to draw from
+     * @return a positive ID never returned before by this sequence
+     * @throws IllegalStateException if the sequence is exhausted
+     * @throws UncheckedIOException  if a new lease cannot be persisted
+     */
+    public static long next(Sequence sequence) {
+        long[] cursor = blocks.get();
+        int slot = sequence.ordinal() * 2;
+        if (cursor[slot] == cursor[slot + 1]) {
+            long start = counters[sequence.ordinal()].allocateBlock();
+            cursor[slot] = start;
+            cursor[slot + 1] = start + BLOCK_SIZE;
+        }
+        return cursor[slot]++;
+    }
+
+    /**
+     * Returns the next loan identifier as an {@code int}.
      * <p>
-     * This method provides thread-safe behaviour in single-threaded
-     * applications and ensures each call returns a new, unique integer.
+     * Consecutive calls on one thread return consecutive values while they
+     * fall in the same block.
      * </p>
      *
-     * @return a unique integer identifier for a new entity
+     * @return a unique integer identifier
+     * @throws ArithmeticException if the loan sequence has passed the {@code int} range
+     * @deprecated IDs are 64-bit; use {@link #next(Sequence)}.
      */
+    @Deprecated
     public static int nextId() {
-        // Increment and return the shared counter value.
-        return counter++;
+        return Math.toIntExact(next(Sequence.LOAN));
+    }
+
+    // -------------------------------------------
+    // PERSISTENCE
+    // -------------------------------------------
+
+    /**
+     * Persists high-water marks in the given file from now on.
+     * <p>
+     * Marks already stored in the file are loaded first, and every
+     * sequence is moved past its mark. Blocks already held by threads keep
+     * serving their remaining IDs, which are below the new marks.
+     * </p>
+     *
+     * @param file the file storing the marks; created if missing
+     * @throws IOException if an existing file cannot be read or the first
+     *                     lease cannot be written
+     */
+    public static synchronized void persistTo(Path file) throws IOException {
+        Properties stored = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                stored.load(in);
+            }
+        }
+        long[] marks = new long[counters.length];
+        for (Sequence sequence : Sequence.values()) {
+            Counter counter = counters[sequence.ordinal()];
+            long mark = Long.parseLong(stored.getProperty(key(sequence), "0"));
+            counter.advancePast(mark);
+            marks[sequence.ordinal()] = counter.peek() - 1;
+        }
+        writeMarks(file, marks);
+        markFile = file;
+        for (int i = 0; i < counters.length; i++) {
+            counters[i].leasedThrough = marks[i];
+        }
+    }
+
+    /**
+     * Extends the lease of a counter so that it covers {@code required},
+     * writing the new mark before returning.
+     */
+    private static synchronized void extendLease(Counter counter, long required) {
+        if (required <= counter.leasedThrough) {
+            return;
+        }
+        // The new mark is published only once it is on disk: allocateBlock
+        // reads leasedThrough without a lock.
+        long extended = required + LEASE_SIZE;
+        long[] marks = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            marks[i] = counters[i] == counter ? extended : counters[i].leasedThrough;
+        }
+        try {
+            writeMarks(markFile, marks);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not persist ID high-water mark", e);
+        }
+        counter.leasedThrough = extended;
+    }
+
+    /**
+     * Stops persisting high-water marks; every sequence becomes unbounded
+     * again. Sequences keep counting from where they are, so IDs stay unique.
+     */
+    public static synchronized void stopPersisting() {
+        markFile = null;
+        for (Counter counter : counters) {
+            counter.leasedThrough = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Writes the given marks, one per sequence, replacing the file
+     * atomically once the new contents have been forced to disk.
+     */
+    private static void writeMarks(Path file, long[] leased) throws IOException {
+        Properties marks = new Properties();
+        for (Sequence sequence : Sequence.values()) {
+            marks.setProperty(key(sequence), Long.toString(leased[sequence.ordinal()]));
+        }
+        StringWriter text = new StringWriter();
+        marks.store(text, "ID high-water marks; IDs up to each value may be in use");
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Returns the property name of a sequence. */
+    private static String key(Sequence sequence) {
+        return sequence.name().toLowerCase();
+    }
+
+    // -------------------------------------------
+    // SHARED COUNTERS
+    // -------------------------------------------
+
+    /**
+     * Shared block counter of one sequence.
+     */
+    private static final class Counter {
+
+        /** First ID of the next unallocated block. */
+        private final AtomicLong nextBlock = new AtomicLong(1);
+
+        /** Highest ID covered by the persisted mark; unbounded when not persisting. */
+        private volatile long leasedThrough = Long.MAX_VALUE;
+
+        /** Reserves a block and returns its first ID. */
+        long allocateBlock() {
+            long start = nextBlock.getAndAdd(BLOCK_SIZE);
+            long last = start + BLOCK_SIZE - 1;
+            if (start <= 0 || last < start) {
+                throw new IllegalStateException("ID sequence exhausted");
+            }
+            if (last > leasedThrough) {
+                extendLease(this, last);
+            }
+            return start;
+        }
+
+        /** Returns the first ID of the next unallocated block. */
+        long peek() {
+            return nextBlock.get();
+        }
+
+        /** Moves the counter so that no later block starts at or below {@code mark}. */
+        void advancePast(long mark) {
+            nextBlock.accumulateAndGet(mark + 1, Math::max);
+        }
     }
 }
@@ -1,6 +1,18 @@
 package main.model;
 
+import main.query.ParallelQuery;
+import main.report.LoanReport;
+import main.report.ReportFormat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a librarian user responsible for managing the library system.
@@ -25,6 +37,16 @@ public class Librarian extends User {
         super(userId, name, email);
     }
 
+    /**
+     * Identifies this user as a librarian.
+     *
+     * @return {@link UserType#LIBRARIAN}
+     */
+    @Override
+    public UserType getType() {
+        return UserType.LIBRARIAN;
+    }
+
     // -------------------------------------------
     // USER MANAGEMENT METHODS
     // -------------------------------------------
@@ -38,7 +60,10 @@ public class Librarian extends User {
      *
      * @param users   the list of all users currently in the system
      * @param newUser the new user to be registered
+     * @deprecated a plain list accepts duplicate IDs and addresses; use
+     *             {@link #registerUser(LibrarySystem, User)}
      */
+    @Deprecated
     public void registerUser(List<User> users, User newUser) {
         users.add(newUser);
         System.out.println("User registered: " + newUser.getName());
@@ -54,12 +79,68 @@ public class Librarian extends User {
      * @param users list of users in the system
      * @param id    unique ID of the user to remove
      * @return {@code true} if a user was removed, {@code false} otherwise
+     * @deprecated scans the whole list and ignores active loans; use
+     *             {@link #removeUser(LibrarySystem, int)}
      */
+    @Deprecated
     public boolean removeUser(List<User> users, int id) {
         // Use a lambda predicate for efficient list filtering.
         return users.removeIf(u -> u.getUserId() == id);
     }
 
+    /**
+     * Registers a new {@link User} with a {@link LibrarySystem}.
+     * <p>
+     * Unlike {@link #registerUser(List, User)}, the system's user directory
+     * rejects an ID or email address that is already registered.
+     * </p>
+     *
+     * @param system  the library system receiving the user
+     * @param newUser the new user to be registered
+     * @return {@code true} if the user was registered
+     */
+    public boolean registerUser(LibrarySystem system, User newUser) {
+        if (!system.addUser(newUser)) {
+            return false;
+        }
+        System.out.println("User registered: " + newUser.getName());
+        return true;
+    }
+
+    /**
+     * Registers a batch of users with a {@link LibrarySystem}, such as the
+     * students starting a new term.
+     * <p>
+     * The whole batch is added under one lock; users whose ID or email
+     * address is taken are skipped and returned so they can be followed up.
+     * </p>
+     *
+     * @param system   the library system receiving the users
+     * @param newUsers the users to register
+     * @return the users that were not registered
+     */
+    public List<User> registerUsers(LibrarySystem system, Collection<? extends User> newUsers) {
+        List<User> rejected = system.addUsers(newUsers);
+        System.out.println((newUsers.size() - rejected.size()) + " user(s) registered, "
+                + rejected.size() + " rejected.");
+        return rejected;
+    }
+
+    /**
+     * Removes a user from a {@link LibrarySystem} based on their ID.
+     * <p>
+     * The lookup is by ID, so it takes constant time however many users
+     * are registered. Users with active loans are not removed.
+     * </p>
+     *
+     * @param system the library system holding the user
+     * @param id     unique ID of the user to remove
+     * @return {@code true} if a user was removed, {@code false} otherwise
+     */
+    public boolean removeUser(LibrarySystem system, int id) {
+        return system.removeUser(id) != null;
+    }
+
     // -------------------------------------------
     // PRODUCT MANAGEMENT METHODS
     // -------------------------------------------
@@ -72,7 +153,10 @@ public class Librarian extends User {
      *
      * @param products list of products in the system
      * @param p        the new product to add
+     * @deprecated the product is not indexed, so the system cannot find it;
+     *             use {@link #addProduct(LibrarySystem, Product)}
      */
+    @Deprecated
     public void addProduct(List<Product> products, Product p) {
         products.add(p);
         System.out.println("Product added: " + p.getTitle());
@@ -87,11 +171,44 @@ public class Librarian extends User {
      * @param products list of available products
      * @param id       unique product ID to remove
      * @return {@code true} if the product was found and removed, {@code false} otherwise
+     * @deprecated scans the whole list, matches every media type sharing the
+     *             ID and leaves the indexes stale; use
+     *             {@link #removeProduct(LibrarySystem, long)}
      */
+    @Deprecated
     public boolean removeProduct(List<Product> products, int id) {
         return products.removeIf(p -> p.getProductId() == id);
     }
 
+    /**
+     * Adds a new {@link Product} directly to a {@link LibrarySystem}.
+     * <p>
+     * Unlike {@link #addProduct(List, Product)}, this keeps the system's
+     * product index up to date so the item can be found by ID immediately.
+     * </p>
+     *
+     * @param system the library system receiving the product
+     * @param p      the new product to add
+     */
+    public void addProduct(LibrarySystem system, Product p) {
+        system.addProduct(p);
+        System.out.println("Product added: " + p.getTitle());
+    }
+
+    /**
+     * Removes a {@link Product} from a {@link LibrarySystem} based on its key.
+     * <p>
+     * The system updates both its product list and its product index.
+     * </p>
+     *
+     * @param system     the library system holding the product
+     * @param productKey packed key (see {@link ProductKey}) of the product to remove
+     * @return {@code true} if the product was found and removed, {@code false} otherwise
+     */
+    public boolean removeProduct(LibrarySystem system, long productKey) {
+        return system.removeProduct(productKey);
+    }
+
     // -------------------------------------------
     // REPORT GENERATION
     // -------------------------------------------
@@ -100,21 +217,79 @@ public class Librarian extends User {
      * Generates a textual report of all current {@link Loan} records.
      * <p>
      * The report lists each loan entry on a new line, including
-     * details retrieved via {@link Loan#getInfo()}.
+     * details retrieved via {@link Loan#getInfo()}. It is built in memory,
+     * so it suits small loan lists; use
+     * {@link #generateReport(Iterable, Writer, ReportFormat)} to stream a
+     * report of any size.
      * </p>
      *
      * @param loans list of all active loans
      * @return formatted string containing all loan details
      */
     public String generateReport(List<Loan> loans) {
-        StringBuilder sb = new StringBuilder("Library Loan Report:\n");
-
-        // Iterate over all loans and append details to the report.
-        for (Loan loan : loans) {
-            sb.append(loan.getInfo()).append("\n");
+        StringWriter out = new StringWriter();
+        try {
+            generateReport(loans, out, ReportFormat.TEXT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringWriter never fails
         }
+        return out.toString();
+    }
+
+    /**
+     * Streams a report of loans to a destination, one row at a time.
+     * <p>
+     * Memory use does not grow with the number of loans; pass
+     * {@link LibrarySystem#activeLoans()} to report every active loan
+     * without copying the ledger.
+     * </p>
+     *
+     * @param loans  the loans to report
+     * @param out    the destination; flushed but not closed
+     * @param format the output format
+     * @return the number of loans written
+     * @throws IOException if writing fails
+     */
+    public long generateReport(Iterable<Loan> loans, Writer out, ReportFormat format) throws IOException {
+        return new LoanReport(format, LocalDate.now()).write(loans, out);
+    }
 
-        // Return the completed report string.
-        return sb.toString();
+    /**
+     * Groups the overdue loans by the type of their borrower.
+     * <p>
+     * The ledger is filtered and grouped in parallel (see
+     * {@link LibrarySystem#queryLoans()}); each group lists its loans in
+     * loan ID order.
+     * </p>
+     *
+     * @param system the library system
+     * @param today  the date overdue status is judged on
+     * @return overdue loans per borrower type, in order of the first overdue loan
+     */
+    public Map<UserType, List<Loan>> overdueByBorrowerType(LibrarySystem system, LocalDate today) {
+        return system.queryLoans()
+                .filter(l -> l.isOverdue(today))
+                .groupBy(l -> l.getBorrower().getType());
+    }
+
+    /**
+     * Counts the active loans per title, most borrowed first.
+     * <p>
+     * Copies of a title in different media types count together. Titles
+     * with the same count are listed alphabetically.
+     * </p>
+     *
+     * @param system the library system
+     * @param limit  the maximum number of titles to list
+     * @return loan counts per title, highest first
+     */
+    public Map<String, Long> loansPerTitle(LibrarySystem system, int limit) {
+        Map<String, Long> counts = system.queryLoans().countBy(l -> l.getItem().getTitle());
+        Map<String, Long> ranked = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> e : ParallelQuery.of(counts.entrySet()).top(limit,
+                Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))) {
+            ranked.put(e.getKey(), e.getValue());
+        }
+        return ranked;
     }
 }
@@ -1,7 +1,36 @@
 package main.model;
 
+import main.persistence.CatalogSnapshot;
+import main.persistence.Checkpointer;
+import main.persistence.LoanCheckpoint;
+import main.persistence.LoanHistory;
+import main.persistence.LoanJournal;
+import main.query.ParallelQuery;
+import main.util.LongObjectMap;
+import main.util.StripedGate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Controls all core operations of the University Library System.
@@ -22,41 +51,210 @@ import java.util.List;
  *   <li>Displaying reports of library activity</li>
  * </ul>
  * </p>
+ * <p>
+ * The system is safe for concurrent callers. Borrowing takes no global
+ * lock: the product is looked up with an optimistic read of the catalogue,
+ * reserved with a compare-and-set on its availability flag, and checked
+ * against the borrower's limit under that user's own monitor. Only
+ * catalogue changes (adding, removing or reloading products) take the
+ * exclusive catalogue lock.
+ * </p>
  */
 public class LibrarySystem {
 
-    /** List of all registered users in the system. */
-    private List<User> users = new ArrayList<>();
+    /** Days before its due date from which a loan is reported as due soon. */
+    public static final int DUE_SOON_DAYS = 3;
+
+    /** All registered users, indexed by ID and email address. */
+    private final UserDirectory users = new UserDirectory();
+
+    /**
+     * All products (books, CDs, DVDs, audiobooks) in catalogue order.
+     * Products compare by identity, so removing one is constant time.
+     */
+    private final Set<Product> products = new LinkedHashSet<>();
+
+    /**
+     * Hash index from packed product key (see {@link ProductKey}) to product,
+     * kept in step with {@link #products} so that lookups during borrowing
+     * and returning run in constant time.
+     */
+    private LongObjectMap<Product> productIndex = new LongObjectMap<>();
+
+    /** Per-media-type buckets with availability bitsets, used for category listings. */
+    private CategoryIndex categoryIndex = new CategoryIndex();
+
+    /** Inverted index over titles and creator fields, used by {@link #search(String, int)}. */
+    private SearchIndex searchIndex = new SearchIndex();
+
+    /** Trigram index over titles, used by {@link #searchFuzzy(String, int)}. */
+    private FuzzyTitleIndex fuzzyIndex = new FuzzyTitleIndex();
+
+    /**
+     * Binary copy of the catalogue used to skip CSV parsing on start-up,
+     * or {@code null} to always parse the CSV files.
+     */
+    private CatalogSnapshot catalogSnapshot =
+            new CatalogSnapshot(Path.of("src/main/data/state", "catalog.snapshot"), true);
+
+    /**
+     * Guards the product list and every catalogue index. Catalogue changes
+     * take the write lock; lookups on the borrow path use optimistic reads
+     * and only fall back to the read lock if a change overlapped them.
+     */
+    private final StampedLock catalogLock = new StampedLock();
+
+    /** All active loans, indexed by product key and by borrower. */
+    private final LoanLedger loans = new LoanLedger();
+
+    /** Active loans by due date; fires due-soon and overdue events. */
+    private final DueDateWheel dueDates = new DueDateWheel(LocalDate.now(), DUE_SOON_DAYS);
+
+    /** Charges overdue fines, journalling each charge; listens to {@link #dueDates}. */
+    private final FineEngine fines;
+
+    /** Circulation counters, updated with every recorded loan event. */
+    private final CirculationStats stats = new CirculationStats();
+
+    /**
+     * Passed by every thread that records a loan event and updates the
+     * statistics for it; closed by a checkpoint while it rolls the journal,
+     * so the checkpointed statistics cover exactly the sealed segments.
+     */
+    private final StripedGate eventGate = new StripedGate(16);
+
+    /**
+     * Returned loans, kept for analysis; in memory only until
+     * {@link #openJournal(Path)} opens the copy stored with the journal.
+     */
+    private volatile LoanHistory history = new LoanHistory();
 
-    /** List of all available products (books, CDs, DVDs, audiobooks). */
-    private List<Product> products = new ArrayList<>();
+    /** Durable log of loan events, or {@code null} until {@link #openJournal(Path)} is called. */
+    private volatile LoanJournal journal;
 
-    /** List of all active and historical loans. */
-    private List<Loan> loans = new ArrayList<>();
+    /** Directory of the journal segments and checkpoints, once the journal is open. */
+    private Path stateDirectory;
+
+    /** Periodic checkpoint writer, or {@code null} until {@link #startCheckpoints(Duration, int)}. */
+    private Checkpointer checkpointer;
+
+    /** Runs the daily fine pass, or {@code null} until {@link #startDailyFines(LocalTime)}. */
+    private ScheduledExecutorService dailyFines;
 
     /** Default borrowing policy applied across all users. */
     private Policy policy = new Policy(14, 2, 0.5);
 
+    /**
+     * Compiled borrowing rules per user type and media type. Replaced as a
+     * whole by {@link #reloadPolicies(Path)}; loans keep the terms they
+     * were created with.
+     */
+    private volatile PolicyTable policies = PolicyTable.defaults(policy);
+
     /** A reference user used for demonstration or current session. */
     private User demoUser;
 
+    /**
+     * Constructs an empty library system.
+     * <p>
+     * Overdue fines are charged as soon as the due-date wheel reports a
+     * loan overdue, and each charge is journalled like a loan event.
+     * </p>
+     */
+    public LibrarySystem() {
+        fines = new FineEngine(ForkJoinPool.commonPool(), eventGate,
+                (loan, through, amount) -> record(LoanJournal.Event.fine(loan.getLoanId(),
+                        loan.getBorrower().getUserId(), loan.getProductKey(), through.toEpochDay(), amount)));
+        dueDates.addListener(fines);
+    }
+
     // -------------------------------
     // Basic Getters & Setters
     // -------------------------------
 
     /**
      * Adds a new product to the system's product list.
+     * <p>
+     * The first product registered under a key is kept; a later one with
+     * the same key could never be found and is not added.
+     * </p>
      *
      * @param p the {@link Product} to add
      */
-    public void addProduct(Product p) { products.add(p); }
+    public void addProduct(Product p) {
+        long stamp = catalogLock.writeLock();
+        try {
+            install(p);
+        } finally {
+            catalogLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the product with the given key from the catalogue and the index.
+     * <p>
+     * A product that is on loan, or being checked out, stays in the
+     * catalogue so that its loan can still be returned.
+     * </p>
+     *
+     * @param productKey the packed key of the product to remove
+     * @return {@code true} if a product was removed
+     */
+    public boolean removeProduct(long productKey) {
+        long stamp = catalogLock.writeLock();
+        try {
+            Product current = productIndex.get(productKey);
+            if (current != null && (loans.findByProduct(productKey) != null || !current.isAvailable())) {
+                System.out.println("Cannot remove " + current.getTitle() + ": it is on loan.");
+                return false;
+            }
+            Product indexed = productIndex.remove(productKey);
+            if (indexed == null) {
+                return false;
+            }
+            categoryIndex.remove(indexed);
+            searchIndex.remove(indexed);
+            fuzzyIndex.remove(indexed);
+            return products.remove(indexed);
+        } finally {
+            catalogLock.unlockWrite(stamp);
+        }
+    }
 
     /**
      * Registers a new user in the system.
+     * <p>
+     * The user is rejected if its ID or email address is already
+     * registered (see {@link UserDirectory}).
+     * </p>
      *
      * @param u the {@link User} to add
+     * @return {@code true} if the user was registered
      */
-    public void addUser(User u) { users.add(u); }
+    public boolean addUser(User u) { return users.register(u); }
+
+    /**
+     * Registers a batch of users at once, for example a term's new students.
+     *
+     * @param batch the users to register, in order
+     * @return the users rejected because their ID or email address was taken
+     */
+    public List<User> addUsers(Collection<? extends User> batch) { return users.registerAll(batch); }
+
+    /**
+     * Removes a user who has no active loans.
+     *
+     * @param userId the user's ID
+     * @return the removed user, or {@code null} if none was removed
+     */
+    public User removeUser(int userId) {
+        int active = loans.loansOf(userId).size();
+        if (active > 0) {
+            System.out.println("Cannot remove user " + userId + ": " + active + " active loan(s).");
+            return null;
+        }
+        return users.remove(userId);
+    }
 
     /**
      * Sets the demo or currently active user.
@@ -72,6 +270,44 @@ public class LibrarySystem {
      */
     public User getDemoUser() { return demoUser; }
 
+    /**
+     * Returns the registered users.
+     * <p>
+     * The list is a read-only copy that is safe to iterate while users are
+     * being added; iteration sees the users present when it was taken.
+     * </p>
+     *
+     * @return the registered users, in registration order
+     */
+    public List<User> getUsers() { return users.users(); }
+
+    /**
+     * Finds a registered user by ID.
+     *
+     * @param userId the user's ID
+     * @return the user, or {@code null} if no such user is registered
+     */
+    public User findUser(int userId) {
+        return users.find(userId);
+    }
+
+    /**
+     * Finds a registered adult, student or librarian by email address.
+     *
+     * @param email the address; case and surrounding spaces are ignored
+     * @return the user, or {@code null} if no such user is registered
+     */
+    public User findUserByEmail(String email) {
+        return users.findByEmail(email);
+    }
+
+    /**
+     * Sets the binary catalogue snapshot used by {@link #loadAllData()}.
+     *
+     * @param snapshot the snapshot store, or {@code null} to always parse the CSV files
+     */
+    public void setCatalogSnapshot(CatalogSnapshot snapshot) { catalogSnapshot = snapshot; }
+
     // -------------------------------
     // Load Data from CSV Files
     // -------------------------------
@@ -82,14 +318,59 @@ public class LibrarySystem {
      * This method clears the current product list and repopulates it with
      * items from the data files (books, CDs, DVDs, and audiobooks).
      * </p>
+     * <p>
+     * If a {@link CatalogSnapshot} is configured and its recorded CSV
+     * checksums still match, the catalogue is restored from the snapshot
+     * without parsing any CSV. Otherwise the files are parsed in parallel
+     * by a {@link CatalogLoader} (products are still merged in file order
+     * and the time spent on each file is reported) and a fresh snapshot is
+     * written for the next start.
+     * </p>
+     * <p>
+     * Either way, products with the same creator or genre share one string
+     * instance: the CSV path canonicalises them through the
+     * {@link DataLoader#getStringDictionary() string dictionary}, whose
+     * estimated savings are reported before it is discarded, and the
+     * snapshot stores each distinct string once.
+     * </p>
      */
     public void loadAllData() {
-        products.clear();
-        products.addAll(DataLoader.loadBooks());
-        products.addAll(DataLoader.loadCDs());
-        products.addAll(DataLoader.loadDVDs());
-        products.addAll(DataLoader.loadAudiobooks());
+        List<Path> sources = new ArrayList<>();
+        for (MediaType type : MediaType.all()) {
+            sources.add(DataLoader.dataFile(type));
+        }
+
+        if (catalogSnapshot != null) {
+            long start = System.nanoTime();
+            try {
+                List<Product> cached = catalogSnapshot.load(sources);
+                if (cached != null) {
+                    replaceCatalogue(cached);
+                    System.out.printf("Data restored from catalogue snapshot. Total products: %d (%.1f ms)%n",
+                            products.size(), (System.nanoTime() - start) / 1_000_000.0);
+                    return;
+                }
+            } catch (IOException e) {
+                System.out.println("Ignoring unreadable catalogue snapshot: " + e.getMessage());
+            }
+        }
+
+        DataLoader.resetStringDictionary();
+        CatalogLoader.Result result = new CatalogLoader().load();
+        replaceCatalogue(result.getProducts());
         System.out.println("Data successfully loaded from CSV files. Total products: " + products.size());
+        result.printReport();
+        System.out.println("  Shared creator/genre strings: " + DataLoader.getStringDictionary().report());
+        // The products now hold the shared strings; the dictionary's copies are no longer needed.
+        DataLoader.resetStringDictionary();
+
+        if (catalogSnapshot != null) {
+            try {
+                catalogSnapshot.save(result.getProducts(), sources);
+            } catch (IOException e) {
+                System.out.println("Could not write catalogue snapshot: " + e.getMessage());
+            }
+        }
     }
 
     // -------------------------------
@@ -97,34 +378,249 @@ public class LibrarySystem {
     // -------------------------------
 
     /**
-     * Searches for a product by its unique identifier.
+     * Searches for a product by its packed product key.
+     * <p>
+     * The lookup goes through the hash index rather than scanning the
+     * product list, so its cost does not grow with the catalogue size.
+     * </p>
      *
-     * @param id the product ID to search for
+     * @param productKey the packed key (see {@link ProductKey}) to search for
+     * @return the matching {@link Product}, or {@code null} if not found
+     */
+    public Product findProduct(long productKey) {
+        return readCatalogue(() -> productIndex.get(productKey));
+    }
+
+    /**
+     * Searches for a product by media type and per-file ID.
+     *
+     * @param type the media type of the product
+     * @param id   the product's ID within its catalogue file
      * @return the matching {@link Product}, or {@code null} if not found
      */
+    public Product findProduct(MediaType type, int id) {
+        return findProduct(ProductKey.of(type, id));
+    }
+
+    /**
+     * Searches for a product by its per-file ID alone.
+     * <p>
+     * Because each catalogue file numbers its rows from 1, an ID may match
+     * several products. Media types are tried in declaration order (books
+     * first), which mirrors the order in which catalogues are loaded.
+     * Prefer {@link #findProduct(long)} wherever the media type is known.
+     * </p>
+     *
+     * @param id the product ID to search for
+     * @return the first matching {@link Product}, or {@code null} if not found
+     */
     public Product findProductById(int id) {
-        // Use Java Streams to filter products efficiently by ID.
-        return products.stream()
-                .filter(p -> p.getProductId() == id)
-                .findFirst()
-                .orElse(null);
+        return readCatalogue(() -> {
+            for (MediaType type : MediaType.all()) {
+                Product p = productIndex.get(ProductKey.of(type, id));
+                if (p != null) {
+                    return p;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs a catalogue lookup under an optimistic read.
+     * <p>
+     * The lookup first runs without locking. If a catalogue change
+     * overlapped it, its result (or any exception caused by seeing the
+     * index half-updated) is discarded and the lookup is repeated under the
+     * read lock. Uncontended lookups therefore never write to shared memory.
+     * </p>
+     *
+     * @param lookup the read-only lookup to perform
+     * @param <T>    the result type
+     * @return the lookup result from a consistent view of the catalogue
+     */
+    private <T> T readCatalogue(Supplier<T> lookup) {
+        long stamp = catalogLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = lookup.get();
+                if (catalogLock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // Saw a half-applied change; retry below under the read lock.
+            }
+        }
+        stamp = catalogLock.readLock();
+        try {
+            return lookup.get();
+        } finally {
+            catalogLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Replaces the whole catalogue and rebuilds every index from it.
+     *
+     * @param loaded the products to install, in load order
+     */
+    private void replaceCatalogue(List<Product> loaded) {
+        long stamp = catalogLock.writeLock();
+        try {
+            rebuildIndexes(loaded);
+        } finally {
+            catalogLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the product list and rebuilds every index from the given products.
+     * <p>
+     * The product index is pre-sized for the whole catalogue so that bulk
+     * loads do not trigger repeated rehashing. Callers must hold the
+     * catalogue write lock.
+     * </p>
+     *
+     * @param loaded the products to install, in load order
+     */
+    private void rebuildIndexes(List<Product> loaded) {
+        products.clear();
+        productIndex = new LongObjectMap<>(loaded.size());
+        categoryIndex.clear();
+        searchIndex.clear();
+        fuzzyIndex.clear();
+        for (Product p : loaded) {
+            install(p);
+        }
+    }
+
+    /**
+     * Adds a product to the list and every index unless its key is taken;
+     * callers must hold the catalogue write lock.
+     */
+    private void install(Product p) {
+        if (productIndex.putIfAbsent(p.getProductKey(), p) == null) {
+            products.add(p);
+            categoryIndex.add(p);
+            searchIndex.add(p);
+            fuzzyIndex.add(p);
+        }
+    }
+
+    /**
+     * Searches the catalogue by title, creator, genre and ISBN.
+     * <p>
+     * The query is matched against an inverted index that is updated as
+     * products are added or removed, so its cost depends on the number of
+     * matching products rather than the catalogue size. Words are matched
+     * case- and accent-insensitively; a word ending in {@code *} matches
+     * any indexed word with that prefix (e.g. {@code tolk*}).
+     * </p>
+     *
+     * @param query the free-text query
+     * @param limit maximum number of results to return
+     * @return matching products ranked by relevance, best first
+     */
+    public List<SearchHit> search(String query, int limit) {
+        long stamp = catalogLock.readLock();
+        try {
+            return searchIndex.search(query, limit, productIndex);
+        } finally {
+            catalogLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Searches titles while tolerating typing mistakes.
+     * <p>
+     * Candidates are chosen with a trigram index and then checked with a
+     * bounded edit distance, so queries such as "Hobit" or "Godfater"
+     * still find "The Hobbit" and "The Godfather". Use this when
+     * {@link #search(String, int)} returns nothing.
+     * </p>
+     *
+     * @param query the possibly misspelt title or title fragment
+     * @param limit maximum number of results to return
+     * @return close matches ordered by edit distance, best first
+     */
+    public List<SearchHit> searchFuzzy(String query, int limit) {
+        long stamp = catalogLock.readLock();
+        try {
+            return fuzzyIndex.search(query, limit);
+        } finally {
+            catalogLock.unlockRead(stamp);
+        }
     }
 
     /**
      * Retrieves all products belonging to a specific category type.
      *
      * @param type the product type (e.g., "Book", "CD", "DVD", "Audiobook")
-     * @return a list of products matching the specified type
+     * @return a read-only list of products matching the specified type,
+     *         or an empty list if the type is unknown
      */
     public List<Product> getProductsByCategory(String type) {
-        List<Product> result = new ArrayList<>();
-        for (Product p : products) {
-            // Compare the class name (case-insensitive) to match type.
-            if (p.getClass().getSimpleName().equalsIgnoreCase(type)) {
-                result.add(p);
-            }
+        MediaType mediaType = MediaType.fromName(type);
+        return mediaType != null ? getProductsByCategory(mediaType) : List.of();
+    }
+
+    /**
+     * Retrieves all products of the given media type.
+     * <p>
+     * The result is a read-only view of the category bucket, so no list
+     * is copied per call. The view reflects later catalogue changes and
+     * should not be iterated while another thread adds or removes products.
+     * </p>
+     *
+     * @param type the media type
+     * @return a read-only list of products of that type
+     */
+    public List<Product> getProductsByCategory(MediaType type) {
+        return categoryIndex.products(type);
+    }
+
+    /**
+     * Returns a copy of the products of the given media type.
+     * <p>
+     * Unlike {@link #getProductsByCategory(MediaType)} the copy is taken
+     * from a consistent view of the catalogue, so it is safe to use while
+     * other threads add or remove products.
+     * </p>
+     *
+     * @param type the media type
+     * @return the products of that type, in catalogue order
+     */
+    public List<Product> listProducts(MediaType type) {
+        return readCatalogue(() -> new ArrayList<>(categoryIndex.products(type)));
+    }
+
+    /**
+     * Counts the products of the given media type that are available.
+     *
+     * @param type the media type
+     * @return the number of available products
+     */
+    public int countAvailable(MediaType type) {
+        return categoryIndex.countAvailable(type);
+    }
+
+    /**
+     * Invokes the given action for each available product of the given type.
+     * <p>
+     * Available items are located through the category availability bitset,
+     * so checked-out items are skipped without being inspected.
+     * </p>
+     *
+     * @param type   the media type
+     * @param action the callback receiving each available product
+     */
+    public void forEachAvailable(MediaType type, Consumer<? super Product> action) {
+        long stamp = catalogLock.readLock();
+        try {
+            categoryIndex.forEachAvailable(type, action);
+        } finally {
+            catalogLock.unlockRead(stamp);
         }
-        return result;
     }
 
     // -------------------------------
@@ -134,62 +630,729 @@ public class LibrarySystem {
     /**
      * Handles the borrowing of a product by a given user.
      * <p>
-     * Verifies product availability, enforces borrowing limits,
-     * and records the loan in both the system list and the user's
-     * personal loan record.
+     * Runs the user's borrow pipeline ({@link User#checkout(Product, PolicyTable)}),
+     * which validates the user's limits, reserves the product and creates
+     * exactly one {@link Loan} owned by the user. This method then publishes
+     * that loan to the system ledger; it never builds a loan of its own.
      * </p>
      *
-     * @param user       the {@link User} borrowing the item
-     * @param productId  the ID of the {@link Product} to borrow
+     * @param user        the {@link User} borrowing the item
+     * @param productKey  the packed key (see {@link ProductKey}) of the {@link Product} to borrow
+     * @return {@code true} if the loan was created and recorded
      */
-    public void handleBorrow(User user, int productId) {
-        Product product = findProductById(productId);
+    public boolean handleBorrow(User user, long productKey) {
+        return borrow(user, productKey) != null;
+    }
+
+    /**
+     * Borrows a product like {@link #handleBorrow(User, long)} and returns
+     * the loan it created, for callers that report it.
+     *
+     * @param user        the {@link User} borrowing the item
+     * @param productKey  the packed key (see {@link ProductKey}) of the {@link Product} to borrow
+     * @return the new loan, or {@code null} if the borrow was refused or not recorded
+     */
+    public Loan borrow(User user, long productKey) {
+        Product product = findProduct(productKey);
         if (product == null) {
             System.out.println("Product not found.");
-            return;
+            return null;
         }
         if (!product.isAvailable()) {
             System.out.println("Product is currently checked out.");
-            return;
+            return null;
         }
 
-        // Delegate to user’s borrowing method (polymorphism in action).
-        if (user.borrowProduct(product, policy)) {
-            product.setAvailable(false); // Mark as unavailable
-            Loan loan = new Loan(IDGenerator.nextId(), user, product, policy);
-
-            // Record the loan both globally and in the user's personal list.
-            loans.add(loan);
-            user.viewLoans().add(loan);
+        // The user's pipeline validates, reserves and creates the one loan
+        // (polymorphism in action); the system only publishes it.
+        Loan loan = user.checkout(product, policies);
+        if (loan == null) {
+            return null;
+        }
+        if (!loans.add(loan)) {
+            // A stale ledger entry still claims the product; undo the checkout.
+            user.cancelCheckout(loan);
+            System.out.println("Product is currently checked out.");
+            return null;
+        }
 
-            System.out.println(user.getName() + " borrowed: " + product.getTitle());
+        // The borrow only counts once it is durable in the journal.
+        LoanJournal.Event event = LoanJournal.Event.borrow(loan.getLoanId(), user.getUserId(), productKey,
+                loan.getStartDate().toEpochDay(), loan.getDueDate().toEpochDay());
+        Lock pass = eventGate.enter();
+        try {
+            if (!record(event)) {
+                loans.remove(productKey, user.getUserId());
+                user.cancelCheckout(loan);
+                return null;
+            }
+            stats.recordBorrow(productKey);
+            stats.loanOpened(product.getMediaType(), user.getType());
+        } finally {
+            pass.unlock();
         }
+        dueDates.schedule(loan);
+        System.out.println(user.getName() + " borrowed: " + product.getTitle());
+        return loan;
     }
 
     /**
      * Handles returning a product to the system.
      * <p>
-     * Marks the product as available again and removes the related
-     * {@link Loan} record from both the user and system lists.
+     * The return is written to the journal first. Only once it is durable
+     * is the product marked as available again and the related
+     * {@link Loan} record removed from both the user and the system
+     * ledger, which also removes it from the due-date wheel. If the journal
+     * write fails the loan stays active, exactly as before the call. The
+     * loan is looked up by product key, so the cost does not depend on the
+     * number of active loans.
      * </p>
      *
-     * @param user       the {@link User} returning the item
-     * @param productId  the ID of the {@link Product} being returned
+     * @param user        the {@link User} returning the item
+     * @param productKey  the packed key (see {@link ProductKey}) of the {@link Product} being returned
+     * @return {@code true} if the item was on loan to the user and is now returned
      */
-    public void handleReturn(User user, int productId) {
-        Product product = findProductById(productId);
+    public boolean handleReturn(User user, long productKey) {
+        Product product = findProduct(productKey);
         if (product == null) {
             System.out.println("Product not found.");
-            return;
+            return false;
+        }
+
+        Loan loan;
+        long returnDay = LocalDate.now().toEpochDay();
+        long startDay;
+        // The user's monitor keeps a concurrent return or renewal of the
+        // same loan from interleaving with the journal write.
+        synchronized (user) {
+            loan = loans.findByProduct(productKey);
+            if (loan == null || loan.getBorrower() != user) {
+                System.out.println("Return failed. Ensure you borrowed this item.");
+                return false;
+            }
+            startDay = loan.getStartDate().toEpochDay();
+            Lock pass = eventGate.enter();
+            try {
+                if (!record(LoanJournal.Event.returned(loan.getLoanId(), user.getUserId(), productKey,
+                        returnDay, startDay))) {
+                    return false;
+                }
+                loans.remove(productKey, user.getUserId());
+                user.returnProduct(product);
+                stats.recordReturn(startDay, returnDay);
+                stats.loanClosed(product.getMediaType(), user.getType());
+            } finally {
+                pass.unlock();
+            }
+        }
+
+        long fine = fines.accrue(loan, LocalDate.ofEpochDay(returnDay));
+        if (fine > 0) {
+            System.out.println("Late return fine: " + FineEngine.format(fine));
+        }
+        try {
+            history.append(startDay, returnDay, user.getUserId(), product.getProductId(),
+                    product.getMediaType());
+        } catch (IOException e) {
+            System.out.println("Loan history not saved: " + e.getMessage());
         }
+        System.out.println("Return successful: " + product.getTitle());
+        return true;
+    }
+
+    /**
+     * Renews a user's active loan of a product.
+     * <p>
+     * The renewal follows the terms the loan stored when the user borrowed
+     * the item (for example students renew once for 21 days), even if the
+     * rules have been reloaded since. The new due date is worked out first
+     * and written to the journal; the loan only changes once that write
+     * has succeeded.
+     * </p>
+     *
+     * @param user       the {@link User} renewing the loan
+     * @param productKey the packed key of the borrowed {@link Product}
+     * @return {@code true} if the loan was renewed and recorded
+     */
+    public boolean handleRenew(User user, long productKey) {
+        return renew(user, productKey) != null;
+    }
 
-        // If user successfully returns the item, update system records.
-        if (user.returnProduct(product)) {
-            product.setAvailable(true);
-            loans.removeIf(l -> l.getItem().equals(product) && l.getBorrower().equals(user));
-            System.out.println("Return successful: " + product.getTitle());
-        } else {
-            System.out.println("Return failed. Ensure you borrowed this item.");
+    /**
+     * Renews a loan like {@link #handleRenew(User, long)} and returns it,
+     * for callers that report the new due date.
+     *
+     * @param user       the {@link User} renewing the loan
+     * @param productKey the packed key of the borrowed {@link Product}
+     * @return the renewed loan, or {@code null} if the renewal was refused or not recorded
+     */
+    public Loan renew(User user, long productKey) {
+        Loan loan;
+        synchronized (user) {
+            loan = loans.findByProduct(productKey);
+            if (loan == null || loan.getBorrower() != user) {
+                System.out.println("Renewal failed. You have no active loan of this item.");
+                return null;
+            }
+            LocalDate renewed = loan.renewedDueDate();
+            if (renewed == null) {
+                System.out.println("Renewal failed. No renewals left for: " + loan.getItem().getTitle());
+                return null;
+            }
+            int renewCount = loan.getRenewCount() + 1;
+            Lock pass = eventGate.enter();
+            try {
+                if (!record(LoanJournal.Event.renew(loan.getLoanId(), user.getUserId(), productKey,
+                        renewed.toEpochDay(), renewCount))) {
+                    return null;
+                }
+                loan.applyRenewal(renewed, renewCount);
+                stats.recordRenewal();
+            } finally {
+                pass.unlock();
+            }
+        }
+        System.out.println("Renewed: " + loan.getItem().getTitle() + " (now due " + loan.getDueDate() + ")");
+        return loan;
+    }
+
+    // -------------------------------
+    // Borrowing Rules
+    // -------------------------------
+
+    /**
+     * Returns the borrowing rules currently in force.
+     *
+     * @return the compiled rule table
+     */
+    public PolicyTable getPolicies() {
+        return policies;
+    }
+
+    /**
+     * Replaces the borrowing rules with those of a properties file
+     * (see {@link PolicyTable} for the format).
+     * <p>
+     * The file is compiled into a new table before anything changes; if it
+     * cannot be read or contains an invalid rule, the current rules stay in
+     * force. Existing loans keep their terms, while later borrows and
+     * renewals use the new ones.
+     * </p>
+     *
+     * @param file the rules file
+     * @return {@code true} if the new rules are in force
+     */
+    public boolean reloadPolicies(Path file) {
+        try {
+            policies = PolicyTable.load(file, policy);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Borrowing rules not loaded from " + file + ": " + e.getMessage());
+            return false;
+        }
+        System.out.println("Borrowing rules loaded from " + file + ".");
+        return true;
+    }
+
+    // -------------------------------
+    // Circulation Statistics
+    // -------------------------------
+
+    /**
+     * Returns the circulation statistics.
+     * <p>
+     * The figures are maintained as loan events happen and survive
+     * restarts through checkpoints and journal replay, so every read is
+     * constant-time and never scans the loans.
+     * </p>
+     *
+     * @return the live statistics
+     */
+    public CirculationStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the share of a media type's items that are on loan.
+     *
+     * @param type the media type
+     * @return active loans divided by catalogue size, or 0 for an empty category
+     */
+    public double getUtilisation(MediaType type) {
+        int items = readCatalogue(() -> categoryIndex.products(type).size());
+        return items == 0 ? 0 : (double) stats.getActiveLoans(type) / items;
+    }
+
+    /**
+     * Returns the history of returned loans, for aggregation queries.
+     *
+     * @return the loan history
+     */
+    public LoanHistory getHistory() {
+        return history;
+    }
+
+    // -------------------------------
+    // Due Dates
+    // -------------------------------
+
+    /**
+     * Moves the due-date clock forward, notifying listeners of loans that
+     * became due soon or overdue on the days passed.
+     *
+     * @param today the current date
+     */
+    public void advanceClock(LocalDate today) {
+        dueDates.advanceTo(today);
+    }
+
+    /**
+     * Returns the loans overdue on a date, advancing the clock to it first.
+     * <p>
+     * Overdue loans are kept apart by the due-date wheel, so this costs
+     * time proportional to the number of overdue loans, not to all loans.
+     * </p>
+     *
+     * @param today the current date
+     * @return the overdue loans, in the order they became overdue
+     */
+    public List<Loan> getOverdueLoans(LocalDate today) {
+        dueDates.advanceTo(today);
+        return dueDates.overdue();
+    }
+
+    /**
+     * Returns the loans due back on a given date.
+     *
+     * @param date the due date
+     * @return the loans due that day
+     */
+    public List<Loan> getLoansDueOn(LocalDate date) {
+        return dueDates.dueOn(date);
+    }
+
+    /**
+     * Runs the end-of-day fine pass: advances the due-date clock and
+     * charges every overdue loan up to the given date, in parallel.
+     *
+     * @param today the day being closed
+     * @return the amount newly charged, in minor units (pence)
+     */
+    public long accrueFines(LocalDate today) {
+        dueDates.advanceTo(today);
+        return fines.accrueAll(dueDates.overdue(), today);
+    }
+
+    /**
+     * Runs {@link #accrueFines(LocalDate)} every day at the given time, on a daemon thread.
+     *
+     * @param at the local time of day to run
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void startDailyFines(LocalTime at) {
+        if (dailyFines != null) {
+            throw new IllegalStateException("Daily fines already started");
+        }
+        dailyFines = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "daily-fines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime first = now.toLocalDate().atTime(at);
+        if (!first.isAfter(now)) {
+            first = first.plusDays(1);
+        }
+        dailyFines.scheduleAtFixedRate(() -> {
+            try {
+                long charged = accrueFines(LocalDate.now());
+                System.out.println("Daily fines charged: " + FineEngine.format(charged));
+            } catch (RuntimeException e) {
+                System.out.println("Daily fine pass failed: " + e.getMessage());
+            }
+        }, Duration.between(now, first).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a user's outstanding fines.
+     *
+     * @param user the user
+     * @return the balance in minor units (pence)
+     */
+    public long getFineBalance(User user) {
+        return user.getFineBalance();
+    }
+
+    /**
+     * Registers a listener for due-soon and overdue events.
+     *
+     * @param listener the listener
+     */
+    public void addDueDateListener(DueDateWheel.Listener listener) {
+        dueDates.addListener(listener);
+    }
+
+    // -------------------------------
+    // Loan Journal
+    // -------------------------------
+
+    /**
+     * Opens the loan journal, restoring the loans it records.
+     * <p>
+     * Users and the catalogue must be loaded first. The newest checkpoint
+     * in the directory, if any, is loaded first: users it lists that are
+     * not registered yet are re-created, and its active loans seed a table
+     * keyed by loan ID. The journal segments the checkpoint does not cover
+     * are then replayed event by event into that table: a borrow adds a
+     * loan, a return removes it and a renewal updates its due date.
+     * Replaying the same event twice therefore changes nothing. Every loan
+     * still open at the end is re-attached to its user, its product is
+     * marked as checked out and it is added to the loan ledger. From then
+     * on every borrow, return and renewal is appended to the journal before
+     * it is confirmed.
+     * </p>
+     * <p>
+     * Fines are restored the same way: each user's balance starts from the
+     * checkpoint and every replayed fine is added to it, and each loan
+     * resumes charging after the latest day either one has fined it for,
+     * so no day is charged twice across a restart.
+     * </p>
+     * <p>
+     * The loan history in the {@code history} subdirectory is opened as
+     * well, and returned loans are added to it from then on.
+     * </p>
+     *
+     * @param directory the directory holding the journal segments, checkpoints
+     *                  and loan history; created if missing
+     * @throws IOException if the journal cannot be opened
+     */
+    public void openJournal(Path directory) throws IOException {
+        Map<Long, LoanJournal.Event> open = new LinkedHashMap<>();
+        Map<Long, Integer> finedThrough = new HashMap<>();
+        LoanCheckpoint checkpoint = LoanCheckpoint.loadLatest(directory);
+        long replayFrom = 0;
+        if (checkpoint != null) {
+            restoreUsers(checkpoint.getUsers());
+            for (LoanCheckpoint.UserRecord r : checkpoint.getUsers()) {
+                User user = findUser(r.getUserId());
+                if (user != null) {
+                    user.restoreFineBalance(r.getFineBalance());
+                }
+            }
+            List<LoanJournal.Event> checkpointed = checkpoint.getLoans();
+            for (int i = 0; i < checkpointed.size(); i++) {
+                LoanJournal.Event loan = checkpointed.get(i);
+                open.put(loan.getLoanId(), loan);
+                if (checkpoint.getFinedThrough(i) != 0) {
+                    finedThrough.put(loan.getLoanId(), checkpoint.getFinedThrough(i));
+                }
+            }
+            replayFrom = checkpoint.getReplayFrom();
+            stats.restore(checkpoint.getStatistics());
+            System.out.println("Checkpoint loaded: " + checkpoint.getUsers().size() + " user(s), "
+                    + checkpoint.getLoans().size() + " active loan(s).");
+        }
+
+        LoanHistory openedHistory = LoanHistory.open(directory.resolve("history"));
+        LoanJournal opened = LoanJournal.open(directory, replayFrom, event -> applyEvent(open, finedThrough, event));
+        int restored = restoreLoans(open.values(), finedThrough);
+
+        System.out.println("Loan journal replayed: " + opened.getReplayedEvents() + " event(s), "
+                + restored + " active loan(s) restored.");
+        if (opened.getDiscardedBytes() > 0) {
+            System.out.println("Discarded " + opened.getDiscardedBytes() + " byte(s) of incomplete journal tail.");
+        }
+        stateDirectory = directory;
+        journal = opened;
+        history = openedHistory;
+    }
+
+    /**
+     * Starts writing checkpoints in the background, compacting the journal.
+     * <p>
+     * Each checkpoint stores the registered users and active loans next to
+     * the journal and deletes the journal segments it makes obsolete, so
+     * startup only replays what happened since the last checkpoint. The
+     * snapshot is taken without stopping borrowing or returning.
+     * </p>
+     *
+     * @param interval  the time between checkpoints
+     * @param retention how many checkpoints to keep (at least one)
+     * @throws IllegalStateException if the journal is not open or checkpoints already started
+     */
+    public synchronized void startCheckpoints(Duration interval, int retention) {
+        if (journal == null) {
+            throw new IllegalStateException("Open the loan journal before starting checkpoints");
+        }
+        if (checkpointer != null) {
+            throw new IllegalStateException("Checkpoints already started");
+        }
+        checkpointer = new Checkpointer(stateDirectory, journal, new CheckpointSource(), retention);
+        checkpointer.start(interval);
+    }
+
+    /**
+     * Writes a checkpoint immediately, outside the regular schedule.
+     *
+     * @return {@code true} if a checkpoint was written
+     */
+    public boolean checkpointNow() {
+        Checkpointer current;
+        synchronized (this) {
+            current = checkpointer;
+        }
+        if (current == null) {
+            System.out.println("Checkpoints are not enabled.");
+            return false;
+        }
+        try {
+            current.checkpoint();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Checkpoint failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops the daily fine pass and checkpointing, then flushes and closes
+     * the loan journal, if one is open, and the loan history files.
+     */
+    public void shutdown() {
+        Checkpointer runningCheckpointer;
+        ScheduledExecutorService runningFines;
+        synchronized (this) {
+            runningCheckpointer = checkpointer;
+            checkpointer = null;
+            runningFines = dailyFines;
+            dailyFines = null;
+        }
+        if (runningFines != null) {
+            runningFines.shutdown();
+        }
+        if (runningCheckpointer != null) {
+            runningCheckpointer.close();
+        }
+
+        LoanJournal current = journal;
+        journal = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                System.out.println("Error closing loan journal: " + e.getMessage());
+            }
+        }
+        try {
+            history.close();
+        } catch (IOException e) {
+            System.out.println("Error closing loan history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Supplies checkpoints with the loan state and with statistics and fine
+     * balances fixed at the journal boundary the checkpoint resumes from.
+     */
+    private final class CheckpointSource implements Checkpointer.StateSource {
+
+        /** Statistics encoded while the journal was rolled. */
+        private byte[] sealedStats = new byte[0];
+
+        /** Fine balances by user ID, read while the journal was rolled. */
+        private Map<Integer, Long> sealedBalances = Map.of();
+
+        @Override
+        public long roll(LoanJournal journal) throws IOException {
+            // With the gate closed no event is between its journal record
+            // and its statistics or balance update, so both cover exactly
+            // the segments before the new one.
+            eventGate.close();
+            try {
+                long segment = journal.roll();
+                sealedStats = stats.encode();
+                Map<Integer, Long> balances = new HashMap<>();
+                for (User u : users.users()) {
+                    balances.put(u.getUserId(), u.getFineBalance());
+                }
+                sealedBalances = balances;
+                return segment;
+            } finally {
+                eventGate.open();
+            }
+        }
+
+        @Override
+        public LoanCheckpoint capture(long replayFrom) {
+            return captureCheckpoint(replayFrom, sealedStats, sealedBalances);
+        }
+    }
+
+    /**
+     * Captures the users and active loans for a checkpoint, together with
+     * the statistics and fine balances sealed when the journal was rolled.
+     * <p>
+     * The ledger is copied stripe by stripe and each loan's due date is
+     * read under its borrower's lock, so the capture never blocks the whole
+     * system. Changes made meanwhile are in the journal from
+     * {@code replayFrom} onwards and are replayed on top of it; a loan's
+     * charged-through day may already include some of them, which replay
+     * tolerates because it only moves that day forward.
+     * </p>
+     */
+    private LoanCheckpoint captureCheckpoint(long replayFrom, byte[] statistics, Map<Integer, Long> balances) {
+        List<LoanCheckpoint.UserRecord> userRecords = new ArrayList<>();
+        for (User u : users.users()) {
+            int guardianId = 0;
+            String course = null;
+            int year = 0;
+            if (u instanceof ChildUser child && child.getGuardian() != null) {
+                guardianId = child.getGuardian().getUserId();
+            } else if (u instanceof Student student) {
+                course = student.getCourse();
+                year = student.getYear();
+            }
+            userRecords.add(new LoanCheckpoint.UserRecord(u.getUserId(), u.getClass().getSimpleName(),
+                    u.getName(), u.getEmail(), guardianId, course, year, balances.getOrDefault(u.getUserId(), 0L)));
+        }
+
+        List<Loan> snapshot = loans.snapshot();
+        List<LoanJournal.Event> active = new ArrayList<>(snapshot.size());
+        int[] finedThrough = new int[snapshot.size()];
+        for (Loan loan : snapshot) {
+            User borrower = loan.getBorrower();
+            synchronized (borrower) {
+                finedThrough[active.size()] = Math.toIntExact(loan.getFinedThroughDay());
+                active.add(LoanJournal.Event.active(loan.getLoanId(), borrower.getUserId(), loan.getProductKey(),
+                        loan.getStartDate().toEpochDay(), loan.getDueDate().toEpochDay(), loan.getRenewCount()));
+            }
+        }
+        return new LoanCheckpoint(replayFrom, System.currentTimeMillis(), userRecords, active, finedThrough,
+                statistics);
+    }
+
+    /**
+     * Registers the checkpointed users that are not registered yet.
+     *
+     * @param records the users stored in a checkpoint
+     */
+    private void restoreUsers(List<LoanCheckpoint.UserRecord> records) {
+        List<LoanCheckpoint.UserRecord> children = new ArrayList<>();
+        for (LoanCheckpoint.UserRecord r : records) {
+            if (findUser(r.getUserId()) != null) {
+                continue;
+            }
+            User restored = switch (r.getType()) {
+                case "AdultUser" -> new AdultUser(r.getUserId(), r.getName(), r.getEmail());
+                case "ChildUser" -> new ChildUser(r.getUserId(), r.getName(), r.getEmail());
+                case "Student" -> new Student(r.getUserId(), r.getName(), r.getEmail(), r.getCourse(), r.getYear());
+                case "Librarian" -> new Librarian(r.getUserId(), r.getName(), r.getEmail());
+                default -> null;
+            };
+            if (restored == null) {
+                System.out.println("Skipping checkpointed user " + r.getUserId() + " of unknown type " + r.getType());
+                continue;
+            }
+            if (!addUser(restored)) {
+                continue;
+            }
+            if (restored instanceof ChildUser) {
+                children.add(r);
+            }
+        }
+
+        // Guardians are linked once every user exists.
+        for (LoanCheckpoint.UserRecord r : children) {
+            if (findUser(r.getGuardianId()) instanceof AdultUser guardian) {
+                guardian.addChild((ChildUser) findUser(r.getUserId()));
+            }
+        }
+    }
+
+    /**
+     * Folds one replayed event into the table of open loans and counts it
+     * in the circulation statistics; a fine is added to its user's balance
+     * and advances its loan's charged-through day.
+     */
+    private void applyEvent(Map<Long, LoanJournal.Event> open, Map<Long, Integer> finedThrough,
+                            LoanJournal.Event event) {
+        switch (event.getType()) {
+            case BORROW -> {
+                open.put(event.getLoanId(), event);
+                stats.recordBorrow(event.getProductKey());
+            }
+            case RETURN -> {
+                LoanJournal.Event borrow = open.remove(event.getLoanId());
+                long startDay = event.getStartDay() != 0 || borrow == null ? event.getStartDay() : borrow.getDay();
+                stats.recordReturn(startDay, event.getDay());
+            }
+            case RENEW -> {
+                open.computeIfPresent(event.getLoanId(), (id, borrow) -> borrow.renewedBy(event));
+                stats.recordRenewal();
+            }
+            case FINE -> {
+                User user = findUser(event.getUserId());
+                if (user != null) {
+                    user.addFine(event.getAmount());
+                }
+                finedThrough.merge(event.getLoanId(), event.getDay(), Math::max);
+            }
+        }
+    }
+
+    /**
+     * Re-attaches recovered loans to their users, products and the ledger.
+     * <p>
+     * The journal records dates rather than terms, so a recovered loan
+     * takes the rules in force when the journal is opened.
+     * </p>
+     *
+     * @param recovered    borrow events of the loans still open, with current due dates
+     * @param finedThrough the last day fined per loan ID, for loans that have been fined
+     * @return the number of loans restored
+     */
+    private int restoreLoans(Iterable<LoanJournal.Event> recovered, Map<Long, Integer> finedThrough) {
+        int restored = 0;
+        for (LoanJournal.Event e : recovered) {
+            User user = findUser(e.getUserId());
+            Product product = findProduct(e.getProductKey());
+            if (user == null || product == null) {
+                System.out.println("Skipping recovered loan #" + e.getLoanId() + ": unknown "
+                        + (user == null ? "user " + e.getUserId() : "item " + ProductKey.format(e.getProductKey())));
+                continue;
+            }
+            Loan loan = new Loan(e.getLoanId(), user, product, policies.policy(user.getType(), product.getMediaType()),
+                    LocalDate.ofEpochDay(e.getDay()),
+                    LocalDate.ofEpochDay(e.getDueDay()), e.getRenewCount());
+            if (!user.restoreLoan(loan)) {
+                System.out.println("Skipping recovered loan #" + e.getLoanId() + ": item already on loan.");
+                continue;
+            }
+            loan.restoreFinedThrough(finedThrough.getOrDefault(e.getLoanId(), 0));
+            loans.add(loan);
+            dueDates.schedule(loan);
+            stats.loanOpened(product.getMediaType(), user.getType());
+            restored++;
+        }
+        return restored;
+    }
+
+    /**
+     * Appends an event to the journal, if one is open, and waits until it is durable.
+     *
+     * @param event the event to record
+     * @return {@code true} if recorded (or no journal is open)
+     */
+    private boolean record(LoanJournal.Event event) {
+        LoanJournal current = journal;
+        if (current == null) {
+            return true;
+        }
+        try {
+            current.append(event);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Could not record loan event: " + e.getMessage());
+            return false;
         }
     }
 
@@ -203,11 +1366,16 @@ public class LibrarySystem {
      */
     public void displayAllProducts() {
         System.out.println("\nAll Products:");
-        if (products.isEmpty()) {
-            System.out.println("No products loaded.");
-        } else {
-            // Display each product using its overridden getInfo() method.
-            products.forEach(p -> System.out.println(p.getInfo()));
+        long stamp = catalogLock.readLock();
+        try {
+            if (products.isEmpty()) {
+                System.out.println("No products loaded.");
+            } else {
+                // Display each product using its overridden getInfo() method.
+                products.forEach(p -> System.out.println(p.getInfo()));
+            }
+        } finally {
+            catalogLock.unlockRead(stamp);
         }
     }
 
@@ -216,21 +1384,22 @@ public class LibrarySystem {
      * <p>
      * For each {@link Loan}, the system prints loan information
      * followed by a due date reminder using the nested
-     * {@link Loan.Reminder} class.
+     * {@link Loan.Reminder} class. Each loan is printed as it is reached,
+     * so the listing never holds the whole ledger as text.
      * </p>
      */
     public void displayAllLoans() {
         System.out.println("\nAll Loans:");
-        if (loans.isEmpty()) {
+        LocalDate today = LocalDate.now();
+        boolean any = false;
+        for (Loan l : activeLoans()) {
+            System.out.println(l.getInfo());
+            // Use nested Reminder class to describe each loan's due status.
+            System.out.println(l.new Reminder().getMessage(today));
+            any = true;
+        }
+        if (!any) {
             System.out.println("No loans currently registered.");
-        } else {
-            for (Loan l : loans) {
-                System.out.println(l.getInfo());
-
-                // Use nested Reminder class to display due status.
-                Loan.Reminder reminder = l.new Reminder();
-                reminder.showReminder();
-            }
         }
     }
 
@@ -242,13 +1411,80 @@ public class LibrarySystem {
      * Removes a loan record that matches the given product and user.
      * <p>
      * Used when a product is returned or a user account is updated,
-     * ensuring system-wide consistency of loan records.
+     * ensuring system-wide consistency of loan records. The ledger is
+     * indexed by product key, so this is a constant-time removal.
      * </p>
      *
      * @param product the {@link Product} being returned
      * @param user    the {@link User} who borrowed the product
      */
     public void removeLoanRecord(Product product, User user) {
-        loans.removeIf(l -> l.getItem().equals(product) && l.getBorrower().equals(user));
+        loans.remove(product.getProductKey(), user.getUserId());
+    }
+
+    /**
+     * Returns the active loan of a product.
+     *
+     * @param productKey the packed product key
+     * @return the loan, or {@code null} if the product is not on loan
+     */
+    public Loan findLoan(long productKey) {
+        return loans.findByProduct(productKey);
+    }
+
+    /**
+     * Returns every active loan, ordered by loan ID.
+     *
+     * @return a copy of the loans recorded by the system
+     */
+    public List<Loan> getAllLoans() {
+        return loans.snapshot();
+    }
+
+    /**
+     * Returns a view of the active loans for streaming them, for example
+     * into a report.
+     * <p>
+     * Each iteration copies only one ledger stripe at a time (see
+     * {@link LoanLedger#iterator()}), so it runs in near-constant memory
+     * however many loans are active. Loans are not in ID order.
+     * </p>
+     *
+     * @return a reusable, weakly consistent view of the active loans
+     */
+    public Iterable<Loan> activeLoans() {
+        return loans::iterator;
+    }
+
+    /**
+     * Starts a parallel query over a snapshot of the active loans.
+     * <p>
+     * The loans are taken in ID order, so query results come out in the
+     * same order on every run.
+     * </p>
+     *
+     * @return a query over the active loans
+     */
+    public ParallelQuery<Loan> queryLoans() {
+        return ParallelQuery.of(loans.snapshot());
+    }
+
+    /**
+     * Starts a parallel query over a consistent copy of the catalogue.
+     *
+     * @return a query over all products, in catalogue order
+     */
+    public ParallelQuery<Product> queryProducts() {
+        return ParallelQuery.of(readCatalogue(() -> new ArrayList<>(products)));
+    }
+
+    /**
+     * Returns the active loans of a user, oldest first.
+     *
+     * @param user the borrower
+     * @return a copy of the user's loans recorded by the system
+     */
+    public List<Loan> getLoans(User user) {
+        return loans.loansOf(user.getUserId());
     }
 }
@@ -1,5 +1,7 @@
 package main.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
@@ -20,8 +22,19 @@ import java.time.temporal.ChronoUnit;
  */
 public class Loan {
 
+    /** Handle used to compare-and-set {@link #finedThroughDay}. */
+    private static final VarHandle FINED_THROUGH;
+
+    static {
+        try {
+            FINED_THROUGH = MethodHandles.lookup().findVarHandle(Loan.class, "finedThroughDay", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /** Unique identifier for this loan transaction. */
-    private int loanId;
+    private long loanId;
 
     /** The user who borrowed the product. */
     private User borrower;
@@ -41,6 +54,18 @@ public class Loan {
     /** The number of times this loan has been renewed. */
     private int renewCount;
 
+    /** Terms the loan was taken under; renewals and fines follow them. */
+    private final Policy policy;
+
+    /** Last day (epoch day) for which a fine has been charged; 0 if none. */
+    private volatile long finedThroughDay;
+
+    /** Wheel tracking this loan's due date, or {@code null} if not scheduled. */
+    volatile DueDateWheel wheel;
+
+    /** This loan's node in {@link #wheel}; guarded by the wheel. */
+    DueDateWheel.Entry wheelEntry;
+
     /**
      * Constructs a new {@code Loan} object using a policy to determine
      * due dates and renewal limits.
@@ -50,19 +75,50 @@ public class Loan {
      * @param item     the {@link Product} being borrowed
      * @param policy   the {@link Policy} defining loan rules (duration, renewals, fines)
      */
-    public Loan(int loanId, User borrower, Product item, Policy policy) {
+    public Loan(long loanId, User borrower, Product item, Policy policy) {
         this.loanId = loanId;
         this.borrower = borrower;
         this.item = item;
         this.startDate = LocalDate.now();
         this.dueDate = startDate.plusDays(policy.getLoanPeriod());
         this.renewCount = 0;
+        this.policy = policy;
+    }
+
+    /**
+     * Reconstructs an existing loan, for example while replaying the loan
+     * journal after a restart.
+     *
+     * @param loanId     the loan's original identifier
+     * @param borrower   the {@link User} who borrowed the product
+     * @param item       the borrowed {@link Product}
+     * @param policy     the {@link Policy} the loan was taken under
+     * @param startDate  the date the loan was created
+     * @param dueDate    the current due date
+     * @param renewCount the number of renewals already made
+     */
+    public Loan(long loanId, User borrower, Product item, Policy policy,
+                LocalDate startDate, LocalDate dueDate, int renewCount) {
+        this.loanId = loanId;
+        this.borrower = borrower;
+        this.item = item;
+        this.startDate = startDate;
+        this.dueDate = dueDate;
+        this.renewCount = renewCount;
+        this.policy = policy;
     }
 
     // -------------------------------------------
     // GETTERS AND BASIC OPERATIONS
     // -------------------------------------------
 
+    /**
+     * Returns the unique identifier of this loan.
+     *
+     * @return the loan ID
+     */
+    public long getLoanId() { return loanId; }
+
     /**
      * Returns the product associated with this loan.
      *
@@ -70,6 +126,13 @@ public class Loan {
      */
     public Product getItem() { return item; }
 
+    /**
+     * Returns the packed key of the borrowed product.
+     *
+     * @return the product key (see {@link ProductKey})
+     */
+    public long getProductKey() { return item.getProductKey(); }
+
     /**
      * Returns the user who borrowed the product.
      *
@@ -77,12 +140,42 @@ public class Loan {
      */
     public User getBorrower() { return borrower; }
 
+    /**
+     * Returns the date the loan was created.
+     *
+     * @return the start date
+     */
+    public LocalDate getStartDate() { return startDate; }
+
+    /**
+     * Returns the date the item is due back.
+     *
+     * @return the due date
+     */
+    public LocalDate getDueDate() { return dueDate; }
+
+    /**
+     * Returns how many times this loan has been renewed.
+     *
+     * @return the renewal count
+     */
+    public int getRenewCount() { return renewCount; }
+
     /**
      * Sets the return date for the loan when the product is returned.
+     * <p>
+     * A returned loan is no longer tracked by its {@link DueDateWheel}.
+     * </p>
      *
      * @param date the {@link LocalDate} when the item was returned
      */
-    public void setReturnDate(LocalDate date) { this.returnDate = date; }
+    public void setReturnDate(LocalDate date) {
+        this.returnDate = date;
+        DueDateWheel scheduled = wheel;
+        if (scheduled != null) {
+            scheduled.cancel(this);
+        }
+    }
 
     /**
      * Checks if the loan is overdue relative to the provided date.
@@ -92,6 +185,79 @@ public class Loan {
      */
     public boolean isOverdue(LocalDate date) { return dueDate.isBefore(date); }
 
+    /**
+     * Returns the fine per overdue day in minor units.
+     *
+     * @return the daily fine in pence
+     */
+    public long getDailyFineMinor() { return policy.getDailyFineMinor(); }
+
+    /**
+     * Returns the terms the loan was taken under.
+     *
+     * @return the {@link Policy} fixed at checkout
+     */
+    public Policy getPolicy() { return policy; }
+
+    /**
+     * Charges the overdue days up to a date that have not been charged yet.
+     * <p>
+     * Each overdue day is charged exactly once, however many threads
+     * accrue the same loan: the charged-through day only moves forward,
+     * by compare-and-set. Days after a renewal's new due date are charged
+     * only once that date has passed.
+     * </p>
+     *
+     * @param through the last day to charge (today, or the return date)
+     * @return the amount newly charged, in minor units
+     */
+    long accrueFine(LocalDate through) {
+        long day = through.toEpochDay();
+        while (true) {
+            long charged = finedThroughDay;
+            long from = Math.max(charged, dueDate.toEpochDay());
+            if (day <= from) {
+                return 0;
+            }
+            if (FINED_THROUGH.compareAndSet(this, charged, day)) {
+                return Math.multiplyExact(day - from, policy.getDailyFineMinor());
+            }
+        }
+    }
+
+    /**
+     * Takes back a charge from {@link #accrueFine(LocalDate)} that could
+     * not be recorded, so its days are charged again next time. Nothing
+     * changes if a later charge has moved past it meanwhile.
+     *
+     * @param through     the date the charge ran to
+     * @param amountMinor the amount it returned
+     */
+    void refundFine(LocalDate through, long amountMinor) {
+        long day = through.toEpochDay();
+        FINED_THROUGH.compareAndSet(this, day, day - amountMinor / policy.getDailyFineMinor());
+    }
+
+    /**
+     * Returns the last day a fine has been charged for.
+     *
+     * @return the epoch day, or 0 if the loan has not been fined
+     */
+    public long getFinedThroughDay() { return finedThroughDay; }
+
+    /**
+     * Moves the charged-through day forward to a recovered value; an
+     * earlier day is ignored.
+     *
+     * @param day the epoch day recovered from a checkpoint or the journal
+     */
+    void restoreFinedThrough(long day) {
+        long current;
+        while ((current = finedThroughDay) < day && !FINED_THROUGH.compareAndSet(this, current, day)) {
+            Thread.onSpinWait();
+        }
+    }
+
     // -------------------------------------------
     // RENEWAL LOGIC
     // -------------------------------------------
@@ -100,7 +266,8 @@ public class Loan {
      * Attempts to renew the loan according to the defined policy.
      * <p>
      * Each renewal extends the due date by the loan period defined in
-     * {@link Policy}, up to the maximum number of renewals allowed.
+     * {@link Policy}, up to the maximum number of renewals allowed. A
+     * loan tracked by a {@link DueDateWheel} moves to its new due date.
      * </p>
      *
      * @param policy the {@link Policy} specifying renewal limits
@@ -108,13 +275,49 @@ public class Loan {
      *         {@code false} if the maximum renewals have been reached
      */
     public boolean renew(Policy policy) {
+        LocalDate renewed = renewedDueDate(policy);
+        if (renewed == null) {
+            return false;
+        }
+        applyRenewal(renewed, renewCount + 1);
+        return true;
+    }
+
+    /**
+     * Works out the due date a renewal under the loan's own terms would
+     * set, without changing the loan.
+     *
+     * @return the new due date, or {@code null} if no renewals are left
+     */
+    LocalDate renewedDueDate() {
+        return renewedDueDate(policy);
+    }
+
+    /**
+     * Works out the due date a renewal would set, without changing the loan.
+     *
+     * @param policy the {@link Policy} specifying renewal limits
+     * @return the new due date, or {@code null} if no renewals are left
+     */
+    LocalDate renewedDueDate(Policy policy) {
         // Only allow renewal if current count is below the allowed maximum.
-        if (renewCount < policy.getMaxRenewals()) {
-            dueDate = dueDate.plusDays(policy.getLoanPeriod());
-            renewCount++;
-            return true;
+        return renewCount < policy.getMaxRenewals() ? dueDate.plusDays(policy.getLoanPeriod()) : null;
+    }
+
+    /**
+     * Applies a renewal worked out by {@link #renewedDueDate(Policy)},
+     * moving the loan to its new slot in the due-date wheel.
+     *
+     * @param newDueDate    the new due date
+     * @param newRenewCount the renewal count including this renewal
+     */
+    void applyRenewal(LocalDate newDueDate, int newRenewCount) {
+        dueDate = newDueDate;
+        renewCount = newRenewCount;
+        DueDateWheel scheduled = wheel;
+        if (scheduled != null) {
+            scheduled.schedule(this);
         }
-        return false;
     }
 
     // -------------------------------------------
@@ -133,6 +336,7 @@ public class Loan {
 
         // Combine all key loan information into one readable line.
         return "Loan #" + loanId +
+                " | Item: " + ProductKey.format(item.getProductKey()) +
                 " | Type: " + productType +
                 " | Title: " + item.getTitle() +
                 " | Borrower: " + borrower.getName() + " [" + userType + "]" +
@@ -155,27 +359,34 @@ public class Loan {
     public class Reminder {
 
         /**
-         * Displays a reminder message showing how many days remain
+         * Builds a reminder message showing how many days remain
          * until the item is due, or how many days overdue it is.
          * <p>
          * This method uses {@link ChronoUnit#DAYS} to calculate
-         * the number of days between the current date and the due date.
+         * the number of days between the given date and the due date.
          * </p>
+         *
+         * @param today the date the reminder is written for
+         * @return the reminder text
          */
-        public void showReminder() {
-            LocalDate today = LocalDate.now();
+        public String getMessage(LocalDate today) {
             long daysLeft = ChronoUnit.DAYS.between(today, dueDate);
 
-            // Display appropriate message based on the loan status.
+            // Choose the appropriate message based on the loan status.
             if (daysLeft > 0) {
-                System.out.println("Reminder: " + daysLeft +
-                        " day(s) left until '" + item.getTitle() + "' is due.");
+                return "Reminder: " + daysLeft + " day(s) left until '" + item.getTitle() + "' is due.";
             } else if (daysLeft == 0) {
-                System.out.println("Reminder: '" + item.getTitle() + "' is due today!");
+                return "Reminder: '" + item.getTitle() + "' is due today!";
             } else {
-                System.out.println("Reminder: '" + item.getTitle() +
-                        "' is overdue by " + Math.abs(daysLeft) + " day(s).");
+                return "Reminder: '" + item.getTitle() + "' is overdue by " + Math.abs(daysLeft) + " day(s).";
             }
         }
+
+        /**
+         * Displays a reminder message for today on the console.
+         */
+        public void showReminder() {
+            System.out.println(getMessage(LocalDate.now()));
+        }
     }
 }
@@ -0,0 +1,251 @@
+package main.model;
+
+import main.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Register of active loans, indexed by product key and by borrower.
+ * <p>
+ * A product can be on loan at most once, so the product index maps each
+ * product key straight to its loan. The user index maps a user ID to an
+ * insertion-ordered set of that user's loans. Recording and removing a
+ * loan are therefore constant-time hash operations, however many loans
+ * are active, and a user's loans are listed in the order they were taken.
+ * </p>
+ * <p>
+ * Both indexes are split into lock stripes chosen by key, so concurrent
+ * checkouts of different products by different users rarely contend. An
+ * operation holds at most one stripe lock at a time; between its two
+ * steps a loan may briefly be visible in one index but not yet the other.
+ * </p>
+ */
+public class LoanLedger {
+
+    /** Number of lock stripes per index; a power of two. */
+    private static final int STRIPES = 32;
+
+    /** Product-key stripes, each guarding its own map. */
+    private final ProductStripe[] productStripes = new ProductStripe[STRIPES];
+
+    /** User-ID stripes, each guarding its own map. */
+    private final UserStripe[] userStripes = new UserStripe[STRIPES];
+
+    /** Number of loans recorded. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Constructs an empty ledger.
+     */
+    public LoanLedger() {
+        for (int i = 0; i < STRIPES; i++) {
+            productStripes[i] = new ProductStripe();
+            userStripes[i] = new UserStripe();
+        }
+    }
+
+    // -------------------------------------------
+    // UPDATES
+    // -------------------------------------------
+
+    /**
+     * Records an active loan.
+     *
+     * @param loan the loan to record
+     * @return {@code true} if recorded; {@code false} if its product is
+     *         already on loan
+     */
+    public boolean add(Loan loan) {
+        ProductStripe products = productStripe(loan.getProductKey());
+        synchronized (products) {
+            if (products.loans.putIfAbsent(loan.getProductKey(), loan) != null) {
+                return false;
+            }
+        }
+        int userId = loan.getBorrower().getUserId();
+        UserStripe users = userStripe(userId);
+        synchronized (users) {
+            LinkedHashSet<Loan> userLoans = users.loans.get(userId);
+            if (userLoans == null) {
+                userLoans = new LinkedHashSet<>();
+                users.loans.put(userId, userLoans);
+            }
+            userLoans.add(loan);
+        }
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes the active loan of a product if it is held by the given user.
+     *
+     * @param productKey the packed key of the borrowed product
+     * @param userId     the ID of the expected borrower
+     * @return the removed loan, or {@code null} if the product is not on
+     *         loan to that user
+     */
+    public Loan remove(long productKey, int userId) {
+        ProductStripe products = productStripe(productKey);
+        Loan loan;
+        synchronized (products) {
+            loan = products.loans.get(productKey);
+            if (loan == null || loan.getBorrower().getUserId() != userId) {
+                return null;
+            }
+            products.loans.remove(productKey);
+        }
+        UserStripe users = userStripe(userId);
+        synchronized (users) {
+            LinkedHashSet<Loan> userLoans = users.loans.get(userId);
+            if (userLoans != null) {
+                userLoans.remove(loan);
+                if (userLoans.isEmpty()) {
+                    users.loans.remove(userId);
+                }
+            }
+        }
+        size.decrementAndGet();
+        return loan;
+    }
+
+    // -------------------------------------------
+    // QUERIES
+    // -------------------------------------------
+
+    /**
+     * Returns the active loan of a product.
+     *
+     * @param productKey the packed product key
+     * @return the loan, or {@code null} if the product is not on loan
+     */
+    public Loan findByProduct(long productKey) {
+        ProductStripe products = productStripe(productKey);
+        synchronized (products) {
+            return products.loans.get(productKey);
+        }
+    }
+
+    /**
+     * Returns a copy of a user's active loans, oldest first.
+     *
+     * @param userId the borrower's ID
+     * @return the user's loans in the order they were recorded
+     */
+    public List<Loan> loansOf(int userId) {
+        UserStripe users = userStripe(userId);
+        synchronized (users) {
+            LinkedHashSet<Loan> userLoans = users.loans.get(userId);
+            return userLoans == null ? new ArrayList<>() : new ArrayList<>(userLoans);
+        }
+    }
+
+    /**
+     * Returns a copy of every active loan, ordered by loan ID.
+     *
+     * @return all recorded loans
+     */
+    public List<Loan> snapshot() {
+        List<Loan> all = new ArrayList<>(Math.max(0, size.get()));
+        for (ProductStripe products : productStripes) {
+            synchronized (products) {
+                products.loans.forEach((key, loan) -> all.add(loan));
+            }
+        }
+        all.sort(Comparator.comparingLong(Loan::getLoanId));
+        return all;
+    }
+
+    /**
+     * Returns an iterator over the active loans that copies one stripe at a time.
+     * <p>
+     * Unlike {@link #snapshot()}, this never holds more than one stripe's
+     * loans, so streaming every loan to a slow destination needs memory
+     * for a few thousand references rather than for the whole ledger, and
+     * no lock is held while the caller processes a loan. Loans come in
+     * stripe order, not by ID. The iteration is weakly consistent: a loan
+     * recorded or removed while it runs may or may not be visited.
+     * </p>
+     *
+     * @return an iterator over the active loans
+     */
+    public Iterator<Loan> iterator() {
+        return new Iterator<>() {
+            private final List<Loan> batch = new ArrayList<>();
+            private int stripe;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == batch.size()) {
+                    if (stripe == STRIPES) {
+                        return false;
+                    }
+                    batch.clear();
+                    next = 0;
+                    ProductStripe products = productStripes[stripe++];
+                    synchronized (products) {
+                        products.loans.forEach((key, loan) -> batch.add(loan));
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Loan next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(next++);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of active loans.
+     *
+     * @return the loan count
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Checks whether no loans are recorded.
+     *
+     * @return {@code true} if the ledger is empty
+     */
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /** Returns the stripe responsible for a product key. */
+    private ProductStripe productStripe(long productKey) {
+        long h = productKey * 0x9E3779B97F4A7C15L;
+        return productStripes[(int) (h >>> 59) & (STRIPES - 1)];
+    }
+
+    /** Returns the stripe responsible for a user ID. */
+    private UserStripe userStripe(int userId) {
+        return userStripes[(userId * 0x9E3779B9 >>> 27) & (STRIPES - 1)];
+    }
+
+    /** Loans keyed by product, guarded by the stripe's monitor. */
+    private static final class ProductStripe {
+        private final LongObjectMap<Loan> loans = new LongObjectMap<>();
+    }
+
+    /** Loans grouped by borrower, guarded by the stripe's monitor. */
+    private static final class UserStripe {
+        private final LongObjectMap<LinkedHashSet<Loan>> loans = new LongObjectMap<>();
+    }
+}
@@ -0,0 +1,109 @@
+package main.model;
+
+/**
+ * Enumerates the kinds of media held by the library.
+ * <p>
+ * Each media type has a small numeric code that is packed into
+ * product keys (see {@link ProductKey}) and a display name that matches
+ * the simple class name of the corresponding {@link Product} subclass.
+ * Codes start at {@code 1} so that a packed key can never be mistaken
+ * for a bare per-file ID.
+ * </p>
+ */
+public enum MediaType {
+
+    /** Printed or digital books, loaded from {@code books.csv}. */
+    BOOK(1, "Book"),
+
+    /** Music compact discs, loaded from {@code cds.csv}. */
+    CD(2, "CD"),
+
+    /** Films on DVD, loaded from {@code dvds.csv}. */
+    DVD(3, "DVD"),
+
+    /** Narrated audiobooks, loaded from {@code audiobooks.csv}. */
+    AUDIOBOOK(4, "Audiobook");
+
+    /** Cached copy of {@link #values()} to avoid allocating on every lookup. */
+    private static final MediaType[] VALUES = values();
+
+    /** Numeric code stored in the high half of a product key. */
+    private final int code;
+
+    /** Human-readable name, identical to the product subclass name. */
+    private final String displayName;
+
+    /**
+     * Constructs a media type constant.
+     *
+     * @param code        numeric code used in product keys
+     * @param displayName human-readable name of the media type
+     */
+    MediaType(int code, String displayName) {
+        this.code = code;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Returns the numeric code used when packing product keys.
+     *
+     * @return the media type code
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Returns the human-readable name of this media type.
+     *
+     * @return the display name (e.g., "Book", "DVD")
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Returns all media types without allocating a new array.
+     * <p>
+     * Callers must not modify the returned array.
+     * </p>
+     *
+     * @return the shared array of media types in declaration order
+     */
+    static MediaType[] all() {
+        return VALUES;
+    }
+
+    /**
+     * Resolves a media type from its numeric code.
+     *
+     * @param code the media type code
+     * @return the matching media type, or {@code null} if the code is unknown
+     */
+    public static MediaType fromCode(int code) {
+        for (MediaType type : VALUES) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves a media type from its display name, ignoring case.
+     *
+     * @param name the display name or constant name (e.g., "dvd", "Audiobook")
+     * @return the matching media type, or {@code null} if none matches
+     */
+    public static MediaType fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (MediaType type : VALUES) {
+            if (type.displayName.equalsIgnoreCase(name) || type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
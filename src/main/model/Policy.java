@@ -1,5 +1,8 @@
 package main.model;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
 /**
  * Represents the borrowing policy applied to all library items.
  * <p>
@@ -12,6 +15,11 @@ package main.model;
  * storing policy details in private fields accessible only through
  * getter methods.
  * </p>
+ * <p>
+ * Fines are charged in whole minor units (pence). The daily fine given as
+ * a decimal amount is converted once, exactly, when the policy is
+ * created, so accruing fines never involves floating-point arithmetic.
+ * </p>
  */
 public class Policy {
 
@@ -24,6 +32,9 @@ public class Policy {
     /** The fine charged per day for overdue items. */
     private double dailyFine;
 
+    /** The fine charged per overdue day, in minor units (pence). */
+    private long dailyFineMinor;
+
     /**
      * Constructs a new {@code Policy} with the specified parameters.
      *
@@ -35,6 +46,9 @@ public class Policy {
         this.loanPeriod = loanPeriod;
         this.maxRenewals = maxRenewals;
         this.dailyFine = dailyFine;
+        // BigDecimal.valueOf uses the shortest decimal form, so 0.1 becomes exactly 10 pence.
+        this.dailyFineMinor = BigDecimal.valueOf(dailyFine).movePointRight(2)
+                .setScale(0, RoundingMode.HALF_UP).longValueExact();
     }
 
     /**
@@ -63,4 +77,13 @@ public class Policy {
     public double getDailyFine() {
         return dailyFine;
     }
+
+    /**
+     * Returns the fine charged per overdue day in minor units.
+     *
+     * @return the daily fine in pence
+     */
+    public long getDailyFineMinor() {
+        return dailyFineMinor;
+    }
 }
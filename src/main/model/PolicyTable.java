@@ -0,0 +1,359 @@
+package main.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Immutable lookup table of the borrowing rules for every combination of
+ * {@link UserType} and {@link MediaType}.
+ * <p>
+ * The table holds, per role, the loan limit and the categories the role
+ * may borrow, and per role and category the {@link Policy} (loan period,
+ * renewals and daily fine) of new loans. All rules are compiled once into
+ * flat arrays indexed by the enum ordinals, so a lookup during a borrow,
+ * renewal or listing is an array access and allocates nothing.
+ * </p>
+ * <p>
+ * Rules come from built-in defaults and may be overridden by a properties
+ * file. Keys have the form {@code <role>.<setting>} or
+ * {@code <role>.<category>.<setting>}, where the role is a lower-case
+ * {@link UserType} name or {@code default}:
+ * <pre>
+ *     default.dailyFine=0.5
+ *     student.loanPeriod=21
+ *     student.dvd.loanPeriod=7
+ *     student.limit=5
+ *     student.categories=BOOK,AUDIOBOOK
+ * </pre>
+ * The settings {@code loanPeriod}, {@code renewals} and {@code dailyFine}
+ * are resolved from the most specific key present: role and category,
+ * then role, then the built-in role rule, then {@code default}, then the
+ * base policy. {@code limit} (a number or {@code unlimited}) and
+ * {@code categories} apply to a role as a whole.
+ * </p>
+ * <p>
+ * A table never changes once built; reloading the rules builds a new
+ * table and swaps the reference (see
+ * {@link LibrarySystem#reloadPolicies(Path)}), so readers never see a
+ * half-updated rule set.
+ * </p>
+ */
+public final class PolicyTable {
+
+    /** Prefix of the keys that apply to every role. */
+    private static final String DEFAULT_ROLE = "default";
+
+    /** Value of {@code limit} meaning the role may hold any number of loans. */
+    private static final String UNLIMITED = "unlimited";
+
+    /** Built-in role rules, in the same form as the configuration file. */
+    private static final Properties BUILT_IN = new Properties();
+
+    static {
+        BUILT_IN.setProperty("adult.limit", "10");
+        BUILT_IN.setProperty("adult.categories", "BOOK,CD,DVD,AUDIOBOOK");
+        BUILT_IN.setProperty("student.limit", "5");
+        BUILT_IN.setProperty("student.loanPeriod", "21");
+        BUILT_IN.setProperty("student.renewals", "1");
+        BUILT_IN.setProperty("student.categories", "BOOK,AUDIOBOOK");
+        BUILT_IN.setProperty("child.limit", "3");
+        BUILT_IN.setProperty("child.loanPeriod", "7");
+        BUILT_IN.setProperty("child.renewals", "0");
+        BUILT_IN.setProperty("child.categories", "BOOK");
+        BUILT_IN.setProperty("librarian.limit", UNLIMITED);
+        BUILT_IN.setProperty("librarian.categories", "BOOK,CD,DVD,AUDIOBOOK");
+    }
+
+    /** Number of media types, the row width of {@link #policies}. */
+    private static final int MEDIA_TYPES = MediaType.all().length;
+
+    /** Table compiled by the last call to {@link #of(Policy)}. */
+    private static volatile PolicyTable lastCompiled;
+
+    /** The base policy the table was compiled from. */
+    private final Policy base;
+
+    /** Loan terms, indexed by {@code role * MEDIA_TYPES + category}. */
+    private final Policy[] policies;
+
+    /** Loan limit of each role. */
+    private final int[] loanLimits;
+
+    /** Bit mask of the category ordinals each role may borrow. */
+    private final int[] permitted;
+
+    /** Read-only list of the categories each role may borrow. */
+    private final List<List<MediaType>> categories;
+
+    /**
+     * Compiles the built-in rules and the given overrides.
+     *
+     * @param rules the configured rules; may be empty
+     * @param base  the library's base policy
+     */
+    private PolicyTable(Properties rules, Policy base) {
+        validate(rules);
+        UserType[] roles = UserType.all();
+        this.base = base;
+        this.policies = new Policy[roles.length * MEDIA_TYPES];
+        this.loanLimits = new int[roles.length];
+        this.permitted = new int[roles.length];
+        List<List<MediaType>> lists = new ArrayList<>(roles.length);
+
+        for (UserType role : roles) {
+            String prefix = role.name().toLowerCase();
+            int r = role.ordinal();
+            for (MediaType category : MediaType.all()) {
+                String cell = prefix + "." + category.name().toLowerCase();
+                int loanPeriod = parseInt(setting(rules, prefix, cell, "loanPeriod"), base.getLoanPeriod(), 1);
+                int renewals = parseInt(setting(rules, prefix, cell, "renewals"), base.getMaxRenewals(), 0);
+                double fine = parseFine(setting(rules, prefix, cell, "dailyFine"), base.getDailyFine());
+                policies[r * MEDIA_TYPES + category.ordinal()] = new Policy(loanPeriod, renewals, fine);
+            }
+
+            String limit = roleSetting(rules, prefix + ".limit");
+            loanLimits[r] = limit == null || limit.equals(UNLIMITED)
+                    ? Integer.MAX_VALUE : parseInt(limit, 0, 0);
+
+            List<MediaType> allowed = new ArrayList<>();
+            String names = roleSetting(rules, prefix + ".categories");
+            for (String name : names == null ? new String[0] : names.split(",")) {
+                if (name.isBlank()) {
+                    continue;
+                }
+                MediaType category = parseCategory(name.trim().toUpperCase());
+                if ((permitted[r] & bit(category)) == 0) {
+                    permitted[r] |= bit(category);
+                    allowed.add(category);
+                }
+            }
+            allowed.sort(null);
+            lists.add(Collections.unmodifiableList(allowed));
+        }
+        this.categories = Collections.unmodifiableList(lists);
+    }
+
+    // -------------------------------------------
+    // FACTORIES
+    // -------------------------------------------
+
+    /**
+     * Compiles the built-in rules on top of a base policy.
+     *
+     * @param base the library's base policy
+     * @return the compiled table
+     */
+    public static PolicyTable defaults(Policy base) {
+        return new PolicyTable(new Properties(), base);
+    }
+
+    /**
+     * Compiles the built-in rules overridden by the given ones.
+     *
+     * @param rules the configured rules
+     * @param base  the library's base policy
+     * @return the compiled table
+     * @throws IllegalArgumentException if a key or value is not valid
+     */
+    public static PolicyTable compile(Properties rules, Policy base) {
+        return new PolicyTable(rules, base);
+    }
+
+    /**
+     * Reads a rules file and compiles it.
+     *
+     * @param file the properties file (UTF-8)
+     * @param base the library's base policy
+     * @return the compiled table
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a key or value is not valid
+     */
+    public static PolicyTable load(Path file, Policy base) throws IOException {
+        Properties rules = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            rules.load(in);
+        }
+        return compile(rules, base);
+    }
+
+    /**
+     * Returns the built-in rules for a base policy, reusing the table
+     * compiled for the same policy object last time.
+     * <p>
+     * Used by {@link User#borrowProduct(Product, Policy)}, whose callers
+     * hold a policy rather than a table.
+     * </p>
+     *
+     * @param base the library's base policy
+     * @return the compiled table
+     */
+    static PolicyTable of(Policy base) {
+        PolicyTable table = lastCompiled;
+        if (table == null || table.base != base) {
+            table = defaults(base);
+            lastCompiled = table;
+        }
+        return table;
+    }
+
+    // -------------------------------------------
+    // LOOKUPS
+    // -------------------------------------------
+
+    /**
+     * Returns the loan terms for a role borrowing from a category.
+     *
+     * @param type     the borrower's role
+     * @param category the item's media type
+     * @return the policy of the loan
+     */
+    public Policy policy(UserType type, MediaType category) {
+        return policies[type.ordinal() * MEDIA_TYPES + category.ordinal()];
+    }
+
+    /**
+     * Returns how many loans a role may hold at once.
+     *
+     * @param type the role
+     * @return the loan limit; {@link Integer#MAX_VALUE} if unlimited
+     */
+    public int loanLimit(UserType type) {
+        return loanLimits[type.ordinal()];
+    }
+
+    /**
+     * Checks whether a role may borrow from a category.
+     *
+     * @param type     the role
+     * @param category the media type
+     * @return {@code true} if permitted
+     */
+    public boolean permits(UserType type, MediaType category) {
+        return (permitted[type.ordinal()] & bit(category)) != 0;
+    }
+
+    /**
+     * Returns the categories a role may borrow, in {@link MediaType} order.
+     *
+     * @param type the role
+     * @return a read-only list shared by all callers
+     */
+    public List<MediaType> categories(UserType type) {
+        return categories.get(type.ordinal());
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /** Resolves a loan-term setting from the most specific key present. */
+    private static String setting(Properties rules, String role, String cell, String name) {
+        String value = rules.getProperty(cell + "." + name);
+        if (value == null) {
+            value = roleSetting(rules, role + "." + name);
+        }
+        if (value == null) {
+            value = rules.getProperty(DEFAULT_ROLE + "." + name);
+        }
+        return value;
+    }
+
+    /** Resolves a role-level setting from the configuration, then the built-in rules. */
+    private static String roleSetting(Properties rules, String key) {
+        String value = rules.getProperty(key);
+        return value != null ? value : BUILT_IN.getProperty(key);
+    }
+
+    /** Rejects keys that would otherwise be silently ignored. */
+    private static void validate(Properties rules) {
+        for (String key : rules.stringPropertyNames()) {
+            String[] parts = key.split("\\.");
+            boolean valid = parts.length == 2 || parts.length == 3;
+            if (valid && !parts[0].equals(DEFAULT_ROLE)) {
+                valid = parseRole(parts[0]) != null;
+            }
+            String name = parts[parts.length - 1];
+            boolean roleWide = name.equals("limit") || name.equals("categories");
+            boolean loanTerm = name.equals("loanPeriod") || name.equals("renewals") || name.equals("dailyFine");
+            if (roleWide) {
+                valid &= parts.length == 2 && !parts[0].equals(DEFAULT_ROLE);
+            } else if (loanTerm) {
+                if (parts.length == 3) {
+                    valid &= !parts[0].equals(DEFAULT_ROLE);
+                    parseCategory(parts[1].toUpperCase());
+                }
+            } else {
+                valid = false;
+            }
+            if (!valid) {
+                throw new IllegalArgumentException("Unknown policy rule: " + key);
+            }
+        }
+    }
+
+    /** Resolves a lower-case role name, or returns {@code null}. */
+    private static UserType parseRole(String name) {
+        for (UserType type : UserType.all()) {
+            if (type.name().toLowerCase().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /** Resolves a media type constant name. */
+    private static MediaType parseCategory(String name) {
+        for (MediaType category : MediaType.all()) {
+            if (category.name().equals(name)) {
+                return category;
+            }
+        }
+        throw new IllegalArgumentException("Unknown category in policy rules: " + name);
+    }
+
+    /** Parses a whole-number setting, or returns the fallback if absent. */
+    private static int parseInt(String value, int fallback, int min) {
+        if (value == null) {
+            return fallback;
+        }
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in policy rules: " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException("Policy value must be at least " + min + ": " + value);
+        }
+        return parsed;
+    }
+
+    /** Parses a daily fine, or returns the fallback if absent. */
+    private static double parseFine(String value, double fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid fine in policy rules: " + value);
+        }
+        if (!(parsed >= 0)) {
+            throw new IllegalArgumentException("Fine must not be negative: " + value);
+        }
+        return parsed;
+    }
+
+    /** Returns the permission bit of a category. */
+    private static int bit(MediaType category) {
+        return 1 << category.ordinal();
+    }
+}
@@ -1,5 +1,8 @@
 package main.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * Abstract base class representing a general product in the library system.
  * <p>
@@ -17,9 +20,26 @@ package main.model;
  *   <li><b>Polymorphism:</b> Enables overriding of {@link #getInfo()} to display item-specific data.</li>
  * </ul>
  * </p>
+ * <p>
+ * Availability is a volatile flag that borrowing threads change with
+ * {@link #tryReserve()} and {@link #release()}, both of which are a single
+ * compare-and-set. Of several threads racing to check out the same item,
+ * exactly one succeeds, without any lock being taken.
+ * </p>
  */
 public abstract class Product implements Borrowable {
 
+    /** Handle used to compare-and-set {@link #available}. */
+    private static final VarHandle AVAILABLE;
+
+    static {
+        try {
+            AVAILABLE = MethodHandles.lookup().findVarHandle(Product.class, "available", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /** Unique identifier for the product. */
     protected int productId;
 
@@ -27,7 +47,13 @@ public abstract class Product implements Borrowable {
     protected String title;
 
     /** Indicates whether the product is currently available for borrowing. */
-    protected boolean available;
+    protected volatile boolean available;
+
+    /** Category index this product is registered in, or {@code null} if none. */
+    volatile CategoryIndex categoryIndex;
+
+    /** Position of this product within its category bucket, or {@code -1}. */
+    volatile int categorySlot = -1;
 
     /**
      * Constructs a new {@code Product} with a unique ID and title.
@@ -57,6 +83,35 @@ public abstract class Product implements Borrowable {
         return productId;
     }
 
+    /**
+     * Returns the name of the person primarily credited for this product
+     * (e.g., a book's author or a DVD's director).
+     *
+     * @return the creator's name
+     */
+    public abstract String getCreator();
+
+    /**
+     * Returns the media type of this product.
+     * <p>
+     * Each subclass reports its own type, which is used to build the
+     * product key and to group products by category.
+     * </p>
+     *
+     * @return the {@link MediaType} of this product
+     */
+    public abstract MediaType getMediaType();
+
+    /**
+     * Returns the packed key that identifies this product across all
+     * catalogues, combining its media type and per-file ID.
+     *
+     * @return the product key (see {@link ProductKey})
+     */
+    public long getProductKey() {
+        return ProductKey.of(getMediaType(), productId);
+    }
+
     /**
      * Retrieves the product title.
      *
@@ -89,12 +144,60 @@ public abstract class Product implements Borrowable {
     @Override
     public void setAvailable(boolean available) {
         this.available = available;
+        notifyCategory();
+    }
+
+    /**
+     * Atomically marks this product as checked out if it is available.
+     *
+     * @return {@code true} if the caller reserved the product; {@code false}
+     *         if it was already checked out
+     */
+    public boolean tryReserve() {
+        if (!AVAILABLE.compareAndSet(this, true, false)) {
+            return false;
+        }
+        notifyCategory();
+        return true;
+    }
+
+    /**
+     * Atomically marks this product as available if it is checked out.
+     *
+     * @return {@code true} if the product was checked out and is now
+     *         available; {@code false} if it was already available
+     */
+    public boolean release() {
+        if (!AVAILABLE.compareAndSet(this, false, true)) {
+            return false;
+        }
+        notifyCategory();
+        return true;
+    }
+
+    /** Keeps the category availability bitset in step with the flag. */
+    private void notifyCategory() {
+        CategoryIndex index = categoryIndex;
+        if (index != null) {
+            index.onAvailabilityChanged(this);
+        }
+    }
+
+    /**
+     * Records the category bucket and position this product occupies.
+     *
+     * @param index the category index holding this product, or {@code null}
+     * @param slot  the position within the bucket, or {@code -1}
+     */
+    void attachToCategory(CategoryIndex index, int slot) {
+        this.categoryIndex = index;
+        this.categorySlot = slot;
     }
 
     /**
      * Returns formatted information about this product.
      * <p>
-     * The string includes the product’s ID, title, and current availability
+     * The string includes the product’s key, title, and current availability
      * status. This method can be overridden in subclasses to add
      * type-specific details (e.g., author, director, composer).
      * </p>
@@ -104,7 +207,7 @@ public abstract class Product implements Borrowable {
     @Override
     public String getInfo() {
         String status = available ? "Available" : "Checked Out";
-        return "ID: " + productId + " | Title: " + title + " | Status: " + status;
+        return "ID: " + ProductKey.format(getProductKey()) + " | Title: " + title + " | Status: " + status;
     }
 
     /**
@@ -0,0 +1,97 @@
+package main.model;
+
+/**
+ * Static helpers for the packed {@code long} keys that identify products.
+ * <p>
+ * Each CSV file numbers its rows from 1, so a per-file ID alone is
+ * ambiguous once several catalogues are loaded into one system. A product
+ * key combines the {@link MediaType} code (high 32 bits) with the per-file
+ * ID (low 32 bits) into a single primitive, which can be compared, hashed
+ * and stored without allocating any objects.
+ * </p>
+ * <p>
+ * Keys are written for people as {@code TYPE-ID}, for example
+ * {@code DVD-2} or {@code BOOK-17}.
+ * </p>
+ */
+public final class ProductKey {
+
+    /** Value returned when a key cannot be built or parsed; never matches a product. */
+    public static final long INVALID = 0L;
+
+    /** Private constructor to prevent instantiation of this utility class. */
+    private ProductKey() {
+    }
+
+    /**
+     * Packs a media type and per-file ID into a product key.
+     *
+     * @param type the media type of the product
+     * @param id   the product's ID within its own catalogue file
+     * @return the packed product key
+     */
+    public static long of(MediaType type, int id) {
+        return ((long) type.getCode() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Extracts the media type from a product key.
+     *
+     * @param key the packed product key
+     * @return the media type, or {@code null} if the key holds an unknown code
+     */
+    public static MediaType mediaType(long key) {
+        return MediaType.fromCode((int) (key >>> 32));
+    }
+
+    /**
+     * Extracts the per-file ID from a product key.
+     *
+     * @param key the packed product key
+     * @return the product ID within its catalogue file
+     */
+    public static int id(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Formats a product key for display (e.g., {@code DVD-2}).
+     *
+     * @param key the packed product key
+     * @return the human-readable form of the key
+     */
+    public static String format(long key) {
+        MediaType type = mediaType(key);
+        String prefix = type != null ? type.name() : "UNKNOWN";
+        return prefix + "-" + id(key);
+    }
+
+    /**
+     * Parses a key written as {@code TYPE-ID} (e.g., {@code dvd-2}).
+     * <p>
+     * The type part accepts either the constant name or the display name
+     * of a {@link MediaType}, ignoring case.
+     * </p>
+     *
+     * @param text the text to parse
+     * @return the packed key, or {@link #INVALID} if the text is malformed
+     */
+    public static long parse(String text) {
+        if (text == null) {
+            return INVALID;
+        }
+        int dash = text.lastIndexOf('-');
+        if (dash <= 0) {
+            return INVALID;
+        }
+        MediaType type = MediaType.fromName(text.substring(0, dash).trim());
+        if (type == null) {
+            return INVALID;
+        }
+        try {
+            return of(type, Integer.parseInt(text.substring(dash + 1).trim()));
+        } catch (NumberFormatException e) {
+            return INVALID;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package main.model;
+
+/**
+ * A single ranked result returned by a catalogue search.
+ * <p>
+ * Each hit pairs a matching {@link Product} with its relevance score.
+ * Higher scores indicate better matches; the exact scale depends on the
+ * search that produced the hit and is only meaningful for ordering.
+ * </p>
+ */
+public class SearchHit {
+
+    /** The product that matched the query. */
+    private final Product product;
+
+    /** Relevance score accumulated while evaluating the query. */
+    double score;
+
+    /** Bit {@code i} is set when query term {@code i} matched this product. */
+    int matchedTerms;
+
+    /**
+     * Constructs a hit for the given product with an initial score of zero.
+     *
+     * @param product the matching product
+     */
+    SearchHit(Product product) {
+        this.product = product;
+    }
+
+    /**
+     * Constructs a hit for the given product with a fixed score.
+     *
+     * @param product the matching product
+     * @param score   the relevance score
+     */
+    SearchHit(Product product, double score) {
+        this.product = product;
+        this.score = score;
+    }
+
+    /**
+     * Returns the product that matched the query.
+     *
+     * @return the matching {@link Product}
+     */
+    public Product getProduct() {
+        return product;
+    }
+
+    /**
+     * Returns the relevance score of this hit.
+     *
+     * @return the score; higher is better
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the matching product's information followed by its score.
+     *
+     * @return a descriptive string for console output
+     */
+    @Override
+    public String toString() {
+        return product.getInfo() + String.format(" | Score: %.2f", score);
+    }
+}
@@ -0,0 +1,380 @@
+package main.model;
+
+import main.util.LongObjectMap;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Inverted index supporting ranked full-text search over the catalogue.
+ * <p>
+ * Every product's title, creator and (for books) genre and ISBN are split
+ * into normalised tokens. For each token the index keeps a posting list of
+ * the product keys containing it, together with a weight reflecting which
+ * fields the token appeared in (a title match counts more than a genre
+ * match). The term dictionary is sorted, so a query term ending in
+ * {@code *} expands to every indexed term with that prefix.
+ * </p>
+ * <p>
+ * Results are ranked by the sum of field weight times inverse document
+ * frequency, scaled by the fraction of query terms each product matched.
+ * Products are added and removed incrementally; no rebuild is needed.
+ * </p>
+ * <p>
+ * Like {@link FuzzyTitleIndex}, removal does not search the posting
+ * lists: the product key is marked removed and each of its terms counts
+ * one dead posting, which queries skip. Dead postings are dropped in one
+ * pass once they outnumber live ones, so removal costs constant time per
+ * term on average.
+ * </p>
+ */
+class SearchIndex {
+
+    /** Weight of a token found in the product title. */
+    private static final int TITLE_WEIGHT = 4;
+
+    /** Weight of a token found in the creator field (author, director, ...). */
+    private static final int CREATOR_WEIGHT = 2;
+
+    /** Weight of a token found in a secondary field (genre, ISBN). */
+    private static final int DETAIL_WEIGHT = 1;
+
+    /** Dead postings tolerated, relative to live ones, before the lists are compacted. */
+    private static final int COMPACT_RATIO = 1;
+
+    /** Common words ignored in queries that also contain more specific terms. */
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "of", "the", "in", "to");
+
+    /** Sorted term dictionary mapping each token to its posting list. */
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+
+    /** Number of products currently indexed, used for IDF scoring. */
+    private int documentCount;
+
+    /** Keys of removed products whose postings have not been dropped yet. */
+    private LongObjectMap<Boolean> removed = new LongObjectMap<>();
+
+    /** Postings of live products, over all terms. */
+    private long livePostings;
+
+    /** Postings of removed products still in the lists. */
+    private long deadPostings;
+
+    // -------------------------------------------
+    // MAINTENANCE
+    // -------------------------------------------
+
+    /**
+     * Adds a product's searchable fields to the index.
+     *
+     * @param p the product to index
+     */
+    void add(Product p) {
+        long key = p.getProductKey();
+        if (removed.containsKey(key)) {
+            compact(); // drop the old postings before the key is reused
+        }
+        Map<String, Integer> collected = collectTerms(p);
+        collected.forEach((term, weight) ->
+                terms.computeIfAbsent(term, t -> new Postings()).add(key, weight));
+        livePostings += collected.size();
+        documentCount++;
+    }
+
+    /**
+     * Removes a product's searchable fields from the index.
+     * <p>
+     * The product must have been added and not removed since. Its key is
+     * marked removed and every one of its terms loses a live posting; a
+     * term left with no live postings is dropped at once.
+     * </p>
+     *
+     * @param p the product to remove
+     */
+    void remove(Product p) {
+        long key = p.getProductKey();
+        if (removed.containsKey(key)) {
+            return;
+        }
+        int dropped = 0;
+        for (String term : collectTerms(p).keySet()) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                continue;
+            }
+            dropped++;
+            if (--postings.live == 0) {
+                // The term's earlier dead entries leave the index with it.
+                deadPostings -= postings.size - 1;
+                terms.remove(term);
+            } else {
+                deadPostings++;
+            }
+        }
+        if (dropped == 0) {
+            return;
+        }
+        removed.put(key, Boolean.TRUE);
+        livePostings -= dropped;
+        documentCount--;
+        if (deadPostings > livePostings * COMPACT_RATIO) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes every product from the index.
+     */
+    void clear() {
+        terms.clear();
+        removed = new LongObjectMap<>();
+        livePostings = 0;
+        deadPostings = 0;
+        documentCount = 0;
+    }
+
+    /** Drops the postings of removed products from every list. */
+    private void compact() {
+        for (Postings postings : terms.values()) {
+            if (postings.live < postings.size) {
+                postings.retainLive(removed);
+            }
+        }
+        removed = new LongObjectMap<>();
+        deadPostings = 0;
+    }
+
+    // -------------------------------------------
+    // QUERIES
+    // -------------------------------------------
+
+    /**
+     * Runs a ranked search over the indexed products.
+     * <p>
+     * Query terms are normalised the same way as indexed text. A term
+     * ending in {@code *} matches every token starting with it (for example
+     * {@code tolk*} matches "tolkien").
+     * </p>
+     *
+     * @param query    the free-text query
+     * @param limit    maximum number of hits to return
+     * @param products lookup used to resolve product keys to products
+     * @return hits ordered by descending score, then by product key
+     */
+    List<SearchHit> search(String query, int limit, LongObjectMap<Product> products) {
+        List<String> queryTerms = parseQuery(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        LongObjectMap<SearchHit> hits = new LongObjectMap<>();
+        for (int i = 0; i < queryTerms.size(); i++) {
+            String term = queryTerms.get(i);
+            if (term.endsWith("*")) {
+                String prefix = term.substring(0, term.length() - 1);
+                for (Postings postings : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                    accumulate(postings, i, hits, products);
+                }
+            } else {
+                Postings postings = terms.get(term);
+                if (postings != null) {
+                    accumulate(postings, i, hits, products);
+                }
+            }
+        }
+
+        // Scale each score by the share of query terms it matched.
+        List<SearchHit> ranked = new ArrayList<>(hits.size());
+        int termCount = queryTerms.size();
+        hits.forEach((key, hit) -> {
+            hit.score *= (double) Integer.bitCount(hit.matchedTerms) / termCount;
+            ranked.add(hit);
+        });
+        ranked.sort(Comparator.comparingDouble(SearchHit::getScore).reversed()
+                .thenComparingLong(h -> h.getProduct().getProductKey()));
+        return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+    }
+
+    /**
+     * Adds the contribution of one posting list to the running hits.
+     */
+    private void accumulate(Postings postings, int termIndex,
+                            LongObjectMap<SearchHit> hits, LongObjectMap<Product> products) {
+        double idf = Math.log(1.0 + (double) documentCount / postings.live);
+        boolean skipRemoved = postings.live < postings.size;
+        for (int j = 0; j < postings.size; j++) {
+            long key = postings.keys[j];
+            if (skipRemoved && removed.containsKey(key)) {
+                continue;
+            }
+            SearchHit hit = hits.get(key);
+            if (hit == null) {
+                Product product = products.get(key);
+                if (product == null) {
+                    continue;
+                }
+                hit = new SearchHit(product);
+                hits.put(key, hit);
+            }
+            hit.score += postings.weights[j] * idf;
+            hit.matchedTerms |= 1 << Math.min(termIndex, 31);
+        }
+    }
+
+    /**
+     * Splits a query into normalised terms, keeping trailing {@code *}
+     * markers and dropping stop words when more specific terms exist.
+     */
+    private static List<String> parseQuery(String query) {
+        List<String> all = new ArrayList<>();
+        if (query == null) {
+            return all;
+        }
+        for (String raw : query.trim().split("\\s+")) {
+            boolean prefix = raw.endsWith("*");
+            List<String> tokens = new ArrayList<>();
+            tokenize(prefix ? raw.substring(0, raw.length() - 1) : raw, tokens::add);
+            for (int i = 0; i < tokens.size(); i++) {
+                // Only the last token of a starred word is treated as a prefix.
+                boolean last = i == tokens.size() - 1;
+                all.add(prefix && last ? tokens.get(i) + "*" : tokens.get(i));
+            }
+        }
+
+        List<String> specific = new ArrayList<>();
+        for (String term : all) {
+            if (!STOP_WORDS.contains(term)) {
+                specific.add(term);
+            }
+        }
+        return specific.isEmpty() ? all : specific;
+    }
+
+    // -------------------------------------------
+    // TOKENISATION
+    // -------------------------------------------
+
+    /**
+     * Collects every token of a product together with its combined field weight.
+     */
+    private static Map<String, Integer> collectTerms(Product p) {
+        Map<String, Integer> weights = new HashMap<>();
+        tokenize(p.getTitle(), t -> weights.merge(t, TITLE_WEIGHT, Integer::sum));
+        tokenize(p.getCreator(), t -> weights.merge(t, CREATOR_WEIGHT, Integer::sum));
+        if (p instanceof Book book) {
+            tokenize(book.getGenre(), t -> weights.merge(t, DETAIL_WEIGHT, Integer::sum));
+            tokenize(book.getIsbn(), t -> weights.merge(t, DETAIL_WEIGHT, Integer::sum));
+
+            // Also index the ISBN without separators so "9780261" matches "978-0261".
+            String compact = normalize(book.getIsbn()).replace(" ", "");
+            if (!compact.isEmpty()) {
+                weights.merge(compact, DETAIL_WEIGHT, Integer::sum);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Normalises text for indexing: strips accents, lower-cases it and
+     * replaces every run of non-alphanumeric characters with one space.
+     *
+     * @param text the text to normalise (may be {@code null})
+     * @return the normalised text, without leading or trailing spaces
+     */
+    static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK || c == '\'') {
+                continue; // drop accents and apostrophes ("Don't" -> "dont")
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toLowerCase(c));
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Splits normalised text into tokens and passes each to the given sink.
+     *
+     * @param text the raw text to tokenise
+     * @param sink receives each non-empty token in order
+     */
+    static void tokenize(String text, Consumer<String> sink) {
+        String normalized = normalize(text);
+        int start = 0;
+        while (start < normalized.length()) {
+            int end = normalized.indexOf(' ', start);
+            if (end < 0) {
+                end = normalized.length();
+            }
+            sink.accept(normalized.substring(start, end));
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Growable posting list of product keys with per-product field weights.
+     * Entries of removed products stay until the index is compacted.
+     */
+    private static final class Postings {
+
+        /** Product keys containing the term. */
+        private long[] keys = new long[4];
+
+        /** Combined field weight of the term for each product. */
+        private int[] weights = new int[4];
+
+        /** Number of entries in the list, including removed products. */
+        private int size;
+
+        /** Number of entries of products still indexed. */
+        private int live;
+
+        /** Appends a product to the posting list. */
+        void add(long key, int weight) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            keys[size] = key;
+            weights[size] = weight;
+            size++;
+            live++;
+        }
+
+        /** Drops the entries of removed products, keeping the order of the rest. */
+        void retainLive(LongObjectMap<Boolean> removed) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.containsKey(keys[i])) {
+                    keys[kept] = keys[i];
+                    weights[kept] = weights[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
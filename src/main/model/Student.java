@@ -61,33 +61,22 @@ public class Student extends User {
     // -------------------------------------------
 
     /**
-     * Allows the student to borrow a {@link Product} under specific conditions.
+     * Identifies this user as a student.
      * <p>
-     * Students have the following borrowing rules:
+     * Students have the following built-in borrowing rules (see
+     * {@link PolicyTable}):
      * <ul>
-     *   <li>May borrow up to five items at a time</li>
+     *   <li>May borrow up to five books and audiobooks at a time</li>
      *   <li>Each loan lasts for 21 days</li>
      *   <li>Can renew each item once</li>
      * </ul>
-     * This method overrides {@link User#borrowProduct(Product, Policy)}
-     * to enforce these student-specific constraints.
      * </p>
      *
-     * @param product the product the student wishes to borrow
-     * @param policy  the base {@link Policy} to reference fine details
-     * @return {@code true} if the borrow was successful; {@code false} otherwise
+     * @return {@link UserType#STUDENT}
      */
     @Override
-    public boolean borrowProduct(Product product, Policy policy) {
-        // Check borrowing limit (5 items maximum).
-        if (loans.size() >= 5) {
-            System.out.println("Borrowing limit reached (5 items max).");
-            return false;
-        }
-
-        // Apply a custom student loan policy (21 days, 1 renewal).
-        Policy studentPolicy = new Policy(21, 1, policy.getDailyFine());
-        return super.borrowProduct(product, studentPolicy);
+    public UserType getType() {
+        return UserType.STUDENT;
     }
 
     // -------------------------------------------
@@ -1,8 +1,10 @@
 package main.model;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Abstract base class representing a user of the library system.
@@ -16,10 +18,17 @@ import java.util.List;
  * <ul>
  *   <li><b>Abstraction:</b> Defines generic user behaviour for all subclasses.</li>
  *   <li><b>Encapsulation:</b> Protects user data with controlled access through getters.</li>
- *   <li><b>Polymorphism:</b> Enables subclasses to override methods such as
- *       {@link #borrowProduct(Product, Policy)} for custom borrowing rules.</li>
+ *   <li><b>Polymorphism:</b> Each subclass reports its role through
+ *       {@link #getType()}, which selects its borrowing rules in a
+ *       {@link PolicyTable}, and may add checks in {@link #canBorrow(int)}.</li>
  * </ul>
  * </p>
+ * <p>
+ * Borrowing and returning are synchronised on the user, so a user's limit
+ * check and the loan it admits happen atomically even when the same user
+ * borrows from several threads. The lock is per user: checkouts by
+ * different users never wait for each other.
+ * </p>
  */
 public abstract class User {
 
@@ -32,8 +41,15 @@ public abstract class User {
     /** Contact email of the user. */
     protected String email;
 
-    /** List of loans currently held by this user. */
-    protected List<Loan> loans = new ArrayList<>();
+    /**
+     * Loans currently held by this user, keyed by product key. The map keeps
+     * insertion order, so loans are listed oldest first, while finding and
+     * removing the loan of a returned item takes constant time.
+     */
+    protected Map<Long, Loan> loans = new LinkedHashMap<>();
+
+    /** Outstanding fines in minor units (pence). */
+    private final AtomicLong fineBalance = new AtomicLong();
 
     /**
      * Constructs a new {@code User} object with the specified attributes.
@@ -55,6 +71,19 @@ public abstract class User {
     /** Retrieves the unique identifier of the user. */
     public int getUserId() { return userId; }
 
+    /**
+     * Retrieves the user's outstanding fines.
+     *
+     * @return the fine balance in minor units (pence)
+     */
+    public long getFineBalance() { return fineBalance.get(); }
+
+    /** Adds a charged fine to the balance. */
+    void addFine(long amountMinor) { fineBalance.addAndGet(amountMinor); }
+
+    /** Sets the balance read from a checkpoint, before the journal is replayed on top of it. */
+    void restoreFineBalance(long amountMinor) { fineBalance.set(amountMinor); }
+
     /** Retrieves the user's full name. */
     public String getName() { return name; }
 
@@ -68,34 +97,123 @@ public abstract class User {
     /**
      * Handles the process of borrowing a product.
      * <p>
-     * By default, this method checks the availability of the item and marks it
-     * as borrowed. Subclasses such as {@link ChildUser} or {@link Student}
-     * override this method to apply role-specific borrowing limits and policies.
-     * </p>
-     * <p>
-     * The corresponding {@link Loan} object is now created directly inside this method
-     * to ensure consistent behaviour across the entire system, including when tests
-     * or other components call this method without using {@link LibrarySystem}.
+     * Convenience form of {@link #checkout(Product, PolicyTable)} for callers
+     * that only need to know whether the borrow succeeded. The built-in
+     * role rules are applied on top of the given base policy.
      * </p>
      *
      * @param product the {@link Product} being borrowed
      * @param policy  the {@link Policy} defining the loan rules
-     * @return {@code true} if borrowing succeeds; {@code false} if unavailable
+     * @return {@code true} if borrowing succeeds; {@code false} otherwise
      */
     public boolean borrowProduct(Product product, Policy policy) {
-        if (!product.isAvailable()) {
-            System.out.println("Product not available.");
-            return false;
+        return checkout(product, PolicyTable.of(policy)) != null;
+    }
+
+    /**
+     * Runs the borrow pipeline and returns the single loan it creates.
+     * <p>
+     * The steps always run in the same order:
+     * <ol>
+     *   <li><b>Validate:</b> the role must be permitted the product's
+     *       category, and {@link #canBorrow(int)} applies the role's loan
+     *       limit and any rules of the user's own.</li>
+     *   <li><b>Reserve:</b> the product is reserved with one atomic
+     *       compare-and-set, so only one concurrent borrower can win it.</li>
+     *   <li><b>Create:</b> exactly one {@link Loan} is built, using the
+     *       table's policy for the role and category.</li>
+     *   <li><b>Record:</b> the loan is added to this user's loans.</li>
+     * </ol>
+     * The user owns the loan it creates. Publishing the loan system-wide is
+     * left to the caller ({@link LibrarySystem#handleBorrow(User, long)}
+     * adds it to the loan ledger); it never creates a loan of its own.
+     * </p>
+     * <p>
+     * The pipeline holds this user's monitor, so the limit check and the
+     * loan it admits are atomic with respect to other borrows by the same user.
+     * </p>
+     *
+     * @param product the {@link Product} being borrowed
+     * @param rules   the compiled borrowing rules
+     * @return the new loan, or {@code null} if the borrow was refused
+     */
+    public final synchronized Loan checkout(Product product, PolicyTable rules) {
+        UserType type = getType();
+        MediaType category = product.getMediaType();
+        if (!rules.permits(type, category)) {
+            System.out.println(type.getDisplayName() + " users may not borrow "
+                    + category.getDisplayName() + "s.");
+            return null;
+        }
+        if (!canBorrow(rules.loanLimit(type))) {
+            return null;
         }
 
-        // Mark the product as unavailable once borrowed.
-        product.setAvailable(false);
+        // Reserve atomically so that only one concurrent borrower can win.
+        if (!product.tryReserve()) {
+            System.out.println("Product not available.");
+            return null;
+        }
 
-        // Create a loan and store it in the user's loan list.
-        Loan loan = new Loan(IDGenerator.nextId(), this, product, policy);
-        loans.add(loan);
+        // Create the one loan for this checkout and store it in the user's loan map.
+        Loan loan = new Loan(IDGenerator.next(IDGenerator.Sequence.LOAN), this, product, rules.policy(type, category));
+        loans.put(product.getProductKey(), loan);
 
         System.out.println("Borrowed successfully: " + product.getTitle());
+        return loan;
+    }
+
+    /**
+     * Undoes a checkout whose loan could not be published, releasing the
+     * product and forgetting the loan.
+     *
+     * @param loan the loan returned by {@link #checkout(Product, PolicyTable)}
+     */
+    synchronized void cancelCheckout(Loan loan) {
+        if (loans.remove(loan.getProductKey(), loan)) {
+            loan.getItem().release();
+        }
+    }
+
+    /**
+     * Re-attaches a loan recovered from persisted state, reserving its
+     * product. No limits are checked, because the loan already existed.
+     *
+     * @param loan the recovered loan
+     * @return {@code true} if restored; {@code false} if the product is
+     *         already held by another loan
+     */
+    synchronized boolean restoreLoan(Loan loan) {
+        if (!loan.getItem().tryReserve()) {
+            return false;
+        }
+        loans.put(loan.getProductKey(), loan);
+        return true;
+    }
+
+    /**
+     * Returns this user's role, which selects their borrowing rules.
+     *
+     * @return the user type
+     */
+    public abstract UserType getType();
+
+    /**
+     * Checks the user's own rules before a product is reserved.
+     * <p>
+     * By default this enforces the role's loan limit. Subclasses may add
+     * further conditions and should call this implementation as well. A
+     * refusal prints its reason.
+     * </p>
+     *
+     * @param limit the role's loan limit from the {@link PolicyTable}
+     * @return {@code true} if the user may borrow another item
+     */
+    protected boolean canBorrow(int limit) {
+        if (loans.size() >= limit) {
+            System.out.println("Borrowing limit reached (" + limit + " items max).");
+            return false;
+        }
         return true;
     }
 
@@ -107,39 +225,44 @@ public abstract class User {
      * Handles the return of a borrowed product.
      * <p>
      * When a product is returned, it is marked as available again and the
-     * corresponding {@link Loan} record is removed from this user's loan list.
+     * corresponding {@link Loan} record is removed from this user's loans.
+     * The loan is found by product key, so no loan list is scanned.
      * </p>
      *
      * @param product the {@link Product} to be returned
      * @return {@code true} if the product was successfully returned,
      *         {@code false} if the loan record was not found
      */
-    public boolean returnProduct(Product product) {
-        Iterator<Loan> iterator = loans.iterator();
-
-        // Search for a matching loan in the user's loan list.
-        while (iterator.hasNext()) {
-            Loan loan = iterator.next();
-            if (loan.getItem().equals(product)) {
-                // Update return date and availability status.
-                loan.setReturnDate(java.time.LocalDate.now());
-                product.setAvailable(true);
-                iterator.remove(); // Remove from user's loan list
-                System.out.println("Returned: " + product.getTitle());
-                return true;
-            }
+    public synchronized boolean returnProduct(Product product) {
+        Loan loan = loans.get(product.getProductKey());
+        if (loan == null || !loan.getItem().equals(product)) {
+            System.out.println("Loan not found for: " + product.getTitle());
+            return false;
         }
 
-        System.out.println("Loan not found for: " + product.getTitle());
-        return false;
+        // Update return date and availability status.
+        loan.setReturnDate(java.time.LocalDate.now());
+        product.release();
+        loans.remove(product.getProductKey());
+        System.out.println("Returned: " + product.getTitle());
+        return true;
     }
 
     // -------------------------------------------
     // LOAN VIEWING
     // -------------------------------------------
 
-    /** Retrieves all loans currently held by the user. */
-    public List<Loan> viewLoans() { return loans; }
+    /**
+     * Retrieves all loans currently held by the user, oldest first.
+     * <p>
+     * The result is a read-only live view; take a copy before iterating it
+     * while the user may borrow or return from another thread.
+     * </p>
+     *
+     * @return the user's active loans
+     */
+    public Collection<Loan> viewLoans() { return Collections.unmodifiableCollection(loans.values()); }
+
 
     // -------------------------------------------
     // STRING REPRESENTATION
@@ -0,0 +1,338 @@
+package main.model;
+
+import main.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Registered users, indexed by ID and by email address.
+ * <p>
+ * Users are kept in a {@link LongObjectMap} keyed by the primitive user
+ * ID and in a concurrent hash map keyed by the normalised email address
+ * (trimmed and lower-cased, see {@link #normaliseEmail(String)}), so
+ * looking a user up, registering one and removing one each take constant
+ * time. A second
+ * registration with a known ID or address is rejected.
+ * </p>
+ * <p>
+ * Children usually share a guardian's address, so a {@link ChildUser}'s
+ * address is not claimed in the email index: it may match another
+ * account's and is not found by {@link #findByEmail(String)}.
+ * </p>
+ * <p>
+ * Each user's index entry is also a node of a linked list in registration
+ * order, which {@link #users()} returns as a cached read-only copy,
+ * rebuilt only after a change. ID lookups run under an optimistic read
+ * and never block; email lookups read the concurrent map directly, since
+ * a plain hash map may be seen half-resized. Changes take the write lock,
+ * so both indexes change together. The bulk operations
+ * {@link #registerAll(Collection)} and {@link #removeAll(int[])} take it
+ * once for a whole batch, so onboarding a term's students costs one lock
+ * and one list rebuild rather than one per student.
+ * </p>
+ */
+public class UserDirectory {
+
+    /**
+     * A registered user and its neighbours in registration order.
+     */
+    private static final class Entry {
+
+        final User user;
+        final String email;
+        Entry prev;
+        Entry next;
+
+        Entry(User user, String email) {
+            this.user = user;
+            this.email = email;
+        }
+    }
+
+    /** Entries by user ID. */
+    private final LongObjectMap<Entry> byId = new LongObjectMap<>();
+
+    /** Non-child users by normalised email address; safe to read without the lock. */
+    private final Map<String, User> byEmail = new ConcurrentHashMap<>();
+
+    /** Oldest and newest registration. */
+    private Entry first;
+    private Entry last;
+
+    /** Guards the indexes; lookups validate an optimistic stamp. */
+    private final StampedLock lock = new StampedLock();
+
+    /** Users in registration order, or {@code null} after a change. */
+    private volatile List<User> snapshot = List.of();
+
+    // -------------------------------------------
+    // REGISTRATION
+    // -------------------------------------------
+
+    /**
+     * Registers a user if neither its ID nor its email address is taken.
+     *
+     * @param user the user to register
+     * @return {@code true} if the user was registered
+     */
+    public boolean register(User user) {
+        long stamp = lock.writeLock();
+        try {
+            String reason = rejection(user);
+            if (reason != null) {
+                System.out.println(reason);
+                return false;
+            }
+            insert(user);
+            snapshot = null;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Registers a batch of users under a single lock acquisition.
+     * <p>
+     * Users whose ID or email address is already taken, by an earlier
+     * registration or earlier in the same batch, are skipped and returned.
+     * </p>
+     *
+     * @param users the users to register, in order
+     * @return the users that were not registered
+     */
+    public List<User> registerAll(Collection<? extends User> users) {
+        List<User> rejected = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            for (User user : users) {
+                if (rejection(user) != null) {
+                    rejected.add(user);
+                } else {
+                    insert(user);
+                }
+            }
+            if (rejected.size() < users.size()) {
+                snapshot = null;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return rejected;
+    }
+
+    /**
+     * Removes a user by ID.
+     *
+     * @param userId the user's ID
+     * @return the removed user, or {@code null} if none was registered
+     */
+    public User remove(int userId) {
+        long stamp = lock.writeLock();
+        try {
+            User removed = delete(userId);
+            if (removed != null) {
+                snapshot = null;
+            }
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a batch of users under a single lock acquisition.
+     *
+     * @param userIds the IDs to remove; unknown IDs are ignored
+     * @return the number of users removed
+     */
+    public int removeAll(int[] userIds) {
+        int removed = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (int id : userIds) {
+                if (delete(id) != null) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                snapshot = null;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return removed;
+    }
+
+    // -------------------------------------------
+    // LOOKUP
+    // -------------------------------------------
+
+    /**
+     * Finds a user by ID.
+     *
+     * @param userId the user's ID
+     * @return the user, or {@code null} if none is registered
+     */
+    public User find(int userId) {
+        return read(() -> {
+            Entry entry = byId.get(userId);
+            return entry == null ? null : entry.user;
+        });
+    }
+
+    /**
+     * Finds the adult, student or librarian registered with an email address.
+     *
+     * @param email the address, in any case and with or without surrounding spaces
+     * @return the user, or {@code null} if the address is not registered
+     */
+    public User findByEmail(String email) {
+        String key = normaliseEmail(email);
+        return key.isEmpty() ? null : byEmail.get(key);
+    }
+
+    /**
+     * Returns the registered users.
+     * <p>
+     * The list is a read-only copy, shared by callers until the next
+     * change, so it is safe to iterate while users are registered or
+     * removed.
+     * </p>
+     *
+     * @return the registered users, in registration order
+     */
+    public List<User> users() {
+        List<User> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        long stamp = lock.readLock();
+        try {
+            current = snapshot;
+            if (current == null) {
+                List<User> copy = new ArrayList<>(byId.size());
+                for (Entry e = first; e != null; e = e.next) {
+                    copy.add(e.user);
+                }
+                current = Collections.unmodifiableList(copy);
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of registered users.
+     *
+     * @return the user count
+     */
+    public int size() {
+        return read(byId::size);
+    }
+
+    /**
+     * Normalises an email address for comparison: trimmed and lower-cased.
+     *
+     * @param email the address, or {@code null}
+     * @return the normalised address; empty for {@code null}
+     */
+    public static String normaliseEmail(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // -------------------------------------------
+    // INTERNALS
+    // -------------------------------------------
+
+    /** Returns why a user cannot be registered, or {@code null} if it can; caller holds the write lock. */
+    private String rejection(User user) {
+        if (byId.containsKey(user.getUserId())) {
+            return "User ID " + user.getUserId() + " is already registered.";
+        }
+        String email = claimedEmail(user);
+        if (!email.isEmpty() && byEmail.containsKey(email)) {
+            return "Email " + user.getEmail().trim() + " is already registered.";
+        }
+        return null;
+    }
+
+    /** Adds a user to both indexes and the end of the list; caller holds the write lock. */
+    private void insert(User user) {
+        String email = claimedEmail(user);
+        Entry entry = new Entry(user, email);
+        byId.put(user.getUserId(), entry);
+        if (!email.isEmpty()) {
+            byEmail.put(email, user);
+        }
+        entry.prev = last;
+        if (last == null) {
+            first = entry;
+        } else {
+            last.next = entry;
+        }
+        last = entry;
+    }
+
+    /** Unlinks a user from both indexes and the list; caller holds the write lock. */
+    private User delete(int userId) {
+        Entry entry = byId.remove(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.email.isEmpty()) {
+            byEmail.remove(entry.email);
+        }
+        if (entry.prev == null) {
+            first = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+        if (entry.next == null) {
+            last = entry.prev;
+        } else {
+            entry.next.prev = entry.prev;
+        }
+        return entry.user;
+    }
+
+    /** Returns the address a user claims in the email index; empty for children. */
+    private static String claimedEmail(User user) {
+        return user instanceof ChildUser ? "" : normaliseEmail(user.getEmail());
+    }
+
+    /**
+     * Runs a lookup under an optimistic read, repeating it under the read
+     * lock if a change overlapped it (see {@code LibrarySystem}'s catalogue
+     * lookups, which work the same way).
+     */
+    private <T> T read(Supplier<T> lookup) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = lookup.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // Saw a half-applied change; retry below under the read lock.
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return lookup.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package main.model;
+
+/**
+ * Enumerates the roles a library user can have.
+ * <p>
+ * Each {@link User} subclass reports one role through
+ * {@link User#getType()}. The role, together with the {@link MediaType}
+ * of an item, selects the borrowing rules in a {@link PolicyTable}.
+ * </p>
+ */
+public enum UserType {
+
+    /** Adult members; see {@link AdultUser}. */
+    ADULT("Adult"),
+
+    /** Students; see {@link Student}. */
+    STUDENT("Student"),
+
+    /** Children, who need a guardian; see {@link ChildUser}. */
+    CHILD("Child"),
+
+    /** Library staff; see {@link Librarian}. */
+    LIBRARIAN("Librarian");
+
+    /** Cached copy of {@link #values()} to avoid allocating on every lookup. */
+    private static final UserType[] VALUES = values();
+
+    /** Human-readable name of the role. */
+    private final String displayName;
+
+    /**
+     * Constructs a user type constant.
+     *
+     * @param displayName human-readable name of the role
+     */
+    UserType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Returns the human-readable name of this role.
+     *
+     * @return the display name (e.g., "Student")
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Returns all user types without allocating a new array.
+     * <p>
+     * Callers must not modify the returned array.
+     * </p>
+     *
+     * @return the shared array of user types in declaration order
+     */
+    static UserType[] all() {
+        return VALUES;
+    }
+}
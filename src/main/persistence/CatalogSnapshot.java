@@ -0,0 +1,306 @@
+package main.persistence;
+
+import main.model.Audiobook;
+import main.model.Book;
+import main.model.CD;
+import main.model.DVD;
+import main.model.MediaType;
+import main.model.Product;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact, versioned binary copy of the loaded catalogue.
+ * <p>
+ * Parsing the CSV files on every start is wasted work when they have not
+ * changed. A snapshot stores every product as a fixed-width record whose
+ * text fields are indexes into a shared string table, so repeated authors,
+ * genres and directors are written (and later decoded) only once. The
+ * header records the size and CRC-32C checksum of each source CSV file;
+ * {@link #load(List)} only accepts the snapshot when all of them still
+ * match, and otherwise the caller falls back to parsing the CSV files.
+ * </p>
+ * <p>
+ * File layout (all integers big-endian):
+ * <pre>
+ * int    magic "ULSC"
+ * short  format version
+ * byte   flags (bit 0: body is Deflate-compressed)
+ * byte   number of source files, then for each: UTF name, long size, long crc32c
+ * --- body (optionally compressed) ---
+ * int    string count, then for each: int byte length, UTF-8 bytes
+ * int    record count, then for each 21-byte record:
+ *        byte media type code, int id, int title, int creator, int extra1, int extra2
+ * </pre>
+ * String references of {@code -1} stand for "no value"; for books,
+ * {@code extra1} is the ISBN and {@code extra2} the genre.
+ * </p>
+ */
+public class CatalogSnapshot {
+
+    /** Marker identifying snapshot files ("ULSC" in ASCII). */
+    private static final int MAGIC = 0x554C5343;
+
+    /** Current format version; snapshots of any other version are ignored. */
+    private static final short VERSION = 1;
+
+    /** Flag bit set when the body is compressed. */
+    private static final int FLAG_COMPRESSED = 1;
+
+    /** Location of the snapshot file. */
+    private final Path file;
+
+    /** Whether newly written snapshots compress their body. */
+    private final boolean compress;
+
+    /**
+     * Constructs a snapshot store for the given file.
+     *
+     * @param file     where the snapshot is written and read
+     * @param compress {@code true} to Deflate-compress the body when saving
+     */
+    public CatalogSnapshot(Path file, boolean compress) {
+        this.file = file;
+        this.compress = compress;
+    }
+
+    /**
+     * Returns the location of the snapshot file.
+     *
+     * @return the snapshot path
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    // -------------------------------------------
+    // SAVING
+    // -------------------------------------------
+
+    /**
+     * Writes a snapshot of the given products.
+     * <p>
+     * The snapshot is written to a temporary file first and then moved into
+     * place, so a crash never leaves a half-written snapshot behind.
+     * </p>
+     *
+     * @param products the catalogue to store
+     * @param sources  the CSV files the catalogue was loaded from
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void save(List<Product> products, List<Path> sources) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(compress ? FLAG_COMPRESSED : 0);
+            writeSources(out, sources);
+
+            DeflaterOutputStream deflater = compress
+                    ? new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), 64 * 1024)
+                    : null;
+            DataOutputStream body = compress ? new DataOutputStream(deflater) : out;
+            writeBody(body, products);
+            body.flush();
+            if (deflater != null) {
+                deflater.finish();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Writes the name, size and checksum of every source file. */
+    private static void writeSources(DataOutputStream out, List<Path> sources) throws IOException {
+        out.writeByte(sources.size());
+        for (Path source : sources) {
+            out.writeUTF(source.getFileName().toString());
+            out.writeLong(Files.size(source));
+            out.writeLong(checksum(source));
+        }
+    }
+
+    /** Writes the string table followed by one fixed-width record per product. */
+    private static void writeBody(DataOutputStream out, List<Product> products) throws IOException {
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        int[] records = new int[products.size() * 5];
+
+        // First pass: dictionary-encode every text field.
+        for (int i = 0; i < products.size(); i++) {
+            Product p = products.get(i);
+            String extra1 = p instanceof Book book ? book.getIsbn() : null;
+            String extra2 = p instanceof Book book ? book.getGenre() : null;
+            records[i * 5] = p.getProductId();
+            records[i * 5 + 1] = encode(p.getTitle(), codes, table);
+            records[i * 5 + 2] = encode(p.getCreator(), codes, table);
+            records[i * 5 + 3] = encode(extra1, codes, table);
+            records[i * 5 + 4] = encode(extra2, codes, table);
+        }
+
+        out.writeInt(table.size());
+        for (String s : table) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        out.writeInt(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            out.writeByte(products.get(i).getMediaType().getCode());
+            for (int f = 0; f < 5; f++) {
+                out.writeInt(records[i * 5 + f]);
+            }
+        }
+    }
+
+    /** Returns the string-table index of a value, adding it if new. */
+    private static int encode(String value, Map<String, Integer> codes, List<String> table) {
+        if (value == null) {
+            return -1;
+        }
+        return codes.computeIfAbsent(value, v -> {
+            table.add(v);
+            return table.size() - 1;
+        });
+    }
+
+    // -------------------------------------------
+    // LOADING
+    // -------------------------------------------
+
+    /**
+     * Loads the snapshot if it is present and still matches the sources.
+     *
+     * @param sources the CSV files the catalogue would otherwise be loaded from
+     * @return the stored products in their original order, or {@code null}
+     *         if the snapshot is missing, of another version or stale
+     * @throws IOException if the snapshot exists but cannot be read
+     */
+    public List<Product> load(List<Path> sources) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return null;
+            }
+            boolean compressed = (in.readByte() & FLAG_COMPRESSED) != 0;
+            if (!sourcesMatch(in, sources)) {
+                return null;
+            }
+            InputStream bodyStream = compressed ? new InflaterInputStream(in, new Inflater(), 64 * 1024) : in;
+            return readBody(new DataInputStream(bodyStream));
+        }
+    }
+
+    /** Compares the recorded source files against the current ones. */
+    private static boolean sourcesMatch(DataInputStream in, List<Path> sources) throws IOException {
+        int count = in.readUnsignedByte();
+        if (count != sources.size()) {
+            return false;
+        }
+        for (Path source : sources) {
+            String name = in.readUTF();
+            long size = in.readLong();
+            long crc = in.readLong();
+            if (!Files.isRegularFile(source)
+                    || !name.equals(source.getFileName().toString())
+                    || size != Files.size(source)
+                    || crc != checksum(source)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reads the string table and rebuilds every product record. */
+    private static List<Product> readBody(DataInputStream in) throws IOException {
+        String[] table = new String[in.readInt()];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < table.length; i++) {
+            int length = in.readInt();
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.readFully(scratch, 0, length);
+            table[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int count = in.readInt();
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MediaType type = MediaType.fromCode(in.readUnsignedByte());
+            int id = in.readInt();
+            String title = lookup(table, in.readInt());
+            String creator = lookup(table, in.readInt());
+            String extra1 = lookup(table, in.readInt());
+            String extra2 = lookup(table, in.readInt());
+            if (type == null) {
+                throw new IOException("Unknown media type in snapshot record " + i);
+            }
+            products.add(switch (type) {
+                case BOOK -> new Book(id, title, creator, extra1, extra2);
+                case CD -> new CD(id, title, creator);
+                case DVD -> new DVD(id, title, creator);
+                case AUDIOBOOK -> new Audiobook(id, title, creator);
+            });
+        }
+        return products;
+    }
+
+    /** Resolves a string-table reference, treating {@code -1} as no value. */
+    private static String lookup(String[] table, int index) {
+        return index < 0 ? null : table[index];
+    }
+
+    // -------------------------------------------
+    // CHECKSUMS
+    // -------------------------------------------
+
+    /**
+     * Computes the CRC-32C checksum of a file by mapping it into memory.
+     *
+     * @param source the file to checksum
+     * @return the checksum value
+     * @throws IOException if the file cannot be read
+     */
+    static long checksum(Path source) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(Integer.MAX_VALUE, size - position);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                position += length;
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,224 @@
+package main.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background task that periodically checkpoints the loan state and
+ * compacts the {@link LoanJournal}.
+ * <p>
+ * Each checkpoint first rolls the journal to a new segment, then captures
+ * the state through a {@link StateSource} and writes it as a
+ * {@link LoanCheckpoint} that resumes replay at the new segment. Capturing
+ * takes no global lock, so borrowing and returning continue meanwhile;
+ * anything they change during the capture is also in the new segment and
+ * is replayed on top of the checkpoint.
+ * </p>
+ * <p>
+ * The newest {@code retention} checkpoints are kept, so startup can fall
+ * back to an older one if the newest is damaged. Journal segments older
+ * than the oldest kept checkpoint are deleted, which bounds both the disk
+ * usage and the replay time on startup.
+ * </p>
+ */
+public class Checkpointer implements Closeable {
+
+    /**
+     * Supplies the state to store in a checkpoint.
+     */
+    @FunctionalInterface
+    public interface StateSource {
+
+        /**
+         * Captures the current users and active loans.
+         *
+         * @param replayFrom the journal segment the checkpoint will resume from
+         * @return the checkpoint to write
+         */
+        LoanCheckpoint capture(long replayFrom);
+
+        /**
+         * Rolls the journal to the segment the next checkpoint resumes from.
+         * <p>
+         * Loan state may be captured fuzzily, because replaying an event it
+         * already contains changes nothing. A source that also checkpoints
+         * counters, which replay would increment a second time, overrides
+         * this to pause its writers and fix the counters exactly at the
+         * segment boundary.
+         * </p>
+         *
+         * @param journal the journal to roll
+         * @return the number of the new active segment
+         * @throws IOException if the journal cannot be rolled
+         */
+        default long roll(LoanJournal journal) throws IOException {
+            return journal.roll();
+        }
+    }
+
+    /** Directory holding the checkpoints (and the journal segments). */
+    private final Path directory;
+
+    /** Journal to roll and compact. */
+    private final LoanJournal journal;
+
+    /** Source of the checkpointed state. */
+    private final StateSource source;
+
+    /** Number of checkpoints to keep; at least one. */
+    private final int retention;
+
+    /** Scheduler running the periodic checkpoints, or {@code null} if not started. */
+    private ScheduledExecutorService scheduler;
+
+    /** Number of checkpoints written. */
+    private volatile long checkpoints;
+
+    /** Wall-clock duration of the last checkpoint, in nanoseconds. */
+    private volatile long lastDurationNanos;
+
+    /**
+     * Creates a checkpointer; call {@link #start(Duration)} to run it periodically.
+     *
+     * @param directory the directory to write checkpoints to
+     * @param journal   the journal to roll and compact
+     * @param source    supplies the state to checkpoint
+     * @param retention how many checkpoints to keep
+     * @throws IllegalArgumentException if {@code retention} is less than one
+     */
+    public Checkpointer(Path directory, LoanJournal journal, StateSource source, int retention) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("At least one checkpoint must be retained");
+        }
+        this.directory = directory;
+        this.journal = journal;
+        this.source = source;
+        this.retention = retention;
+    }
+
+    // -------------------------------------------
+    // SCHEDULING
+    // -------------------------------------------
+
+    /**
+     * Starts writing a checkpoint every {@code interval}, on a daemon thread.
+     *
+     * @param interval the delay between the end of one checkpoint and the start of the next
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Checkpointer already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "loan-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::runScheduled, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Runs one scheduled checkpoint, reporting failures without stopping the schedule. */
+    private void runScheduled() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the periodic checkpoints, waiting for one in progress to finish.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            running.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // -------------------------------------------
+    // CHECKPOINTING
+    // -------------------------------------------
+
+    /**
+     * Writes a checkpoint now and removes what it makes obsolete.
+     * <p>
+     * Checkpoints never overlap: a scheduled run and a direct call wait
+     * for each other.
+     * </p>
+     *
+     * @return the checkpoint written
+     * @throws IOException if the journal cannot be rolled or the checkpoint cannot be written
+     */
+    public synchronized LoanCheckpoint checkpoint() throws IOException {
+        long start = System.nanoTime();
+        long replayFrom = source.roll(journal);
+        LoanCheckpoint snapshot = source.capture(replayFrom);
+        snapshot.write(directory);
+        int removed = prune();
+        long elapsed = System.nanoTime() - start;
+
+        lastDurationNanos = elapsed;
+        checkpoints++;
+        System.out.println("Checkpoint written: " + snapshot.getUsers().size() + " user(s), "
+                + snapshot.getLoans().size() + " active loan(s) in "
+                + String.format("%.1f", elapsed / 1e6) + " ms; "
+                + removed + " journal segment(s) removed.");
+        return snapshot;
+    }
+
+    /**
+     * Deletes the checkpoints beyond the retention limit and the journal
+     * segments older than the oldest kept checkpoint.
+     *
+     * @return the number of journal segments deleted
+     */
+    private int prune() throws IOException {
+        List<Long> existing = LoanCheckpoint.list(directory);
+        int excess = existing.size() - retention;
+        for (int i = 0; i < excess; i++) {
+            Files.deleteIfExists(LoanCheckpoint.path(directory, existing.get(i)));
+        }
+        long oldestKept = existing.get(Math.max(0, excess));
+        return journal.deleteSegmentsBefore(oldestKept);
+    }
+
+    /**
+     * Returns how many checkpoints have been written.
+     *
+     * @return the checkpoint count
+     */
+    public long getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Returns how long the last checkpoint took, from rolling the journal
+     * to deleting obsolete segments.
+     *
+     * @return the duration, or {@link Duration#ZERO} if none was written
+     */
+    public Duration getLastDuration() {
+        return Duration.ofNanos(lastDurationNanos);
+    }
+}
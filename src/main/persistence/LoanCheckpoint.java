@@ -0,0 +1,389 @@
+package main.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot of the registered users and active loans at one point of the
+ * {@link LoanJournal}.
+ * <p>
+ * A checkpoint records the journal segment from which replay must resume
+ * ({@link #getReplayFrom()}). Restoring the checkpoint and then replaying
+ * the journal from that segment rebuilds the full loan state, so older
+ * segments can be deleted. Product availability is not stored separately:
+ * a product is checked out exactly when one of the active loans holds it.
+ * </p>
+ * <p>
+ * A checkpoint may be <i>fuzzy</i>: it is captured while borrowing and
+ * returning continue, so it can already include some events that are
+ * also in the segments replayed after it. Journal replay is idempotent by
+ * loan ID, so applying such an event a second time changes nothing.
+ * </p>
+ * <p>
+ * File layout (all integers big-endian, strings in modified UTF-8):
+ * <pre>
+ * int    magic "ULCK"
+ * short  format version
+ * long   first journal segment to replay
+ * long   creation time, epoch milliseconds
+ * int    user count, then per user:
+ *   int ID, string type, string name, string email,
+ *   int guardian ID (0 if none), string course, int year,
+ *   long fine balance
+ * int    loan count, then per loan:
+ *   long loan ID, int user ID, long product key,
+ *   int start day, int due day, int renewal count,
+ *   int last day fined, 0 if none
+ * int    statistics length, then that many bytes
+ * int    CRC-32C of everything above
+ * </pre>
+ * Files are named {@code checkpoint-<segment>.snapshot} and are written to
+ * a temporary file first, then moved into place, so a crash never leaves
+ * a half-written checkpoint under its final name.
+ * </p>
+ * <p>
+ * The statistics section is opaque to this class: it carries cumulative
+ * counters (see {@code CirculationStats}) that, unlike the loan state,
+ * cannot be rebuilt from the active loans.
+ * </p>
+ * <p>
+ * Fine balances are cumulative too, so like the statistics they are the
+ * balances sealed at the replay segment, and fines charged later are
+ * replayed from the journal.
+ * </p>
+ */
+public class LoanCheckpoint {
+
+    /** Marker identifying checkpoint files ("ULCK" in ASCII). */
+    private static final int MAGIC = 0x554C434B;
+
+    /** Current format version; checkpoints of any other version are rejected. */
+    private static final short VERSION = 1;
+
+    /** File names of checkpoints; the group is the replay segment. */
+    private static final Pattern FILE_NAME = Pattern.compile("checkpoint-(\\d{8,})\\.snapshot");
+
+    /**
+     * One registered user as stored in a checkpoint.
+     * <p>
+     * The type is the simple class name of the user ({@code AdultUser},
+     * {@code ChildUser}, {@code Student} or {@code Librarian}); the
+     * guardian, course and year only apply to some types.
+     * </p>
+     */
+    public static final class UserRecord {
+
+        private final int userId;
+        private final String type;
+        private final String name;
+        private final String email;
+        private final int guardianId;
+        private final String course;
+        private final int year;
+        private final long fineBalance;
+
+        /**
+         * Creates a user record.
+         *
+         * @param userId      the user's ID
+         * @param type        the user's class name
+         * @param name        the user's name
+         * @param email       the user's email
+         * @param guardianId  the guardian's ID, or 0 if none
+         * @param course      the student's course, or {@code null}
+         * @param year        the student's year, or 0
+         * @param fineBalance the outstanding fines in minor units
+         */
+        public UserRecord(int userId, String type, String name, String email,
+                          int guardianId, String course, int year, long fineBalance) {
+            this.userId = userId;
+            this.type = type;
+            this.name = name;
+            this.email = email;
+            this.guardianId = guardianId;
+            this.course = course;
+            this.year = year;
+            this.fineBalance = fineBalance;
+        }
+
+        /** Returns the user's ID. */
+        public int getUserId() { return userId; }
+
+        /** Returns the user's class name. */
+        public String getType() { return type; }
+
+        /** Returns the user's name. */
+        public String getName() { return name; }
+
+        /** Returns the user's email. */
+        public String getEmail() { return email; }
+
+        /** Returns the guardian's ID, or 0 if the user has none. */
+        public int getGuardianId() { return guardianId; }
+
+        /** Returns the student's course, or {@code null}. */
+        public String getCourse() { return course; }
+
+        /** Returns the student's year, or 0. */
+        public int getYear() { return year; }
+
+        /** Returns the outstanding fines in minor units. */
+        public long getFineBalance() { return fineBalance; }
+    }
+
+    private final long replayFrom;
+    private final long createdMillis;
+    private final List<UserRecord> users;
+    private final List<LoanJournal.Event> loans;
+    private final int[] finedThrough;
+    private final byte[] statistics;
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param replayFrom    the first journal segment not covered by this checkpoint
+     * @param createdMillis the capture time, epoch milliseconds
+     * @param users         the registered users, with fine balances as of the replay segment
+     * @param loans         the active loans as borrow events with their current due dates
+     * @param finedThrough  the last day fined of each loan, in the order of {@code loans}; 0 if none
+     * @param statistics    encoded statistics covering exactly the segments before {@code replayFrom}
+     * @throws IllegalArgumentException if {@code finedThrough} does not match {@code loans}
+     */
+    public LoanCheckpoint(long replayFrom, long createdMillis, List<UserRecord> users,
+                          List<LoanJournal.Event> loans, int[] finedThrough, byte[] statistics) {
+        if (finedThrough.length != loans.size()) {
+            throw new IllegalArgumentException("One fined-through day is needed per loan");
+        }
+        this.replayFrom = replayFrom;
+        this.createdMillis = createdMillis;
+        this.users = Collections.unmodifiableList(new ArrayList<>(users));
+        this.loans = Collections.unmodifiableList(new ArrayList<>(loans));
+        this.finedThrough = finedThrough.clone();
+        this.statistics = statistics.clone();
+    }
+
+    /** Returns the first journal segment to replay after restoring this checkpoint. */
+    public long getReplayFrom() { return replayFrom; }
+
+    /** Returns when the checkpoint was captured, in epoch milliseconds. */
+    public long getCreatedMillis() { return createdMillis; }
+
+    /** Returns the registered users. */
+    public List<UserRecord> getUsers() { return users; }
+
+    /** Returns the active loans, as borrow events carrying their current due dates. */
+    public List<LoanJournal.Event> getLoans() { return loans; }
+
+    /**
+     * Returns the last day fined of a loan.
+     *
+     * @param index the loan's position in {@link #getLoans()}
+     * @return the epoch day, or 0 if the loan has not been fined
+     */
+    public int getFinedThrough(int index) { return finedThrough[index]; }
+
+    /** Returns a copy of the encoded statistics. */
+    public byte[] getStatistics() { return statistics.clone(); }
+
+    // -------------------------------------------
+    // WRITING
+    // -------------------------------------------
+
+    /**
+     * Writes this checkpoint durably into a directory.
+     *
+     * @param directory the state directory
+     * @return the path of the written checkpoint
+     * @throws IOException if the file cannot be written or moved into place
+     */
+    public Path write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path target = path(directory, replayFrom);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32C());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked));
+                writeBody(out);
+                out.flush();
+                out.writeInt((int) checked.getChecksum().getValue());
+                out.flush();
+                file.getChannel().force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    /** Writes everything but the trailing checksum. */
+    private void writeBody(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(replayFrom);
+        out.writeLong(createdMillis);
+        out.writeInt(users.size());
+        for (UserRecord u : users) {
+            out.writeInt(u.userId);
+            out.writeUTF(u.type);
+            out.writeUTF(u.name == null ? "" : u.name);
+            out.writeUTF(u.email == null ? "" : u.email);
+            out.writeInt(u.guardianId);
+            out.writeUTF(u.course == null ? "" : u.course);
+            out.writeInt(u.year);
+            out.writeLong(u.fineBalance);
+        }
+        out.writeInt(loans.size());
+        for (int i = 0; i < loans.size(); i++) {
+            LoanJournal.Event loan = loans.get(i);
+            out.writeLong(loan.getLoanId());
+            out.writeInt(loan.getUserId());
+            out.writeLong(loan.getProductKey());
+            out.writeInt(loan.getDay());
+            out.writeInt(loan.getDueDay());
+            out.writeInt(loan.getRenewCount());
+            out.writeInt(finedThrough[i]);
+        }
+        out.writeInt(statistics.length);
+        out.write(statistics);
+    }
+
+    // -------------------------------------------
+    // READING
+    // -------------------------------------------
+
+    /**
+     * Reads a checkpoint file, verifying its checksum.
+     *
+     * @param file the checkpoint file
+     * @return the checkpoint
+     * @throws IOException if the file cannot be read, is truncated or fails its checksum
+     */
+    public static LoanCheckpoint read(Path file) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file))) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32C());
+            DataInputStream in = new DataInputStream(checked);
+            int magic = in.readInt();
+            if (magic != MAGIC || in.readShort() != VERSION) {
+                throw new IOException("Not a loan checkpoint of version " + VERSION + ": " + file);
+            }
+            long replayFrom = in.readLong();
+            long createdMillis = in.readLong();
+            int userCount = in.readInt();
+            List<UserRecord> users = new ArrayList<>(Math.min(userCount, 1024));
+            for (int i = 0; i < userCount; i++) {
+                int id = in.readInt();
+                String type = in.readUTF();
+                String name = in.readUTF();
+                String email = in.readUTF();
+                int guardianId = in.readInt();
+                String course = in.readUTF();
+                int year = in.readInt();
+                long fineBalance = in.readLong();
+                users.add(new UserRecord(id, type, name, email, guardianId, course.isEmpty() ? null : course, year,
+                        fineBalance));
+            }
+            int loanCount = in.readInt();
+            List<LoanJournal.Event> loans = new ArrayList<>(Math.min(loanCount, 1 << 16));
+            int[] finedThrough = new int[Math.min(loanCount, 1 << 16)];
+            for (int i = 0; i < loanCount; i++) {
+                loans.add(LoanJournal.Event.active(in.readLong(), in.readInt(), in.readLong(),
+                        in.readInt(), in.readInt(), in.readInt()));
+                if (i == finedThrough.length) {
+                    finedThrough = Arrays.copyOf(finedThrough, Math.min(loanCount, i * 2));
+                }
+                finedThrough[i] = in.readInt();
+            }
+            int length = in.readInt();
+            if (length < 0 || length > Files.size(file)) {
+                throw new IOException("Corrupt statistics length in loan checkpoint: " + file);
+            }
+            byte[] statistics = in.readNBytes(length);
+            int computed = (int) checked.getChecksum().getValue();
+            int stored = new DataInputStream(raw).readInt();
+            if (computed != stored) {
+                throw new IOException("Checksum mismatch in loan checkpoint: " + file);
+            }
+            return new LoanCheckpoint(replayFrom, createdMillis, users, loans,
+                    Arrays.copyOf(finedThrough, loanCount), statistics);
+        }
+    }
+
+    /**
+     * Loads the newest readable checkpoint in a directory.
+     * <p>
+     * Checkpoints that cannot be read are reported and skipped, so an
+     * older retained checkpoint is used if the newest one is damaged.
+     * </p>
+     *
+     * @param directory the state directory
+     * @return the newest valid checkpoint, or {@code null} if there is none
+     * @throws IOException if the directory cannot be listed
+     */
+    public static LoanCheckpoint loadLatest(Path directory) throws IOException {
+        List<Long> segments = list(directory);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Path file = path(directory, segments.get(i));
+            try {
+                return read(file);
+            } catch (IOException e) {
+                System.out.println("Ignoring unreadable checkpoint " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the replay segments of the checkpoints in a directory, oldest first.
+     *
+     * @param directory the state directory
+     * @return the checkpoints' replay segments in ascending order
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Long> list(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    segments.add(Long.parseLong(m.group(1)));
+                }
+            });
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Returns the path of the checkpoint that resumes replay at a segment.
+     *
+     * @param directory  the state directory
+     * @param replayFrom the checkpoint's replay segment
+     * @return the checkpoint's path
+     */
+    public static Path path(Path directory, long replayFrom) {
+        return directory.resolve(String.format("checkpoint-%08d.snapshot", replayFrom));
+    }
+}
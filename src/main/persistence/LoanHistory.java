@@ -0,0 +1,617 @@
+package main.persistence;
+
+import main.model.MediaType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only history of returned loans, stored by column and partitioned
+ * by month.
+ * <p>
+ * Active loans leave the ledger when they are returned; this store keeps
+ * one row per completed loan so past circulation can be analysed. Rows are
+ * grouped by the month of their return date, and each month keeps its
+ * rows in parallel primitive arrays (start day, return day, user ID,
+ * product ID and media type code) rather than as objects. An aggregation
+ * query skips every month outside its date range and runs over the rest
+ * as plain loops over those arrays, split into slices that are scanned in
+ * parallel on a {@link ForkJoinPool} and then added together. Results do
+ * not depend on how the work was split.
+ * </p>
+ * <p>
+ * Each month is also a file ({@code history-2024-03.loans}) that new rows
+ * are appended to, so the history survives restarts. Rows are written
+ * after the return is in the loan journal and are not forced to disk, so a
+ * crash can lose the last few rows; that only affects analysis, never the
+ * loans themselves. A partially written row at the end of a file is
+ * dropped when the file is opened.
+ * </p>
+ * <p>
+ * File layout (all integers big-endian):
+ * <pre>
+ * int    magic "ULSH"
+ * short  format version
+ * then rows, each:
+ *   int  start day, int return day, int user ID, int product ID,
+ *   byte media type code
+ * </pre>
+ * Days are counted from the epoch ({@link LocalDate#toEpochDay()}).
+ * </p>
+ */
+public class LoanHistory implements Closeable {
+
+    /** Marker identifying history files ("ULSH" in ASCII). */
+    private static final int MAGIC = 0x554C5348;
+
+    /** Current format version. */
+    private static final short VERSION = 1;
+
+    /** Size of the file header in bytes. */
+    private static final int HEADER_SIZE = 6;
+
+    /** Size of one encoded row. */
+    private static final int ROW_SIZE = 4 + 4 + 4 + 4 + 1;
+
+    /** Rows scanned by one task; smaller queries run on the calling thread. */
+    private static final int SLICE_ROWS = 1 << 16;
+
+    /** Initial capacity of a month's columns. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** File names of month partitions; the groups are year and month. */
+    private static final Pattern PARTITION_NAME = Pattern.compile("history-(\\d{4})-(\\d{2})\\.loans");
+
+    /** Width of a per-type counter array: one slot per possible media type code. */
+    private static final int TYPE_SLOTS = maxTypeCode() + 1;
+
+    /** Months by {@link #monthOf(int)}; ordered so a date range maps to a sub-map. */
+    private final ConcurrentSkipListMap<Integer, Partition> partitions = new ConcurrentSkipListMap<>();
+
+    /** Directory holding the month files, or {@code null} for a history kept in memory only. */
+    private final Path directory;
+
+    /** Pool running aggregation queries. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs an empty history kept in memory only, queried on the
+     * common fork-join pool.
+     */
+    public LoanHistory() {
+        this(null, ForkJoinPool.commonPool());
+    }
+
+    private LoanHistory(Path directory, ForkJoinPool pool) {
+        this.directory = directory;
+        this.pool = pool;
+    }
+
+    /**
+     * Opens the history stored in a directory, loading every month file.
+     *
+     * @param directory the directory of month files; created if missing
+     * @return the opened history
+     * @throws IOException if the directory or a file cannot be read
+     */
+    public static LoanHistory open(Path directory) throws IOException {
+        return open(directory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Opens the history stored in a directory, running queries on the given pool.
+     *
+     * @param directory the directory of month files; created if missing
+     * @param pool      the pool for aggregation queries
+     * @return the opened history
+     * @throws IOException if the directory or a file cannot be read
+     */
+    public static LoanHistory open(Path directory, ForkJoinPool pool) throws IOException {
+        Files.createDirectories(directory);
+        LoanHistory history = new LoanHistory(directory, pool);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher m = PARTITION_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    int month = Integer.parseInt(m.group(1)) * 12 + Integer.parseInt(m.group(2)) - 1;
+                    Partition partition = new Partition(file);
+                    partition.load();
+                    history.partitions.put(month, partition);
+                }
+            }
+        }
+        return history;
+    }
+
+    // -------------------------------------------
+    // APPENDING
+    // -------------------------------------------
+
+    /**
+     * Adds a returned loan to the history.
+     *
+     * @param startDay  the loan start date as an epoch day
+     * @param returnDay the return date as an epoch day
+     * @param userId    the borrower's ID
+     * @param productId the product's ID within its media type
+     * @param type      the product's media type
+     * @throws IOException if the row is kept in memory but cannot be written to its file
+     */
+    public void append(long startDay, long returnDay, int userId, int productId, MediaType type)
+            throws IOException {
+        int returned = Math.toIntExact(returnDay);
+        int month = monthOf(returned);
+        Partition partition = partitions.computeIfAbsent(month, m -> new Partition(
+                directory == null ? null : directory.resolve(fileName(m))));
+        partition.append(Math.toIntExact(startDay), returned, userId, productId, (byte) type.getCode());
+    }
+
+    /**
+     * Returns the total number of rows.
+     *
+     * @return the number of returned loans recorded
+     */
+    public long size() {
+        long size = 0;
+        for (Partition partition : partitions.values()) {
+            size += partition.columns().size;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the months that hold at least one row, oldest first.
+     *
+     * @return the months of the stored partitions
+     */
+    public List<YearMonth> months() {
+        List<YearMonth> months = new ArrayList<>();
+        for (int month : partitions.keySet()) {
+            months.add(YearMonth.of(month / 12, month % 12 + 1));
+        }
+        return months;
+    }
+
+    /**
+     * Closes every month file. The rows stay readable in memory.
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Partition partition : partitions.values()) {
+            try {
+                partition.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // -------------------------------------------
+    // AGGREGATION QUERIES
+    // -------------------------------------------
+
+    /**
+     * Counts loans returned in a date range.
+     *
+     * @param from the first return date, inclusive
+     * @param to   the last return date, inclusive
+     * @return the number of loans returned in the range
+     */
+    public long count(LocalDate from, LocalDate to) {
+        int first = day(from);
+        int last = day(to);
+        return aggregate(first, last, 1, (c, start, end, acc) -> {
+            int[] returnDay = c.returnDay;
+            long n = 0;
+            for (int i = start; i < end; i++) {
+                int d = returnDay[i];
+                if (d >= first && d <= last) {
+                    n++;
+                }
+            }
+            acc[0] += n;
+        })[0];
+    }
+
+    /**
+     * Counts returned loans per media type for each week of a date range.
+     * <p>
+     * Week {@code 0} is the seven days starting at {@code from}, week
+     * {@code 1} the seven after that, and so on; the last week may be
+     * shorter.
+     * </p>
+     *
+     * @param from the first return date, inclusive
+     * @param to   the last return date, inclusive
+     * @return the counts per week and media type
+     */
+    public WeeklyCounts countsPerWeek(LocalDate from, LocalDate to) {
+        int first = day(from);
+        int last = day(to);
+        int weeks = last < first ? 0 : (last - first) / 7 + 1;
+        long[] counts = aggregate(first, last, weeks * TYPE_SLOTS, (c, start, end, acc) -> {
+            int[] returnDay = c.returnDay;
+            byte[] type = c.type;
+            for (int i = start; i < end; i++) {
+                int d = returnDay[i];
+                if (d >= first && d <= last) {
+                    acc[(d - first) / 7 * TYPE_SLOTS + type[i]]++;
+                }
+            }
+        });
+        return new WeeklyCounts(from, weeks, counts);
+    }
+
+    /**
+     * Returns the average number of days from checkout to return.
+     *
+     * @param from the first return date, inclusive
+     * @param to   the last return date, inclusive
+     * @param type the media type to include, or {@code null} for all
+     * @return the mean loan length in days, or 0 if no loan matches
+     */
+    public double averageDaysToReturn(LocalDate from, LocalDate to, MediaType type) {
+        int first = day(from);
+        int last = day(to);
+        int code = type == null ? -1 : type.getCode();
+        long[] sums = aggregate(first, last, 2, (c, start, end, acc) -> {
+            int[] startDay = c.startDay;
+            int[] returnDay = c.returnDay;
+            byte[] types = c.type;
+            long days = 0;
+            long n = 0;
+            for (int i = start; i < end; i++) {
+                int d = returnDay[i];
+                if (d >= first && d <= last && (code < 0 || types[i] == code)) {
+                    days += d - startDay[i];
+                    n++;
+                }
+            }
+            acc[0] += days;
+            acc[1] += n;
+        });
+        return sums[1] == 0 ? 0 : (double) sums[0] / sums[1];
+    }
+
+    /**
+     * Counts returned loans per week of a date range, split by media type.
+     */
+    public static final class WeeklyCounts {
+
+        private final LocalDate firstDay;
+        private final int weeks;
+        private final long[] counts;
+
+        private WeeklyCounts(LocalDate firstDay, int weeks, long[] counts) {
+            this.firstDay = firstDay;
+            this.weeks = weeks;
+            this.counts = counts;
+        }
+
+        /** @return the number of weeks covered */
+        public int getWeeks() { return weeks; }
+
+        /**
+         * Returns the first day of a week.
+         *
+         * @param week the week index, from 0
+         * @return the week's first day
+         */
+        public LocalDate getWeekStart(int week) {
+            return firstDay.plusDays(7L * week);
+        }
+
+        /**
+         * Returns the loans of one media type returned in a week.
+         *
+         * @param week the week index, from 0
+         * @param type the media type
+         * @return the number of loans
+         */
+        public long getCount(int week, MediaType type) {
+            return counts[week * TYPE_SLOTS + type.getCode()];
+        }
+
+        /**
+         * Returns all loans returned in a week.
+         *
+         * @param week the week index, from 0
+         * @return the number of loans
+         */
+        public long getTotal(int week) {
+            long total = 0;
+            for (int slot = 0; slot < TYPE_SLOTS; slot++) {
+                total += counts[week * TYPE_SLOTS + slot];
+            }
+            return total;
+        }
+    }
+
+    // -------------------------------------------
+    // PARALLEL SCAN
+    // -------------------------------------------
+
+    /**
+     * Adds the contribution of a run of rows to an accumulator.
+     */
+    @FunctionalInterface
+    private interface Scan {
+        void accumulate(Columns columns, int from, int to, long[] acc);
+    }
+
+    /** A run of rows in one month, scanned by one task. */
+    private static final class Slice {
+
+        final Columns columns;
+        final int from;
+        final int to;
+
+        Slice(Columns columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Runs a scan over every row of the months overlapping a day range and
+     * sums the per-slice accumulators.
+     */
+    private long[] aggregate(int firstDay, int lastDay, int width, Scan scan) {
+        if (lastDay < firstDay) {
+            return new long[width];
+        }
+        List<Slice> slices = new ArrayList<>();
+        long rows = 0;
+        for (Partition partition : partitions.subMap(monthOf(firstDay), true, monthOf(lastDay), true).values()) {
+            Columns columns = partition.columns();
+            for (int start = 0; start < columns.size; start += SLICE_ROWS) {
+                slices.add(new Slice(columns, start, Math.min(columns.size, start + SLICE_ROWS)));
+            }
+            rows += columns.size;
+        }
+        ScanTask task = new ScanTask(slices, 0, slices.size(), width, scan);
+        return rows <= SLICE_ROWS ? task.compute() : pool.invoke(task);
+    }
+
+    /**
+     * Scans a range of slices, splitting it in half while it holds more than one.
+     */
+    private static final class ScanTask extends RecursiveTask<long[]> {
+
+        private final List<Slice> slices;
+        private final int from;
+        private final int to;
+        private final int width;
+        private final Scan scan;
+
+        ScanTask(List<Slice> slices, int from, int to, int width, Scan scan) {
+            this.slices = slices;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.scan = scan;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= 1) {
+                long[] acc = new long[width];
+                for (int i = from; i < to; i++) {
+                    Slice slice = slices.get(i);
+                    scan.accumulate(slice.columns, slice.from, slice.to, acc);
+                }
+                return acc;
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(slices, from, mid, width, scan);
+            left.fork();
+            long[] right = new ScanTask(slices, mid, to, width, scan).compute();
+            long[] acc = left.join();
+            for (int i = 0; i < width; i++) {
+                acc[i] += right[i];
+            }
+            return acc;
+        }
+    }
+
+    // -------------------------------------------
+    // MONTH PARTITIONS
+    // -------------------------------------------
+
+    /**
+     * Consistent view of a month's columns: the first {@code size} entries
+     * of each array. Rows are only ever added past {@code size}, and a full
+     * array is replaced rather than resized, so a view never changes.
+     */
+    private static final class Columns {
+
+        final int[] startDay;
+        final int[] returnDay;
+        final int[] userId;
+        final int[] productId;
+        final byte[] type;
+        final int size;
+
+        Columns(int[] startDay, int[] returnDay, int[] userId, int[] productId, byte[] type, int size) {
+            this.startDay = startDay;
+            this.returnDay = returnDay;
+            this.userId = userId;
+            this.productId = productId;
+            this.type = type;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The rows of one month, in memory and in their file.
+     */
+    private static final class Partition {
+
+        /** The month's file, or {@code null} if kept in memory only. */
+        private final Path file;
+
+        private int[] startDay = new int[INITIAL_CAPACITY];
+        private int[] returnDay = new int[INITIAL_CAPACITY];
+        private int[] userId = new int[INITIAL_CAPACITY];
+        private int[] productId = new int[INITIAL_CAPACITY];
+        private byte[] type = new byte[INITIAL_CAPACITY];
+        private int size;
+
+        /** Open file rows are appended to; opened on the first append. */
+        private FileChannel channel;
+
+        /** Reused buffer for encoding one row. */
+        private final ByteBuffer row = ByteBuffer.allocate(ROW_SIZE);
+
+        Partition(Path file) {
+            this.file = file;
+        }
+
+        /** Reads the month's file into the columns, dropping a torn final row. */
+        void load() throws IOException {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                long length = in.size();
+                if (length < HEADER_SIZE) {
+                    return;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, Integer.MAX_VALUE - 8));
+                while (buffer.hasRemaining() && in.read(buffer) >= 0) {
+                    // keep reading until full or end of file
+                }
+                buffer.flip();
+                if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                    throw new IOException("Not a loan history file: " + file);
+                }
+                int rows = buffer.remaining() / ROW_SIZE;
+                grow(rows);
+                for (int i = 0; i < rows; i++) {
+                    startDay[i] = buffer.getInt();
+                    returnDay[i] = buffer.getInt();
+                    userId[i] = buffer.getInt();
+                    productId[i] = buffer.getInt();
+                    type[i] = buffer.get();
+                }
+                size = rows;
+            }
+        }
+
+        /** Adds a row to the columns and then to the file. */
+        synchronized void append(int start, int returned, int user, int product, byte code) throws IOException {
+            if (size == startDay.length) {
+                grow(size * 2);
+            }
+            startDay[size] = start;
+            returnDay[size] = returned;
+            userId[size] = user;
+            productId[size] = product;
+            type[size] = code;
+            size++;
+
+            if (file == null) {
+                return;
+            }
+            if (channel == null) {
+                channel = openForAppend();
+            }
+            row.clear();
+            row.putInt(start).putInt(returned).putInt(user).putInt(product).put(code).flip();
+            while (row.hasRemaining()) {
+                channel.write(row);
+            }
+        }
+
+        /** Returns the rows added so far. */
+        synchronized Columns columns() {
+            return new Columns(startDay, returnDay, userId, productId, type, size);
+        }
+
+        synchronized void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        /** Opens the file for appending, writing a header or cutting a torn row first. */
+        private FileChannel openForAppend() throws IOException {
+            FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                if (out.size() < HEADER_SIZE) {
+                    out.truncate(0);
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).flip();
+                    while (header.hasRemaining()) {
+                        out.write(header);
+                    }
+                } else {
+                    long whole = HEADER_SIZE + (out.size() - HEADER_SIZE) / ROW_SIZE * ROW_SIZE;
+                    out.truncate(whole);
+                    out.position(whole);
+                }
+                return out;
+            } catch (IOException e) {
+                out.close();
+                throw e;
+            }
+        }
+
+        /** Replaces the columns with arrays holding at least {@code capacity} rows. */
+        private void grow(int capacity) {
+            int length = Math.max(capacity, INITIAL_CAPACITY);
+            startDay = Arrays.copyOf(startDay, length);
+            returnDay = Arrays.copyOf(returnDay, length);
+            userId = Arrays.copyOf(userId, length);
+            productId = Arrays.copyOf(productId, length);
+            type = Arrays.copyOf(type, length);
+        }
+    }
+
+    // -------------------------------------------
+    // HELPERS
+    // -------------------------------------------
+
+    /** Returns the partition number ({@code year * 12 + month - 1}) of an epoch day. */
+    private static int monthOf(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    /** Returns the file name of a partition. */
+    private static String fileName(int month) {
+        return String.format("history-%04d-%02d.loans", month / 12, month % 12 + 1);
+    }
+
+    private static int day(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    private static int maxTypeCode() {
+        int max = 0;
+        for (MediaType type : MediaType.values()) {
+            max = Math.max(max, type.getCode());
+        }
+        return max;
+    }
+}
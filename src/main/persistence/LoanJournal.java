@@ -0,0 +1,846 @@
+package main.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable, append-only journal of loan events.
+ * <p>
+ * Every borrow, return and renewal is appended as a small binary record
+ * before the caller is told it succeeded. Records are buffered in memory
+ * and written by a single flusher thread, which writes everything queued
+ * since its last pass and then calls {@link FileChannel#force(boolean)}
+ * once for the whole batch (group commit). Callers that append while a
+ * flush is in progress simply join the next batch, so the number of
+ * fsyncs grows with time, not with the number of checkouts.
+ * </p>
+ * <p>
+ * The journal is a directory of numbered segment files
+ * ({@code loans-00000001.journal}, ...). Records are appended to the
+ * newest segment; {@link #roll()} seals it and starts the next one. Once a
+ * checkpoint covers everything up to a segment, the older segments are no
+ * longer needed and {@link #deleteSegmentsBefore(long)} removes them, so
+ * the journal does not grow without bound.
+ * </p>
+ * <p>
+ * On {@link #open(Path, long, Consumer)} the segments from a given number
+ * onwards are replayed in order. A crash may leave a partially written
+ * record at the end of the newest segment; replay stops at the first
+ * record that is incomplete or fails its checksum, and the segment is
+ * truncated there before new records are added.
+ * </p>
+ * <p>
+ * Segment layout (all integers big-endian):
+ * <pre>
+ * int    magic "ULSJ"
+ * short  format version
+ * then records, each:
+ *   int  payload length
+ *   int  CRC-32C of the payload
+ *   byte event type, long loan ID, int user ID, long product key,
+ *   int  day, int second day, int renewal count (a fine's amount)
+ * </pre>
+ * Days are counted from the epoch ({@link java.time.LocalDate#toEpochDay()}).
+ * </p>
+ */
+public class LoanJournal implements Closeable {
+
+    /** Marker identifying journal files ("ULSJ" in ASCII). */
+    private static final int MAGIC = 0x554C534A;
+
+    /** Current format version. */
+    private static final short VERSION = 1;
+
+    /** Size of the file header in bytes. */
+    private static final int HEADER_SIZE = 6;
+
+    /** Size of the length and checksum prefix of each record. */
+    private static final int RECORD_PREFIX = 8;
+
+    /** Size of an encoded event payload. */
+    private static final int PAYLOAD_SIZE = 1 + 8 + 4 + 8 + 4 + 4 + 4;
+
+    /** File names of segments; the group is the segment number. */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("loans-(\\d{8,})\\.journal");
+
+    /**
+     * Kinds of loan event recorded in the journal.
+     */
+    public enum EventType {
+
+        /** A product was checked out. */
+        BORROW,
+
+        /** A product was returned. */
+        RETURN,
+
+        /** A loan's due date was extended. */
+        RENEW,
+
+        /** An overdue fine was charged to the borrower. */
+        FINE
+    }
+
+    /**
+     * One loan event, identified by the loan it belongs to.
+     * <p>
+     * The meaning of {@link #getDay()} depends on the type: the start date
+     * for a borrow, the return date for a return and the new due date for a
+     * renewal, and the last day charged for a fine, whose amount is
+     * {@link #getAmount()}. {@link #getDueDay()} is the due date of a borrow. A return
+     * also records the start date of the loan it closes (see
+     * {@link #getStartDay()}), so the loan's length is known even when its
+     * borrow event is no longer in the journal.
+     * </p>
+     */
+    public static final class Event {
+
+        private final EventType type;
+        private final long loanId;
+        private final int userId;
+        private final long productKey;
+        private final int day;
+        private final int dueDay;
+        private final int renewCount;
+
+        private Event(EventType type, long loanId, int userId, long productKey,
+                      int day, int dueDay, int renewCount) {
+            this.type = type;
+            this.loanId = loanId;
+            this.userId = userId;
+            this.productKey = productKey;
+            this.day = day;
+            this.dueDay = dueDay;
+            this.renewCount = renewCount;
+        }
+
+        /**
+         * Creates a borrow event.
+         *
+         * @param loanId     the new loan's ID
+         * @param userId     the borrower's ID
+         * @param productKey the borrowed product's key
+         * @param startDay   the loan start date as an epoch day
+         * @param dueDay     the due date as an epoch day
+         * @return the event
+         */
+        public static Event borrow(long loanId, int userId, long productKey, long startDay, long dueDay) {
+            return new Event(EventType.BORROW, loanId, userId, productKey,
+                    Math.toIntExact(startDay), Math.toIntExact(dueDay), 0);
+        }
+
+        /**
+         * Creates a return event.
+         *
+         * @param loanId     the closed loan's ID
+         * @param userId     the borrower's ID
+         * @param productKey the returned product's key
+         * @param returnDay  the return date as an epoch day
+         * @return the event, with no start date recorded
+         */
+        public static Event returned(long loanId, int userId, long productKey, long returnDay) {
+            return returned(loanId, userId, productKey, returnDay, 0);
+        }
+
+        /**
+         * Creates a return event that records when the closed loan started.
+         *
+         * @param loanId     the closed loan's ID
+         * @param userId     the borrower's ID
+         * @param productKey the returned product's key
+         * @param returnDay  the return date as an epoch day
+         * @param startDay   the start date of the closed loan as an epoch day
+         * @return the event
+         */
+        public static Event returned(long loanId, int userId, long productKey, long returnDay, long startDay) {
+            // A return has no due date; the start date travels in that slot.
+            return new Event(EventType.RETURN, loanId, userId, productKey,
+                    Math.toIntExact(returnDay), Math.toIntExact(startDay), 0);
+        }
+
+        /**
+         * Creates a renewal event.
+         *
+         * @param loanId     the renewed loan's ID
+         * @param userId     the borrower's ID
+         * @param productKey the product's key
+         * @param dueDay     the new due date as an epoch day
+         * @param renewCount the number of renewals after this one
+         * @return the event
+         */
+        public static Event renew(long loanId, int userId, long productKey, long dueDay, int renewCount) {
+            return new Event(EventType.RENEW, loanId, userId, productKey,
+                    Math.toIntExact(dueDay), Math.toIntExact(dueDay), renewCount);
+        }
+
+        /**
+         * Creates a fine event.
+         *
+         * @param loanId       the overdue loan's ID
+         * @param userId       the borrower's ID
+         * @param productKey   the product's key
+         * @param finedThrough the last day now charged, as an epoch day
+         * @param amountMinor  the amount charged, in minor units
+         * @return the event
+         */
+        public static Event fine(long loanId, int userId, long productKey, long finedThrough, long amountMinor) {
+            // The amount travels in the renewal count slot.
+            return new Event(EventType.FINE, loanId, userId, productKey,
+                    Math.toIntExact(finedThrough), 0, Math.toIntExact(amountMinor));
+        }
+
+        /**
+         * Creates the borrow event of a loan as it currently stands,
+         * including its renewals so far.
+         *
+         * @param loanId     the loan's ID
+         * @param userId     the borrower's ID
+         * @param productKey the borrowed product's key
+         * @param startDay   the loan start date as an epoch day
+         * @param dueDay     the current due date as an epoch day
+         * @param renewCount the number of renewals made
+         * @return the event
+         */
+        public static Event active(long loanId, int userId, long productKey, long startDay, long dueDay,
+                                   int renewCount) {
+            return new Event(EventType.BORROW, loanId, userId, productKey,
+                    Math.toIntExact(startDay), Math.toIntExact(dueDay), renewCount);
+        }
+
+        /**
+         * Returns this borrow event updated with the due date and renewal
+         * count of a later renewal of the same loan.
+         *
+         * @param renewal the renewal event
+         * @return the updated borrow event
+         */
+        public Event renewedBy(Event renewal) {
+            return new Event(type, loanId, userId, productKey, day, renewal.dueDay, renewal.renewCount);
+        }
+
+        /** Returns the kind of event. */
+        public EventType getType() { return type; }
+
+        /** Returns the ID of the loan the event belongs to. */
+        public long getLoanId() { return loanId; }
+
+        /** Returns the borrower's ID. */
+        public int getUserId() { return userId; }
+
+        /** Returns the product's packed key. */
+        public long getProductKey() { return productKey; }
+
+        /** Returns the event's date as an epoch day (see the class description). */
+        public int getDay() { return day; }
+
+        /** Returns the loan's due date as an epoch day; 0 for a return or a fine. */
+        public int getDueDay() { return type == EventType.RETURN || type == EventType.FINE ? 0 : dueDay; }
+
+        /**
+         * Returns the loan's start date as an epoch day: the event date of a
+         * borrow, the recorded start of the loan a return closes, and 0 for
+         * a renewal or a return written without its start date.
+         */
+        public int getStartDay() {
+            return switch (type) {
+                case BORROW -> day;
+                case RETURN -> dueDay;
+                case RENEW, FINE -> 0;
+            };
+        }
+
+        /** Returns the loan's renewal count after the event; 0 for a fine. */
+        public int getRenewCount() { return type == EventType.FINE ? 0 : renewCount; }
+
+        /** Returns the amount charged by a fine event in minor units; 0 for other events. */
+        public long getAmount() { return type == EventType.FINE ? renewCount : 0; }
+
+        @Override
+        public String toString() {
+            return type + " loan " + loanId + " user " + userId + " product " + productKey;
+        }
+    }
+
+    // -------------------------------------------
+    // STATE
+    // -------------------------------------------
+
+    /** Directory holding the segment files. */
+    private final Path directory;
+
+    /** Channel of the active segment; only the flusher replaces it. */
+    private FileChannel channel;
+
+    /** Number of the active segment. */
+    private long segment;
+
+    /** Whether a caller of {@link #roll()} is waiting for a new segment. */
+    private boolean rollRequested;
+
+    /** Guards the buffers, sequence numbers, segment state and failure state. */
+    private final Object lock = new Object();
+
+    /** Records waiting for the next flush. */
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+
+    /** Buffer being written by the flusher; swapped with {@link #pending}. */
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+
+    /** Sequence number of the last appended record. */
+    private long appendedSeq;
+
+    /** Sequence number of the last record known to be on disk. */
+    private long durableSeq;
+
+    /** Number of flushes that wrote at least one record. */
+    private long batches;
+
+    /** First write failure, after which the journal refuses further records. */
+    private IOException failure;
+
+    /** Whether {@link #close()} has been called. */
+    private boolean closed;
+
+    /** Background thread performing group commits. */
+    private final Thread flusher;
+
+    /** Number of events passed to the replay callback on open. */
+    private final long replayedEvents;
+
+    /** Number of bytes discarded from a torn tail on open. */
+    private final long discardedBytes;
+
+    private LoanJournal(Path directory, FileChannel channel, long segment, long replayedEvents,
+                        long discardedBytes) {
+        this.directory = directory;
+        this.channel = channel;
+        this.segment = segment;
+        this.replayedEvents = replayedEvents;
+        this.discardedBytes = discardedBytes;
+        this.flusher = new Thread(this::flushLoop, "loan-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // -------------------------------------------
+    // OPENING AND REPLAY
+    // -------------------------------------------
+
+    /**
+     * Opens (or creates) a journal, replaying all of its existing events first.
+     *
+     * @param directory the journal directory
+     * @param replay    receives every intact event in the order it was written
+     * @return the journal, positioned for appending
+     * @throws IOException if a segment cannot be opened or is not a journal
+     */
+    public static LoanJournal open(Path directory, Consumer<Event> replay) throws IOException {
+        return open(directory, 0, replay);
+    }
+
+    /**
+     * Opens (or creates) a journal, replaying the events of the segments
+     * numbered {@code fromSegment} and above.
+     * <p>
+     * Older segments are skipped; a checkpoint already reflects them. Only
+     * the newest segment may end in a torn record, which is discarded.
+     * </p>
+     *
+     * @param directory   the journal directory
+     * @param fromSegment the first segment to replay
+     * @param replay      receives every intact event in the order it was written
+     * @return the journal, positioned for appending to the newest segment
+     * @throws IOException if a segment cannot be opened, is not a journal or
+     *                     a sealed segment is corrupt
+     */
+    public static LoanJournal open(Path directory, long fromSegment, Consumer<Event> replay) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments(directory);
+        long[] replayed = new long[1];
+        Consumer<Event> counting = event -> {
+            replayed[0]++;
+            replay.accept(event);
+        };
+
+        for (int i = 0; i < segments.size() - 1; i++) {
+            long number = segments.get(i);
+            if (number < fromSegment) {
+                continue;
+            }
+            try (FileChannel sealed = FileChannel.open(segmentPath(directory, number), StandardOpenOption.READ)) {
+                long size = sealed.size();
+                if (size < HEADER_SIZE || replaySegment(sealed, size, counting) < size) {
+                    throw new IOException("Corrupt sealed journal segment: " + segmentPath(directory, number));
+                }
+            }
+        }
+
+        // The newest segment stays open for appending.
+        long newest = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        long active = Math.max(newest, fromSegment);
+        FileChannel channel = FileChannel.open(segmentPath(directory, active), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                // New (or torn before the header completed): start afresh.
+                writeHeader(channel);
+                return new LoanJournal(directory, channel.position(HEADER_SIZE), active, replayed[0], size);
+            }
+            long end = replaySegment(channel, size, counting);
+            if (end < size) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            return new LoanJournal(directory, channel.position(end), active, replayed[0], size - end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks a segment's header and replays its records.
+     *
+     * @return the offset just past the last intact record
+     */
+    private static long replaySegment(FileChannel channel, long size, Consumer<Event> consumer) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+            throw new IOException("Not a loan journal segment of version " + VERSION);
+        }
+        return scan(channel, HEADER_SIZE, size, consumer);
+    }
+
+    /**
+     * Decodes records from {@code start} until the end of the intact data.
+     *
+     * @return the offset just past the last intact record
+     */
+    static long scan(FileChannel channel, long start, long size, Consumer<Event> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        CRC32C crc = new CRC32C();
+        long position = start;
+        buffer.limit(0);
+
+        while (true) {
+            // Make sure a whole record is buffered, refilling from the file.
+            if (buffer.remaining() < RECORD_PREFIX + PAYLOAD_SIZE) {
+                long readFrom = position + buffer.remaining();
+                buffer.compact();
+                while (buffer.hasRemaining() && readFrom < size) {
+                    int read = channel.read(buffer, readFrom);
+                    if (read <= 0) {
+                        break;
+                    }
+                    readFrom += read;
+                }
+                buffer.flip();
+            }
+            if (buffer.remaining() < RECORD_PREFIX) {
+                return position;
+            }
+            int length = buffer.getInt(buffer.position());
+            if (length != PAYLOAD_SIZE || buffer.remaining() < RECORD_PREFIX + length) {
+                return position; // torn or corrupt record
+            }
+            int expected = buffer.getInt(buffer.position() + 4);
+            crc.reset();
+            crc.update(buffer.slice(buffer.position() + RECORD_PREFIX, length));
+            if ((int) crc.getValue() != expected) {
+                return position;
+            }
+            buffer.position(buffer.position() + RECORD_PREFIX);
+            Event event = decode(buffer);
+            if (event == null) {
+                return position;
+            }
+            consumer.accept(event);
+            position += RECORD_PREFIX + length;
+        }
+    }
+
+    // -------------------------------------------
+    // APPENDING
+    // -------------------------------------------
+
+    /**
+     * Appends an event and waits until it is durable on disk.
+     * <p>
+     * Concurrent callers share fsyncs: all events appended while a flush
+     * is running are written and forced together by the next one.
+     * </p>
+     *
+     * @param event the event to record
+     * @throws IOException if the journal is closed or a write failed
+     */
+    public void append(Event event) throws IOException {
+        long seq;
+        synchronized (lock) {
+            if (failure != null) {
+                throw new IOException("Loan journal is unusable after an earlier write failure", failure);
+            }
+            if (closed) {
+                throw new IOException("Loan journal is closed");
+            }
+            if (pending.remaining() < RECORD_PREFIX + PAYLOAD_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            encode(pending, event);
+            seq = ++appendedSeq;
+            lock.notifyAll();
+
+            // Wait for the flusher to make this record durable.
+            boolean interrupted = false;
+            while (durableSeq < seq && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableSeq < seq) {
+                throw new IOException("Loan journal write failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of events replayed when the journal was opened.
+     *
+     * @return the replayed event count
+     */
+    public long getReplayedEvents() {
+        return replayedEvents;
+    }
+
+    /**
+     * Returns the number of bytes of torn tail discarded when the journal was opened.
+     *
+     * @return the discarded byte count
+     */
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
+    /**
+     * Returns how many events have been made durable since the journal was opened.
+     *
+     * @return the durable event count
+     */
+    public long getDurableEvents() {
+        synchronized (lock) {
+            return durableSeq;
+        }
+    }
+
+    /**
+     * Returns how many group commits wrote at least one event.
+     *
+     * @return the batch count
+     */
+    public long getBatches() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    /**
+     * Returns the number of the segment events are currently appended to.
+     *
+     * @return the active segment number
+     */
+    public long getSegment() {
+        synchronized (lock) {
+            return segment;
+        }
+    }
+
+    /**
+     * Returns the file of the segment events are currently appended to.
+     *
+     * @return the active segment's path
+     */
+    public Path getSegmentFile() {
+        return segmentPath(directory, getSegment());
+    }
+
+    // -------------------------------------------
+    // SEGMENTS
+    // -------------------------------------------
+
+    /**
+     * Seals the active segment and starts a new one.
+     * <p>
+     * Every event appended before this call is in a segment numbered below
+     * the returned one; events appended after it returns go to the new
+     * segment or later ones.
+     * </p>
+     *
+     * @return the number of the new active segment
+     * @throws IOException if the journal is closed or the new segment cannot be created
+     */
+    public long roll() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("Loan journal is closed");
+            }
+            long target = segment + 1;
+            rollRequested = true;
+            lock.notifyAll();
+
+            boolean interrupted = false;
+            while (segment < target && failure == null && !closed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (segment < target) {
+                throw new IOException("Could not start a new journal segment", failure);
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Deletes the sealed segments numbered below the given one.
+     * <p>
+     * The active segment is never deleted.
+     * </p>
+     *
+     * @param firstKept the lowest segment number to keep
+     * @return the number of segments deleted
+     * @throws IOException if the directory cannot be listed or a segment cannot be deleted
+     */
+    public int deleteSegmentsBefore(long firstKept) throws IOException {
+        long limit = Math.min(firstKept, getSegment());
+        int deleted = 0;
+        for (long number : listSegments(directory)) {
+            if (number < limit && Files.deleteIfExists(segmentPath(directory, number))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns the path of a segment file.
+     *
+     * @param directory the journal directory
+     * @param number    the segment number
+     * @return the segment's path
+     */
+    public static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("loans-%08d.journal", number));
+    }
+
+    /** Returns the numbers of the segments in a directory, in ascending order. */
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher m = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    numbers.add(Long.parseLong(m.group(1)));
+                }
+            });
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    /** Writes a segment header to an empty channel and forces it. */
+    private static void writeHeader(FileChannel channel) throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).flip();
+        writeFully(channel, header, 0);
+        channel.force(true);
+    }
+
+    /**
+     * Flushes any queued events and closes the journal.
+     *
+     * @throws IOException if the final flush or closing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    // -------------------------------------------
+    // GROUP COMMIT
+    // -------------------------------------------
+
+    /** Writes and forces each batch of queued records until closed. */
+    private void flushLoop() {
+        while (true) {
+            long target;
+            boolean roll;
+            synchronized (lock) {
+                while (pending.position() == 0 && !closed && !rollRequested) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // The flusher only stops through close().
+                    }
+                }
+                if (pending.position() == 0 && closed) {
+                    return;
+                }
+                roll = rollRequested;
+                ByteBuffer swap = writing;
+                writing = pending;
+                pending = swap;
+                pending.clear();
+                target = appendedSeq;
+            }
+
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                channel.force(false);
+                boolean wrote = writing.position() > 0;
+                writing.clear();
+                if (roll) {
+                    startNextSegment();
+                }
+                synchronized (lock) {
+                    durableSeq = target;
+                    if (wrote) {
+                        batches++;
+                    }
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /** Creates the next segment and switches appends to it. */
+    private void startNextSegment() throws IOException {
+        long next;
+        synchronized (lock) {
+            next = segment + 1;
+        }
+        FileChannel created = FileChannel.open(segmentPath(directory, next), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            writeHeader(created);
+            created.position(HEADER_SIZE);
+        } catch (IOException e) {
+            created.close();
+            throw e;
+        }
+        FileChannel sealed = channel;
+        channel = created;
+        sealed.close();
+        synchronized (lock) {
+            segment = next;
+            rollRequested = false;
+        }
+    }
+
+    // -------------------------------------------
+    // ENCODING
+    // -------------------------------------------
+
+    /** Appends one framed record to the buffer. */
+    private static void encode(ByteBuffer buffer, Event event) {
+        int start = buffer.position();
+        buffer.putInt(PAYLOAD_SIZE).putInt(0);
+        buffer.put((byte) event.type.ordinal())
+                .putLong(event.loanId)
+                .putInt(event.userId)
+                .putLong(event.productKey)
+                .putInt(event.day)
+                .putInt(event.dueDay)
+                .putInt(event.renewCount);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + RECORD_PREFIX, PAYLOAD_SIZE));
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /** Reads one payload, or returns {@code null} if its type is unknown. */
+    private static Event decode(ByteBuffer buffer) {
+        int type = buffer.get();
+        long loanId = buffer.getLong();
+        int userId = buffer.getInt();
+        long productKey = buffer.getLong();
+        int day = buffer.getInt();
+        int dueDay = buffer.getInt();
+        int renewCount = buffer.getInt();
+        EventType[] types = EventType.values();
+        if (type < 0 || type >= types.length) {
+            return null;
+        }
+        return new Event(types[type], loanId, userId, productKey, day, dueDay, renewCount);
+    }
+
+    /** Writes the whole buffer at the given offset. */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /** Fills the buffer from the given offset. */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+            position += read;
+        }
+    }
+}
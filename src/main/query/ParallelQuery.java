@@ -0,0 +1,384 @@
+package main.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Query over a fixed list of items whose operators run on a
+ * {@link ForkJoinPool}.
+ * <p>
+ * Each operator splits the items into halves until a part holds no more
+ * than the threshold, processes the parts in parallel and combines the
+ * partial results in input order. Inputs no larger than the threshold are
+ * processed on the calling thread without touching the pool, so small
+ * queries pay no scheduling cost.
+ * </p>
+ * <p>
+ * Results are deterministic and identical to processing the items one by
+ * one in order: {@link #filter(Predicate)} and {@link #map(Function)} keep
+ * input order, groups appear in the order of their first item and list
+ * their items in input order, {@link #sorted(Comparator)} is stable and
+ * {@link #top(int, Comparator)} breaks ties by input position.
+ * </p>
+ * <p>
+ * Example usage:
+ * <pre>
+ *     Map&lt;UserType, List&lt;Loan&gt;&gt; overdue = system.queryLoans()
+ *             .filter(l -&gt; l.isOverdue(today))
+ *             .groupBy(l -&gt; l.getBorrower().getType());
+ * </pre>
+ * </p>
+ *
+ * @param <T> the item type
+ */
+public final class ParallelQuery<T> {
+
+    /** Default number of items below which an operator runs sequentially. */
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    /** The items; never modified once the query is built. */
+    private final List<T> items;
+
+    /** Pool running the operators. */
+    private final ForkJoinPool pool;
+
+    /** Largest part processed as a single task. */
+    private final int threshold;
+
+    private ParallelQuery(List<T> items, ForkJoinPool pool, int threshold) {
+        this.items = items;
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates a query over a copy of the given items, run on the common pool.
+     *
+     * @param items the items, in the order results should follow
+     * @param <T>   the item type
+     * @return the query
+     */
+    public static <T> ParallelQuery<T> of(Collection<? extends T> items) {
+        return of(items, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Creates a query over a copy of the given items.
+     *
+     * @param items     the items, in the order results should follow
+     * @param pool      the pool running the operators
+     * @param threshold the largest number of items processed as one task
+     * @param <T>       the item type
+     * @return the query
+     * @throws IllegalArgumentException if the threshold is not positive
+     */
+    public static <T> ParallelQuery<T> of(Collection<? extends T> items, ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        return new ParallelQuery<>(new ArrayList<>(items), pool, threshold);
+    }
+
+    /** Returns a query over new items that runs like this one. */
+    private <R> ParallelQuery<R> derive(List<R> results) {
+        return new ParallelQuery<>(results, pool, threshold);
+    }
+
+    // -------------------------------------------
+    // OPERATORS
+    // -------------------------------------------
+
+    /**
+     * Keeps the items that match a condition.
+     *
+     * @param condition the condition; called concurrently
+     * @return a query over the matching items, in input order
+     */
+    public ParallelQuery<T> filter(Predicate<? super T> condition) {
+        List<T> matching = split((from, to) -> {
+            List<T> part = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                T item = items.get(i);
+                if (condition.test(item)) {
+                    part.add(item);
+                }
+            }
+            return part;
+        }, (left, right) -> {
+            left.addAll(right);
+            return left;
+        });
+        return derive(matching);
+    }
+
+    /**
+     * Transforms every item.
+     *
+     * @param mapper the transformation; called concurrently
+     * @param <R>    the result type
+     * @return a query over the results, in input order
+     */
+    public <R> ParallelQuery<R> map(Function<? super T, ? extends R> mapper) {
+        Object[] results = new Object[items.size()];
+        split((from, to) -> {
+            for (int i = from; i < to; i++) {
+                results[i] = mapper.apply(items.get(i));
+            }
+            return null;
+        }, (left, right) -> null);
+        return derive(asList(results));
+    }
+
+    /**
+     * Groups the items by a key.
+     *
+     * @param key extracts an item's key; called concurrently
+     * @param <K> the key type
+     * @return the groups in order of their first item, each listing its items in input order
+     */
+    public <K> Map<K, List<T>> groupBy(Function<? super T, ? extends K> key) {
+        return split((from, to) -> {
+            Map<K, List<T>> part = new LinkedHashMap<>();
+            for (int i = from; i < to; i++) {
+                T item = items.get(i);
+                part.computeIfAbsent(key.apply(item), k -> new ArrayList<>()).add(item);
+            }
+            return part;
+        }, (left, right) -> {
+            right.forEach((k, group) -> left.computeIfAbsent(k, x -> new ArrayList<>()).addAll(group));
+            return left;
+        });
+    }
+
+    /**
+     * Counts the items per key.
+     *
+     * @param key extracts an item's key; called concurrently
+     * @param <K> the key type
+     * @return the counts in order of each key's first item
+     */
+    public <K> Map<K, Long> countBy(Function<? super T, ? extends K> key) {
+        return split((from, to) -> {
+            Map<K, Long> part = new LinkedHashMap<>();
+            for (int i = from; i < to; i++) {
+                part.merge(key.apply(items.get(i)), 1L, Long::sum);
+            }
+            return part;
+        }, (left, right) -> {
+            right.forEach((k, n) -> left.merge(k, n, Long::sum));
+            return left;
+        });
+    }
+
+    /**
+     * Sorts the items with a parallel, stable merge sort.
+     *
+     * @param order the sort order; called concurrently
+     * @return a query over the sorted items; equal items keep their input order
+     */
+    public ParallelQuery<T> sorted(Comparator<? super T> order) {
+        Object[] array = items.toArray();
+        @SuppressWarnings("unchecked")
+        Comparator<Object> cmp = (Comparator<Object>) order;
+        SortTask task = new SortTask(array, new Object[array.length], 0, array.length, cmp, threshold);
+        if (array.length <= threshold) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return derive(asList(array));
+    }
+
+    /**
+     * Returns the first items in a given order without sorting them all.
+     * <p>
+     * Each part keeps only its best {@code k} items, so the work is linear
+     * in the number of items. The result equals the first {@code k} items
+     * of {@link #sorted(Comparator)}.
+     * </p>
+     *
+     * @param k     the number of items wanted
+     * @param order the order; the first items in it are returned
+     * @return up to {@code k} items, best first
+     */
+    public List<T> top(int k, Comparator<? super T> order) {
+        if (k <= 0 || items.isEmpty()) {
+            return List.of();
+        }
+        Comparator<Integer> rank = (a, b) -> {
+            int c = order.compare(items.get(a), items.get(b));
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+        List<Integer> best = split((from, to) -> {
+            PriorityQueue<Integer> kept = new PriorityQueue<>(k, rank.reversed());
+            for (int i = from; i < to; i++) {
+                if (kept.size() < k) {
+                    kept.add(i);
+                } else if (rank.compare(i, kept.peek()) < 0) {
+                    kept.poll();
+                    kept.add(i);
+                }
+            }
+            List<Integer> part = new ArrayList<>(kept);
+            part.sort(rank);
+            return part;
+        }, (left, right) -> {
+            List<Integer> merged = new ArrayList<>(Math.min(k, left.size() + right.size()));
+            int l = 0;
+            int r = 0;
+            while (merged.size() < k && (l < left.size() || r < right.size())) {
+                if (r == right.size() || (l < left.size() && rank.compare(left.get(l), right.get(r)) <= 0)) {
+                    merged.add(left.get(l++));
+                } else {
+                    merged.add(right.get(r++));
+                }
+            }
+            return merged;
+        });
+        List<T> result = new ArrayList<>(best.size());
+        for (int index : best) {
+            result.add(items.get(index));
+        }
+        return result;
+    }
+
+    // -------------------------------------------
+    // RESULTS
+    // -------------------------------------------
+
+    /**
+     * Returns the items of this query.
+     *
+     * @return a read-only list of the items
+     */
+    public List<T> toList() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Returns the number of items.
+     *
+     * @return the item count
+     */
+    public int size() {
+        return items.size();
+    }
+
+    // -------------------------------------------
+    // EXECUTION
+    // -------------------------------------------
+
+    /**
+     * Computes a result for a range of item positions.
+     */
+    @FunctionalInterface
+    private interface Part<R> {
+        R compute(int from, int to);
+    }
+
+    /**
+     * Runs a part over all items, splitting them across the pool when
+     * there are more than the threshold, and combines the partial results
+     * left to right.
+     */
+    private <R> R split(Part<R> part, BinaryOperator<R> combine) {
+        if (items.size() <= threshold) {
+            return part.compute(0, items.size());
+        }
+        return pool.invoke(new SplitTask<>(part, combine, 0, items.size(), threshold));
+    }
+
+    /**
+     * Computes a range of positions, halving it while it exceeds the threshold.
+     */
+    private static final class SplitTask<R> extends RecursiveTask<R> {
+
+        private final Part<R> part;
+        private final BinaryOperator<R> combine;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        SplitTask(Part<R> part, BinaryOperator<R> combine, int from, int to, int threshold) {
+            this.part = part;
+            this.combine = combine;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= threshold) {
+                return part.compute(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            SplitTask<R> left = new SplitTask<>(part, combine, from, mid, threshold);
+            left.fork();
+            R right = new SplitTask<>(part, combine, mid, to, threshold).compute();
+            return combine.apply(left.join(), right);
+        }
+    }
+
+    /**
+     * Sorts a range of an array: small ranges directly, larger ones by
+     * sorting both halves in parallel and merging them.
+     */
+    private static final class SortTask extends RecursiveAction {
+
+        private final Object[] array;
+        private final Object[] buffer;
+        private final int from;
+        private final int to;
+        private final Comparator<Object> order;
+        private final int threshold;
+
+        SortTask(Object[] array, Object[] buffer, int from, int to, Comparator<Object> order, int threshold) {
+            this.array = array;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.order = order;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                Arrays.sort(array, from, to, order); // stable
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(array, buffer, from, mid, order, threshold),
+                    new SortTask(array, buffer, mid, to, order, threshold));
+            if (order.compare(array[mid - 1], array[mid]) <= 0) {
+                return; // halves already in order
+            }
+            // Take from the left half on ties so equal items keep their order.
+            int l = from;
+            int r = mid;
+            for (int i = from; i < to; i++) {
+                buffer[i] = r == to || (l < mid && order.compare(array[l], array[r]) <= 0) ? array[l++] : array[r++];
+            }
+            System.arraycopy(buffer, from, array, from, to - from);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> asList(Object[] array) {
+        return (List<R>) Arrays.asList(array);
+    }
+}
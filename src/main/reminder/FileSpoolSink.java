@@ -0,0 +1,46 @@
+package main.reminder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Sink that writes each reminder to its own file in a spool directory,
+ * for a mail relay or another process to pick up.
+ * <p>
+ * Files are named after the run date and recipient and written to a
+ * temporary file first, then moved into place. A reader therefore never
+ * sees a partial message, and redelivering a message after a restart
+ * replaces the earlier file instead of adding a duplicate.
+ * </p>
+ */
+public class FileSpoolSink implements ReminderSink {
+
+    /** Directory the messages are spooled to. */
+    private final Path directory;
+
+    /**
+     * Constructs a sink spooling to the given directory.
+     *
+     * @param directory the spool directory; created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    public FileSpoolSink(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public void send(ReminderMessage message) throws IOException {
+        String name = message.getRunDate() + "_" + message.getRecipient().replaceAll("[^A-Za-z0-9._-]", "_") + ".eml";
+        Path target = directory.resolve(name);
+        Path temp = Files.createTempFile(directory, name, ".tmp");
+        try {
+            Files.writeString(temp, MailboxSink.format(message), StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package main.reminder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Local stand-in for an SMTP server: appends every reminder to a single
+ * mailbox file in the classic {@code mbox} format.
+ * <p>
+ * Useful for development and for checking a run's output; messages can be
+ * read with any mail client that opens mbox files.
+ * </p>
+ */
+public class MailboxSink implements ReminderSink {
+
+    /** Sender address written into every message. */
+    static final String SENDER = "reminders@library.local";
+
+    /** The mailbox file. */
+    private final Path mailbox;
+
+    /**
+     * Constructs a sink appending to the given mailbox file.
+     *
+     * @param mailbox the mbox file; created if missing
+     */
+    public MailboxSink(Path mailbox) {
+        this.mailbox = mailbox;
+    }
+
+    @Override
+    public synchronized void send(ReminderMessage message) throws IOException {
+        try (Writer out = Files.newBufferedWriter(mailbox, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write("From " + SENDER + " " + message.getRunDate() + "\n");
+            out.write(format(message).replace("\nFrom ", "\n>From "));
+            out.write("\n");
+        }
+    }
+
+    /**
+     * Formats a message as RFC 822 style headers followed by the body.
+     *
+     * @param message the message
+     * @return the message text
+     */
+    static String format(ReminderMessage message) {
+        return "From: " + SENDER + "\n"
+                + "To: " + message.getRecipient() + "\n"
+                + "Date: " + message.getRunDate() + "\n"
+                + "Subject: " + message.getSubject() + "\n"
+                + "\n"
+                + message.getBody()
+                + (message.getBody().endsWith("\n") ? "" : "\n");
+    }
+}
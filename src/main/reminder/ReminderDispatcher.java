@@ -0,0 +1,461 @@
+package main.reminder;
+
+import main.model.LibrarySystem;
+import main.model.Loan;
+import main.model.ProductKey;
+import main.model.User;
+import main.model.UserDirectory;
+import main.util.TokenBucket;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch job that sends due-soon and overdue reminders, one message per
+ * email address.
+ * <p>
+ * A run walks the registered users in order of normalised email address
+ * and groups consecutive users sharing an address. For each group it
+ * collects the loans that are overdue or due within
+ * {@link LibrarySystem#DUE_SOON_DAYS} days, using the per-user loan index,
+ * and hands the group to a worker pool that renders the message and sends
+ * it through the {@link ReminderSink}. A semaphore bounds the number of
+ * groups in flight, so memory use does not depend on the number of loans.
+ * Every send takes a permit from a shared {@link TokenBucket} and failed
+ * sends are retried with exponential back-off.
+ * </p>
+ * <p>
+ * Runs are restartable. A cursor file records the run date and the last
+ * address up to which every message has been handled; it is saved
+ * periodically and when the run ends. A run for the same date resumes
+ * after that address, and a run that already completed does nothing.
+ * Messages handled after the last save may be sent again on restart
+ * (delivery is at least once), which {@link FileSpoolSink} absorbs by
+ * overwriting the earlier file.
+ * </p>
+ * <p>
+ * A group whose message cannot be rendered or delivered is never passed
+ * by the cursor, and a run with such a group is not marked complete, so
+ * running again for the same date retries it (resending the groups after
+ * it).
+ * </p>
+ */
+public class ReminderDispatcher {
+
+    /** Delay before the first retry; doubled for each further attempt. */
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
+    /** Number of handled groups between cursor saves. */
+    private static final int CURSOR_SAVE_INTERVAL = 256;
+
+    /** System whose users and loans are reminded. */
+    private final LibrarySystem system;
+
+    /** Destination of the rendered messages. */
+    private final ReminderSink sink;
+
+    /** Limits the rate of sends across all workers. */
+    private final TokenBucket limiter;
+
+    /** File recording the progress of the current run. */
+    private final Path cursorFile;
+
+    /** Number of worker threads rendering and sending. */
+    private final int threads;
+
+    /** Maximum number of send attempts per message. */
+    private final int maxAttempts;
+
+    /** Scheduler of the nightly runs, or {@code null} if not started. */
+    private ScheduledExecutorService nightly;
+
+    /**
+     * Outcome of one run.
+     */
+    public static final class RunSummary {
+
+        private final LocalDate date;
+        private final int sent;
+        private final int failed;
+        private final long loans;
+        private final boolean resumed;
+
+        RunSummary(LocalDate date, int sent, int failed, long loans, boolean resumed) {
+            this.date = date;
+            this.sent = sent;
+            this.failed = failed;
+            this.loans = loans;
+            this.resumed = resumed;
+        }
+
+        /** Returns the date the run reminded for. */
+        public LocalDate getDate() { return date; }
+
+        /** Returns the number of messages delivered. */
+        public int getSent() { return sent; }
+
+        /** Returns the number of messages that failed after every retry. */
+        public int getFailed() { return failed; }
+
+        /** Returns the number of loans covered by the delivered messages. */
+        public long getLoans() { return loans; }
+
+        /** Returns whether the run continued an earlier, interrupted run. */
+        public boolean isResumed() { return resumed; }
+
+        @Override
+        public String toString() {
+            return "Reminders for " + date + ": " + sent + " message(s) covering " + loans
+                    + " loan(s) sent, " + failed + " failed" + (resumed ? " (resumed run)." : ".");
+        }
+    }
+
+    /**
+     * Constructs a dispatcher.
+     *
+     * @param system      the library system
+     * @param sink        where messages are delivered
+     * @param limiter     rate limit shared by all sends
+     * @param cursorFile  file recording run progress; created if missing
+     * @param threads     number of workers rendering and sending
+     * @param maxAttempts send attempts per message, at least one
+     * @throws IllegalArgumentException if {@code threads} or {@code maxAttempts} is not positive
+     */
+    public ReminderDispatcher(LibrarySystem system, ReminderSink sink, TokenBucket limiter,
+                              Path cursorFile, int threads, int maxAttempts) {
+        if (threads < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("threads and maxAttempts must be positive");
+        }
+        this.system = system;
+        this.sink = sink;
+        this.limiter = limiter;
+        this.cursorFile = cursorFile;
+        this.threads = threads;
+        this.maxAttempts = maxAttempts;
+    }
+
+    // -------------------------------------------
+    // SCHEDULING
+    // -------------------------------------------
+
+    /**
+     * Runs the dispatcher every day at the given time, on a daemon thread.
+     *
+     * @param at the local time of day to run
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void startNightly(LocalTime at) {
+        if (nightly != null) {
+            throw new IllegalStateException("Nightly reminders already started");
+        }
+        nightly = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "reminder-nightly");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime first = now.toLocalDate().atTime(at);
+        if (!first.isAfter(now)) {
+            first = first.plusDays(1);
+        }
+        nightly.scheduleAtFixedRate(() -> {
+            try {
+                System.out.println(run(LocalDate.now()));
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Reminder run failed: " + e.getMessage());
+            }
+        }, Duration.between(now, first).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the nightly runs; a run in progress finishes first.
+     */
+    public void stopNightly() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = nightly;
+            nightly = null;
+        }
+        if (running != null) {
+            running.shutdown();
+        }
+    }
+
+    // -------------------------------------------
+    // RUNNING
+    // -------------------------------------------
+
+    /**
+     * Sends the reminders for a date, resuming an interrupted run for the same date.
+     *
+     * @param today the date to remind for
+     * @return what the run did
+     * @throws IOException if the cursor file cannot be read or written
+     */
+    public synchronized RunSummary run(LocalDate today) throws IOException {
+        Properties cursor = loadCursor();
+        boolean sameDay = today.toString().equals(cursor.getProperty("date"));
+        if (sameDay && Boolean.parseBoolean(cursor.getProperty("complete"))) {
+            return new RunSummary(today, 0, 0, 0, true);
+        }
+        String resumeAfter = sameDay ? cursor.getProperty("last", "") : "";
+        system.advanceClock(today); // let due-date listeners see the same day
+
+        // Users ordered by address; only IDs and addresses are held.
+        List<User> users = new ArrayList<>(system.getUsers());
+        String[] emails = new String[users.size()];
+        Integer[] order = new Integer[users.size()];
+        for (int i = 0; i < order.length; i++) {
+            emails[i] = UserDirectory.normaliseEmail(users.get(i).getEmail());
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> emails[i]).thenComparingInt(i -> users.get(i).getUserId()));
+
+        Progress progress = new Progress(today, resumeAfter);
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong loanCount = new AtomicLong();
+        int window = threads * 2;
+        Semaphore inFlight = new Semaphore(window);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "reminder-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            long seq = 0;
+            for (int start = 0; start < order.length; ) {
+                String email = emails[order[start]];
+                int end = start;
+                while (end < order.length && emails[order[end]].equals(email)) {
+                    end++;
+                }
+                if (email.isEmpty() || email.compareTo(resumeAfter) <= 0) {
+                    start = end;
+                    continue; // no address, or already handled by an earlier attempt
+                }
+
+                List<User> group = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    group.add(users.get(order[i]));
+                }
+                start = end;
+
+                long groupSeq = seq++;
+                inFlight.acquireUninterruptibly();
+                workers.execute(() -> {
+                    boolean handled = false;
+                    try {
+                        ReminderMessage message = render(email, group, today);
+                        if (message == null) {
+                            handled = true;
+                        } else if (deliver(message)) {
+                            sent.incrementAndGet();
+                            loanCount.addAndGet(message.getLoanCount());
+                            handled = true;
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        System.out.println("Reminder to " + email + " could not be rendered: " + e.getMessage());
+                    } finally {
+                        progress.done(groupSeq, email, handled);
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquireUninterruptibly(window); // wait for the last groups
+        } finally {
+            workers.shutdown();
+        }
+        progress.finish();
+        return new RunSummary(today, sent.get(), failed.get(), loanCount.get(), !resumeAfter.isEmpty());
+    }
+
+    /**
+     * Renders the reminder for one address, or returns {@code null} if none
+     * of its users has a loan that is due soon or overdue.
+     */
+    private ReminderMessage render(String email, List<User> group, LocalDate today) {
+        LocalDate horizon = today.plusDays(LibrarySystem.DUE_SOON_DAYS);
+        StringBuilder body = new StringBuilder();
+        List<String> names = new ArrayList<>(group.size());
+        int overdue = 0;
+        int dueSoon = 0;
+
+        for (User user : group) {
+            List<Loan> due = new ArrayList<>();
+            for (Loan loan : system.getLoans(user)) {
+                if (!loan.getDueDate().isAfter(horizon)) {
+                    due.add(loan);
+                }
+            }
+            if (due.isEmpty()) {
+                continue;
+            }
+            due.sort(Comparator.comparing(Loan::getDueDate));
+            names.add(user.getName());
+            if (group.size() > 1) {
+                body.append("For ").append(user.getName()).append(":\n");
+            }
+            for (Loan loan : due) {
+                if (loan.isOverdue(today)) {
+                    overdue++;
+                } else {
+                    dueSoon++;
+                }
+                body.append("  ").append(loan.new Reminder().getMessage(today))
+                        .append(" [").append(ProductKey.format(loan.getProductKey()))
+                        .append(", due ").append(loan.getDueDate()).append("]\n");
+            }
+        }
+        if (overdue + dueSoon == 0) {
+            return null;
+        }
+
+        String greeting = "Dear " + String.join(" and ", names) + ",\n\n";
+        String closing = overdue > 0
+                ? "\nPlease return or renew overdue items as soon as possible.\n"
+                : "\nYou can renew these items if you need them for longer.\n";
+        String subject = "Library reminder: " + overdue + " overdue, " + dueSoon + " due soon";
+        return new ReminderMessage(email, today, subject, greeting + body + closing, overdue + dueSoon);
+    }
+
+    /**
+     * Sends a message, retrying failures with exponential back-off.
+     *
+     * @return {@code true} if delivered
+     */
+    private boolean deliver(ReminderMessage message) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                limiter.acquire();
+                sink.send(message);
+                return true;
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    System.out.println("Reminder to " + message.getRecipient() + " failed after "
+                            + attempt + " attempt(s): " + e.getMessage());
+                    return false;
+                }
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS << (attempt - 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    // -------------------------------------------
+    // CURSOR
+    // -------------------------------------------
+
+    /**
+     * Tracks which groups are handled and saves the cursor.
+     * <p>
+     * Groups finish out of order; the cursor only moves past a group once
+     * every earlier group has finished too. It stops for good before the
+     * first group that failed, so a later run retries that group.
+     * </p>
+     */
+    private final class Progress {
+
+        private final LocalDate date;
+
+        /** Finished groups by sequence number: the address, or {@code null} if the group failed. */
+        private final TreeMap<Long, String> finishedAhead = new TreeMap<>();
+        private long next;
+        private String last;
+        private boolean stalled;
+        private int sinceSave;
+
+        Progress(LocalDate date, String resumeAfter) {
+            this.date = date;
+            this.last = resumeAfter;
+        }
+
+        /** Records a finished group and moves the cursor past any contiguous run of handled ones. */
+        synchronized void done(long seq, String email, boolean handled) {
+            finishedAhead.put(seq, handled ? email : null);
+            while (!finishedAhead.isEmpty() && finishedAhead.firstKey() == next) {
+                String finished = finishedAhead.pollFirstEntry().getValue();
+                next++;
+                if (finished == null) {
+                    stalled = true;
+                } else if (!stalled) {
+                    last = finished;
+                    sinceSave++;
+                }
+            }
+            if (sinceSave >= CURSOR_SAVE_INTERVAL) {
+                sinceSave = 0;
+                try {
+                    saveCursor(date, last, false);
+                } catch (IOException e) {
+                    // Only costs resends if the run is restarted; the final save retries.
+                    System.out.println("Could not save reminder progress: " + e.getMessage());
+                }
+            }
+        }
+
+        /** Saves the final cursor, marking the run complete unless a group failed. */
+        synchronized void finish() throws IOException {
+            saveCursor(date, last, !stalled);
+        }
+    }
+
+    /** Reads the cursor file, or returns empty properties if there is none. */
+    private Properties loadCursor() throws IOException {
+        Properties cursor = new Properties();
+        if (Files.isRegularFile(cursorFile)) {
+            try (Reader in = Files.newBufferedReader(cursorFile, StandardCharsets.UTF_8)) {
+                cursor.load(in);
+            }
+        }
+        return cursor;
+    }
+
+    /** Writes the cursor file atomically. */
+    private void saveCursor(LocalDate date, String last, boolean complete) throws IOException {
+        Properties cursor = new Properties();
+        cursor.setProperty("date", date.toString());
+        cursor.setProperty("last", last);
+        cursor.setProperty("complete", Boolean.toString(complete));
+        Path parent = cursorFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, cursorFile.getFileName().toString(), ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            cursor.store(out, "Reminder run progress; addresses up to 'last' are done");
+        }
+        Files.move(temp, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,51 @@
+package main.reminder;
+
+import java.time.LocalDate;
+
+/**
+ * A rendered reminder addressed to one email address.
+ * <p>
+ * One message covers every due-soon and overdue loan of the users sharing
+ * the address, for example a guardian and the children they registered.
+ * </p>
+ */
+public class ReminderMessage {
+
+    private final String recipient;
+    private final LocalDate runDate;
+    private final String subject;
+    private final String body;
+    private final int loanCount;
+
+    /**
+     * Creates a message.
+     *
+     * @param recipient the normalised email address
+     * @param runDate   the date of the dispatch run
+     * @param subject   the subject line
+     * @param body      the plain-text body
+     * @param loanCount the number of loans mentioned
+     */
+    public ReminderMessage(String recipient, LocalDate runDate, String subject, String body, int loanCount) {
+        this.recipient = recipient;
+        this.runDate = runDate;
+        this.subject = subject;
+        this.body = body;
+        this.loanCount = loanCount;
+    }
+
+    /** Returns the normalised recipient address. */
+    public String getRecipient() { return recipient; }
+
+    /** Returns the date of the run that produced the message. */
+    public LocalDate getRunDate() { return runDate; }
+
+    /** Returns the subject line. */
+    public String getSubject() { return subject; }
+
+    /** Returns the plain-text body. */
+    public String getBody() { return body; }
+
+    /** Returns the number of loans the message mentions. */
+    public int getLoanCount() { return loanCount; }
+}
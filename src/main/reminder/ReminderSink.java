@@ -0,0 +1,23 @@
+package main.reminder;
+
+import java.io.IOException;
+
+/**
+ * Destination that delivers rendered reminders.
+ * <p>
+ * Implementations must be safe to call from several threads. A run that is
+ * restarted may deliver a message for the same recipient and date again,
+ * so sinks should make redelivery harmless where they can.
+ * </p>
+ */
+@FunctionalInterface
+public interface ReminderSink {
+
+    /**
+     * Delivers one message.
+     *
+     * @param message the message to deliver
+     * @throws IOException if delivery failed; the dispatcher may retry
+     */
+    void send(ReminderMessage message) throws IOException;
+}
@@ -0,0 +1,218 @@
+package main.report;
+
+import main.api.JsonWriter;
+import main.model.Loan;
+import main.model.ProductKey;
+import main.model.User;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+
+/**
+ * Streaming report of active loans.
+ * <p>
+ * Rows are written to the destination one loan at a time as the loans are
+ * iterated, so the report never exists in memory as a whole: memory use
+ * depends on the destination's buffer, not on the number of loans. Paired
+ * with {@link main.model.LibrarySystem#activeLoans()}, which copies one
+ * ledger stripe at a time, a report over millions of loans runs in
+ * near-constant memory.
+ * </p>
+ * <p>
+ * Every format carries the same fields per loan: loan ID, item key, media
+ * type, title, borrower ID, name and role, start and due dates, renewals
+ * and whether the loan is overdue on the report date.
+ * </p>
+ *
+ * <p>
+ * Example usage:
+ * <pre>
+ *     new LoanReport(ReportFormat.CSV, LocalDate.now()).write(system.activeLoans(), writer);
+ * </pre>
+ * </p>
+ */
+public class LoanReport {
+
+    /** Title line of the text format. */
+    public static final String TEXT_TITLE = "Library Loan Report:";
+
+    /** Header row of the CSV format. */
+    private static final String CSV_HEADER =
+            "loanId,item,type,title,userId,borrower,role,start,due,renewals,overdue";
+
+    /** Output format. */
+    private final ReportFormat format;
+
+    /** Date against which loans are reported as overdue. */
+    private final LocalDate today;
+
+    /**
+     * Creates a report.
+     *
+     * @param format the output format
+     * @param today  the date loans are checked against for being overdue
+     */
+    public LoanReport(ReportFormat format, LocalDate today) {
+        this.format = format;
+        this.today = today;
+    }
+
+    // -------------------------------------------
+    // WRITING
+    // -------------------------------------------
+
+    /**
+     * Streams the report to a character destination, flushing it at the end.
+     * The destination is not closed.
+     *
+     * @param loans the loans to report, iterated once
+     * @param out   the destination
+     * @return the number of loans written
+     * @throws IOException if writing fails
+     */
+    public long write(Iterable<Loan> loans, Writer out) throws IOException {
+        JsonWriter json = format == ReportFormat.JSONL ? new JsonWriter(out) : null;
+        if (format == ReportFormat.CSV) {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        } else if (format == ReportFormat.TEXT) {
+            out.write(TEXT_TITLE);
+            out.write('\n');
+        }
+
+        long rows = 0;
+        for (Loan loan : loans) {
+            switch (format) {
+                case CSV -> writeCsv(out, loan);
+                case JSONL -> writeJson(json, loan);
+                case TEXT -> {
+                    out.write(loan.getInfo());
+                    out.write('\n');
+                }
+            }
+            rows++;
+        }
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Streams the report as UTF-8 to a byte destination, flushing it at the
+     * end. The destination is not closed.
+     *
+     * @param loans the loans to report, iterated once
+     * @param out   the destination
+     * @return the number of loans written
+     * @throws IOException if writing fails
+     */
+    public long write(Iterable<Loan> loans, OutputStream out) throws IOException {
+        return write(loans, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Exports the report to a file.
+     * <p>
+     * The report is streamed to a temporary file next to the target, which
+     * then replaces the target, so a reader never sees a partial export.
+     * </p>
+     *
+     * @param loans the loans to report, iterated once
+     * @param file  the file to write
+     * @return the number of loans written
+     * @throws IOException if the file cannot be written
+     */
+    public long export(Iterable<Loan> loans, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows;
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            rows = write(loans, out);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    // -------------------------------------------
+    // ROW ENCODING
+    // -------------------------------------------
+
+    /** Writes a loan as one CSV row. */
+    private void writeCsv(Writer out, Loan loan) throws IOException {
+        User borrower = loan.getBorrower();
+        out.write(Long.toString(loan.getLoanId()));
+        out.write(',');
+        out.write(ProductKey.format(loan.getProductKey()));
+        out.write(',');
+        out.write(loan.getItem().getMediaType().getDisplayName());
+        out.write(',');
+        csvField(out, loan.getItem().getTitle());
+        out.write(',');
+        out.write(Integer.toString(borrower.getUserId()));
+        out.write(',');
+        csvField(out, borrower.getName());
+        out.write(',');
+        out.write(borrower.getType().name());
+        out.write(',');
+        out.write(loan.getStartDate().toString());
+        out.write(',');
+        out.write(loan.getDueDate().toString());
+        out.write(',');
+        out.write(Integer.toString(loan.getRenewCount()));
+        out.write(',');
+        out.write(loan.isOverdue(today) ? "true" : "false");
+        out.write('\n');
+    }
+
+    /** Writes a loan as one JSON line. */
+    private void writeJson(JsonWriter json, Loan loan) throws IOException {
+        User borrower = loan.getBorrower();
+        json.beginObject()
+                .name("loanId").value(loan.getLoanId())
+                .name("item").value(ProductKey.format(loan.getProductKey()))
+                .name("type").value(loan.getItem().getMediaType().getDisplayName())
+                .name("title").value(loan.getItem().getTitle())
+                .name("userId").value(borrower.getUserId())
+                .name("borrower").value(borrower.getName())
+                .name("role").value(borrower.getType().name())
+                .name("start").value(loan.getStartDate().toString())
+                .name("due").value(loan.getDueDate().toString())
+                .name("renewals").value(loan.getRenewCount())
+                .name("overdue").value(loan.isOverdue(today))
+                .endObject()
+                .endLine();
+    }
+
+    /** Writes a CSV field, quoting it if it contains a separator, quote or line break. */
+    private static void csvField(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                out.write(value, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,66 @@
+package main.report;
+
+/**
+ * Output formats of a {@link LoanReport}.
+ */
+public enum ReportFormat {
+
+    /** Comma-separated values with a header row (RFC 4180 quoting). */
+    CSV("text/csv", "csv"),
+
+    /** One JSON object per line. */
+    JSONL("application/x-ndjson", "jsonl"),
+
+    /** The human-readable loan lines shown on the console. */
+    TEXT("text/plain", "txt");
+
+    /** MIME type used when the report is served over HTTP. */
+    private final String contentType;
+
+    /** Conventional file extension, without the dot. */
+    private final String extension;
+
+    /**
+     * Constructs a format constant.
+     *
+     * @param contentType the MIME type
+     * @param extension   the file extension
+     */
+    ReportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * Returns the MIME type of this format.
+     *
+     * @return the content type, without a charset
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns the conventional file extension of this format.
+     *
+     * @return the extension, e.g. {@code "csv"}
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Resolves a format from its name or file extension, ignoring case.
+     *
+     * @param name the name (e.g. {@code "csv"}, {@code "jsonl"}, {@code "txt"})
+     * @return the matching format, or {@code null} if unknown
+     */
+    public static ReportFormat fromName(String name) {
+        for (ReportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -1,8 +1,23 @@
 package main.ui;
 
+import main.api.LibraryHttpServer;
 import main.model.*;
-import java.util.List;
+import main.reminder.FileSpoolSink;
+import main.reminder.ReminderDispatcher;
+import main.reminder.ReminderSink;
+import main.report.LoanReport;
+import main.report.ReportFormat;
+import main.util.TokenBucket;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -27,18 +42,222 @@ public class Menu {
     /** Scanner used for reading console input from the user. */
     private static Scanner sc = new Scanner(System.in);
 
+    /** Directory holding the ID marks, loan journal and checkpoints. */
+    private static final Path STATE_DIRECTORY = Path.of("src/main/data/state");
+
+    /** Time between background checkpoints of the loan state. */
+    private static final Duration CHECKPOINT_INTERVAL = Duration.ofMinutes(5);
+
+    /** Number of checkpoints kept on disk. */
+    private static final int CHECKPOINT_RETENTION = 2;
+
+    /** Time of day of the nightly reminder run. */
+    private static final LocalTime REMINDER_TIME = LocalTime.of(2, 0);
+
+    /** Time of day the daily fine pass runs, just before the reminders. */
+    private static final LocalTime FINE_TIME = LocalTime.of(1, 0);
+
+    /** Maximum reminders sent per second. */
+    private static final double REMINDERS_PER_SECOND = 20;
+
+    /** Optional file overriding the built-in borrowing rules. */
+    private static final Path POLICY_FILE = Path.of("src/main/data/policies.properties");
+
+    /** Port of the HTTP API when started with {@code --http} and no port. */
+    private static final int DEFAULT_HTTP_PORT = 8080;
+
     /**
      * Application entry point.
      * <p>
-     * Loads product data, prompts user login, and starts the main menu loop.
+     * Loads the persisted ID high-water marks and product data, prompts user
+     * login, and starts the main menu loop.
+     * </p>
+     * <p>
+     * Started with {@code --http [port]}, it serves the same system to
+     * many clients through {@link LibraryHttpServer} instead, until the
+     * process is stopped or a line is entered on the console.
+     * </p>
+     * <p>
+     * Started with {@code --report <csv|jsonl|text> [file]}, it streams a
+     * report of the active loans to the file, or to standard output if no
+     * file is given, and exits (see {@link #runReport(String, Path)}).
      * </p>
      *
-     * @param args command-line arguments (not used)
+     * @param args optionally {@code --http} followed by a port (default 8080),
+     *             or {@code --report} followed by a format and a file
      */
     public static void main(String[] args) {
+        if (args.length > 1 && args[0].equals("--report")) {
+            runReport(args[1], args.length > 2 ? Path.of(args[2]) : null);
+            return;
+        }
+        try {
+            // Resume every ID sequence above the marks stored by the last run.
+            IDGenerator.persistTo(STATE_DIRECTORY.resolve("ids.properties"));
+        } catch (IOException e) {
+            System.out.println("Could not load ID high-water marks: " + e.getMessage());
+        }
+        if (loadLibrary()) {
+            system.startCheckpoints(CHECKPOINT_INTERVAL, CHECKPOINT_RETENTION);
+        }
+        system.startDailyFines(FINE_TIME);
+        ReminderDispatcher reminders = startReminders();
+        if (args.length > 0 && args[0].equals("--http")) {
+            serveHttp(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HTTP_PORT);
+        } else {
+            loginMenu();      // Handle user type selection
+            runMenu();        // Run main interactive menu
+        }
+        if (reminders != null) {
+            reminders.stopNightly();
+        }
+        system.shutdown();    // Stop checkpoints and flush the loan journal
+    }
+
+    /**
+     * Loads the borrowing rules, the catalogue, the users and the loans
+     * recorded in the journal.
+     *
+     * @return {@code true} if the loan journal is open
+     */
+    private static boolean loadLibrary() {
+        if (Files.exists(POLICY_FILE)) {
+            system.reloadPolicies(POLICY_FILE);
+        }
         system.loadAllData(); // Load product data from CSV files
-        loginMenu();          // Handle user type selection
-        runMenu();            // Run main interactive menu
+        registerUsers();      // Users must exist before their loans are replayed
+        try {
+            system.openJournal(STATE_DIRECTORY);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Loan journal unavailable, loans will not be persisted: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Loads the library and exports one report of its active loans.
+     * <p>
+     * Nothing is scheduled: no checkpoints, fine pass or reminders. Status
+     * messages go to standard error while the report runs, so a report
+     * written to standard output can be redirected to a file intact.
+     * </p>
+     *
+     * @param formatName the report format ({@code csv}, {@code jsonl} or {@code text})
+     * @param file       the file to export to, or {@code null} for standard output
+     */
+    private static void runReport(String formatName, Path file) {
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        try {
+            loadLibrary();
+            exportReport(formatName, file, stdout);
+        } finally {
+            system.shutdown();
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * Schedules the nightly reminder run, spooling messages to the state directory.
+     *
+     * @return the dispatcher, or {@code null} if the spool cannot be created
+     */
+    private static ReminderDispatcher startReminders() {
+        try {
+            ReminderSink spool = new FileSpoolSink(STATE_DIRECTORY.resolve("reminder-spool"));
+            ReminderDispatcher dispatcher = new ReminderDispatcher(system, spool,
+                    new TokenBucket(REMINDERS_PER_SECOND, (int) REMINDERS_PER_SECOND),
+                    STATE_DIRECTORY.resolve("reminders.cursor"), 4, 3);
+            dispatcher.startNightly(REMINDER_TIME);
+            return dispatcher;
+        } catch (IOException e) {
+            System.out.println("Reminders disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Serves the library over HTTP until a line (or end of input) is read
+     * from the console.
+     *
+     * @param port the TCP port to listen on
+     */
+    private static void serveHttp(int port) {
+        LibraryHttpServer server;
+        try {
+            server = new LibraryHttpServer(system, port);
+        } catch (IOException e) {
+            System.out.println("Could not start HTTP server: " + e.getMessage());
+            return;
+        }
+        server.start();
+        System.out.println("HTTP API listening on port " + server.getPort() + ". Press Enter to stop.");
+        if (sc.hasNextLine()) {
+            sc.nextLine();
+        }
+        server.stop(2);
+        System.out.println("HTTP API stopped.");
+    }
+
+    /**
+     * Streams a report of every active loan to a file or a console stream.
+     *
+     * @param formatName the report format ({@code csv}, {@code jsonl} or {@code text})
+     * @param file       the file to export to, or {@code null} for {@code console}
+     * @param console    the stream receiving the report when no file is given
+     */
+    private static void exportReport(String formatName, Path file, PrintStream console) {
+        ReportFormat format = ReportFormat.fromName(formatName);
+        if (format == null) {
+            System.out.println("Unknown report format: " + formatName + " (use csv, jsonl or text)");
+            return;
+        }
+        LoanReport report = new LoanReport(format, LocalDate.now());
+        try {
+            if (file == null) {
+                report.write(system.activeLoans(), console);
+            } else {
+                long rows = report.export(system.activeLoans(), file);
+                System.out.println("Exported " + rows + " loan(s) to " + file + ".");
+            }
+        } catch (IOException e) {
+            System.out.println("Report failed: " + e.getMessage());
+        }
+    }
+
+    // -------------------------------------------
+    // USER REGISTRATION
+    // -------------------------------------------
+
+    /** Demo adult user. */
+    private static final AdultUser ADULT = new AdultUser(1, "Dhrew", "dhrew@mail.com");
+
+    /** Demo child user, linked to {@link #GUARDIAN}. */
+    private static final ChildUser CHILD = new ChildUser(2, "Sara", "sara@mail.com");
+
+    /** Guardian of the demo child user. */
+    private static final AdultUser GUARDIAN = new AdultUser(10, "Parent", "parent@mail.com");
+
+    /** Demo student user. */
+    private static final Student STUDENT = new Student(3, "Oriol", "omorros@aru.ac.uk",
+            "Software Engineering", 3);
+
+    /** Fallback user for invalid login choices. */
+    private static final AdultUser DEFAULT_USER = new AdultUser(99, "Default", "default@library.com");
+
+    /**
+     * Registers the demo users with the system.
+     * <p>
+     * The same user objects are reused for every login, so loans restored
+     * from the journal belong to the user who logs in.
+     * </p>
+     */
+    private static void registerUsers() {
+        GUARDIAN.addChild(CHILD);
+        for (User u : new User[] {ADULT, CHILD, GUARDIAN, STUDENT, DEFAULT_USER}) {
+            system.addUser(u);
+        }
     }
 
     // -------------------------------------------
@@ -67,24 +286,20 @@ public class Menu {
         // Instantiate appropriate user subclass depending on user choice.
         switch (opt) {
             case 1 -> {
-                system.setDemoUser(new AdultUser(1, "Dhrew", "dhrew@mail.com"));
+                system.setDemoUser(ADULT);
                 System.out.println("Logged in as AdultUser: Dhrew");
             }
             case 2 -> {
-                ChildUser child = new ChildUser(2, "Sara", "sara@mail.com");
-                AdultUser guardian = new AdultUser(10, "Parent", "parent@mail.com");
-                guardian.addChild(child);
-                system.setDemoUser(child);
+                system.setDemoUser(CHILD);
                 System.out.println("Logged in as ChildUser: Sara (Guardian: Parent)");
             }
             case 3 -> {
-                system.setDemoUser(new Student(3, "Oriol", "omorros@aru.ac.uk",
-                        "Software Engineering", 3));
+                system.setDemoUser(STUDENT);
                 System.out.println("Logged in as Student: Oriol");
             }
             default -> {
                 // Fallback user in case of invalid input
-                system.setDemoUser(new AdultUser(99, "Default", "default@library.com"));
+                system.setDemoUser(DEFAULT_USER);
                 System.out.println("Invalid choice, logged in as default AdultUser.");
             }
         }
@@ -97,7 +312,7 @@ public class Menu {
     /**
      * Displays the main operational menu.
      * <p>
-     * Users can view, borrow, or return products, and view all active loans.
+     * Users can view, search, borrow, or return products, and view all active loans.
      * The menu continues looping until the user chooses to exit.
      * </p>
      */
@@ -112,7 +327,9 @@ public class Menu {
             System.out.println("2. Borrow Product");
             System.out.println("3. Return Product");
             System.out.println("4. View Loans");
-            System.out.println("5. Exit");
+            System.out.println("5. Search Catalogue");
+            System.out.println("6. Renew Loan");
+            System.out.println("7. Exit");
             System.out.print("Enter choice: ");
 
             choice = readInt();
@@ -121,11 +338,27 @@ public class Menu {
                 case 1 -> viewProductsMenu();
                 case 2 -> borrowMenu();
                 case 3 -> returnProduct();
-                case 4 -> system.displayAllLoans();
-                case 5 -> System.out.println("Exiting system...");
+                case 4 -> viewLoans();
+                case 5 -> searchMenu();
+                case 6 -> renewMenu();
+                case 7 -> System.out.println("Exiting system...");
                 default -> System.out.println("Invalid option, try again.");
             }
-        } while (choice != 5);
+        } while (choice != 7);
+    }
+
+    // -------------------------------------------
+    // VIEW LOANS
+    // -------------------------------------------
+
+    /**
+     * Displays all active loans followed by the current user's outstanding fines.
+     */
+    private static void viewLoans() {
+        system.displayAllLoans();
+        User user = system.getDemoUser();
+        System.out.println("Outstanding fines for " + user.getName() + ": "
+                + FineEngine.format(system.getFineBalance(user)));
     }
 
     // -------------------------------------------
@@ -135,44 +368,16 @@ public class Menu {
     /**
      * Displays available products filtered by user type and category.
      * <p>
-     * Implements role-based access by restricting available categories
-     * for each type of user (e.g., {@link ChildUser} can only view books).
+     * Implements role-based access by offering only the categories the
+     * user's role may borrow, as listed by the system's {@link PolicyTable}
+     * (e.g., {@link ChildUser} can only view books).
      * </p>
      */
     private static void viewProductsMenu() {
         User currentUser = system.getDemoUser();
 
-        // Role checks
-        boolean isAdult = currentUser instanceof AdultUser;
-        boolean isStudent = currentUser instanceof Student;
-        boolean isChild = currentUser instanceof ChildUser;
-
         System.out.println("\nSelect category to view:");
-
-        // Display available categories depending on user type.
-        if (isAdult) {
-            System.out.println("1. Books");
-            System.out.println("2. CDs");
-            System.out.println("3. DVDs");
-            System.out.println("4. Audiobooks");
-        } else if (isStudent) {
-            System.out.println("1. Books");
-            System.out.println("2. Audiobooks");
-        } else if (isChild) {
-            System.out.println("1. Books");
-        }
-
-        System.out.print("Enter option: ");
-        int opt = readInt();
-
-        // Determine category based on user choice and role.
-        String category = switch (opt) {
-            case 1 -> "Book";
-            case 2 -> (isAdult ? "CD" : "Audiobook");
-            case 3 -> "DVD";
-            case 4 -> "Audiobook";
-            default -> null;
-        };
+        MediaType category = selectCategory(currentUser, "s");
 
         if (category == null) {
             System.out.println("Invalid option.");
@@ -186,12 +391,64 @@ public class Menu {
             return;
         }
 
-        System.out.println("\n" + category + "s in Library:");
+        System.out.println("\n" + category.getDisplayName() + "s in Library:");
         for (Product p : list) {
             System.out.println(p.getInfo());
         }
     }
 
+    /**
+     * Lists the categories the user's role may borrow and reads a choice.
+     *
+     * @param user   the current user
+     * @param suffix appended to each category name (e.g. {@code "s"})
+     * @return the chosen category, or {@code null} if the option is invalid
+     */
+    private static MediaType selectCategory(User user, String suffix) {
+        List<MediaType> categories = system.getPolicies().categories(user.getType());
+        for (int i = 0; i < categories.size(); i++) {
+            System.out.println((i + 1) + ". " + categories.get(i).getDisplayName() + suffix);
+        }
+
+        System.out.print("Enter option: ");
+        int opt = readInt();
+        return opt >= 1 && opt <= categories.size() ? categories.get(opt - 1) : null;
+    }
+
+    // -------------------------------------------
+    // SEARCH MENU
+    // -------------------------------------------
+
+    /**
+     * Prompts for a free-text query and lists the best matching products.
+     * <p>
+     * Matches titles, authors, composers, directors, narrators, genres and
+     * ISBNs. A word ending in {@code *} is treated as a prefix. If nothing
+     * matches exactly, close title matches are suggested instead.
+     * </p>
+     */
+    private static void searchMenu() {
+        System.out.print("\nSearch (title, creator, genre or ISBN; use * for prefix): ");
+        String query = sc.nextLine();
+
+        List<SearchHit> hits = system.search(query, 20);
+        String heading = "Search results:";
+        if (hits.isEmpty()) {
+            // Fall back to typo-tolerant title matching.
+            hits = system.searchFuzzy(query, 10);
+            heading = "No exact matches. Did you mean:";
+        }
+        if (hits.isEmpty()) {
+            System.out.println("No matching products found.");
+            return;
+        }
+
+        System.out.println("\n" + heading);
+        for (SearchHit hit : hits) {
+            System.out.println(hit.getProduct().getInfo());
+        }
+    }
+
     // -------------------------------------------
     // BORROW PRODUCT MENU (ROLE-BASED)
     // -------------------------------------------
@@ -208,60 +465,27 @@ public class Menu {
         User currentUser = system.getDemoUser();
 
         System.out.println("\n===== Borrow Product =====");
-        boolean isAdult = currentUser instanceof AdultUser;
-        boolean isStudent = currentUser instanceof Student;
-        boolean isChild = currentUser instanceof ChildUser;
-
         System.out.println("Select a category to borrow from:");
-
-        if (isAdult) {
-            System.out.println("1. Book");
-            System.out.println("2. CD");
-            System.out.println("3. DVD");
-            System.out.println("4. Audiobook");
-        } else if (isStudent) {
-            System.out.println("1. Book");
-            System.out.println("2. Audiobook");
-        } else if (isChild) {
-            System.out.println("1. Book");
-        }
-
-        System.out.print("Enter option: ");
-        int opt = readInt();
-
-        // Determine borrowing category based on user type and input.
-        String category = switch (opt) {
-            case 1 -> "Book";
-            case 2 -> (isAdult ? "CD" : "Audiobook");
-            case 3 -> "DVD";
-            case 4 -> "Audiobook";
-            default -> null;
-        };
+        MediaType category = selectCategory(currentUser, "");
 
         if (category == null) {
             System.out.println("Invalid option.");
             return;
         }
 
-        // Filter available items.
-        List<Product> list = system.getProductsByCategory(category);
-        List<Product> available = new ArrayList<>();
-        for (Product p : list) {
-            if (p.isAvailable()) available.add(p);
-        }
-
-        if (available.isEmpty()) {
+        // Available items come straight from the category availability bitset.
+        if (system.countAvailable(category) == 0) {
             System.out.println("No available items in this category.");
             return;
         }
 
         // Display all available items to the user.
-        System.out.println("\nAvailable " + category + "s:");
-        available.forEach(p -> System.out.println(p.getInfo()));
+        System.out.println("\nAvailable " + category.getDisplayName() + "s:");
+        system.forEachAvailable(category, p -> System.out.println(p.getInfo()));
 
-        System.out.print("\nEnter Product ID to borrow: ");
-        int id = readInt();
-        system.handleBorrow(currentUser, id);
+        System.out.print("\nEnter Product ID to borrow (e.g. 2 or " + category.name() + "-2): ");
+        long key = readProductKey(category);
+        system.handleBorrow(currentUser, key);
     }
 
     // -------------------------------------------
@@ -271,45 +495,66 @@ public class Menu {
     /**
      * Allows a user to return a previously borrowed product.
      * <p>
-     * Lists all active loans for the current user and prompts for a product ID
-     * to return. If the item exists and is in the user's loan list, it will be
+     * Lists all active loans for the current user and prompts for the item key
+     * (e.g. {@code BOOK-1}) to return. If the item exists and is in the user's loan list, it will be
      * marked as available again and removed from the system’s records.
      * </p>
      */
     private static void returnProduct() {
         User user = system.getDemoUser();
-        List<Loan> userLoans = user.viewLoans();
-
         System.out.println("\n===== Return Product =====");
-
-        if (userLoans.isEmpty()) {
-            System.out.println("You have no active loans to return.");
+        if (!listUserLoans(user, "return")) {
             return;
         }
 
-        System.out.println("Your current loans:");
-        for (Loan loan : userLoans) {
-            System.out.println(loan.getInfo());
-        }
+        System.out.print("\nEnter the Item key to return (e.g. BOOK-1): ");
+        long key = readProductKey(null);
 
-        System.out.print("\nEnter the Product ID to return: ");
-        int id = readInt();
+        // Process the return and update (and journal) the system’s records.
+        system.handleReturn(user, key);
+    }
 
-        Product product = system.findProductById(id);
-        if (product == null) {
-            System.out.println("Product not found.");
+    // -------------------------------------------
+    // RENEW LOAN MENU
+    // -------------------------------------------
+
+    /**
+     * Allows a user to extend the due date of one of their loans.
+     * <p>
+     * Lists the current user's loans and prompts for the item key. The
+     * renewal follows the user's loan terms and is recorded in the journal.
+     * </p>
+     */
+    private static void renewMenu() {
+        User user = system.getDemoUser();
+        System.out.println("\n===== Renew Loan =====");
+        if (!listUserLoans(user, "renew")) {
             return;
         }
 
-        // Process the return and update the system’s records.
-        boolean success = user.returnProduct(product);
-        if (success) {
-            product.setAvailable(true);
-            system.removeLoanRecord(product, user); // Sync with main system
-            System.out.println("Return successful: " + product.getTitle());
-        } else {
-            System.out.println("Return failed. Ensure you borrowed this item.");
+        System.out.print("\nEnter the Item key to renew (e.g. BOOK-1): ");
+        long key = readProductKey(null);
+        system.handleRenew(user, key);
+    }
+
+    /**
+     * Prints the user's active loans.
+     *
+     * @param user   the current user
+     * @param action the action being offered, used in the empty message
+     * @return {@code false} if the user has no loans
+     */
+    private static boolean listUserLoans(User user, String action) {
+        List<Loan> userLoans = new ArrayList<>(user.viewLoans());
+        if (userLoans.isEmpty()) {
+            System.out.println("You have no active loans to " + action + ".");
+            return false;
+        }
+        System.out.println("Your current loans:");
+        for (Loan loan : userLoans) {
+            System.out.println(loan.getInfo());
         }
+        return true;
     }
 
     // -------------------------------------------
@@ -328,5 +573,26 @@ public class Menu {
             return -1;
         }
     }
+
+    /**
+     * Reads a product key from user input.
+     * <p>
+     * Accepts a full key such as {@code DVD-2}. When a category has already
+     * been chosen, a plain numeric ID is also accepted and combined with
+     * that category, since IDs are only unique within one media type.
+     * </p>
+     *
+     * @param category the media type already selected, or {@code null} if none
+     * @return the packed product key, or {@link ProductKey#INVALID} if parsing fails
+     */
+    private static long readProductKey(MediaType category) {
+        String input = sc.nextLine().trim();
+        try {
+            int id = Integer.parseInt(input);
+            return category != null ? ProductKey.of(category, id) : ProductKey.INVALID;
+        } catch (NumberFormatException e) {
+            return ProductKey.parse(input);
+        }
+    }
 }
 
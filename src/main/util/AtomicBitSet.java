@@ -0,0 +1,195 @@
+package main.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Growable bit set whose individual bits can be updated concurrently.
+ * <p>
+ * Bits are stored in fixed-size pages of {@link AtomicLongArray} words.
+ * Setting or clearing a bit is a single compare-and-set on its word, so
+ * threads flipping different bits never block each other and no update is
+ * lost when they share a word. Pages are never copied: growing the set
+ * only appends new pages to the page directory, which keeps concurrent
+ * updates to existing pages safe while the set grows.
+ * </p>
+ * <p>
+ * {@link #cardinality()} and {@link #nextSetBit(int)} read the words one
+ * by one and therefore reflect a recent, but not necessarily instantaneous,
+ * state when bits change during the scan.
+ * </p>
+ */
+public class AtomicBitSet {
+
+    /** Log2 of the number of bits per page. */
+    private static final int PAGE_SHIFT = 12;
+
+    /** Number of bits per page. */
+    private static final int PAGE_BITS = 1 << PAGE_SHIFT;
+
+    /** Number of 64-bit words per page. */
+    private static final int PAGE_WORDS = PAGE_BITS >>> 6;
+
+    /** Page directory; replaced by a longer copy when the set grows. */
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[0];
+
+    // -------------------------------------------
+    // QUERIES
+    // -------------------------------------------
+
+    /**
+     * Returns the value of a bit.
+     *
+     * @param index the bit index
+     * @return {@code true} if the bit is set
+     */
+    public boolean get(int index) {
+        AtomicLongArray[] directory = pages;
+        int page = index >>> PAGE_SHIFT;
+        if (page >= directory.length) {
+            return false;
+        }
+        return (directory[page].get(wordIndex(index)) & (1L << index)) != 0;
+    }
+
+    /**
+     * Counts the set bits.
+     *
+     * @return the number of set bits
+     */
+    public int cardinality() {
+        int count = 0;
+        for (AtomicLongArray page : pages) {
+            for (int w = 0; w < PAGE_WORDS; w++) {
+                count += Long.bitCount(page.get(w));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the first set bit at or after {@code from}.
+     *
+     * @param from the index to start searching at
+     * @return the index of the next set bit, or {@code -1} if there is none
+     */
+    public int nextSetBit(int from) {
+        AtomicLongArray[] directory = pages;
+        int page = from >>> PAGE_SHIFT;
+        int word = wordIndex(from);
+        long bits = page < directory.length ? directory[page].get(word) & (-1L << from) : 0;
+        while (page < directory.length) {
+            if (bits != 0) {
+                return (page << PAGE_SHIFT) + (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == PAGE_WORDS) {
+                word = 0;
+                if (++page == directory.length) {
+                    break;
+                }
+            }
+            bits = directory[page].get(word);
+        }
+        return -1;
+    }
+
+    // -------------------------------------------
+    // UPDATES
+    // -------------------------------------------
+
+    /**
+     * Sets a bit to the given value.
+     *
+     * @param index the bit index
+     * @param value {@code true} to set the bit, {@code false} to clear it
+     */
+    public void set(int index, boolean value) {
+        if (value) {
+            set(index);
+        } else {
+            clear(index);
+        }
+    }
+
+    /**
+     * Sets a bit, growing the set when needed.
+     *
+     * @param index the bit index
+     */
+    public void set(int index) {
+        AtomicLongArray page = pageFor(index);
+        int word = wordIndex(index);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = page.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!page.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * Clears a bit.
+     *
+     * @param index the bit index
+     */
+    public void clear(int index) {
+        AtomicLongArray[] directory = pages;
+        int page = index >>> PAGE_SHIFT;
+        if (page >= directory.length) {
+            return;
+        }
+        AtomicLongArray words = directory[page];
+        int word = wordIndex(index);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) == 0) {
+                return;
+            }
+        } while (!words.compareAndSet(word, current, current & ~mask));
+    }
+
+    /**
+     * Clears every bit, keeping the allocated pages.
+     */
+    public void clear() {
+        for (AtomicLongArray page : pages) {
+            for (int w = 0; w < PAGE_WORDS; w++) {
+                page.set(w, 0);
+            }
+        }
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /** Returns the index of a bit's word within its page. */
+    private static int wordIndex(int index) {
+        return (index & (PAGE_BITS - 1)) >>> 6;
+    }
+
+    /** Returns the page holding a bit, adding pages if the set is too short. */
+    private AtomicLongArray pageFor(int index) {
+        int page = index >>> PAGE_SHIFT;
+        AtomicLongArray[] directory = pages;
+        return page < directory.length ? directory[page] : grow(page);
+    }
+
+    /** Extends the page directory so that it covers the given page. */
+    private synchronized AtomicLongArray grow(int page) {
+        AtomicLongArray[] directory = pages;
+        if (page >= directory.length) {
+            AtomicLongArray[] larger = new AtomicLongArray[Math.max(page + 1, directory.length * 2)];
+            System.arraycopy(directory, 0, larger, 0, directory.length);
+            for (int i = directory.length; i < larger.length; i++) {
+                larger[i] = new AtomicLongArray(PAGE_WORDS);
+            }
+            pages = larger;
+            directory = larger;
+        }
+        return directory[page];
+    }
+}
@@ -0,0 +1,299 @@
+package main.util;
+
+/**
+ * Hash map from primitive {@code long} keys to object values.
+ * <p>
+ * The map uses open addressing with linear probing, so keys are stored
+ * in a plain {@code long[]} and never boxed into {@link Long} objects.
+ * A slot is considered empty when its value is {@code null}, which means
+ * {@code null} values cannot be stored. Removal uses backward-shift
+ * deletion instead of tombstones, keeping probe sequences short even
+ * after many add/remove cycles.
+ * </p>
+ * <p>
+ * This is the only primitive-keyed map in the tree: {@code int} keys such
+ * as user IDs are widened to {@code long} by the caller, and the hash
+ * spreads sequential keys as well as packed ones.
+ * </p>
+ * <p>
+ * This class is not thread-safe; callers must provide their own
+ * synchronisation when sharing an instance between threads.
+ * </p>
+ *
+ * @param <V> the type of values stored in the map
+ */
+public class LongObjectMap<V> {
+
+    /** Maximum fraction of occupied slots before the table is doubled. */
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /** Keys of all slots; only meaningful where {@link #values} is non-null. */
+    private long[] keys;
+
+    /** Values of all slots; {@code null} marks an empty slot. */
+    private Object[] values;
+
+    /** Number of entries currently stored. */
+    private int size;
+
+    /** Number of entries that triggers the next resize. */
+    private int threshold;
+
+    /**
+     * Constructs an empty map with a small default capacity.
+     */
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty map sized to hold the given number of entries
+     * without resizing.
+     *
+     * @param expectedSize the number of entries expected to be stored
+     */
+    public LongObjectMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    // -------------------------------------------
+    // QUERIES
+    // -------------------------------------------
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key the key to look up
+     * @return the mapped value, or {@code null} if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+
+        // Probe until the key or an empty slot is found.
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the given key is present in the map.
+     *
+     * @param key the key to look up
+     * @return {@code true} if a value is mapped to the key
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the map holds no entries.
+     *
+     * @return {@code true} if the map is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // -------------------------------------------
+    // UPDATES
+    // -------------------------------------------
+
+    /**
+     * Maps the given key to the given value, replacing any previous value.
+     *
+     * @param key   the key to store
+     * @param value the non-null value to associate with the key
+     * @return the previous value, or {@code null} if the key was absent
+     * @throws IllegalArgumentException if {@code value} is {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Maps the given key to the given value only if the key is absent.
+     *
+     * @param key   the key to store
+     * @param value the non-null value to associate with the key
+     * @return the existing value, or {@code null} if the value was stored
+     */
+    public V putIfAbsent(long key, V value) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value);
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     *
+     * @param key the key to remove
+     * @return the removed value, or {@code null} if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V removed = (V) values[slot];
+                shiftBack(slot, mask);
+                size--;
+                return removed;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes all entries while keeping the current capacity.
+     */
+    public void clear() {
+        java.util.Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Invokes the given action for every entry in the map.
+     * <p>
+     * Iteration order follows the internal table layout and is therefore
+     * unspecified. The map must not be modified during iteration.
+     * </p>
+     *
+     * @param action the callback receiving each key and value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * Callback used by {@link #forEach(EntryConsumer)} to receive entries
+     * without boxing the key.
+     *
+     * @param <V> the value type
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+
+        /**
+         * Receives a single map entry.
+         *
+         * @param key   the primitive key
+         * @param value the mapped value
+         */
+        void accept(long key, V value);
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /**
+     * Closes the gap left at {@code gap} by moving later entries of the
+     * same probe chain backwards, so lookups never stop early.
+     */
+    private void shiftBack(int gap, int mask) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) {
+                break;
+            }
+            int home = mix(keys[slot]) & mask;
+
+            // Move the entry only if its home slot does not lie in (gap, slot].
+            boolean movable = gap <= slot
+                    ? (home <= gap || home > slot)
+                    : (home <= gap && home > slot);
+            if (movable) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = null;
+    }
+
+    /** Rehashes all entries into a table of the given power-of-two capacity. */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /** Allocates empty key and value arrays of the given capacity. */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /** Returns the smallest power-of-two table size that fits the expected entries. */
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    /** Spreads key bits so sequential IDs and packed keys differing only in high bits both scatter. */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,412 @@
+package main.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads CSV files through memory-mapped buffers without creating a
+ * {@link String} per line.
+ * <p>
+ * The file is mapped in windows of at most {@link #WINDOW_SIZE} bytes,
+ * so files larger than 2 GB are supported. Each line is tokenised in
+ * place: the reader records where every field starts and ends inside the
+ * mapped buffer, and a single reusable {@link Row} exposes those fields to
+ * the caller. Integers are parsed straight from the bytes, and strings are
+ * only created for the fields a caller actually asks for.
+ * </p>
+ * <p>
+ * Fields are separated by commas and trimmed of surrounding spaces and
+ * tabs. A field may be wrapped in double quotes to contain commas; a
+ * doubled quote ({@code ""}) inside a quoted field stands for one quote
+ * character. Lines end with {@code \n} or {@code \r\n}; quoted fields may
+ * not span several lines. Blank lines are skipped.
+ * </p>
+ */
+public final class MappedCsvReader {
+
+    /** Largest number of bytes mapped at once. */
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /** Upper bound for a single mapping, used when one line exceeds the window. */
+    private static final int MAX_WINDOW = Integer.MAX_VALUE - 8;
+
+    /** Private constructor to prevent instantiation of this utility class. */
+    private MappedCsvReader() {
+    }
+
+    /**
+     * Callback invoked once for each non-blank line of a CSV file.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+
+        /**
+         * Receives one parsed line.
+         * <p>
+         * The {@link Row} instance is reused for the next line, so it must
+         * not be stored; copy out any values that are needed later.
+         * </p>
+         *
+         * @param row the current line
+         */
+        void onRow(Row row);
+    }
+
+    // -------------------------------------------
+    // READING
+    // -------------------------------------------
+
+    /**
+     * Reads every line of a CSV file.
+     *
+     * @param file    the file to read
+     * @param handler receives each non-blank line in file order
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static void read(Path file, RowHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            read(channel, 0, channel.size(), handler);
+        }
+    }
+
+    /**
+     * Reads the lines of a CSV file that lie within a byte range.
+     * <p>
+     * {@code start} must be the first byte of a line (or 0) and {@code end}
+     * must be just after a line break (or the file size), so that ranges
+     * produced for the same file can be read independently.
+     * </p>
+     *
+     * @param channel an open channel on the CSV file
+     * @param start   offset of the first byte to read
+     * @param end     offset just past the last byte to read
+     * @param handler receives each non-blank line in file order
+     * @throws IOException if the file cannot be mapped
+     */
+    public static void read(FileChannel channel, long start, long end, RowHandler handler) throws IOException {
+        Row row = new Row();
+        long position = start;
+        int window = WINDOW_SIZE;
+
+        while (position < end) {
+            int length = (int) Math.min(window, end - position);
+            boolean lastWindow = position + length >= end;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            int consumed = row.scanLines(buffer, length, lastWindow, handler);
+            if (consumed == 0) {
+                // A single line is longer than the window; map a larger one.
+                if (window == MAX_WINDOW) {
+                    throw new IOException("CSV line longer than " + MAX_WINDOW + " bytes at offset " + position);
+                }
+                window = (int) Math.min((long) window * 2, MAX_WINDOW);
+                continue;
+            }
+            position += consumed;
+        }
+    }
+
+    /**
+     * Splits a file into byte ranges that each start at the beginning of a
+     * line, suitable for reading in parallel with
+     * {@link #read(FileChannel, long, long, RowHandler)}.
+     * <p>
+     * Each boundary is found by jumping roughly {@code chunkSize} bytes ahead
+     * and scanning forward to the next line break, so only a few bytes per
+     * chunk are inspected.
+     * </p>
+     *
+     * @param channel   an open channel on the CSV file
+     * @param chunkSize the approximate number of bytes per range
+     * @return ascending offsets {@code b0 = 0 < b1 < ... < bn = size}; range
+     *         {@code i} is {@code [b(i), b(i+1))}
+     * @throws IOException if the file cannot be read
+     */
+    public static long[] splitLines(FileChannel channel, long chunkSize) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[(int) Math.min(Integer.MAX_VALUE - 8, size / Math.max(1, chunkSize) + 2)];
+        int count = 0;
+        bounds[count++] = 0;
+
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            // Scan forward from the tentative boundary to just past the next '\n'.
+            long boundary = -1;
+            long scan = position;
+            while (boundary < 0 && scan < size) {
+                probe.clear();
+                int read = channel.read(probe, scan);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        boundary = scan + i + 1;
+                        break;
+                    }
+                }
+                scan += read;
+            }
+            if (boundary < 0 || boundary >= size) {
+                break;
+            }
+            bounds[count++] = boundary;
+            position = boundary + chunkSize;
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    // -------------------------------------------
+    // ROW VIEW
+    // -------------------------------------------
+
+    /**
+     * Reusable view of the fields of the current line.
+     * <p>
+     * Field positions refer to the mapped buffer and are only valid until
+     * the handler returns.
+     * </p>
+     */
+    public static final class Row {
+
+        /** Buffer holding the current line. */
+        private ByteBuffer buffer;
+
+        /** Start offset of each field's content within the buffer. */
+        private int[] starts = new int[8];
+
+        /** End offset (exclusive) of each field's content within the buffer. */
+        private int[] ends = new int[8];
+
+        /** Whether each field contains an escaped quote that must be collapsed. */
+        private boolean[] escaped = new boolean[8];
+
+        /** Number of fields on the current line. */
+        private int count;
+
+        /** Scratch space used to copy field bytes before decoding them. */
+        private byte[] scratch = new byte[256];
+
+        /** Rows are only created by the reader. */
+        private Row() {
+        }
+
+        /**
+         * Returns the number of fields on the current line.
+         *
+         * @return the field count
+         */
+        public int fieldCount() {
+            return count;
+        }
+
+        /**
+         * Parses a field as a decimal integer without creating a string.
+         *
+         * @param index the zero-based field index
+         * @return the parsed value
+         * @throws NumberFormatException if the field is empty, not a number or out of range
+         */
+        public int getInt(int index) {
+            int pos = starts[index];
+            int end = ends[index];
+            if (pos >= end) {
+                throw new NumberFormatException("Empty numeric field " + index);
+            }
+            boolean negative = buffer.get(pos) == '-';
+            if (negative || buffer.get(pos) == '+') {
+                pos++;
+            }
+            if (pos >= end) {
+                throw new NumberFormatException("Missing digits in field " + index);
+            }
+
+            // Accumulate as a negative number so Integer.MIN_VALUE is representable.
+            long value = 0;
+            while (pos < end) {
+                int digit = buffer.get(pos++) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Invalid digit in field " + index + ": " + getString(index));
+                }
+                value = value * 10 - digit;
+                if (value < Integer.MIN_VALUE) {
+                    throw new NumberFormatException("Value out of range in field " + index);
+                }
+            }
+            if (!negative && value == Integer.MIN_VALUE) {
+                throw new NumberFormatException("Value out of range in field " + index);
+            }
+            return (int) (negative ? value : -value);
+        }
+
+        /**
+         * Decodes a field as a UTF-8 string, removing quote escaping.
+         *
+         * @param index the zero-based field index
+         * @return the field text
+         */
+        public String getString(int index) {
+            int length = copyField(index);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the canonical instance of a field's text from a dictionary.
+         * <p>
+         * The field bytes are looked up directly, so no {@code String} is
+         * created when the dictionary already holds the value.
+         * </p>
+         *
+         * @param index      the zero-based field index
+         * @param dictionary the dictionary providing canonical instances
+         * @return the shared field text
+         */
+        public String getString(int index, StringDictionary dictionary) {
+            int length = copyField(index);
+            return dictionary.intern(scratch, 0, length);
+        }
+
+        /**
+         * Copies a field's unescaped bytes into the scratch array.
+         *
+         * @return the number of bytes copied
+         */
+        private int copyField(int index) {
+            int start = starts[index];
+            int length = ends[index] - start;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(start, scratch, 0, length);
+            if (!escaped[index]) {
+                return length;
+            }
+
+            // Collapse each doubled quote into a single quote.
+            int out = 0;
+            for (int i = 0; i < length; i++) {
+                scratch[out++] = scratch[i];
+                if (scratch[i] == '"' && i + 1 < length && scratch[i + 1] == '"') {
+                    i++;
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Scans complete lines in the buffer and passes each to the handler.
+         *
+         * @return the number of bytes consumed, ending at a line boundary
+         */
+        private int scanLines(ByteBuffer buf, int limit, boolean lastWindow, RowHandler handler) {
+            this.buffer = buf;
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buf.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                if (lineEnd == limit && !lastWindow) {
+                    break; // incomplete line; the next window starts here
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && buf.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                if (tokenize(lineStart, contentEnd)) {
+                    handler.onRow(this);
+                }
+                lineStart = Math.min(lineEnd + 1, limit);
+            }
+            return lineStart;
+        }
+
+        /**
+         * Records field boundaries for the line in {@code [from, to)}.
+         *
+         * @return {@code false} if the line is blank
+         */
+        private boolean tokenize(int from, int to) {
+            count = 0;
+            int pos = from;
+            boolean blank = true;
+            for (int i = from; i < to; i++) {
+                if (!isSpace(buffer.get(i))) {
+                    blank = false;
+                    break;
+                }
+            }
+            if (blank) {
+                return false;
+            }
+
+            while (true) {
+                while (pos < to && isSpace(buffer.get(pos))) {
+                    pos++;
+                }
+                int start;
+                int end;
+                boolean hasEscape = false;
+                if (pos < to && buffer.get(pos) == '"') {
+                    // Quoted field: content runs to the next unpaired quote.
+                    start = ++pos;
+                    while (pos < to) {
+                        if (buffer.get(pos) == '"') {
+                            if (pos + 1 < to && buffer.get(pos + 1) == '"') {
+                                hasEscape = true;
+                                pos += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        pos++;
+                    }
+                    end = pos;
+                    while (pos < to && buffer.get(pos) != ',') {
+                        pos++; // skip the closing quote and anything before the comma
+                    }
+                } else {
+                    start = pos;
+                    while (pos < to && buffer.get(pos) != ',') {
+                        pos++;
+                    }
+                    end = pos;
+                    while (end > start && isSpace(buffer.get(end - 1))) {
+                        end--;
+                    }
+                }
+                addField(start, end, hasEscape);
+
+                if (pos >= to) {
+                    return true;
+                }
+                pos++; // skip the comma
+            }
+        }
+
+        /** Appends a field boundary, growing the arrays when needed. */
+        private void addField(int start, int end, boolean hasEscape) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                escaped = Arrays.copyOf(escaped, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            escaped[count] = hasEscape;
+            count++;
+        }
+
+        /** Returns whether a byte is a space or tab. */
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package main.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe dictionary that maps equal strings to one canonical instance.
+ * <p>
+ * Catalogue files repeat the same author, genre, composer, director or
+ * narrator on many rows. Passing those fields through a dictionary while
+ * loading means every product with the same value shares a single
+ * {@link String}, instead of holding its own copy. Lookups can be made
+ * directly from UTF-8 bytes (for example a field inside a memory-mapped
+ * buffer), in which case no {@code String} is created at all when the
+ * value is already known.
+ * </p>
+ * <p>
+ * The table is split into independently locked segments, so parallel
+ * loaders interning different values rarely block one another. The
+ * dictionary also counts how many duplicates it removed and estimates
+ * the heap those duplicates would have occupied.
+ * </p>
+ */
+public class StringDictionary {
+
+    /** Number of independently locked segments; a power of two. */
+    private static final int SEGMENTS = 16;
+
+    /** Approximate size of a {@code String} object header plus its array header. */
+    private static final int STRING_OVERHEAD = 24 + 16;
+
+    /** Hash table segments, selected by the high bits of the hash. */
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /** Number of lookups that returned an existing instance. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Estimated bytes of heap not allocated thanks to those hits. */
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Constructs an empty dictionary.
+     */
+    public StringDictionary() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // -------------------------------------------
+    // INTERNING
+    // -------------------------------------------
+
+    /**
+     * Returns the canonical string for the given UTF-8 bytes, decoding and
+     * storing a new string only when the value has not been seen before.
+     *
+     * @param utf8   buffer holding the encoded value
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return the canonical instance
+     */
+    public String intern(byte[] utf8, int offset, int length) {
+        int hash = hash(utf8, offset, length);
+        return segmentFor(hash).intern(utf8, offset, length, hash, null);
+    }
+
+    /**
+     * Returns the canonical instance equal to the given string.
+     *
+     * @param value the string to canonicalise (may be {@code null})
+     * @return the canonical instance, or {@code null} if {@code value} is {@code null}
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(utf8, 0, utf8.length);
+        return segmentFor(hash).intern(utf8, 0, utf8.length, hash, value);
+    }
+
+    // -------------------------------------------
+    // STATISTICS
+    // -------------------------------------------
+
+    /**
+     * Returns the number of distinct strings held.
+     *
+     * @return the dictionary size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns how many lookups were answered with an existing instance.
+     *
+     * @return the number of duplicates removed
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns an estimate of the heap saved by sharing instances.
+     * <p>
+     * Each duplicate is counted as one {@code String} object and its
+     * backing array, padded to an 8-byte boundary.
+     * </p>
+     *
+     * @return the estimated bytes saved
+     */
+    public long getEstimatedBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Returns a one-line summary of the dictionary's effect.
+     *
+     * @return text such as {@code "52 distinct strings, 140 duplicates shared, ~7.2 KB saved"}
+     */
+    public String report() {
+        return String.format("%d distinct strings, %d duplicates shared, ~%.1f KB saved",
+                size(), getHits(), getEstimatedBytesSaved() / 1024.0);
+    }
+
+    // -------------------------------------------
+    // INTERNAL HELPERS
+    // -------------------------------------------
+
+    /** Returns the segment responsible for the given hash. */
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> 28) & (SEGMENTS - 1)];
+    }
+
+    /** Computes a well-spread hash over a byte range. */
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0x811C9DC5;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 15);
+    }
+
+    /**
+     * One lock-protected open-addressing table of the dictionary.
+     */
+    private final class Segment {
+
+        /** UTF-8 encoding of each stored value, used for comparison. */
+        private byte[][] keys = new byte[16][];
+
+        /** Canonical instances, parallel to {@link #keys}. */
+        private String[] values = new String[16];
+
+        /** Cached hash of each slot. */
+        private int[] hashes = new int[16];
+
+        /** Number of stored values. */
+        private int size;
+
+        /**
+         * Finds or inserts the value encoded by the given bytes.
+         *
+         * @param candidate an existing string for the value, or {@code null} to decode one
+         */
+        synchronized String intern(byte[] utf8, int offset, int length, int hash, String candidate) {
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while (keys[slot] != null) {
+                if (hashes[slot] == hash && Arrays.equals(keys[slot], 0, keys[slot].length,
+                        utf8, offset, offset + length)) {
+                    hits.increment();
+                    bytesSaved.add(STRING_OVERHEAD + ((length + 7) & ~7));
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            String value = candidate != null ? candidate : new String(utf8, offset, length, StandardCharsets.UTF_8);
+            keys[slot] = Arrays.copyOfRange(utf8, offset, offset + length);
+            values[slot] = value;
+            hashes[slot] = hash;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return value;
+        }
+
+        /** Doubles the table and reinserts every entry. */
+        private void grow() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            int[] oldHashes = hashes;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[keys.length];
+            hashes = new int[keys.length];
+
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package main.util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gate that many threads pass through concurrently and one thread can
+ * close to wait for everyone inside and keep newcomers out.
+ * <p>
+ * Passing threads take the read lock of one of several stripes, chosen by
+ * thread, so they rarely touch the same lock word and do not contend the
+ * way they would on a single read-write lock. Closing takes the write
+ * lock of every stripe in order, which is slow but rare.
+ * </p>
+ *
+ * <p>
+ * Example usage:
+ * <pre>
+ *     Lock pass = gate.enter();
+ *     try { ... } finally { pass.unlock(); }
+ * </pre>
+ * </p>
+ */
+public class StripedGate {
+
+    /** Lock stripes; a power of two. */
+    private final ReentrantReadWriteLock[] stripes;
+
+    /**
+     * Constructs an open gate.
+     *
+     * @param stripes the number of stripes, rounded up to a power of two
+     */
+    public StripedGate(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantReadWriteLock[stripes <= 1 ? 1 : size];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Passes the gate, waiting while it is closed.
+     *
+     * @return the held pass; unlock it when leaving
+     */
+    public Lock enter() {
+        int h = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+        Lock pass = stripes[(h >>> 16) & (stripes.length - 1)].readLock();
+        pass.lock();
+        return pass;
+    }
+
+    /**
+     * Closes the gate, waiting until every thread that entered has left.
+     * Must be followed by {@link #open()} on the same thread.
+     */
+    public void close() {
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+    }
+
+    /**
+     * Reopens the gate after {@link #close()}.
+     */
+    public void open() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package main.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter shared by any number of threads.
+ * <p>
+ * Tokens accrue at a fixed rate up to a burst capacity; each
+ * {@link #acquire()} takes one. When the bucket is empty the caller
+ * reserves the next token (the balance goes negative) and then sleeps
+ * until it is due, outside the lock, so waiting threads are served in the
+ * order they arrived and never busy-wait.
+ * </p>
+ */
+public class TokenBucket {
+
+    /** Nanoseconds needed to accrue one token. */
+    private final double nanosPerToken;
+
+    /** Maximum number of stored tokens. */
+    private final double capacity;
+
+    /** Current balance; negative while tokens are reserved ahead. */
+    private double tokens;
+
+    /** Time of the last refill, from {@link System#nanoTime()}. */
+    private long refilledAt;
+
+    /**
+     * Constructs a full bucket.
+     *
+     * @param permitsPerSecond the sustained rate
+     * @param burst            how many permits may be taken at once after an idle period
+     * @throws IllegalArgumentException if the rate or burst is not positive
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.capacity = burst;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes one permit, waiting until it is available.
+     *
+     * @throws InterruptedException if interrupted while waiting; the permit stays reserved
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) / nanosPerToken);
+            refilledAt = now;
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
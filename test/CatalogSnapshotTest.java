@@ -0,0 +1,36 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+import main.persistence.CatalogSnapshot;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class CatalogSnapshotTest {
+
+    @Test
+    public void testRoundTripAndStaleDetection() throws Exception {
+
+        Path dir = Files.createTempDirectory("snapshot");
+        Path source = Files.writeString(dir.resolve("books.csv"), "1,The Hobbit,J.R.R. Tolkien,978-0261,Fantasy\n");
+        CatalogSnapshot snapshot = new CatalogSnapshot(dir.resolve("catalog.snapshot"), true);
+
+        List<Product> products = List.of(
+                new Book(1, "The Hobbit", "J.R.R. Tolkien", "978-0261", "Fantasy"),
+                new DVD(1, "Inception", "Christopher Nolan"),
+                new CD(2, "Back in Black", "ACDC"));
+        snapshot.save(products, List.of(source));
+
+        // Restored products keep their order, keys and fields
+        List<Product> restored = snapshot.load(List.of(source));
+        assertNotNull(restored);
+        assertEquals(3, restored.size());
+        for (int i = 0; i < products.size(); i++) {
+            assertEquals(products.get(i).getInfo(), restored.get(i).getInfo());
+        }
+
+        // Changing a source CSV invalidates the snapshot
+        Files.writeString(source, "1,The Hobbit,J.R.R. Tolkien,978-0261,Adventure\n");
+        assertNull(snapshot.load(List.of(source)));
+    }
+}
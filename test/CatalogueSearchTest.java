@@ -0,0 +1,46 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+import java.util.List;
+
+public class CatalogueSearchTest {
+
+    @Test
+    public void testRankedPrefixAndIncrementalSearch() {
+
+        LibrarySystem system = new LibrarySystem();
+        Product hobbit = new Book(1, "The Hobbit", "J.R.R. Tolkien", "978-0261", "Fantasy");
+        Product lotr = new Book(2, "The Lord of the Rings", "J.R.R. Tolkien", "978-0618", "Fantasy");
+        Product inception = new DVD(1, "Inception", "Christopher Nolan");
+        system.addProduct(hobbit);
+        system.addProduct(lotr);
+        system.addProduct(inception);
+
+        // Creator search is case-insensitive and finds both books
+        assertEquals(2, system.search("TOLKIEN", 10).size());
+
+        // A title match ranks above a creator-only match
+        List<SearchHit> hits = system.search("hobbit tolkien", 10);
+        assertSame(hobbit, hits.get(0).getProduct());
+
+        // Prefix queries expand to every matching word
+        assertSame(inception, system.search("incep*", 10).get(0).getProduct());
+
+        // ISBN matches with or without separators
+        assertSame(hobbit, system.search("9780261", 10).get(0).getProduct());
+
+        // Removing a product updates the index immediately
+        system.removeProduct(hobbit.getProductKey());
+        assertTrue(system.search("hobbit", 10).isEmpty());
+        assertSame(lotr, system.search("tolkien", 10).get(0).getProduct());
+        assertEquals(1, system.search("tolkien", 10).size());
+
+        // Removed postings are dropped once they pile up; a reused key is found once
+        system.removeProduct(lotr.getProductKey());
+        assertTrue(system.search("tolkien", 10).isEmpty());
+        Product reissue = new Book(1, "The Hobbit", "J.R.R. Tolkien", "978-0261", "Fantasy");
+        system.addProduct(reissue);
+        assertEquals(1, system.search("hobbit tolkien", 10).size());
+        assertSame(reissue, system.search("hobbit", 10).get(0).getProduct());
+    }
+}
@@ -0,0 +1,52 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CategoryIndexTest {
+
+    @Test
+    public void testAvailabilityBitsFollowBorrowReturnAndRemoval() {
+
+        // 70 books span two 64-bit words of the availability bitset
+        LibrarySystem system = new LibrarySystem();
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        system.addUser(alice);
+        for (int i = 1; i <= 70; i++) {
+            system.addProduct(new Book(i, "Book " + i, "Author", "isbn" + i, "Genre"));
+        }
+        system.addProduct(new DVD(1, "Alien", "Scott"));
+        assertEquals(70, system.countAvailable(MediaType.BOOK));
+
+        // A borrow clears the bit, a return sets it again; other categories are untouched
+        system.handleBorrow(alice, ProductKey.of(MediaType.BOOK, 66));
+        assertEquals(69, system.countAvailable(MediaType.BOOK));
+        assertFalse(availableBookIds(system).contains(66));
+        assertEquals(1, system.countAvailable(MediaType.DVD));
+        system.handleReturn(alice, ProductKey.of(MediaType.BOOK, 66));
+        assertEquals(70, system.countAvailable(MediaType.BOOK));
+        assertTrue(availableBookIds(system).contains(66));
+
+        // Removing book 1 moves the last book into its slot; its bit moves along
+        system.handleBorrow(alice, ProductKey.of(MediaType.BOOK, 70));
+        assertTrue(system.removeProduct(ProductKey.of(MediaType.BOOK, 1)));
+        List<Integer> available = availableBookIds(system);
+        assertEquals(68, system.countAvailable(MediaType.BOOK));
+        assertEquals(68, available.size());
+        assertFalse(available.contains(1));
+        assertFalse(available.contains(70));
+
+        // The moved book's bit is still the one its availability updates
+        system.handleReturn(alice, ProductKey.of(MediaType.BOOK, 70));
+        assertEquals(69, system.countAvailable(MediaType.BOOK));
+        assertTrue(availableBookIds(system).contains(70));
+    }
+
+    private static List<Integer> availableBookIds(LibrarySystem system) {
+        List<Integer> ids = new ArrayList<>();
+        system.forEachAvailable(MediaType.BOOK, p -> ids.add(p.getProductId()));
+        return ids;
+    }
+}
@@ -0,0 +1,66 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+import main.persistence.LoanJournal;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+public class CheckpointCompactionTest {
+
+    @Test
+    public void testCheckpointReplacesOldSegments() throws Exception {
+
+        Path dir = Files.createTempDirectory("state");
+        Product hobbit = new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy");
+        Product dune = new Audiobook(1, "Dune", "Simon Vance");
+
+        LibrarySystem system = new LibrarySystem();
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        Student bob = new Student(2, "Bob", "bob@uni.ac.uk", "Physics", 2);
+        system.addUser(alice);
+        system.addUser(bob);
+        system.addProduct(hobbit);
+        system.addProduct(dune);
+        system.openJournal(dir);
+        system.startCheckpoints(Duration.ofHours(1), 1);
+
+        system.handleBorrow(alice, hobbit.getProductKey());
+        system.handleBorrow(bob, dune.getProductKey());
+        assertTrue(system.checkpointNow());
+
+        // The first segment is covered by the checkpoint and removed
+        assertFalse(Files.exists(LoanJournal.segmentPath(dir, 1)));
+
+        // Checkpoints carry their own magic, distinct from catalogue snapshots ("ULSC")
+        try (Stream<Path> files = Files.list(dir)) {
+            Path checkpoint = files.filter(f -> f.getFileName().toString().startsWith("checkpoint-"))
+                    .findFirst().orElseThrow();
+            byte[] header = Files.readAllBytes(checkpoint);
+            assertEquals("ULCK", new String(header, 0, 4, StandardCharsets.US_ASCII));
+        }
+
+        // A change after the checkpoint lives only in the new segment
+        system.handleReturn(alice, hobbit.getProductKey());
+        system.shutdown();
+
+        // Restart with no users registered: both come back from the checkpoint
+        LibrarySystem restarted = new LibrarySystem();
+        Product hobbit2 = new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy");
+        Product dune2 = new Audiobook(1, "Dune", "Simon Vance");
+        restarted.addProduct(hobbit2);
+        restarted.addProduct(dune2);
+        restarted.openJournal(dir);
+
+        assertNotNull(restarted.findUser(1));
+        User student = restarted.findUser(2);
+        assertTrue(student instanceof Student);
+        assertTrue(hobbit2.isAvailable());
+        assertFalse(dune2.isAvailable());
+        assertEquals(1, restarted.getLoans(student).size());
+        restarted.shutdown();
+    }
+}
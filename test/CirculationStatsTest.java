@@ -0,0 +1,63 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class CirculationStatsTest {
+
+    @Test
+    public void testStatisticsSurviveCheckpointAndReplayExactly() throws Exception {
+
+        Path dir = Files.createTempDirectory("state");
+        LibrarySystem system = new LibrarySystem();
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        system.addUser(alice);
+        system.addProduct(new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy"));
+        system.addProduct(new Book(2, "Emma", "Austen", "222", "Classic"));
+        system.addProduct(new DVD(1, "The Matrix", "Wachowski"));
+        long hobbit = ProductKey.of(MediaType.BOOK, 1);
+        long emma = ProductKey.of(MediaType.BOOK, 2);
+        long matrix = ProductKey.of(MediaType.DVD, 1);
+        system.openJournal(dir);
+        system.startCheckpoints(Duration.ofHours(1), 1);
+
+        // Before the checkpoint: the Hobbit twice, the Matrix once
+        system.handleBorrow(alice, hobbit);
+        system.handleReturn(alice, hobbit);
+        system.handleBorrow(alice, hobbit);
+        system.handleBorrow(alice, matrix);
+        assertTrue(system.checkpointNow());
+
+        // After it: events that only the journal holds
+        system.handleRenew(alice, matrix);
+        system.handleBorrow(alice, emma);
+        CirculationStats live = system.getStats();
+        assertEquals(4, live.getBorrows());
+        assertEquals(1, live.getReturns());
+        assertEquals(1, live.getRenewals());
+        assertEquals(3, live.getActiveLoans(MediaType.BOOK) + live.getActiveLoans(MediaType.DVD));
+        assertEquals(hobbit, live.topTitles().get(0).getProductKey());
+        assertEquals(1.0, system.getUtilisation(MediaType.BOOK), 0.0);
+        system.shutdown();
+
+        // Restart: checkpointed totals plus replayed events, nothing counted twice
+        LibrarySystem restarted = new LibrarySystem();
+        restarted.addProduct(new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy"));
+        restarted.addProduct(new Book(2, "Emma", "Austen", "222", "Classic"));
+        restarted.addProduct(new DVD(1, "The Matrix", "Wachowski"));
+        restarted.openJournal(dir);
+        CirculationStats stats = restarted.getStats();
+        assertEquals(4, stats.getBorrows());
+        assertEquals(3, stats.getBorrows(MediaType.BOOK));
+        assertEquals(2, stats.getBorrows(hobbit));
+        assertEquals(1, stats.getReturns());
+        assertEquals(1, stats.getRenewals());
+        assertEquals(2, stats.getActiveLoans(MediaType.BOOK));
+        assertEquals(3, stats.getActiveLoans(UserType.ADULT));
+        assertEquals(hobbit, stats.topTitles().get(0).getProductKey());
+        restarted.shutdown();
+    }
+}
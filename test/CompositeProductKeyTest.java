@@ -0,0 +1,29 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+public class CompositeProductKeyTest {
+
+    @Test
+    public void testSameIdInDifferentCataloguesIsUnambiguous() {
+
+        LibrarySystem system = new LibrarySystem();
+
+        // Book #2 and DVD #2 share the same per-file ID
+        Product book = new Book(2, "1984", "George Orwell", "978-0451", "Dystopian");
+        Product dvd = new DVD(2, "The Matrix", "Lana Wachowski");
+        system.addProduct(book);
+        system.addProduct(dvd);
+
+        // Each product is reachable through its own key
+        assertSame(book, system.findProduct(ProductKey.of(MediaType.BOOK, 2)));
+        assertSame(dvd, system.findProduct(ProductKey.parse("DVD-2")));
+
+        // Borrowing the DVD must not touch the book
+        AdultUser adult = new AdultUser(1, "Dhrew", "dhrew@mail.com");
+        system.handleBorrow(adult, dvd.getProductKey());
+
+        assertFalse("DVD #2 should be checked out", dvd.isAvailable());
+        assertTrue("Book #2 should remain available", book.isAvailable());
+    }
+}
@@ -0,0 +1,79 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+public class ConcurrentBorrowTest {
+
+    @Test
+    public void testRacingBorrowersNeverDoubleBookOrExceedLimits() throws Exception {
+
+        int threads = 8;
+        Policy policy = new Policy(14, 2, 0.5);
+
+        // -----------------------------------
+        // MANY USERS RACE FOR ONE PRODUCT
+        // -----------------------------------
+
+        Product contested = new DVD(1, "The Matrix", "Wachowski");
+        AtomicInteger winners = new AtomicInteger();
+        runConcurrently(threads, t -> {
+            AdultUser user = new AdultUser(100 + t, "User " + t, "u" + t + "@mail.com");
+            if (user.borrowProduct(contested, policy)) {
+                winners.incrementAndGet();
+            }
+        });
+        assertEquals("Exactly one borrower may win the item", 1, winners.get());
+        assertFalse(contested.isAvailable());
+
+        // -----------------------------------
+        // ONE USER BORROWS FROM MANY THREADS
+        // -----------------------------------
+
+        AdultUser adult = new AdultUser(1, "John", "john@mail.com");
+        List<Product> items = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            items.add(new Book(i, "Book " + i, "Author", "ISBN" + i, "Fiction"));
+        }
+        AtomicInteger granted = new AtomicInteger();
+        runConcurrently(threads, t -> {
+            for (int i = t; i < items.size(); i += threads) {
+                if (adult.borrowProduct(items.get(i), policy)) {
+                    granted.incrementAndGet();
+                }
+            }
+        });
+
+        // The limit check and the loan it admits must be atomic per user
+        assertEquals(10, granted.get());
+        assertEquals(10, adult.viewLoans().size());
+    }
+
+    /** Starts the given number of threads together and waits for all of them. */
+    private static void runConcurrently(int threads, IntConsumer body) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                body.accept(index);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+}
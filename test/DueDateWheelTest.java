@@ -0,0 +1,55 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DueDateWheelTest {
+
+    @Test
+    public void testOverdueEventsFollowRenewalsAndReturns() {
+
+        LocalDate today = LocalDate.now();
+        DueDateWheel wheel = new DueDateWheel(today, 3);
+        List<String> events = new ArrayList<>();
+        wheel.addListener(new DueDateWheel.Listener() {
+            public void onDueSoon(Loan loan, LocalDate date) { events.add("soon " + loan.getLoanId()); }
+            public void onOverdue(Loan loan, LocalDate date) { events.add("overdue " + loan.getLoanId()); }
+        });
+
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        Policy policy = new Policy(14, 2, 0.5);
+        Product hobbit = new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy");
+        Product matrix = new DVD(1, "The Matrix", "Wachowski");
+        Product album = new CD(1, "Abbey Road", "The Beatles");
+        Loan first = new Loan(1, alice, hobbit, policy);
+        Loan second = new Loan(2, alice, matrix, policy);
+        Loan third = new Loan(3, alice, album, policy);
+        wheel.schedule(first);
+        wheel.schedule(second);
+        wheel.schedule(third);
+
+        // Day 11 of 14: all three come into the due-soon window
+        wheel.advanceTo(today.plusDays(11));
+        assertEquals(3, events.size());
+        assertTrue(events.get(0).startsWith("soon"));
+
+        // Renewing moves the second loan two weeks out; returning cancels the third
+        assertTrue(second.renew(policy));
+        third.setReturnDate(today.plusDays(12));
+        assertEquals(2, wheel.size());
+
+        wheel.advanceTo(today.plusDays(15));
+        assertEquals(1, wheel.overdueCount());
+        assertSame(first, wheel.overdue().get(0));
+        assertEquals("overdue 1", events.get(events.size() - 1));
+
+        // The renewed loan becomes overdue after its new due date, even after a long jump
+        wheel.advanceTo(today.plusDays(400));
+        assertEquals(2, wheel.overdue().size());
+        assertTrue(events.contains("soon 2"));
+        assertFalse(events.contains("overdue 3"));
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FineEngineTest {
+
+    @Test
+    public void testParallelAccrualIsExactAndChargesEachDayOnce() {
+
+        // 10p a day; as a double 0.1 has no exact binary form
+        Policy policy = new Policy(14, 2, 0.1);
+        assertEquals(10, policy.getDailyFineMinor());
+
+        List<AdultUser> users = new ArrayList<>();
+        for (int u = 0; u < 100; u++) {
+            users.add(new AdultUser(u, "User" + u, "user" + u + "@mail.com"));
+        }
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Product book = new Book(i, "Book " + i, "Author", "isbn", "Genre");
+            loans.add(new Loan(i, users.get(i % 100), book, policy));
+        }
+
+        // Three days overdue: 30p per loan, 100 loans per user
+        FineEngine engine = new FineEngine();
+        LocalDate threeDaysLate = LocalDate.now().plusDays(17);
+        assertEquals(300_000, engine.accrueAll(loans, threeDaysLate));
+        assertEquals(3_000, users.get(7).getFineBalance());
+
+        // Running the batch again for the same day charges nothing
+        assertEquals(0, engine.accrueAll(loans, threeDaysLate));
+
+        // A late return two days later charges just those two days
+        assertEquals(20, engine.accrue(loans.get(7), threeDaysLate.plusDays(2)));
+        assertEquals(3_020, users.get(7).getFineBalance());
+        assertEquals(300_020, engine.getTotalCharged());
+        assertEquals("£30.20", FineEngine.format(users.get(7).getFineBalance()));
+    }
+}
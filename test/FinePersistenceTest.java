@@ -0,0 +1,55 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+
+public class FinePersistenceTest {
+
+    @Test
+    public void testFinesSurviveRestartAndAreNotChargedTwice() throws Exception {
+
+        Path dir = Files.createTempDirectory("fines");
+        LocalDate today = LocalDate.now();
+
+        LibrarySystem system = new LibrarySystem();
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        system.addUser(alice);
+        system.addProduct(new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy"));
+        system.addProduct(new DVD(1, "Alien", "Scott"));
+        system.openJournal(dir);
+        system.startCheckpoints(Duration.ofHours(1), 1);
+        system.handleBorrow(alice, ProductKey.of(MediaType.BOOK, 1));
+        system.handleBorrow(alice, ProductKey.of(MediaType.DVD, 1));
+
+        // Three days late goes into the checkpoint, a fourth only into the journal after it
+        system.accrueFines(today.plusDays(17));
+        long threeDays = alice.getFineBalance();
+        assertTrue(threeDays > 0);
+        assertTrue(system.checkpointNow());
+        long fourthDay = system.accrueFines(today.plusDays(18));
+        assertEquals(threeDays / 3, fourthDay);
+        long balance = alice.getFineBalance();
+        assertEquals(threeDays + fourthDay, balance);
+        system.shutdown();
+
+        // Same user, fresh object: the balance and the charged days come back
+        LibrarySystem restarted = new LibrarySystem();
+        AdultUser alice2 = new AdultUser(1, "Alice", "alice@mail.com");
+        restarted.addUser(alice2);
+        restarted.addProduct(new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy"));
+        restarted.addProduct(new DVD(1, "Alien", "Scott"));
+        restarted.openJournal(dir);
+        assertEquals(balance, alice2.getFineBalance());
+        assertEquals(0, restarted.accrueFines(today.plusDays(18)));
+        assertEquals(fourthDay, restarted.accrueFines(today.plusDays(19)));
+
+        // A late return charges nothing already charged and keeps the balance
+        assertTrue(restarted.handleReturn(alice2, ProductKey.of(MediaType.BOOK, 1)));
+        assertEquals(balance + fourthDay, alice2.getFineBalance());
+        restarted.shutdown();
+    }
+}
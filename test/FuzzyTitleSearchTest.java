@@ -0,0 +1,33 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+public class FuzzyTitleSearchTest {
+
+    @Test
+    public void testMisspeltTitlesAreFound() {
+
+        LibrarySystem system = new LibrarySystem();
+        Product hobbit = new Book(1, "The Hobbit", "J.R.R. Tolkien", "978-0261", "Fantasy");
+        Product godfather = new DVD(3, "The Godfather", "Francis Ford Coppola");
+        system.addProduct(hobbit);
+        system.addProduct(godfather);
+        system.addProduct(new DVD(1, "Inception", "Christopher Nolan"));
+
+        // Exact search finds nothing for the typos
+        assertTrue(system.search("Hobit", 10).isEmpty());
+
+        // Fuzzy search tolerates a missing letter
+        assertSame(hobbit, system.searchFuzzy("Hobit", 10).get(0).getProduct());
+        assertSame(godfather, system.searchFuzzy("Godfater", 10).get(0).getProduct());
+
+        // Unrelated queries stay empty
+        assertTrue(system.searchFuzzy("Zzyzx", 10).isEmpty());
+
+        // Removed titles disappear at once; compaction keeps the others reachable
+        system.removeProduct(hobbit.getProductKey());
+        assertTrue(system.searchFuzzy("Hobit", 10).isEmpty());
+        system.removeProduct(ProductKey.of(MediaType.DVD, 1));
+        assertSame(godfather, system.searchFuzzy("Godfater", 10).get(0).getProduct());
+    }
+}
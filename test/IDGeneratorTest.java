@@ -1,13 +1,23 @@
 import org.junit.Test;
 import static org.junit.Assert.*;
 import main.model.IDGenerator;
+import main.model.IDGenerator.Sequence;
+
+import java.util.HashSet;
+import java.util.Set;
 
 public class IDGeneratorTest {
 
     @Test
     public void testSequentialIDs() {
-        int id1 = IDGenerator.nextId();
-        int id2 = IDGenerator.nextId();
-        assertEquals(id1 + 1, id2);
+        // Enough draws to span several per-thread blocks
+        Set<Long> seen = new HashSet<>();
+        long previous = 0;
+        for (int i = 0; i < 1_000; i++) {
+            long id = IDGenerator.next(Sequence.LOAN);
+            assertTrue("Duplicate ID " + id, seen.add(id));
+            assertTrue("ID " + id + " does not follow " + previous, id > previous);
+            previous = id;
+        }
     }
 }
@@ -0,0 +1,69 @@
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.IDGenerator;
+import main.model.IDGenerator.Sequence;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+public class IDSequenceTest {
+
+    /** Later tests in this JVM must not keep writing the temporary marks file. */
+    @After
+    public void stopPersisting() {
+        IDGenerator.stopPersisting();
+    }
+
+    @Test
+    public void testConcurrentIdsAreUniqueAndCoveredByPersistedMark() throws Exception {
+
+        Path file = Files.createTempDirectory("ids").resolve("ids.properties");
+        IDGenerator.persistTo(file);
+
+        // Eight threads draw loan IDs concurrently
+        int threads = 8;
+        int perThread = 5_000;
+        long[][] drawn = new long[threads][perThread];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long[] ids = drawn[t];
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = IDGenerator.next(Sequence.LOAN);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // No ID was handed out twice
+        Set<Long> seen = new HashSet<>();
+        long max = 0;
+        for (long[] ids : drawn) {
+            for (long id : ids) {
+                assertTrue("Duplicate ID " + id, seen.add(id));
+                max = Math.max(max, id);
+            }
+        }
+
+        // The persisted mark already covers every ID handed out
+        Properties marks = new Properties();
+        try (Reader in = Files.newBufferedReader(file)) {
+            marks.load(in);
+        }
+        assertTrue(Long.parseLong(marks.getProperty("loan")) >= max);
+
+        // Other sequences are independent of the loan sequence
+        assertTrue(IDGenerator.next(Sequence.USER) < max);
+    }
+}
@@ -0,0 +1,55 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.api.LibraryHttpServer;
+import main.model.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+public class LibraryHttpServerTest {
+
+    @Test
+    public void testBorrowAndListLoansOverHttp() throws Exception {
+
+        LibrarySystem system = new LibrarySystem();
+        system.addUser(new AdultUser(1, "Alice", "alice@mail.com"));
+        system.addUser(new AdultUser(2, "Bob", "bob@mail.com"));
+        system.addProduct(new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy"));
+
+        LibraryHttpServer server = new LibraryHttpServer(system, 0);
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort();
+
+            // First borrower wins, the second is refused with 409
+            assertTrue(read(open("POST", base + "/api/borrow?user=1&item=BOOK-1")).contains("\"ok\":true"));
+            HttpURLConnection refused = open("POST", base + "/api/borrow?user=2&item=BOOK-1");
+            assertEquals(409, refused.getResponseCode());
+
+            String loans = read(open("GET", base + "/api/loans?user=1"));
+            assertTrue(loans.startsWith("[{\"loanId\":"));
+            assertTrue(loans.contains("\"item\":\"BOOK-1\""));
+
+            // Wrong method and malformed item are rejected
+            assertEquals(405, open("GET", base + "/api/return?user=1&item=BOOK-1").getResponseCode());
+            assertEquals(400, open("POST", base + "/api/return?user=1&item=nope").getResponseCode());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpURLConnection open(String method, String url) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private static String read(HttpURLConnection connection) throws Exception {
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+import main.persistence.LoanHistory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+public class LoanHistoryTest {
+
+    @Test
+    public void testMonthlyColumnsAggregateInParallelAndSurviveReopen() throws Exception {
+
+        Path dir = Files.createTempDirectory("history");
+        LocalDate jan1 = LocalDate.of(2024, 1, 1);
+        LoanHistory history = LoanHistory.open(dir);
+
+        // 200,000 returns over 60 days: books kept 10 days, DVDs 4; enough rows to split across tasks
+        long books = 0;
+        for (int i = 0; i < 200_000; i++) {
+            long returned = jan1.toEpochDay() + i % 60;
+            boolean book = i % 4 != 0;
+            history.append(returned - (book ? 10 : 4), returned, i % 500, i % 900,
+                    book ? MediaType.BOOK : MediaType.DVD);
+            books += book ? 1 : 0;
+        }
+        assertEquals(2, history.months().size()); // January and February
+        assertEquals(200_000, history.count(jan1, jan1.plusDays(59)));
+        assertEquals(0, history.count(jan1.minusDays(30), jan1.minusDays(1)));
+
+        // Week 0 holds days 0-6 of the 60: 7 days of the 60-day cycle
+        LoanHistory.WeeklyCounts weeks = history.countsPerWeek(jan1, jan1.plusDays(59));
+        assertEquals(9, weeks.getWeeks());
+        long week0 = 0;
+        for (int i = 0; i < 200_000; i++) {
+            week0 += i % 60 < 7 ? 1 : 0;
+        }
+        assertEquals(week0, weeks.getTotal(0));
+        assertEquals(week0, weeks.getCount(0, MediaType.BOOK) + weeks.getCount(0, MediaType.DVD));
+        assertEquals(10.0, history.averageDaysToReturn(jan1, jan1.plusDays(59), MediaType.BOOK), 0.0);
+        double mixed = (books * 10 + (200_000 - books) * 4) / 200_000.0;
+        assertEquals(mixed, history.averageDaysToReturn(jan1, jan1.plusDays(59), null), 1e-9);
+        history.close();
+
+        // A torn row at the end of a month file is dropped on reopen
+        Path january = dir.resolve("history-2024-01.loans");
+        Files.write(january, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+        LoanHistory reopened = LoanHistory.open(dir);
+        assertEquals(200_000, reopened.size());
+        reopened.append(jan1.toEpochDay(), jan1.toEpochDay() + 1, 1, 1, MediaType.CD);
+        reopened.close();
+        assertEquals(200_001, LoanHistory.open(dir).count(jan1, jan1.plusDays(59)));
+
+        // Returns through the library system are recorded
+        LibrarySystem system = new LibrarySystem();
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        system.addUser(alice);
+        system.addProduct(new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy"));
+        system.handleBorrow(alice, ProductKey.of(MediaType.BOOK, 1));
+        system.handleReturn(alice, ProductKey.of(MediaType.BOOK, 1));
+        assertEquals(1, system.getHistory().count(LocalDate.now(), LocalDate.now()));
+    }
+}
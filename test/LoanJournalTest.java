@@ -0,0 +1,45 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.persistence.LoanJournal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoanJournalTest {
+
+    @Test
+    public void testReplayAfterTornTail() throws Exception {
+
+        Path dir = Files.createTempDirectory("journal");
+        Path file;
+
+        try (LoanJournal journal = LoanJournal.open(dir, event -> { })) {
+            file = journal.getSegmentFile();
+            journal.append(LoanJournal.Event.borrow(1, 7, 42, 100, 114));
+            journal.append(LoanJournal.Event.renew(1, 7, 42, 128, 1));
+            journal.append(LoanJournal.Event.returned(1, 7, 42, 120));
+            assertEquals(3, journal.getDurableEvents());
+        }
+
+        // Simulate a crash in the middle of writing the next record
+        Files.write(file, new byte[] {0, 0, 0, 33, 1, 2}, StandardOpenOption.APPEND);
+
+        List<LoanJournal.Event> replayed = new ArrayList<>();
+        try (LoanJournal journal = LoanJournal.open(dir, replayed::add)) {
+            assertEquals(3, journal.getReplayedEvents());
+            assertEquals(6, journal.getDiscardedBytes());
+        }
+        assertEquals(LoanJournal.EventType.BORROW, replayed.get(0).getType());
+        assertEquals(128, replayed.get(1).getDueDay());
+        assertEquals(1, replayed.get(1).getRenewCount());
+        assertEquals(LoanJournal.EventType.RETURN, replayed.get(2).getType());
+
+        // The torn tail was cut off, so a third open finds a clean journal
+        try (LoanJournal journal = LoanJournal.open(dir, event -> { })) {
+            assertEquals(0, journal.getDiscardedBytes());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.util.List;
+
+public class LoanLedgerTest {
+
+    @Test
+    public void testLoansIndexedByProductAndUser() {
+
+        LoanLedger ledger = new LoanLedger();
+        Policy policy = new Policy(14, 2, 0.5);
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        AdultUser bob = new AdultUser(2, "Bob", "bob@mail.com");
+
+        Product hobbit = new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy");
+        Product matrix = new DVD(1, "The Matrix", "Wachowski");
+        Product album = new CD(3, "Abbey Road", "The Beatles");
+
+        Loan first = new Loan(10, alice, matrix, policy);
+        Loan second = new Loan(11, alice, hobbit, policy);
+        Loan third = new Loan(12, bob, album, policy);
+        assertTrue(ledger.add(first));
+        assertTrue(ledger.add(second));
+        assertTrue(ledger.add(third));
+
+        // A product already on loan cannot be recorded twice
+        assertFalse(ledger.add(new Loan(13, bob, matrix, policy)));
+        assertEquals(3, ledger.size());
+
+        // Per-user loans keep insertion order
+        List<Loan> aliceLoans = ledger.loansOf(alice.getUserId());
+        assertEquals(2, aliceLoans.size());
+        assertSame(first, aliceLoans.get(0));
+        assertSame(second, aliceLoans.get(1));
+        assertSame(second, ledger.findByProduct(hobbit.getProductKey()));
+
+        // Removal only succeeds for the actual borrower
+        assertNull(ledger.remove(matrix.getProductKey(), bob.getUserId()));
+        assertSame(first, ledger.remove(matrix.getProductKey(), alice.getUserId()));
+        assertNull(ledger.findByProduct(matrix.getProductKey()));
+        assertEquals(1, ledger.loansOf(alice.getUserId()).size());
+        assertEquals(2, ledger.size());
+    }
+}
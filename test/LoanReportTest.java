@@ -0,0 +1,47 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+import main.report.LoanReport;
+import main.report.ReportFormat;
+
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.List;
+
+public class LoanReportTest {
+
+    @Test
+    public void testReportsStreamEveryLoanInEachFormat() throws Exception {
+
+        LibrarySystem system = new LibrarySystem();
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        system.addUser(alice);
+        system.addProduct(new Book(1, "Eats, Shoots \"and\" Leaves", "Truss", "111", "Grammar"));
+        system.addProduct(new DVD(1, "The Matrix", "Wachowski"));
+        system.handleBorrow(alice, ProductKey.of(MediaType.BOOK, 1));
+        system.handleBorrow(alice, ProductKey.of(MediaType.DVD, 1));
+
+        // CSV: header, then one row per loan with the tricky title quoted
+        StringWriter csv = new StringWriter();
+        long rows = new LoanReport(ReportFormat.CSV, LocalDate.now()).write(system.activeLoans(), csv);
+        assertEquals(2, rows);
+        String[] lines = csv.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("loanId,item,type,title"));
+        assertTrue(csv.toString().contains(",\"Eats, Shoots \"\"and\"\" Leaves\",1,Alice,ADULT,"));
+
+        // JSON Lines: one object per line, no separating commas; 30 days on, both are overdue
+        StringWriter jsonl = new StringWriter();
+        new LoanReport(ReportFormat.JSONL, LocalDate.now().plusDays(30)).write(system.activeLoans(), jsonl);
+        String[] objects = jsonl.toString().split("\n");
+        assertEquals(2, objects.length);
+        for (String object : objects) {
+            assertTrue(object.startsWith("{\"loanId\":") && object.endsWith("\"overdue\":true}"));
+        }
+
+        // The librarian's text report keeps its format
+        List<Loan> active = system.getAllLoans();
+        String text = new Librarian(9, "Lib", "lib@mail.com").generateReport(active);
+        assertEquals("Library Loan Report:\n" + active.get(0).getInfo() + "\n" + active.get(1).getInfo() + "\n", text);
+    }
+}
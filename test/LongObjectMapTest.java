@@ -0,0 +1,42 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.util.LongObjectMap;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void testPutGetRemoveAcrossResizes() {
+
+        LongObjectMap<String> map = new LongObjectMap<>();
+
+        // Insert enough keys to force several resizes
+        for (int i = 0; i < 1000; i++) {
+            assertNull(map.put(i, "v" + i));
+        }
+        assertEquals(1000, map.size());
+
+        // Remove every other key (exercises backward-shift deletion)
+        for (int i = 0; i < 1000; i += 2) {
+            assertEquals("v" + i, map.remove(i));
+        }
+
+        // Remaining keys must still be reachable, removed ones gone
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 0) {
+                assertNull("Key " + i + " should be removed", map.get(i));
+            } else {
+                assertEquals("v" + i, map.get(i));
+            }
+        }
+        assertEquals(500, map.size());
+
+        // Widened int keys and keys beyond the int range do not collide
+        map.put(-1, "minus one");
+        map.put(1L << 40, "packed");
+        map.put((1L << 40) | 1, "packed one");
+        assertEquals("minus one", map.get(-1));
+        assertEquals("packed", map.get(1L << 40));
+        assertEquals("v1", map.get(1));
+        assertEquals(503, map.size());
+    }
+}
@@ -0,0 +1,33 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.util.MappedCsvReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MappedCsvReaderTest {
+
+    @Test
+    public void testQuotedFieldsAndInPlaceIntegers() throws Exception {
+
+        // Quoted commas, escaped quotes, CRLF endings and a blank line
+        Path file = Files.createTempFile("books", ".csv");
+        Files.write(file, ("1, \"Eats, Shoots & Leaves\" ,Lynne Truss\r\n"
+                + "\n"
+                + "-42,\"The \"\"Quoted\"\" Title\",Someone\n"
+                + "7,Plain,Author").getBytes(StandardCharsets.UTF_8));
+
+        List<String> rows = new ArrayList<>();
+        MappedCsvReader.read(file, row ->
+                rows.add(row.getInt(0) + "|" + row.getString(1) + "|" + row.getString(2)));
+        Files.delete(file);
+
+        // Blank line skipped, quotes removed, fields trimmed
+        assertEquals(3, rows.size());
+        assertEquals("1|Eats, Shoots & Leaves|Lynne Truss", rows.get(0));
+        assertEquals("-42|The \"Quoted\" Title|Someone", rows.get(1));
+        assertEquals("7|Plain|Author", rows.get(2));
+    }
+}
@@ -0,0 +1,34 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelCatalogLoadTest {
+
+    @Test
+    public void testChunkedLoadMatchesSequentialOrder() {
+
+        // Sequential reference load, file by file
+        List<Product> expected = new ArrayList<>();
+        expected.addAll(DataLoader.loadBooks());
+        expected.addAll(DataLoader.loadCDs());
+        expected.addAll(DataLoader.loadDVDs());
+        expected.addAll(DataLoader.loadAudiobooks());
+
+        // Tiny chunks force every file to be split across many tasks
+        ForkJoinPool pool = new ForkJoinPool(4);
+        CatalogLoader loader = new CatalogLoader(pool, 32);
+        CatalogLoader.Result result = loader.load();
+
+        assertEquals(expected.size(), result.getProducts().size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("Product " + i + " out of order",
+                    expected.get(i).getProductKey(), result.getProducts().get(i).getProductKey());
+        }
+        assertTrue("Large files should be split", result.getFileStats().get(1).getChunks() > 1);
+
+        pool.shutdown();
+    }
+}
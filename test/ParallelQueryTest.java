@@ -0,0 +1,66 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+import main.query.ParallelQuery;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelQueryTest {
+
+    @Test
+    public void testParallelOperatorsMatchSequentialOrder() {
+
+        // 10,000 numbers whose order is scrambled but reproducible
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            numbers.add((i * 7919) % 10_000);
+        }
+        Comparator<Integer> byLastDigit = Comparator.comparingInt(n -> n % 10);
+
+        // A threshold of 100 forces work onto the pool; 1,000,000 runs everything on this thread
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelQuery<Integer> parallel = ParallelQuery.of(numbers, pool, 100);
+        ParallelQuery<Integer> sequential = ParallelQuery.of(numbers, pool, 1_000_000);
+
+        assertEquals(sequential.filter(n -> n % 3 == 0).toList(), parallel.filter(n -> n % 3 == 0).toList());
+        assertEquals(sequential.map(n -> "#" + n).toList(), parallel.map(n -> "#" + n).toList());
+
+        // Groups in first-seen order, items in input order
+        Map<Integer, List<Integer>> groups = parallel.groupBy(n -> n % 10);
+        assertEquals(List.copyOf(sequential.groupBy(n -> n % 10).keySet()), List.copyOf(groups.keySet()));
+        assertEquals(sequential.groupBy(n -> n % 10), groups);
+        assertEquals(Long.valueOf(1000), parallel.countBy(n -> n % 10).get(7));
+
+        // Stable sort: equal last digits keep input order, same as List.sort
+        List<Integer> expected = new ArrayList<>(numbers);
+        expected.sort(byLastDigit);
+        assertEquals(expected, parallel.sorted(byLastDigit).toList());
+
+        // Top-k equals the head of the stable sort, ties included
+        assertEquals(expected.subList(0, 25), parallel.top(25, byLastDigit));
+        assertEquals(List.of(), parallel.top(0, byLastDigit));
+        pool.shutdown();
+
+        // Librarian reports are built from the same operators
+        LibrarySystem system = new LibrarySystem();
+        AdultUser alice = new AdultUser(1, "Alice", "alice@mail.com");
+        system.addUser(alice);
+        system.addProduct(new Book(1, "Dune", "Herbert", "111", "Sci-Fi"));
+        system.addProduct(new Audiobook(1, "Dune", "Simon Vance"));
+        system.addProduct(new DVD(1, "Alien", "Scott"));
+        system.handleBorrow(alice, ProductKey.of(MediaType.BOOK, 1));
+        system.handleBorrow(alice, ProductKey.of(MediaType.AUDIOBOOK, 1));
+        system.handleBorrow(alice, ProductKey.of(MediaType.DVD, 1));
+        Librarian lib = new Librarian(9, "Lib", "lib@mail.com");
+        assertEquals(Map.of("Dune", 2L, "Alien", 1L), lib.loansPerTitle(system, 10));
+        assertEquals("Dune", lib.loansPerTitle(system, 1).keySet().iterator().next());
+        assertTrue(lib.overdueByBorrowerType(system, LocalDate.now()).isEmpty());
+        assertEquals(3, lib.overdueByBorrowerType(system, LocalDate.now().plusDays(60))
+                .get(UserType.ADULT).size());
+    }
+}
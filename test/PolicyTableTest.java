@@ -0,0 +1,59 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PolicyTableTest {
+
+    @Test
+    public void testRulesAreCompiledPerRoleAndCategoryAndReloadable() throws Exception {
+
+        LibrarySystem system = new LibrarySystem();
+        Student bob = new Student(2, "Bob", "bob@uni.ac.uk", "Physics", 2);
+        system.addUser(bob);
+        Product dune = new Audiobook(1, "Dune", "Simon Vance");
+        Product matrix = new DVD(1, "The Matrix", "Wachowski");
+        system.addProduct(dune);
+        system.addProduct(matrix);
+
+        // Built-in rules: students borrow books and audiobooks for 21 days
+        PolicyTable rules = system.getPolicies();
+        assertEquals(5, rules.loanLimit(UserType.STUDENT));
+        assertEquals(21, rules.policy(UserType.STUDENT, MediaType.BOOK).getLoanPeriod());
+        assertSame("Lookups must not allocate",
+                rules.policy(UserType.CHILD, MediaType.BOOK), rules.policy(UserType.CHILD, MediaType.BOOK));
+        assertEquals(1, rules.categories(UserType.CHILD).size());
+        assertFalse(rules.permits(UserType.STUDENT, MediaType.DVD));
+
+        // The model, not just the menu, refuses a category the role may not borrow
+        assertFalse(system.handleBorrow(bob, matrix.getProductKey()));
+        assertTrue(matrix.isAvailable());
+
+        // Reload: DVDs for students, 7-day audiobook loans, unlimited librarians unchanged
+        Path file = Files.createTempFile("policies", ".properties");
+        Files.writeString(file, "student.categories=BOOK,DVD,AUDIOBOOK\n"
+                + "student.audiobook.loanPeriod=7\n");
+        assertTrue(system.reloadPolicies(file));
+        assertTrue(system.handleBorrow(bob, matrix.getProductKey()));
+        assertTrue(system.handleBorrow(bob, dune.getProductKey()));
+        for (Loan loan : system.getLoans(bob)) {
+            int days = loan.getItem() == dune ? 7 : 21;
+            assertEquals(loan.getStartDate().plusDays(days), loan.getDueDate());
+        }
+        assertEquals(Integer.MAX_VALUE, system.getPolicies().loanLimit(UserType.LIBRARIAN));
+
+        // An invalid file leaves the current rules in force
+        Files.writeString(file, "student.fines=1\n");
+        PolicyTable current = system.getPolicies();
+        assertFalse(system.reloadPolicies(file));
+        assertSame(current, system.getPolicies());
+
+        // A renewal keeps the terms of the checkout, whatever the rules say now
+        Files.writeString(file, "student.audiobook.loanPeriod=30\n");
+        assertTrue(system.reloadPolicies(file));
+        Loan audiobook = system.renew(bob, dune.getProductKey());
+        assertEquals(audiobook.getStartDate().plusDays(14), audiobook.getDueDate());
+    }
+}
@@ -0,0 +1,81 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+import main.reminder.ReminderDispatcher;
+import main.reminder.ReminderMessage;
+import main.util.TokenBucket;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ReminderDispatcherTest {
+
+    @Test
+    public void testRemindersGroupedPerEmailWithRetryAndRestart() throws Exception {
+
+        LibrarySystem system = new LibrarySystem();
+        AdultUser parent = new AdultUser(1, "Parent", "family@mail.com");
+        ChildUser child = new ChildUser(2, "Sara", " FAMILY@mail.com ");
+        AdultUser other = new AdultUser(3, "Alice", "alice@mail.com");
+        parent.addChild(child);
+        system.addUser(parent);
+        system.addUser(child);
+        system.addUser(other);
+        system.addProduct(new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy"));
+        system.addProduct(new DVD(1, "The Matrix", "Wachowski"));
+        system.addProduct(new CD(1, "Abbey Road", "The Beatles"));
+        system.handleBorrow(parent, ProductKey.of(MediaType.CD, 1));
+        system.handleBorrow(child, ProductKey.of(MediaType.BOOK, 1));
+        system.handleBorrow(other, ProductKey.of(MediaType.DVD, 1));
+
+        // The sink fails the first delivery once to exercise the retry
+        List<ReminderMessage> delivered = new CopyOnWriteArrayList<>();
+        AtomicBoolean failedOnce = new AtomicBoolean();
+        Path cursor = Files.createTempDirectory("reminders").resolve("reminders.cursor");
+        ReminderDispatcher dispatcher = new ReminderDispatcher(system, message -> {
+            if (failedOnce.compareAndSet(false, true)) {
+                throw new IOException("relay busy");
+            }
+            delivered.add(message);
+        }, new TokenBucket(1000, 10), cursor, 2, 3);
+
+        // Twelve days in, every 14-day loan is due soon
+        LocalDate runDate = LocalDate.now().plusDays(12);
+        ReminderDispatcher.RunSummary summary = dispatcher.run(runDate);
+        assertEquals(2, summary.getSent());
+        assertEquals(3, summary.getLoans());
+        assertEquals(0, summary.getFailed());
+
+        ReminderMessage family = delivered.stream()
+                .filter(m -> m.getRecipient().equals("family@mail.com")).findFirst().orElseThrow();
+        assertEquals(2, family.getLoanCount());
+        assertTrue(family.getBody().contains("The Hobbit"));
+        assertTrue(family.getBody().contains("Abbey Road"));
+
+        // A completed run is not repeated for the same date
+        assertEquals(0, dispatcher.run(runDate).getSent());
+        assertEquals(2, delivered.size());
+
+        // A group that fails every attempt is retried by the next run for the date
+        AtomicBoolean relayDown = new AtomicBoolean(true);
+        List<String> retried = new CopyOnWriteArrayList<>();
+        Path retryCursor = cursor.resolveSibling("retry.cursor");
+        ReminderDispatcher flaky = new ReminderDispatcher(system, message -> {
+            if (relayDown.get() && message.getRecipient().equals("alice@mail.com")) {
+                throw new IOException("relay down");
+            }
+            retried.add(message.getRecipient());
+        }, new TokenBucket(1000, 10), retryCursor, 2, 2);
+        assertEquals(1, flaky.run(runDate).getFailed());
+        relayDown.set(false);
+        ReminderDispatcher.RunSummary retry = flaky.run(runDate);
+        assertEquals(0, retry.getFailed());
+        assertTrue(retried.contains("alice@mail.com"));
+        assertEquals(0, flaky.run(runDate).getSent());
+    }
+}
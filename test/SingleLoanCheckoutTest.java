@@ -0,0 +1,40 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.time.LocalDate;
+
+public class SingleLoanCheckoutTest {
+
+    @Test
+    public void testCheckoutCreatesOneSharedLoan() {
+
+        LibrarySystem system = new LibrarySystem();
+        Product book = new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy");
+        system.addProduct(book);
+
+        Student student = new Student(7, "Sam", "sam@uni.ac.uk", "CS", 2);
+        system.handleBorrow(student, book.getProductKey());
+
+        // Exactly one loan, shared by the user and the system ledger
+        assertEquals(1, student.viewLoans().size());
+        Loan loan = student.viewLoans().iterator().next();
+        assertSame(loan, system.findLoan(book.getProductKey()));
+        assertEquals(1, system.getLoans(student).size());
+
+        // The student's own terms (21-day loans) were applied to that loan
+        assertTrue(loan.getInfo().contains("Due: " + LocalDate.now().plusDays(21)));
+        assertFalse(book.isAvailable());
+
+        // A product on loan cannot be withdrawn from the catalogue
+        assertFalse(system.removeProduct(book.getProductKey()));
+        assertSame(book, system.findProduct(book.getProductKey()));
+
+        // Returning clears both sides
+        system.handleReturn(student, book.getProductKey());
+        assertTrue(student.viewLoans().isEmpty());
+        assertNull(system.findLoan(book.getProductKey()));
+        assertTrue(book.isAvailable());
+        assertTrue(system.removeProduct(book.getProductKey()));
+    }
+}
@@ -0,0 +1,35 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.util.StringDictionary;
+
+import java.nio.charset.StandardCharsets;
+
+public class StringDictionaryTest {
+
+    @Test
+    public void testEqualValuesShareOneInstance() {
+
+        StringDictionary dictionary = new StringDictionary();
+
+        // Values built separately must resolve to the same instance
+        String first = dictionary.intern(new String("Fantasy"));
+        String second = dictionary.intern(new String("Fantasy"));
+        assertSame(first, second);
+
+        // Byte lookups, including non-ASCII text, find the same entries
+        byte[] bytes = "xxFantasyxx".getBytes(StandardCharsets.UTF_8);
+        assertSame(first, dictionary.intern(bytes, 2, 7));
+        byte[] accented = "Gabriel García Márquez".getBytes(StandardCharsets.UTF_8);
+        String author = dictionary.intern(accented, 0, accented.length);
+        assertEquals("Gabriel García Márquez", author);
+        assertSame(author, dictionary.intern("Gabriel García Márquez"));
+
+        // Enough distinct values to force segment growth
+        for (int i = 0; i < 500; i++) {
+            dictionary.intern("Author " + i);
+        }
+        assertEquals(502, dictionary.size());
+        assertEquals(3, dictionary.getHits());
+        assertTrue(dictionary.getEstimatedBytesSaved() > 0);
+    }
+}
@@ -0,0 +1,50 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import main.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserDirectoryTest {
+
+    @Test
+    public void testUsersIndexedByIdAndUniqueEmail() {
+
+        LibrarySystem system = new LibrarySystem();
+        Librarian lib = new Librarian(9, "Lib", "lib@mail.com");
+        AdultUser parent = new AdultUser(1, "Parent", "family@mail.com");
+        assertTrue(lib.registerUser(system, parent));
+
+        // Same ID, or same address in another case, is rejected; a child may share the family address
+        assertFalse(lib.registerUser(system, new AdultUser(1, "Other", "other@mail.com")));
+        assertFalse(lib.registerUser(system, new Student(2, "Copy", " FAMILY@Mail.com", "CS", 1)));
+        assertTrue(lib.registerUser(system, new ChildUser(3, "Sara", "family@mail.com")));
+        assertSame(parent, system.findUserByEmail("Family@Mail.com "));
+        assertEquals(3, system.findUser(3).getUserId());
+
+        // Onboard 20,000 students in one batch; the last one reuses the parent's address
+        List<User> term = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            term.add(new Student(1000 + i, "Student " + i, "s" + i + "@uni.ac.uk", "CS", 1));
+        }
+        term.add(new Student(99_999, "Late", "family@mail.com", "CS", 1));
+        List<User> rejected = lib.registerUsers(system, term);
+        assertEquals(1, rejected.size());
+        assertEquals(99_999, rejected.get(0).getUserId());
+        assertEquals(20_002, system.getUsers().size());
+        assertEquals(1000 + 12_345, system.findUserByEmail("s12345@uni.ac.uk").getUserId());
+
+        // Removal frees the ID and address and keeps registration order; active borrowers stay
+        assertTrue(lib.removeUser(system, 1000));
+        assertNull(system.findUser(1000));
+        assertTrue(lib.registerUser(system, new Student(1000, "Again", "s0@uni.ac.uk", "CS", 2)));
+        assertEquals(List.of(1, 3, 1001), List.of(system.getUsers().get(0).getUserId(),
+                system.getUsers().get(1).getUserId(), system.getUsers().get(2).getUserId()));
+        assertEquals(1000, system.getUsers().get(system.getUsers().size() - 1).getUserId());
+
+        system.addProduct(new Book(1, "The Hobbit", "Tolkien", "111", "Fantasy"));
+        system.handleBorrow(parent, ProductKey.of(MediaType.BOOK, 1));
+        assertFalse(lib.removeUser(system, 1));
+        assertSame(parent, system.findUser(1));
+    }
+}